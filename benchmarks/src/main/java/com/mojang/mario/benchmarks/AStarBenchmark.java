@@ -0,0 +1,90 @@
+package com.mojang.mario.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.idsia.ai.agents.ai.BasicAIAgent;
+import ch.idsia.mario.engine.MarioSimulation;
+import ch.idsia.mario.engine.level.LevelGenerator;
+import competition.cig.robinbaumgarten.astar.AStarSimulator;
+
+/**
+ * Time of the first AStarSimulator.optimise call on a level, the one that
+ * plans from scratch, with a fixed expansion budget. The calls and
+ * expansions counters give the nodes simulated per call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AStarBenchmark
+{
+    @Param({"1", "42"})
+    public long seed;
+
+    @Param({"500", "2000"})
+    public int expansionBudget;
+
+    private byte[][] scene;
+    private float[] enemies;
+    private AStarSimulator simulator;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Expansions
+    {
+        public long calls;
+        public long expansions;
+    }
+
+    // the observation the agent gets on the first tick of the level
+    @Setup(Level.Trial)
+    public void observe()
+    {
+        MarioSimulation simulation = new MarioSimulation();
+        simulation.setAgent(new BasicAIAgent("benchmark"));
+        simulation.startLevel(seed, 3, LevelGenerator.TYPE_OVERGROUND, 320, 3000);
+        simulation.tickScene();
+        byte[][] observation = simulation.getLevelSceneObservationZ(0);
+        scene = new byte[observation.length][];
+        for (int i = 0; i < observation.length; i++)
+        {
+            scene[i] = observation[i].clone();
+        }
+        enemies = simulation.getEnemiesFloatPos().clone();
+    }
+
+    // set up like AStarAgent does before its first optimise
+    @Setup(Level.Invocation)
+    public void newSimulator()
+    {
+        simulator = new AStarSimulator();
+        simulator.expansionBudget = expansionBudget;
+        simulator.advanceStep(new boolean[5]);
+        simulator.setLevelPart(scene, enemies);
+    }
+
+    @Benchmark
+    public boolean[] optimise(Expansions counters)
+    {
+        boolean[] action = simulator.optimise();
+        counters.calls++;
+        counters.expansions += simulator.stats.expansions;
+        return action;
+    }
+}
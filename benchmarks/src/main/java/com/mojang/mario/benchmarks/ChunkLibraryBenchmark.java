@@ -0,0 +1,74 @@
+package com.mojang.mario.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mojang.mario.level.ChunkPack;
+import com.mojang.mario.level.Level;
+
+/**
+ * Loading the fixture chunk library, once from its chunk folders like a
+ * first start of the editor does, and once from a chunk pack.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ChunkLibraryBenchmark
+{
+    private File packFile;
+
+    @Setup
+    public void writePack() throws IOException
+    {
+        List<Level> chunks = Fixtures.loadChunks();
+        List<List<String>> tags = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++)
+        {
+            tags.add(new ArrayList<String>());
+        }
+        packFile = File.createTempFile("infinitetux-chunks", ".pack");
+        ChunkPack.write(packFile, chunks, tags);
+    }
+
+    @TearDown
+    public void deletePack()
+    {
+        packFile.delete();
+    }
+
+    @Benchmark
+    public List<Level> loadFolders() throws IOException
+    {
+        return Fixtures.loadChunks();
+    }
+
+    @Benchmark
+    public List<Level> loadPack() throws IOException
+    {
+        ChunkPack pack = ChunkPack.open(packFile);
+        List<Level> chunks = new ArrayList<>(pack.size());
+        for (int i = 0; i < pack.size(); i++)
+        {
+            chunks.add(pack.readChunk(i));
+        }
+        return chunks;
+    }
+}
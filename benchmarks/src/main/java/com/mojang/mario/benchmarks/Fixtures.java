@@ -0,0 +1,119 @@
+package com.mojang.mario.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.mojang.mario.level.ChunkLibrary;
+import com.mojang.mario.level.Level;
+import com.mojang.mario.util.Logger;
+
+/**
+ * Fixtures shared by the benchmarks. The chunk library is one of the
+ * libraries checked in under chunk-libs; pick another with
+ * -Dinfinitetux.chunks=path/to/library.
+ */
+final class Fixtures
+{
+    static final String CHUNKS_PROPERTY = "infinitetux.chunks";
+    static final String DEFAULT_CHUNKS = "../chunk-libs/chunks4";
+
+    private static boolean libraryLoaded = false;
+    private static File libraryDirectory = null;
+
+    private Fixtures()
+    {
+    }
+
+    /**
+     * chunkDirectory of the fixture library, holding one folder per chunk.
+     * @return Directory of the library
+     * @throws IllegalStateException if the directory does not exist
+     */
+    static File chunkDirectory()
+    {
+        File dir = new File(System.getProperty(CHUNKS_PROPERTY, DEFAULT_CHUNKS));
+        if (!dir.isDirectory())
+        {
+            throw new IllegalStateException("No chunk library at " + dir.getAbsolutePath()
+                + ", run from the benchmarks directory or set -D" + CHUNKS_PROPERTY);
+        }
+        return dir;
+    }
+
+    /**
+     * chunkFolders of the fixture library in name order, skipping the README.
+     * @return Chunk folders
+     */
+    static File[] chunkFolders()
+    {
+        File[] folders = chunkDirectory().listFiles(File::isDirectory);
+        Arrays.sort(folders);
+        return folders;
+    }
+
+    /**
+     * loadChunks of the fixture library straight from its folders.
+     * @return Chunks in name order
+     */
+    static List<Level> loadChunks() throws IOException
+    {
+        File[] folders = chunkFolders();
+        List<Level> chunks = new ArrayList<>(folders.length);
+        for (File folder : folders)
+        {
+            chunks.add(Level.load(folder));
+        }
+        return chunks;
+    }
+
+    /**
+     * initChunkLibrary loads the fixture library into ChunkLibrary, which
+     * the ORE generator draws its chunks from. Only the first call loads.
+     */
+    static synchronized void initChunkLibrary() throws IOException
+    {
+        if (libraryLoaded)
+        {
+            return;
+        }
+        Logger.setLevel(Logger.LEVEL_ERROR);
+        libraryDirectory = Files.createTempDirectory("infinitetux-bench").toFile();
+        ChunkLibrary.init(libraryDirectory);
+        for (Level chunk : loadChunks())
+        {
+            ChunkLibrary.addChunk(chunk);
+        }
+        libraryLoaded = true;
+    }
+
+    /**
+     * deleteLibraryDirectory deletes the temporary program directory that
+     * initChunkLibrary made, with anything written to it. The chunks stay
+     * loaded, since ChunkLibrary can only be initialized once.
+     */
+    static synchronized void deleteLibraryDirectory()
+    {
+        if (libraryDirectory != null)
+        {
+            delete(libraryDirectory);
+            libraryDirectory = null;
+        }
+    }
+
+    private static void delete(File file)
+    {
+        File[] files = file.listFiles();
+        if (files != null)
+        {
+            for (File child : files)
+            {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
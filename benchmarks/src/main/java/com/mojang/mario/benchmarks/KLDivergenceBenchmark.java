@@ -0,0 +1,54 @@
+package com.mojang.mario.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mojang.mario.level.Level;
+import com.mojang.mario.level.LevelGenerator;
+import com.mojang.mario.util.KLDivergence;
+
+/**
+ * Time of one KLDivergence.klDivergence between two Notch levels, for the
+ * square kernels the diversity studies use.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KLDivergenceBenchmark
+{
+    @Param({"2", "4", "6"})
+    public int kernel;
+
+    @Param({"128", "256", "1024"})
+    public int width;
+
+    private Level p;
+    private Level q;
+
+    @Setup
+    public void generateLevels()
+    {
+        p = LevelGenerator.createLevel(width, 15, 1, 3, LevelGenerator.TYPE_OVERGROUND);
+        q = LevelGenerator.createLevel(width, 15, 2, 3, LevelGenerator.TYPE_OVERGROUND);
+    }
+
+    @Benchmark
+    public double klDivergence()
+    {
+        return KLDivergence.klDivergence(p, q, kernel, kernel);
+    }
+}
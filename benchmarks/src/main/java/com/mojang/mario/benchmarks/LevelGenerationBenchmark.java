@@ -0,0 +1,69 @@
+package com.mojang.mario.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mojang.mario.level.Level;
+import com.mojang.mario.level.LevelGenerator;
+import com.mojang.mario.level.OreLevelGenerator;
+
+/**
+ * Time to generate one level with the ORE generator, drawing from the
+ * fixture chunk library, and with Notch's generator.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LevelGenerationBenchmark
+{
+    static final int HEIGHT = 15;
+
+    @Param({"128", "256", "1024"})
+    public int width;
+
+    @Param({"4086"})
+    public long seed;
+
+    @Param({"3"})
+    public int difficulty;
+
+    @Setup
+    public void loadChunks() throws IOException
+    {
+        Fixtures.initChunkLibrary();
+    }
+
+    @TearDown
+    public void deleteLibraryDirectory()
+    {
+        Fixtures.deleteLibraryDirectory();
+    }
+
+    @Benchmark
+    public Level ore()
+    {
+        return OreLevelGenerator.createLevel(width, HEIGHT, seed, difficulty, LevelGenerator.TYPE_OVERGROUND, true, true);
+    }
+
+    @Benchmark
+    public Level notch()
+    {
+        return LevelGenerator.createLevel(width, HEIGHT, seed, difficulty, LevelGenerator.TYPE_OVERGROUND);
+    }
+}
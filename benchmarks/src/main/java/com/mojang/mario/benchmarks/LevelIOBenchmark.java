@@ -0,0 +1,112 @@
+package com.mojang.mario.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mojang.mario.level.Level;
+import com.mojang.mario.level.LevelGenerator;
+
+/**
+ * Level.load and save of a generated level, in memory and through a
+ * level directory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LevelIOBenchmark
+{
+    @Param({"128", "256", "1024"})
+    public int width;
+
+    private Level level;
+    private byte[] map;
+    private byte[] enemies;
+    private byte[] hazards;
+    private File levelDirectory;
+
+    @Setup
+    public void prepare() throws IOException
+    {
+        level = LevelGenerator.createLevel(width, 15, 4086, 3, LevelGenerator.TYPE_OVERGROUND);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        level.saveMap(new DataOutputStream(bytes));
+        map = bytes.toByteArray();
+        bytes.reset();
+        level.saveEnemy(new DataOutputStream(bytes));
+        enemies = bytes.toByteArray();
+        bytes.reset();
+        level.saveHazard(new DataOutputStream(bytes));
+        hazards = bytes.toByteArray();
+
+        levelDirectory = Files.createTempDirectory("infinitetux-level").toFile();
+        level.save(levelDirectory);
+    }
+
+    @TearDown
+    public void cleanUp()
+    {
+        File[] files = levelDirectory.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                file.delete();
+            }
+        }
+        levelDirectory.delete();
+    }
+
+    @Benchmark
+    public byte[] save() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(map.length + enemies.length + hazards.length);
+        DataOutputStream dos = new DataOutputStream(bytes);
+        level.saveMap(dos);
+        level.saveEnemy(dos);
+        level.saveHazard(dos);
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public Level load() throws IOException
+    {
+        Level loaded = Level.loadMap(new DataInputStream(new ByteArrayInputStream(map)));
+        Level.loadEnemy(loaded, new DataInputStream(new ByteArrayInputStream(enemies)));
+        Level.loadHazard(loaded, new DataInputStream(new ByteArrayInputStream(hazards)));
+        return loaded;
+    }
+
+    @Benchmark
+    public void saveDirectory() throws IOException
+    {
+        level.save(levelDirectory);
+    }
+
+    @Benchmark
+    public Level loadDirectory() throws IOException
+    {
+        return Level.load(levelDirectory);
+    }
+}
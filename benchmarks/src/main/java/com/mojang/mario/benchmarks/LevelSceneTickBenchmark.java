@@ -0,0 +1,74 @@
+package com.mojang.mario.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.idsia.mario.engine.LevelScene;
+import ch.idsia.mario.engine.level.LevelGenerator;
+import ch.idsia.mario.engine.sprites.Mario;
+
+/**
+ * Time per LevelScene.tick, on the first TICKS ticks of a generated level.
+ * Mario runs right and jumps in a fixed rhythm, so every invocation plays
+ * out the same way.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LevelSceneTickBenchmark
+{
+    static final int TICKS = 400;
+
+    @Param({"1", "42"})
+    public long seed;
+
+    @Param({"0", "3", "10"})
+    public int difficulty;
+
+    @Param({"320", "1024"})
+    public int length;
+
+    private LevelScene scene;
+    private final boolean[] keys = new boolean[5];
+
+    // a new scene for every invocation, so all of them tick the same frames
+    @Setup(Level.Invocation)
+    public void startLevel()
+    {
+        scene = new LevelScene(seed, difficulty, LevelGenerator.TYPE_OVERGROUND, length, TICKS * 2);
+        scene.setMarioMode(2);
+        scene.init();
+        scene.mario.keys = keys;
+        scene.mario.cheatKeys = new boolean[16];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TICKS)
+    public long tick()
+    {
+        for (int i = 0; i < TICKS; i++)
+        {
+            keys[Mario.KEY_RIGHT] = true;
+            keys[Mario.KEY_SPEED] = true;
+            keys[Mario.KEY_JUMP] = (i & 31) < 12;
+            scene.tick();
+        }
+        return scene.stateHash();
+    }
+}
@@ -1,5 +1,7 @@
 package ch.idsia.ai;
 
+import java.util.Random;
+
 
 /**
  * Interface to a generic <code>Evolvable</code>, one of the objects needed by an
@@ -38,6 +40,18 @@ public interface Evolvable {
      */
     public void mutate();
 
+    /**
+     * Applies the predefined mutation, drawing every random number from <code>random</code>,
+     * so that mutating the same <code>Evolvable</code> with equally seeded generators
+     * always gives the same result. The default ignores <code>random</code> and calls
+     * {@link #mutate()}.
+     *
+     * @param random the generator to draw from.
+     */
+    public default void mutate(Random random) {
+        mutate();
+    }
+
     /**
      * Produces a suitable <code>String</code> representation of the <code>Evolvable</code>.
      *
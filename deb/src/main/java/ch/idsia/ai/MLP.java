@@ -10,11 +10,16 @@ import java.util.Random;
  */
 public class MLP implements FA<double[], double[]>, Evolvable {
 
-        private double[][] firstConnectionLayer;
-    private double[][] secondConnectionLayer;
+    // both connection layers in one row-major buffer: first the inputs x hidden
+    // weights, then from secondLayerOffset on the hidden x outputs weights
+    private double[] weights;
+    private final int secondLayerOffset;
     private double[] hiddenNeurons;
     private double[] outputs;
     private double[] inputs;
+    // the inputs of the last propagate, used by backPropagate
+    private double[] lastInputs;
+    private boolean warnedAboutInputs = false;
     //private double[] targetOutputs;
     public double mutationMagnitude = 0.1;
 
@@ -26,67 +31,58 @@ public class MLP implements FA<double[], double[]>, Evolvable {
     public double learningRate = 0.01;
 
     public MLP(int numberOfInputs, int numberOfHidden, int numberOfOutputs) {
-
-        firstConnectionLayer = new double[numberOfInputs][numberOfHidden];
-        secondConnectionLayer = new double[numberOfHidden][numberOfOutputs];
-        hiddenNeurons = new double[numberOfHidden];
-        outputs = new double[numberOfOutputs];
-        //targetOutputs = new double[numberOfOutputs];
-        inputs = new double[numberOfInputs];
-        initializeLayer(firstConnectionLayer);
-        initializeLayer(secondConnectionLayer);
+        this(new double[numberOfInputs * numberOfHidden + numberOfHidden * numberOfOutputs],
+                numberOfInputs, numberOfHidden, numberOfOutputs);
+        initializeLayer(0, weights.length);
     }
 
     public MLP(double[][] firstConnectionLayer, double[][] secondConnectionLayer, int numberOfHidden,
                int numberOfOutputs) {
-        this.firstConnectionLayer = firstConnectionLayer;
-        this.secondConnectionLayer = secondConnectionLayer;
-        inputs = new double[firstConnectionLayer.length];
+        this(new double[firstConnectionLayer.length * numberOfHidden + numberOfHidden * numberOfOutputs],
+                firstConnectionLayer.length, numberOfHidden, numberOfOutputs);
+        NetworkKernels.flatten(firstConnectionLayer, weights, 0);
+        NetworkKernels.flatten(secondConnectionLayer, weights, secondLayerOffset);
+    }
+
+    /**
+     * Creates a network on a flat weight buffer laid out like {@link #getWeightsArray()}.
+     * The buffer is used as it is, not copied.
+     */
+    public MLP(double[] weights, int numberOfInputs, int numberOfHidden, int numberOfOutputs) {
+        if (weights.length != numberOfInputs * numberOfHidden + numberOfHidden * numberOfOutputs)
+            throw new IllegalArgumentException("Expected " + (numberOfInputs * numberOfHidden + numberOfHidden * numberOfOutputs)
+                    + " weights, got " + weights.length);
+        this.weights = weights;
+        this.secondLayerOffset = numberOfInputs * numberOfHidden;
+        inputs = new double[numberOfInputs];
+        lastInputs = inputs;
         hiddenNeurons = new double[numberOfHidden];
         outputs = new double[numberOfOutputs];
     }
 
-    protected void initializeLayer(double[][] layer) {
-        for (int i = 0; i < layer.length; i++) {
-            for (int j = 0; j < layer[i].length; j++) {
-                layer[i][j] = (random.nextGaussian() * deviation + mean);
-            }
+    protected void initializeLayer(int from, int to) {
+        for (int i = from; i < to; i++) {
+            weights[i] = (random.nextGaussian() * deviation + mean);
         }
     }
 
     public MLP getNewInstance() {
-        return new MLP(firstConnectionLayer.length, secondConnectionLayer.length, outputs.length);
+        return new MLP(inputs.length, hiddenNeurons.length, outputs.length);
     }
 
     public MLP copy() {
-        MLP copy = new MLP(copy(firstConnectionLayer), copy(secondConnectionLayer),
-                hiddenNeurons.length, outputs.length);
+        MLP copy = new MLP(weights.clone(), inputs.length, hiddenNeurons.length, outputs.length);
         copy.setMutationMagnitude(mutationMagnitude);
         return copy;
     }
 
-    private double[][] copy(double[][] original) {
-        double[][] copy = new double[original.length][original[0].length];
-        for (int i = 0; i < original.length; i++) {
-            System.arraycopy(original[i], 0, copy[i], 0, original[i].length);
-        }
-        return copy;
-    }
-
     public void mutate() {
-        mutate(firstConnectionLayer);
-        mutate(secondConnectionLayer);
-    }
-
-    private void mutate(double[] array) {
-        for (int i = 0; i < array.length; i++) {
-            array[i] += random.nextGaussian() * mutationMagnitude;
-        }
+        mutate(random);
     }
 
-    private void mutate(double[][] array) {
-        for (double[] anArray : array) {
-            mutate(anArray);
+    public void mutate(Random random) {
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] += random.nextGaussian() * mutationMagnitude;
         }
     }
 
@@ -102,30 +98,14 @@ public class MLP implements FA<double[], double[]>, Evolvable {
         //System.out.println(" PBEST:" + pBest);
         //System.out.println(" GBEST:" + gBest);
         //System.out.println(" THIS:" + toString());
-        for (int i = 0; i < inputs.length; i++) {
-            for (int j = 0; j < hiddenNeurons.length; j++) {
-                firstConnectionLayer[i][j] = (double) (firstConnectionLayer[i][j] + ki * (firstConnectionLayer[i][j] - ((double[][]) (last.firstConnectionLayer))[i][j]
-                        + phi1 * (((double[][]) (pBest.firstConnectionLayer))[i][j] - firstConnectionLayer[i][j])
-                        + phi2 * (((double[][]) (gBest.firstConnectionLayer))[i][j] - firstConnectionLayer[i][j])));
-            }
-        }
-
-        for (int i = 0; i < hiddenNeurons.length; i++) {
-            for (int j = 0; j < outputs.length; j++) {
-                secondConnectionLayer[i][j] = (double) (secondConnectionLayer[i][j] + ki * (secondConnectionLayer[i][j] - ((double[][]) (last.secondConnectionLayer))[i][j]
-                        + phi1 * (((double[][]) (pBest.secondConnectionLayer))[i][j] - secondConnectionLayer[i][j])
-                        + phi2 * (((double[][]) (gBest.secondConnectionLayer))[i][j] - secondConnectionLayer[i][j])));
-            }
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = weights[i] + ki * (weights[i] - last.weights[i]
+                    + phi1 * (pBest.weights[i] - weights[i])
+                    + phi2 * (gBest.weights[i] - weights[i]));
         }
 
     }
 
-    private void clear(double[] array) {
-        for (int i = 0; i < array.length; i++) {
-            array[i] = 0;
-        }
-    }
-
     public void reset() {
     }
 
@@ -134,28 +114,44 @@ public class MLP implements FA<double[], double[]>, Evolvable {
     }
 
     public double[] propagate(double[] inputIn) {
-        if (inputs != inputIn) {
-            System.arraycopy(inputIn, 0, this.inputs, 0, inputIn.length);
+        if (inputIn.length == inputs.length) {
+            lastInputs = inputIn;
+        } else {
+            // a shorter input only overwrites the first inputs, the others keep their last values
+            if (!warnedAboutInputs) {
+                System.out.println("NOTE: only " + inputIn.length + " inputs out of " + inputs.length + " are used in the network");
+                warnedAboutInputs = true;
+            }
+            if (lastInputs != inputs)
+                System.arraycopy(lastInputs, 0, inputs, 0, inputs.length);
+            System.arraycopy(inputIn, 0, inputs, 0, inputIn.length);
+            lastInputs = inputs;
         }
-        if (inputIn.length < inputs.length)
-            System.out.println("NOTE: only " + inputIn.length + " inputs out of " + inputs.length + " are used in the network");
-        propagateOneStep(inputs, hiddenNeurons, firstConnectionLayer);
-        tanh(hiddenNeurons);
-        propagateOneStep(hiddenNeurons, outputs, secondConnectionLayer);
-        tanh(outputs);
+        NetworkKernels.propagate(lastInputs, 0, inputs.length, hiddenNeurons, 0, hiddenNeurons.length, weights, 0);
+        NetworkKernels.propagate(hiddenNeurons, 0, hiddenNeurons.length, outputs, 0, outputs.length, weights, secondLayerOffset);
 
         return outputs;
 
     }
 
-    private void propagateOneStep(double[] fromLayer, double[] toLayer, double[][] connections) {
-        clear(toLayer);
-        for (int from = 0; from < fromLayer.length; from++) {
-            for (int to = 0; to < toLayer.length; to++) {
-                toLayer[to] += fromLayer[from] * connections[from][to];
-                //System.out.println("From : " + from + " to: " + to + " :: " +toLayer[to] + "+=" +  fromLayer[from] + "*"+  connections[from][to]);
-            }
+    /**
+     * Propagates a batch of input vectors stored one after the other in <code>inputBatch</code>,
+     * writing the output vectors one after the other into <code>outputBatch</code>.
+     * Gives the same outputs as propagating the vectors one by one.
+     *
+     * @param inputBatch  count vectors of getNumberOfInputs() values
+     * @param count       number of vectors in the batch
+     * @param outputBatch room for count vectors of getNumberOfOutputs() values
+     */
+    public void propagate(double[] inputBatch, int count, double[] outputBatch) {
+        if (inputBatch.length < count * inputs.length || outputBatch.length < count * outputs.length)
+            throw new IllegalArgumentException("Batch arrays too short for " + count + " vectors");
+        for (int k = 0; k < count; k++) {
+            NetworkKernels.propagate(inputBatch, k * inputs.length, inputs.length, hiddenNeurons, 0, hiddenNeurons.length, weights, 0);
+            NetworkKernels.propagate(hiddenNeurons, 0, hiddenNeurons.length, outputBatch, k * outputs.length, outputs.length, weights, secondLayerOffset);
         }
+        if (count > 0)
+            System.arraycopy(outputBatch, (count - 1) * outputs.length, outputs, 0, outputs.length);
     }
 
     public double backPropagate(double[] targetOutputs) {
@@ -183,7 +179,7 @@ public class MLP implements FA<double[], double[]>, Evolvable {
             // System.out.println("Hidden: " + hidden);
             for (int toOutput = 0; toOutput < outputs.length; toOutput++) {
                 // System.out.println("Hidden " + hidden + ", toOutput" + toOutput);
-                contributionToOutputError += secondConnectionLayer[hidden][toOutput] * outputError[toOutput];
+                contributionToOutputError += weights[secondLayerOffset + hidden * outputs.length + toOutput] * outputError[toOutput];
                 // System.out.println("Err tempSum: " + contributionToOutputError +  "=" +secondConnectionLayer[hidden][toOutput]  +  "*" +outputError[toOutput] );
             }
             hiddenError[hidden] = dtanh(hiddenNeurons[hidden]) * contributionToOutputError;
@@ -197,12 +193,13 @@ public class MLP implements FA<double[], double[]>, Evolvable {
         for (int input = 0; input < inputs.length; input++) {
             for (int hidden = 0; hidden < hiddenNeurons.length; hidden++) {
 
-                double saveAway = firstConnectionLayer[input][hidden];
-                firstConnectionLayer[input][hidden] += learningRate * hiddenError[hidden] * inputs[input];
+                final int w = input * hiddenNeurons.length + hidden;
+                double saveAway = weights[w];
+                weights[w] += learningRate * hiddenError[hidden] * lastInputs[input];
 
-                if (Double.isNaN(firstConnectionLayer[input][hidden])) {
+                if (Double.isNaN(weights[w])) {
                     System.out.println("Late weight error! hiddenError " + hiddenError[hidden]
-                            + " input " + inputs[input] + " was " + saveAway);
+                            + " input " + lastInputs[input] + " was " + saveAway);
                 }
             }
         }
@@ -212,12 +209,13 @@ public class MLP implements FA<double[], double[]>, Evolvable {
 
             for (int output = 0; output < outputs.length; output++) {
 
-                double saveAway = secondConnectionLayer[hidden][output];
-                secondConnectionLayer[hidden][output] += learningRate * outputError[output] * hiddenNeurons[hidden];
+                final int w = secondLayerOffset + hidden * outputs.length + output;
+                double saveAway = weights[w];
+                weights[w] += learningRate * outputError[output] * hiddenNeurons[hidden];
 
-                if (Double.isNaN(secondConnectionLayer[hidden][output])) {
+                if (Double.isNaN(weights[w])) {
                     System.out.println("target: " + targetOutputs[output] + " outputs: " + outputs[output] + " error:" + outputError[output] + "\n" +
-                            "hidden: " + hiddenNeurons[hidden] + "\nnew conn weight: " + secondConnectionLayer[hidden][output] + " was: " + saveAway + "\n");
+                            "hidden: " + hiddenNeurons[hidden] + "\nnew conn weight: " + weights[w] + " was: " + saveAway + "\n");
                 }
             }
         }
@@ -237,15 +235,6 @@ public class MLP implements FA<double[], double[]>, Evolvable {
         return 1.0d / (1.0d + Math.exp(-val));
     }
 
-    private void tanh(double[] array) {
-        for (int i = 0; i < array.length; i++) {
-            array[i] = Math.tanh(array[i]);
-            // for the sigmoid
-            // array[i] = array[i];
-            //array[i] = sig(array[i]);//array[i];//
-        }
-    }
-
     private double dtanh(double num) {
         //return 1;
         return (1 - (num * num));
@@ -256,15 +245,8 @@ public class MLP implements FA<double[], double[]>, Evolvable {
 
     private double sum() {
         double sum = 0;
-        for (double[] aFirstConnectionLayer : firstConnectionLayer) {
-            for (double anAFirstConnectionLayer : aFirstConnectionLayer) {
-                sum += anAFirstConnectionLayer;
-            }
-        }
-        for (double[] aSecondConnectionLayer : secondConnectionLayer) {
-            for (double anASecondConnectionLayer : aSecondConnectionLayer) {
-                sum += anASecondConnectionLayer;
-            }
+        for (double weight : weights) {
+            sum += weight;
         }
         return sum;
     }
@@ -287,30 +269,26 @@ public class MLP implements FA<double[], double[]>, Evolvable {
     public void println() {
         System.out.print("\n\n----------------------------------------------------" +
                 "-----------------------------------\n");
-        for (double[] aFirstConnectionLayer : firstConnectionLayer) {
-            System.out.print("|");
-            for (double anAFirstConnectionLayer : aFirstConnectionLayer) {
-                System.out.print(" " + anAFirstConnectionLayer);
-            }
-            System.out.print(" |\n");
-        }
+        println(0, inputs.length, hiddenNeurons.length);
         System.out.print("----------------------------------------------------" +
                 "-----------------------------------\n");
-        for (double[] aSecondConnectionLayer : secondConnectionLayer) {
+        println(secondLayerOffset, hiddenNeurons.length, outputs.length);
+        System.out.print("----------------------------------------------------" +
+                "-----------------------------------\n");
+    }
+
+    private void println(int offset, int rows, int columns) {
+        for (int i = 0; i < rows; i++) {
             System.out.print("|");
-            for (double anASecondConnectionLayer : aSecondConnectionLayer) {
-                System.out.print(" " + anASecondConnectionLayer);
+            for (int j = 0; j < columns; j++) {
+                System.out.print(" " + weights[offset + i * columns + j]);
             }
             System.out.print(" |\n");
         }
-        System.out.print("----------------------------------------------------" +
-                "-----------------------------------\n");
     }
 
     public String toString() {
-        int numberOfConnections = (firstConnectionLayer.length * firstConnectionLayer[0].length) +
-                (secondConnectionLayer.length * secondConnectionLayer[0].length);
-        return "Straight mlp, mean connection weight " + (sum() / numberOfConnections);
+        return "Straight mlp, mean connection weight " + (sum() / weights.length);
     }
 
     public void ssetLearningRate(double learningRate) {
@@ -323,56 +301,35 @@ public class MLP implements FA<double[], double[]>, Evolvable {
         return outputsCopy;
     }
 
+    /**
+     * Returns the weights of both layers, input to hidden first, each layer row by row.
+     * This is the buffer the network works on, not a copy: changes to it change the network.
+     */
     public double[] getWeightsArray() {
-        double[] weights = new double[inputs.length * hiddenNeurons.length + hiddenNeurons.length * outputs.length];
-
-        int k = 0;
-        for (int i = 0; i < inputs.length; i++) {
-            for (int j = 0; j < hiddenNeurons.length; j++) {
-                weights[k] = firstConnectionLayer[i][j];
-                k++;
-            }
-        }
-        for (int i = 0; i < hiddenNeurons.length; i++) {
-            for (int j = 0; j < outputs.length; j++) {
-                weights[k] = secondConnectionLayer[i][j];
-                k++;
-            }
-        }
         return weights;
     }
 
+    /**
+     * Makes the network work on <code>weights</code>, laid out like {@link #getWeightsArray()}.
+     * The array is used as it is, not copied.
+     */
     public void setWeightsArray(double[] weights) {
-        int k = 0;
-
-        for (int i = 0; i < inputs.length; i++) {
-            for (int j = 0; j < hiddenNeurons.length; j++) {
-                firstConnectionLayer[i][j] = weights[k];
-                k++;
-            }
-        }
-        for (int i = 0; i < hiddenNeurons.length; i++) {
-            for (int j = 0; j < outputs.length; j++) {
-                secondConnectionLayer[i][j] = weights[k];
-                k++;
-            }
-        }
+        if (weights.length != this.weights.length)
+            throw new IllegalArgumentException("Expected " + this.weights.length + " weights, got " + weights.length);
+        this.weights = weights;
     }
 
     public int getNumberOfInputs() {
         return inputs.length;
     }
 
-    public void randomise() {
-        randomise(firstConnectionLayer);
-        randomise(secondConnectionLayer);
+    public int getNumberOfOutputs() {
+        return outputs.length;
     }
 
-    protected void randomise(double[][] layer) {
-        for (int i = 0; i < layer.length; i++) {
-            for (int j = 0; j < layer[i].length; j++) {
-                layer[i][j] = (Math.random() * 4.0) - 2.0;
-            }
+    public void randomise() {
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = (Math.random() * 4.0) - 2.0;
         }
     }
 
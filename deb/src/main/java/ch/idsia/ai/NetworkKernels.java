@@ -0,0 +1,56 @@
+package ch.idsia.ai;
+
+/**
+ * Matrix-vector kernels shared by the MLP and SRN.
+ * A connection layer is a fromCount x toCount matrix stored row by row in a flat
+ * buffer, so every inner loop runs over one contiguous row and can be vectorized
+ * by the JIT. The sums are taken in the same order as the old double[][] loops,
+ * so the results are the same to the last bit.
+ */
+final class NetworkKernels {
+
+    private NetworkKernels() {
+    }
+
+    // to = tanh(from * connections)
+    static void propagate(double[] from, int fromOffset, int fromCount,
+                          double[] to, int toOffset, int toCount,
+                          double[] weights, int offset) {
+        clear(to, toOffset, toCount);
+        accumulate(from, fromOffset, fromCount, to, toOffset, toCount, weights, offset);
+        tanh(to, toOffset, toCount);
+    }
+
+    // to += from * connections
+    static void accumulate(double[] from, int fromOffset, int fromCount,
+                           double[] to, int toOffset, int toCount,
+                           double[] weights, int offset) {
+        final int toEnd = toOffset + toCount;
+        for (int i = 0; i < fromCount; i++) {
+            final double value = from[fromOffset + i];
+            final int row = offset + i * toCount - toOffset;
+            for (int j = toOffset; j < toEnd; j++) {
+                to[j] += value * weights[row + j];
+            }
+        }
+    }
+
+    static void clear(double[] array, int offset, int count) {
+        for (int i = offset; i < offset + count; i++) {
+            array[i] = 0;
+        }
+    }
+
+    static void tanh(double[] array, int offset, int count) {
+        for (int i = offset; i < offset + count; i++) {
+            array[i] = Math.tanh(array[i]);
+        }
+    }
+
+    static void flatten(double[][] layer, double[] flat, int offset) {
+        for (double[] row : layer) {
+            System.arraycopy(row, 0, flat, offset, row.length);
+            offset += row.length;
+        }
+    }
+}
@@ -13,32 +13,49 @@ import java.util.Random;
  */
 public class SRN implements FA<double[], double[]>, Evolvable {
 
-    protected double[][] firstConnectionLayer;
-    protected double[][] recurrentConnectionLayer;
-    protected double[][] secondConnectionLayer;
+    // the input, recurrent and output connection layers in one row-major buffer,
+    // see getWeightsArray
+    protected double[] weights;
+    protected final int numberOfInputs;
+    protected final int recurrentLayerOffset;
+    protected final int secondLayerOffset;
     protected double[] hiddenNeurons;
+    // the hidden activations of the step before; swapped with hiddenNeurons every step
     protected double[] hiddenNeuronsCopy;
     protected double[] outputs;
     protected double mutationMagnitude = 0.1;
+    private boolean warnedAboutInputs = false;
 
     private final Random random = new Random();
 
     public SRN(int numberOfInputs, int numberOfHidden, int numberOfOutputs) {
-        firstConnectionLayer = new double[numberOfInputs][numberOfHidden];
-        recurrentConnectionLayer = new double[numberOfHidden][numberOfHidden];
-        secondConnectionLayer = new double[numberOfHidden][numberOfOutputs];
-        hiddenNeurons = new double[numberOfHidden];
-        hiddenNeuronsCopy = new double[numberOfHidden];
-        outputs = new double[numberOfOutputs];
+        this(new double[numberOfInputs * numberOfHidden + numberOfHidden * numberOfHidden + numberOfHidden * numberOfOutputs],
+                numberOfInputs, numberOfHidden, numberOfOutputs);
         mutate();
     }
 
     public SRN(double[][] firstConnectionLayer, double[][] recurrentConnectionLayer,
                  double[][] secondConnectionLayer, int numberOfHidden,
                  int numberOfOutputs) {
-        this.firstConnectionLayer = firstConnectionLayer;
-        this.recurrentConnectionLayer = recurrentConnectionLayer;
-        this.secondConnectionLayer = secondConnectionLayer;
+        this(new double[firstConnectionLayer.length * numberOfHidden + numberOfHidden * numberOfHidden + numberOfHidden * numberOfOutputs],
+                firstConnectionLayer.length, numberOfHidden, numberOfOutputs);
+        NetworkKernels.flatten(firstConnectionLayer, weights, 0);
+        NetworkKernels.flatten(recurrentConnectionLayer, weights, recurrentLayerOffset);
+        NetworkKernels.flatten(secondConnectionLayer, weights, secondLayerOffset);
+    }
+
+    /**
+     * Creates a network on a flat weight buffer laid out like {@link #getWeightsArray()}.
+     * The buffer is used as it is, not copied.
+     */
+    public SRN(double[] weights, int numberOfInputs, int numberOfHidden, int numberOfOutputs) {
+        int expected = numberOfInputs * numberOfHidden + numberOfHidden * numberOfHidden + numberOfHidden * numberOfOutputs;
+        if (weights.length != expected)
+            throw new IllegalArgumentException("Expected " + expected + " weights, got " + weights.length);
+        this.weights = weights;
+        this.numberOfInputs = numberOfInputs;
+        this.recurrentLayerOffset = numberOfInputs * numberOfHidden;
+        this.secondLayerOffset = recurrentLayerOffset + numberOfHidden * numberOfHidden;
         hiddenNeurons = new double[numberOfHidden];
         hiddenNeuronsCopy = new double[numberOfHidden];
         outputs = new double[numberOfOutputs];
@@ -46,88 +63,112 @@ public class SRN implements FA<double[], double[]>, Evolvable {
 
     public double[] propagate(double[] inputs) {
 
-        if (inputs.length != firstConnectionLayer.length)
-            System.out.println("NOTE: only " + inputs.length + " inputs out of " + firstConnectionLayer.length + " are used in the network");
-
-        System.arraycopy(hiddenNeurons, 0, hiddenNeuronsCopy, 0, hiddenNeurons.length);
-        clear(hiddenNeurons);
-        clear(outputs);
-        propagateOneStep(inputs, hiddenNeurons, firstConnectionLayer);
-        propagateOneStep(hiddenNeuronsCopy, hiddenNeurons, recurrentConnectionLayer);
-        tanh(hiddenNeurons);
-        propagateOneStep(hiddenNeurons, outputs, secondConnectionLayer);
-        tanh(outputs);
+        if (inputs.length > numberOfInputs)
+            throw new IllegalArgumentException("Got " + inputs.length + " inputs, the network has " + numberOfInputs);
+        if (inputs.length != numberOfInputs && !warnedAboutInputs) {
+            System.out.println("NOTE: only " + inputs.length + " inputs out of " + numberOfInputs + " are used in the network");
+            warnedAboutInputs = true;
+        }
+
+        step(inputs, 0, inputs.length, outputs, 0);
         return outputs;
     }
 
+    /**
+     * Propagates a batch of input vectors stored one after the other in <code>inputBatch</code>,
+     * writing the output vectors one after the other into <code>outputBatch</code>.
+     * The network is recurrent, so the vectors are taken as consecutive time steps;
+     * this gives the same outputs as propagating them one by one.
+     *
+     * @param inputBatch  count vectors of getNumberOfInputs() values
+     * @param count       number of vectors in the batch
+     * @param outputBatch room for count vectors of getNumberOfOutputs() values
+     */
+    public void propagate(double[] inputBatch, int count, double[] outputBatch) {
+        if (inputBatch.length < count * numberOfInputs || outputBatch.length < count * outputs.length)
+            throw new IllegalArgumentException("Batch arrays too short for " + count + " vectors");
+        for (int k = 0; k < count; k++) {
+            step(inputBatch, k * numberOfInputs, numberOfInputs, outputBatch, k * outputs.length);
+        }
+        if (count > 0)
+            System.arraycopy(outputBatch, (count - 1) * outputs.length, outputs, 0, outputs.length);
+    }
+
+    private void step(double[] inputs, int inputOffset, int inputCount, double[] out, int outOffset) {
+        double[] previous = hiddenNeurons;
+        hiddenNeurons = hiddenNeuronsCopy;
+        hiddenNeuronsCopy = previous;
+        final int hidden = hiddenNeurons.length;
+        NetworkKernels.clear(hiddenNeurons, 0, hidden);
+        NetworkKernels.accumulate(inputs, inputOffset, inputCount, hiddenNeurons, 0, hidden, weights, 0);
+        NetworkKernels.accumulate(hiddenNeuronsCopy, 0, hidden, hiddenNeurons, 0, hidden, weights, recurrentLayerOffset);
+        NetworkKernels.tanh(hiddenNeurons, 0, hidden);
+        NetworkKernels.propagate(hiddenNeurons, 0, hidden, out, outOffset, outputs.length, weights, secondLayerOffset);
+    }
+
     public SRN getNewInstance() {
-        return new SRN(firstConnectionLayer.length, secondConnectionLayer.length, outputs.length);
+        return new SRN(numberOfInputs, hiddenNeurons.length, outputs.length);
     }
 
     public SRN copy() {
-        return new SRN(copy(firstConnectionLayer), copy(recurrentConnectionLayer),
-                copy(secondConnectionLayer), hiddenNeurons.length, outputs.length);
+        return new SRN(weights.clone(), numberOfInputs, hiddenNeurons.length, outputs.length);
     }
 
     public void mutate() {
-        mutate(firstConnectionLayer);
-        mutate(recurrentConnectionLayer);
-        mutate(secondConnectionLayer);
+        mutate(random);
+    }
+
+    public void mutate(Random random) {
+        mutate(weights, random);
     }
 
     public void reset() {
-        clear(hiddenNeurons);
-        clear(hiddenNeuronsCopy);
+        NetworkKernels.clear(hiddenNeurons, 0, hiddenNeurons.length);
+        NetworkKernels.clear(hiddenNeuronsCopy, 0, hiddenNeuronsCopy.length);
     }
 
     public double[] approximate(double[] doubles) {
         return propagate(doubles);
     }
 
-    protected double[][] copy(double[][] original) {
-        double[][] copy = new double[original.length][original[0].length];
-        for (int i = 0; i < original.length; i++) {
-            System.arraycopy(original[i], 0, copy[i], 0, original[i].length);
-        }
-        return copy;
+    protected void mutate(double[] array) {
+        mutate(array, random);
     }
 
-    protected void mutate(double[] array) {
+    protected void mutate(double[] array, Random random) {
         for (int i = 0; i < array.length; i++) {
             array[i] += random.nextGaussian() * mutationMagnitude;
         }
     }
 
-    protected void mutate(double[][] array) {
-        for (double[] anArray : array) {
-            mutate(anArray);
-        }
+    public String toString() {
+        return "RecurrentMLP:" + numberOfInputs + "/" + hiddenNeurons.length + "/" + outputs.length;
     }
 
-    protected void propagateOneStep(double[] fromLayer, double[] toLayer, double[][] connections) {
-        for (int from = 0; from < fromLayer.length; from++) {
-            for (int to = 0; to < toLayer.length; to++) {
-                toLayer[to] += fromLayer[from] * connections[from][to];
-            }
-        }
+    /**
+     * Returns the weights of the input, recurrent and output layers, in that order, each layer
+     * row by row. This is the buffer the network works on, not a copy: changes to it change the network.
+     */
+    public double[] getWeightsArray() {
+        return weights;
     }
 
-    protected void clear(double[] array) {
-        for (int i = 0; i < array.length; i++) {
-            array[i] = 0;
-        }
+    /**
+     * Makes the network work on <code>weights</code>, laid out like {@link #getWeightsArray()}.
+     * The array is used as it is, not copied.
+     */
+    public void setWeightsArray(double[] weights) {
+        if (weights.length != this.weights.length)
+            throw new IllegalArgumentException("Expected " + this.weights.length + " weights, got " + weights.length);
+        this.weights = weights;
     }
 
-    protected void tanh(double[] array) {
-        for (int i = 0; i < array.length; i++) {
-            array[i] = Math.tanh(array[i]);
-        }
+    public int getNumberOfInputs() {
+        return numberOfInputs;
     }
 
-
-
-    public String toString() {
-        return "RecurrentMLP:" + firstConnectionLayer.length + "/" + secondConnectionLayer.length + "/" + outputs.length;
+    public int getNumberOfOutputs() {
+        return outputs.length;
     }
 
     public void setMutationMagnitude(double mutationMagnitude) {
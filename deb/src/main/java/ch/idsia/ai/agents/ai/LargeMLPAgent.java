@@ -5,6 +5,8 @@ import ch.idsia.ai.Evolvable;
 import ch.idsia.ai.agents.Agent;
 import ch.idsia.mario.environments.Environment;
 
+import java.util.Random;
+
 /**
  * Created by IntelliJ IDEA.
  * User: julian
@@ -44,6 +46,10 @@ public class LargeMLPAgent extends BasicAIAgent implements Agent, Evolvable {
         mlp.mutate ();
     }
 
+    public void mutate(Random random) {
+        mlp.mutate (random);
+    }
+
     public boolean[] getAction(Environment observation) {
         double[] inputs;// = new double[numberOfInputs];
         byte[][] scene = observation.getLevelSceneObservation(/*1*/);
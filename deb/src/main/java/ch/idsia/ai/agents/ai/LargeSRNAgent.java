@@ -5,6 +5,8 @@ import ch.idsia.ai.Evolvable;
 import ch.idsia.ai.SRN;
 import ch.idsia.mario.environments.Environment;
 
+import java.util.Random;
+
 /**
  * Created by IntelliJ IDEA.
  * User: julian
@@ -44,6 +46,10 @@ public class LargeSRNAgent extends BasicAIAgent implements Agent, Evolvable {
         srn.mutate ();
     }
 
+    public void mutate(Random random) {
+        srn.mutate (random);
+    }
+
     public boolean[] getAction(Environment observation) {
         double[] inputs;// = new double[numberOfInputs];
         byte[][] scene = observation.getLevelSceneObservation(/*1*/);
@@ -5,6 +5,8 @@ import ch.idsia.ai.Evolvable;
 import ch.idsia.ai.MLP;
 import ch.idsia.mario.environments.Environment;
 
+import java.util.Random;
+
 /**
  * Created by IntelliJ IDEA.
  * User: julian
@@ -44,6 +46,10 @@ public class MediumMLPAgent extends BasicAIAgent implements Agent, Evolvable {
         mlp.mutate ();
     }
 
+    public void mutate(Random random) {
+        mlp.mutate (random);
+    }
+
     public boolean[] getAction(Environment observation) {
         byte[][] scene = observation.getLevelSceneObservation(/*1*/);
         byte[][] enemies = observation.getEnemiesObservation(/*0*/);
@@ -5,6 +5,8 @@ import ch.idsia.ai.SRN;
 import ch.idsia.ai.agents.Agent;
 import ch.idsia.mario.environments.Environment;
 
+import java.util.Random;
+
 /**
  * Created by IntelliJ IDEA.
  * User: julian
@@ -42,6 +44,10 @@ public class SRNAgent implements Agent, Evolvable {
         srn.mutate ();
     }
 
+    public void mutate(Random random) {
+        srn.mutate (random);
+    }
+
     public boolean[] getAction(Environment observation) {
         byte[][] scene = observation.getLevelSceneObservation(/*1*/);
         byte[][] enemies = observation.getEnemiesObservation(/*0*/);
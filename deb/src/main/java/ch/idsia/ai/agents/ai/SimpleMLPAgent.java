@@ -5,6 +5,8 @@ import ch.idsia.ai.MLP;
 import ch.idsia.ai.agents.Agent;
 import ch.idsia.mario.environments.Environment;
 
+import java.util.Random;
+
 /**
  * Created by IntelliJ IDEA.
  * User: julian
@@ -42,6 +44,10 @@ public class  SimpleMLPAgent implements Agent, Evolvable {
         mlp.mutate ();
     }
 
+    public void mutate(Random random) {
+        mlp.mutate (random);
+    }
+
     public boolean[] getAction(Environment observation) {
         byte[][] scene = observation.getLevelSceneObservation(/*1*/);
         double[] inputs = new double[]{probe(-1, -1, scene), probe(0, -1, scene), probe(1, -1, scene),
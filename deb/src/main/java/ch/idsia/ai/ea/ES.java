@@ -4,6 +4,19 @@ import ch.idsia.ai.EA;
 import ch.idsia.ai.Evolvable;
 import ch.idsia.ai.agents.Agent;
 import ch.idsia.ai.tasks.Task;
+import ch.idsia.tools.LOGGER;
+import ch.idsia.tools.MetricsRecorder;
+import ch.idsia.tools.SimulationMetrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by IntelliJ IDEA.
@@ -19,7 +32,26 @@ public class ES implements EA {
     private final Task task;
     private final int evaluationRepetitions = 1;
 
+    // population members are evaluated on this many threads, each with its own copy of the task
+    private final int threads;
+    // every mutation draws from a generator seeded with this, the generation and the individual
+    private final long seed;
+    private int generation = 0;
+
+    private long lastGenerationNanos = 0;
+    private int lastEvaluations = 0;
+
     public ES(Task task, Evolvable initial, int populationSize) {
+        this(task, initial, populationSize, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ES(Task task, Evolvable initial, int populationSize, int threads) {
+        this(task, initial, populationSize, threads, new Random().nextLong());
+    }
+
+    public ES(Task task, Evolvable initial, int populationSize, int threads, long seed) {
+        if (threads < 1)
+            throw new IllegalArgumentException("An ES needs at least one thread");
         this.population = new Evolvable[populationSize];
         for (int i = 0; i < population.length; i++) {
             population[i] = initial.getNewInstance();
@@ -27,46 +59,120 @@ public class ES implements EA {
         this.fitness = new double[populationSize];
         this.elite = populationSize / 2;
         this.task = task;
-
+        this.threads = threads;
+        this.seed = seed;
     }
 
     public void nextGeneration() {
-        for (int i = 0; i < elite; i++) {
-            evaluate(i);
-        }
+        long start = System.nanoTime();
         for (int i = elite; i < population.length; i++) {
             population[i] = population[i - elite].copy();
-            population[i].mutate();
-            evaluate(i);
+            population[i].mutate(mutationRandom(generation, i));
         }
-        shuffle();
+        if (threads == 1 || population.length < 2 || task.getOptions().isVisualization())
+            evaluateAll();
+        else
+            evaluateAllInParallel();
+        Random random = new Random(seed ^ generation);
+        shuffle(random);
         sortPopulationByFitness();
+
+        generation++;
+        lastEvaluations = population.length * evaluationRepetitions;
+        lastGenerationNanos = System.nanoTime() - start;
+        if (LOGGER.isLoggable(LOGGER.VERBOSE_MODE.INFO))
+            LOGGER.println(String.format("Generation %d took %.2f s, %.1f evaluations/s, best %.2f",
+                    generation, getGenerationWallTime(), getEvaluationsPerSecond(), fitness[0]), LOGGER.VERBOSE_MODE.INFO);
+    }
+
+    // the same seed gives the same stream for an individual, whatever thread or order it is made in
+    private Random mutationRandom(int generation, int individual) {
+        long z = seed + 0x9e3779b97f4a7c15L * ((long) generation * population.length + individual + 1);
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return new Random(z ^ (z >>> 31));
+    }
+
+    private void evaluateAll() {
+        for (int i = 0; i < population.length; i++) {
+            evaluate(i, task);
+        }
     }
 
-    private void evaluate(int which) {
-        fitness[which] = 0;
+    // workers take the next unevaluated member until none are left; tasks are copied
+    // every generation so changes to the options between generations are picked up,
+    // and what the copies recorded is merged into the metrics of the task afterwards
+    private void evaluateAllInParallel() {
+        int workers = Math.min(threads, population.length);
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "es-evaluator");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<?>> results = new ArrayList<Future<?>>();
+            List<Task> workerTasks = new ArrayList<Task>();
+            for (int w = 0; w < workers; w++) {
+                final Task workerTask = task.copy();
+                workerTasks.add(workerTask);
+                results.add(pool.submit(() -> {
+                    for (int i = next.getAndIncrement(); i < population.length; i = next.getAndIncrement()) {
+                        evaluate(i, workerTask);
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+            SimulationMetrics metrics = task.getOptions().getMetrics();
+            if (metrics instanceof MetricsRecorder) {
+                for (Task workerTask : workerTasks) {
+                    SimulationMetrics workerMetrics = workerTask.getOptions().getMetrics();
+                    if (workerMetrics instanceof MetricsRecorder)
+                        ((MetricsRecorder) metrics).merge((MetricsRecorder) workerMetrics);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while evaluating the population", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Evaluating the population failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void evaluate(int which, Task task) {
+        double sum = 0;
         for (int i = 0; i < evaluationRepetitions; i++) {
             population[which].reset();
-            fitness[which] += task.evaluate((Agent) population[which])[0];
+            sum += task.evaluate((Agent) population[which])[0];
 //            LOGGER.println("which " + which + " fitness " + fitness[which], LOGGER.VERBOSE_MODE.INFO);
         }
-        fitness[which] = fitness[which] / evaluationRepetitions;
+        fitness[which] = sum / evaluationRepetitions;
     }
 
-    private void shuffle() {
+    private void shuffle(Random random) {
         for (int i = 0; i < population.length; i++) {
-            swap(i, (int) (Math.random() * population.length));
+            swap(i, random.nextInt(population.length));
         }
     }
 
     private void sortPopulationByFitness() {
-        for (int i = 0; i < population.length; i++) {
-            for (int j = i + 1; j < population.length; j++) {
-                if (fitness[i] < fitness[j]) {
-                    swap(i, j);
-                }
-            }
+        Integer[] order = new Integer[population.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
         }
+        Arrays.sort(order, (a, b) -> Double.compare(fitness[b], fitness[a]));
+        Evolvable[] sortedPopulation = new Evolvable[population.length];
+        double[] sortedFitness = new double[fitness.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedPopulation[i] = population[order[i]];
+            sortedFitness[i] = fitness[order[i]];
+        }
+        System.arraycopy(sortedPopulation, 0, population, 0, population.length);
+        System.arraycopy(sortedFitness, 0, fitness, 0, fitness.length);
     }
 
     private void swap(int i, int j) {
@@ -86,4 +192,16 @@ public class ES implements EA {
         return new double[]{fitness[0]};  //To change body of implemented methods use File | Settings | File Templates.
     }
 
+    // wall time of the last generation in seconds
+    public double getGenerationWallTime() {
+        return lastGenerationNanos / 1e9;
+    }
+
+    public double getEvaluationsPerSecond() {
+        return lastGenerationNanos == 0 ? 0 : lastEvaluations / (lastGenerationNanos / 1e9);
+    }
+
+    public String toString() {
+        return "ES with population " + population.length + ", elite " + elite + ", " + threads + " thread(s), seed " + seed;
+    }
 }
@@ -27,6 +27,12 @@ public class CoinTask implements Task {
         return options;
     }
 
+    public Task copy() {
+        CoinTask copy = new CoinTask();
+        copy.setOptions(options.getEvaluationOptionsCopy());
+        return copy;
+    }
+
     @Override
     public EvaluationInfo getLastResult() {
         // TODO Auto-generated method stub
@@ -57,6 +57,13 @@ public class MultiDifficultyProgressTask implements Task {
         return options;
     }
 
+    public Task copy() {
+        MultiDifficultyProgressTask copy = new MultiDifficultyProgressTask(options.getEvaluationOptionsCopy());
+        copy.setStartingSeed(startingSeed);
+        copy.difficulties = difficulties.clone();
+        return copy;
+    }
+
     @Override
     public EvaluationInfo getLastResult() {
         return lastResult;
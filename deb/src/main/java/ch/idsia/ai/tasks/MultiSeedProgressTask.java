@@ -56,6 +56,13 @@ public class MultiSeedProgressTask implements Task {
         return options;
     }
 
+    public Task copy() {
+        MultiSeedProgressTask copy = new MultiSeedProgressTask(options.getEvaluationOptionsCopy());
+        copy.setStartingSeed(startingSeed);
+        copy.setNumberOfSeeds(numberOfSeeds);
+        return copy;
+    }
+
     @Override
     public EvaluationInfo getLastResult() {
         return lastResult;
@@ -4,6 +4,7 @@ import ch.idsia.ai.agents.Agent;
 import ch.idsia.tools.EvaluationInfo;
 import ch.idsia.tools.EvaluationOptions;
 import ch.idsia.tools.Evaluator;
+import ch.idsia.tools.LOGGER;
 
 import java.util.List;
 
@@ -27,9 +28,9 @@ public class ProgressTask implements Task {
 //        controller.reset();
         options.setAgent(controller);
         Evaluator evaluator = new Evaluator(options);
-        System.out.println("Before evaluate");
+        LOGGER.println("Before evaluate", LOGGER.VERBOSE_MODE.ALL);
         List<EvaluationInfo> results = evaluator.evaluate();
-        System.out.println("After evaluate");
+        LOGGER.println("After evaluate", LOGGER.VERBOSE_MODE.ALL);
 
         for (EvaluationInfo result : results) {
             //if (result.marioStatus == Mario.STATUS_WIN )
@@ -49,6 +50,10 @@ public class ProgressTask implements Task {
         return options;
     }
 
+    public Task copy() {
+        return new ProgressTask(options.getEvaluationOptionsCopy());
+    }
+
     @Override
     public EvaluationInfo getLastResult() {
         return lastResult;
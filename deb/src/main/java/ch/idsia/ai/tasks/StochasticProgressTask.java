@@ -55,6 +55,13 @@ public class StochasticProgressTask implements Task {
         return options;
     }
 
+    public Task copy() {
+        StochasticProgressTask copy = new StochasticProgressTask(options.getEvaluationOptionsCopy());
+        copy.setStartingSeed(startingSeed);
+        copy.setNumberOfSeeds(numberOfSeeds);
+        return copy;
+    }
+
     @Override
     public EvaluationInfo getLastResult() {
         return lastResult;
@@ -20,4 +20,8 @@ public interface Task {
 
     public EvaluationOptions getOptions ();
 
+    // a task with the same settings working on its own copy of the options,
+    // so that the copy can evaluate agents on another thread
+    public Task copy ();
+
 }
@@ -6,34 +6,47 @@ import ch.idsia.mario.engine.level.LevelGenerator;
 import ch.idsia.mario.engine.level.SpriteTemplate;
 import ch.idsia.mario.engine.sprites.*;
 import ch.idsia.mario.environments.Environment;
+import ch.idsia.tools.SimulationMetrics;
+import ch.idsia.utils.CopyableRandom;
 import ch.idsia.utils.MathX;
+import ch.idsia.utils.StateHash;
 
 import java.awt.*;
-import java.io.DataInputStream;
-import java.io.IOException;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 
 public class LevelScene extends Scene implements SpriteContext
 {
-    private List<Sprite> sprites = new ArrayList<Sprite>();
+    private SpriteStore sprites = new SpriteStore();
     private List<Sprite> spritesToAdd = new ArrayList<Sprite>();
     private List<Sprite> spritesToRemove = new ArrayList<Sprite>();
 
     public Level level;
     public Mario mario;
     public float xCam, yCam, xCamO, yCamO;
-    public static Image tmpImage;
     private int tick;
 
+    // size of the screen, which sets how far around Mario sprites are spawned and kept
+    public static final int VIEW_WIDTH = 320;
+    public static final int VIEW_HEIGHT = 240;
+
     private LevelRenderer layer;
     private BgRenderer[] bgLayer = new BgRenderer[2];
 
     private GraphicsConfiguration graphicsConfiguration;
 
     public boolean paused = false;
+    public boolean pauseWorld = false;
+    public boolean powerRestoration = false;
+    public boolean timerOn = true;
+    // measures every tick when set; null measures nothing
+    public SimulationMetrics metrics = null;
     public int startTime = 0;
     public int timeLeft;
 
@@ -47,39 +60,235 @@ public class LevelScene extends Scene implements SpriteContext
     //    private Replayer replayer = null;
 
     private long levelSeed;
+    // every random effect in the scene draws from this generator, which init seeds with
+    // randomSeed, so the same level, seed and keys always play out the same way
+    public final CopyableRandom random = new CopyableRandom();
+    private long randomSeed;
     private MarioComponent renderer;
     private int levelType;
     private int levelDifficulty;
     private int levelLength;
-    public static int killedCreaturesTotal;
-    public static int killedCreaturesByFireBall;
-    public static int killedCreaturesByStomp;
-    public static int killedCreaturesByShell;
+    private int marioMode = 0;
+    public int killedCreaturesTotal;
+    public int killedCreaturesByFireBall;
+    public int killedCreaturesByStomp;
+    public int killedCreaturesByShell;
 
     private static String[] LEVEL_TYPES = {"Overground(0)",
                                            "Underground(1)",
                                            "Castle(2)"};
 
+    // headless scene, nothing is rendered so no renderers are created
+    public LevelScene(long seed, int levelDifficulty, int type, int levelLength, int timeLimit)
+    {
+        this(null, null, seed, levelDifficulty, type, levelLength, timeLimit);
+    }
+
     public LevelScene(GraphicsConfiguration graphicsConfiguration, MarioComponent renderer, long seed, int levelDifficulty, int type, int levelLength, int timeLimit)
     {
         this.graphicsConfiguration = graphicsConfiguration;
         this.levelSeed = seed;
+        this.randomSeed = seed;
         this.renderer = renderer;
         this.levelDifficulty = levelDifficulty;
         this.levelType = type;
         this.levelLength = levelLength;
         this.setTotalTime(timeLimit);
-        killedCreaturesTotal = 0;
-        killedCreaturesByFireBall = 0;
-        killedCreaturesByStomp = 0;
-        killedCreaturesByShell = 0;
     }
 
+    public int getMarioMode() {  return marioMode; }
+
+    // 0 small, 1 large, 2 fire; call before init()
+    public void setMarioMode(int marioMode) {  this.marioMode = marioMode; }
+
     public int getTick()
     {
         return tick;
     }
 
+    // seeds random on the next init; defaults to the level seed
+    public void setRandomSeed(long randomSeed)
+    {
+        this.randomSeed = randomSeed;
+    }
+
+    /**
+     * Hash of the state a run can change: the tick, time, Mario and every sprite.
+     * Two runs of the same level with the same keys give the same hash.
+     */
+    public long stateHash()
+    {
+        long h = 17;
+        h = h * 31 + tick;
+        h = h * 31 + timeLeft;
+        h = h * 31 + killedCreaturesTotal;
+        h = h * 31 + mario.getStatus();
+        h = h * 31 + mario.getMode();
+        h = h * 31 + mario.coins;
+        for (Sprite sprite : sprites)
+        {
+            h = h * 31 + sprite.kind;
+            h = h * 31 + Float.floatToIntBits(sprite.x);
+            h = h * 31 + Float.floatToIntBits(sprite.y);
+            h = h * 31 + Float.floatToIntBits(sprite.xa);
+            h = h * 31 + Float.floatToIntBits(sprite.ya);
+        }
+        return h;
+    }
+
+    /**
+     * copy this scene between two ticks. The copy plays on exactly like this
+     * scene would for the same keys, and shares nothing a tick changes with
+     * it. It is headless and measures nothing, whatever this scene does.
+     * @return Copy of the scene
+     */
+    public LevelScene copy()
+    {
+        LevelScene copy = new LevelScene(levelSeed, levelDifficulty, levelType, levelLength, totalTime);
+        copy.xCam = xCam;
+        copy.yCam = yCam;
+        copy.xCamO = xCamO;
+        copy.yCamO = yCamO;
+        copy.tick = tick;
+        copy.paused = paused;
+        copy.pauseWorld = pauseWorld;
+        copy.powerRestoration = powerRestoration;
+        copy.timerOn = timerOn;
+        copy.startTime = startTime;
+        copy.timeLeft = timeLeft;
+        copy.random.copyFrom(random);
+        copy.randomSeed = randomSeed;
+        copy.marioMode = marioMode;
+        copy.killedCreaturesTotal = killedCreaturesTotal;
+        copy.killedCreaturesByFireBall = killedCreaturesByFireBall;
+        copy.killedCreaturesByStomp = killedCreaturesByStomp;
+        copy.killedCreaturesByShell = killedCreaturesByShell;
+        copy.fireballsOnScreen = fireballsOnScreen;
+        copy.observationStamp = observationStamp;
+
+        copy.level = level.copy();
+        Map<SpriteTemplate, SpriteTemplate> templates = new IdentityHashMap<SpriteTemplate, SpriteTemplate>();
+        for (int x = 0; x < level.width; x++)
+        {
+            for (int y = 0; y < level.height; y++)
+            {
+                if (level.spriteTemplates[x][y] != null)
+                    templates.put(level.spriteTemplates[x][y], copy.level.spriteTemplates[x][y]);
+            }
+        }
+
+        Map<Sprite, Sprite> copies = new IdentityHashMap<Sprite, Sprite>();
+        List<Sprite> copiedSprites = new ArrayList<Sprite>(sprites.size());
+        for (Sprite sprite : sprites)
+        {
+            Sprite spriteCopy = sprite.copy(copy);
+            copies.put(sprite, spriteCopy);
+            copiedSprites.add(spriteCopy);
+        }
+        for (Sprite spriteCopy : copiedSprites)
+        {
+            if (spriteCopy.spriteTemplate != null)
+                spriteCopy.spriteTemplate = templates.get(spriteCopy.spriteTemplate);
+        }
+        // templates whose sprite is gone only need to know that it is not in the scene
+        for (SpriteTemplate template : templates.values())
+        {
+            if (template.sprite != null)
+                template.sprite = copies.get(template.sprite);
+        }
+        copy.sprites.addAllFirst(copiedSprites);
+        copy.mario = (Mario) copies.get(mario);
+        copy.mario.carried = copies.get(mario.carried);
+        return copy;
+    }
+
+    /**
+     * replaceLevelFrom swaps in the columns of another level from fromX on,
+     * as they would be had the scene played on that level from the start.
+     * That only holds as long as the scene has not reached those columns yet.
+     * @param source Level of the same size to take the columns from
+     * @param fromX First column to take
+     */
+    public void replaceLevelFrom(Level source, int fromX)
+    {
+        if (source.width != level.width || source.height != level.height)
+            throw new IllegalArgumentException("Cannot take columns from a level of another size");
+        for (int x = Math.max(fromX, 0); x < level.width; x++)
+        {
+            for (int y = 0; y < level.height; y++)
+            {
+                level.map[x][y] = source.map[x][y];
+                // Level.tick has counted the data down once per tick
+                byte data = source.data[x][y];
+                level.data[x][y] = data > 0 ? (byte) Math.max(0, data - tick) : data;
+                SpriteTemplate template = source.spriteTemplates[x][y];
+                level.spriteTemplates[x][y] = template == null ? null : new SpriteTemplate(template);
+            }
+        }
+        level.xExit = source.xExit;
+        level.yExit = source.yExit;
+    }
+
+    /**
+     * matches tells whether this scene plays on exactly like other, as long as
+     * neither reaches a column left of fromX: the counters, timer, random state
+     * and every sprite must be the same, and so must the tiles and sprite
+     * templates from fromX on.
+     * @param other Scene to compare with
+     * @param fromX First column to compare
+     * @return true if the scenes are in the same state
+     */
+    public boolean matches(LevelScene other, int fromX)
+    {
+        if (StateHash.of(this) != StateHash.of(other) || !random.sameState(other.random)
+                || sprites.size() != other.sprites.size()
+                || level.width != other.level.width || level.height != other.level.height
+                || level.xExit != other.level.xExit || level.yExit != other.level.yExit)
+            return false;
+
+        Map<Sprite, Integer> order = new IdentityHashMap<Sprite, Integer>();
+        Map<Sprite, Integer> otherOrder = new IdentityHashMap<Sprite, Integer>();
+        Iterator<Sprite> others = other.sprites.iterator();
+        for (Sprite sprite : sprites)
+        {
+            Sprite otherSprite = others.next();
+            if (StateHash.of(sprite) != StateHash.of(otherSprite))
+                return false;
+            order.put(sprite, order.size());
+            otherOrder.put(otherSprite, otherOrder.size());
+        }
+        if (!samePosition(order, mario.carried, otherOrder, other.mario.carried))
+            return false;
+
+        for (int x = Math.max(fromX, 0); x < level.width; x++)
+        {
+            if (!Arrays.equals(level.map[x], other.level.map[x]) || !Arrays.equals(level.data[x], other.level.data[x]))
+                return false;
+            for (int y = 0; y < level.height; y++)
+            {
+                SpriteTemplate a = level.spriteTemplates[x][y];
+                SpriteTemplate b = other.level.spriteTemplates[x][y];
+                if (a == null || b == null)
+                {
+                    if (a != b)
+                        return false;
+                }
+                else if (a.getType() != b.getType() || a.isDead != b.isDead || a.lastVisibleTick != b.lastVisibleTick
+                        || !samePosition(order, a.sprite, otherOrder, b.sprite))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    // true if a and b are at the same place in their scenes, or both in none
+    private static boolean samePosition(Map<Sprite, Integer> order, Sprite a, Map<Sprite, Integer> otherOrder, Sprite b)
+    {
+        Integer i = a == null ? null : order.get(a);
+        Integer j = b == null ? null : otherOrder.get(b);
+        return i == null ? j == null : i.equals(j);
+    }
+
     private String mapElToStr(int el)
     {
         String s = "";
@@ -102,7 +311,55 @@ public class LevelScene extends Scene implements SpriteContext
             return s + " ";
         }
 
+    // generalization of every byte value per ZLevel, see generalizeMapElement and generalizeEnemy;
+    // values the generalizations do not know are returned with UNKNOWN_ELEMENT set, so
+    // the warning for them is still printed when they are looked up
+    private static final int UNKNOWN_ELEMENT = 0x100;
+    private static final int Z_LEVELS = 3;
+    private static final short[][] MAP_GENERALIZATION = new short[Z_LEVELS][256];
+    private static final short[][] ENEMY_GENERALIZATION = new short[Z_LEVELS][256];
+
+    static
+    {
+        for (int z = 0; z < Z_LEVELS; z++)
+        {
+            for (int el = 0; el < 256; el++)
+            {
+                MAP_GENERALIZATION[z][el] = tableEntry(generalizeMapElement((byte) el, z));
+                ENEMY_GENERALIZATION[z][el] = tableEntry(generalizeEnemy((byte) el, z));
+            }
+        }
+    }
+
+    private static short tableEntry(int generalized)
+    {
+        return (short) (generalized >= UNKNOWN_ELEMENT ? generalized : generalized & 0xFF);
+    }
+
     private byte ZLevelMapElementGeneralization(byte el, int ZLevel)
+    {
+        if (ZLevel < 0 || ZLevel >= Z_LEVELS)
+        {
+            System.err.println("Unkown ZLevel Z" + ZLevel);
+            return el; //TODO: Throw unknown ZLevel exception
+        }
+        int g = MAP_GENERALIZATION[ZLevel][el & 0xFF];
+        if ((g & UNKNOWN_ELEMENT) != 0)
+            System.err.println("Unknown value el = " + el + " ; Please, inform the developers");
+        return (byte) g;
+    }
+
+    private byte ZLevelEnemyGeneralization(byte el, int ZLevel)
+    {
+        if (ZLevel < 0 || ZLevel >= Z_LEVELS)
+            return el; //TODO: Throw unknown ZLevel exception
+        int g = ENEMY_GENERALIZATION[ZLevel][el & 0xFF];
+        if ((g & UNKNOWN_ELEMENT) != 0)
+            System.err.println((ZLevel == 2 ? "Z2 UNKNOWNN el = " : "UNKOWN el = ") + el);
+        return (byte) g;
+    }
+
+    private static int generalizeMapElement(byte el, int ZLevel)
     {
         if (el == 0)
             return 0;
@@ -185,8 +442,7 @@ public class LevelScene extends Scene implements SpriteContext
                     case(14): case(30): case(46): // canon
                         return 20;  // angry flower pot or cannon
                 }
-                System.err.println("Unknown value el = " + el + " ; Please, inform the developers");
-                return el;
+                return (el & 0xFF) | UNKNOWN_ELEMENT;
             case(2):
                 switch(el)
                 {
@@ -201,12 +457,11 @@ public class LevelScene extends Scene implements SpriteContext
                 }
                 return 1;  // everything else is "something", so it is 1
         }
-        System.err.println("Unkown ZLevel Z" + ZLevel);
-        return el; //TODO: Throw unknown ZLevel exception
+        return el;
     }
 
 
-    private byte ZLevelEnemyGeneralization(byte el, int ZLevel)
+    private static int generalizeEnemy(byte el, int ZLevel)
     {
         switch (ZLevel)
         {
@@ -245,8 +500,7 @@ public class LevelScene extends Scene implements SpriteContext
                     case(Sprite.KIND_SPIKY_WINGED):
                         return Sprite.KIND_SPIKY;
                 }
-                System.err.println("UNKOWN el = " + el);
-                return el;
+                return (el & 0xFF) | UNKNOWN_ELEMENT;
             case(2):
                 switch(el)
                 {
@@ -268,47 +522,103 @@ public class LevelScene extends Scene implements SpriteContext
                     case(Sprite.KIND_ENEMY_FLOWER):
                         return 1;
                 }
-                System.err.println("Z2 UNKNOWNN el = " + el);
-                return 1;
+                return 1 | UNKNOWN_ELEMENT;
         }
-        return el; //TODO: Throw unknown ZLevel exception
+        return el;
+    }
+
+    // The observations of the current tick, per kind and ZLevel. They are computed
+    // on the first request and handed out again until the next tick or init.
+    private static class CachedObservation
+    {
+        final byte[][] buffer = new byte[Environment.HalfObsWidth*2][Environment.HalfObsHeight*2];
+        int stamp = -1;
     }
 
+    private final CachedObservation[] levelSceneObservations = newObservationCache(Z_LEVELS);
+    private final CachedObservation[] enemiesObservations = newObservationCache(Z_LEVELS);
+    private final CachedObservation[] mergedObservations = newObservationCache(Z_LEVELS * Z_LEVELS);
+    // bumped every tick and init, which makes all cached observations stale
+    private int observationStamp = 0;
+
+    private static CachedObservation[] newObservationCache(int n)
+    {
+        CachedObservation[] cache = new CachedObservation[n];
+        for (int i = 0; i < n; i++)
+            cache[i] = new CachedObservation();
+        return cache;
+    }
+
+    public static byte[][] newObservationBuffer()
+    {
+        return new byte[Environment.HalfObsWidth*2][Environment.HalfObsHeight*2];
+    }
+
+    /**
+     * levelSceneObservation of the current tick. The array belongs to the scene and
+     * is overwritten on a later tick, so copy it to keep it and do not modify it.
+     */
     public byte[][] levelSceneObservation(int ZLevel)
     {
-        byte[][] ret = new byte[Environment.HalfObsWidth*2][Environment.HalfObsHeight*2];
+        if (ZLevel < 0 || ZLevel >= Z_LEVELS)
+            return levelSceneObservation(ZLevel, newObservationBuffer());
+        CachedObservation cached = levelSceneObservations[ZLevel];
+        if (cached.stamp != observationStamp)
+        {
+            levelSceneObservation(ZLevel, cached.buffer);
+            cached.stamp = observationStamp;
+        }
+        return cached.buffer;
+    }
+
+    // fills dst, a 22x22 array, with the level around Mario and returns it
+    public byte[][] levelSceneObservation(int ZLevel, byte[][] dst)
+    {
         //TODO: Move to constants 16
         int MarioXInMap = (int)mario.x/16;
         int MarioYInMap = (int)mario.y/16;
 
         for (int y = MarioYInMap - Environment.HalfObsHeight, obsX = 0; y < MarioYInMap + Environment.HalfObsHeight; y++, obsX++)
         {
+            byte[] row = dst[obsX];
             for (int x = MarioXInMap - Environment.HalfObsWidth, obsY = 0; x < MarioXInMap + Environment.HalfObsWidth; x++, obsY++)
             {
                 if (x >=0 && x < level.width && y >= 0 && y < level.height)
                 {
-                    ret[obsX][obsY] = ZLevelMapElementGeneralization(level.map[x][y], ZLevel);
+                    row[obsY] = ZLevelMapElementGeneralization(level.map[x][y], ZLevel);
                 }
                 else
-                    ret[obsX][obsY] = 0;
-//                if (x == MarioXInMap && y == MarioYInMap)
-//                    ret[obsX][obsY] = mario.kind;
+                    row[obsY] = 0;
             }
         }
-        return ret;
+        return dst;
     }
 
+    /**
+     * enemiesObservation of the current tick, shared like levelSceneObservation(int).
+     */
     public byte[][] enemiesObservation(int ZLevel)
     {
-        byte[][] ret = new byte[Environment.HalfObsWidth*2][Environment.HalfObsHeight*2];
+        if (ZLevel < 0 || ZLevel >= Z_LEVELS)
+            return enemiesObservation(ZLevel, newObservationBuffer());
+        CachedObservation cached = enemiesObservations[ZLevel];
+        if (cached.stamp != observationStamp)
+        {
+            enemiesObservation(ZLevel, cached.buffer);
+            cached.stamp = observationStamp;
+        }
+        return cached.buffer;
+    }
+
+    // fills dst, a 22x22 array, with the sprites around Mario and returns it
+    public byte[][] enemiesObservation(int ZLevel, byte[][] dst)
+    {
         //TODO: Move to constants 16
         int MarioXInMap = (int)mario.x/16;
         int MarioYInMap = (int)mario.y/16;
 
-        for (int w = 0; w < ret.length; w++)
-            for (int h = 0; h < ret[0].length; h++)
-                ret[w][h] = 0;
-//        ret[Environment.HalfObsWidth][Environment.HalfObsHeight] = mario.kind;
+        for (byte[] row : dst)
+            Arrays.fill(row, (byte) 0);
         for (Sprite sprite : sprites)
         {
             if (sprite.kind == mario.kind)
@@ -322,61 +632,80 @@ public class LevelScene extends Scene implements SpriteContext
             {
                 int obsX = sprite.mapY - MarioYInMap + Environment.HalfObsHeight;
                 int obsY = sprite.mapX - MarioXInMap + Environment.HalfObsWidth;
-                ret[obsX][obsY] = ZLevelEnemyGeneralization(sprite.kind, ZLevel);
+                dst[obsX][obsY] = ZLevelEnemyGeneralization(sprite.kind, ZLevel);
             }
         }
-        return ret;
+        return dst;
     }
 
     public float[] enemiesFloatPos()
     {
-        List<Float> poses = new ArrayList<Float>();
+        float[] ret = new float[enemiesFloatPos(new float[0])];
+        enemiesFloatPos(ret);
+        return ret;
+    }
+
+    /**
+     * enemiesFloatPos puts kind, x and y of every creature into dst, as far as it has room.
+     * @return Number of floats there are, which is more than dst.length if it was too small
+     */
+    public int enemiesFloatPos(float[] dst)
+    {
+        int n = 0;
         for (Sprite sprite : sprites)
         {
             // check if is an influenceable creature
             if (sprite.kind >= Sprite.KIND_GOOMBA && sprite.kind <= Sprite.KIND_MUSHROOM)
             {
-                poses.add((float)sprite.kind);
-                poses.add(sprite.x);
-                poses.add(sprite.y);
+                if (n + 3 <= dst.length)
+                {
+                    dst[n] = sprite.kind;
+                    dst[n + 1] = sprite.x;
+                    dst[n + 2] = sprite.y;
+                }
+                n += 3;
             }
         }
-
-        float[] ret = new float[poses.size()];
-
-        int i = 0;
-        for (Float F: poses)
-            ret[i++] = F;
-
-        return ret;
+        return n;
     }
 
+    /**
+     * mergedObservation of the current tick, shared like levelSceneObservation(int).
+     */
     public byte[][] mergedObservation(int ZLevelScene, int ZLevelEnemies)
     {
-        byte[][] ret = new byte[Environment.HalfObsWidth*2][Environment.HalfObsHeight*2];
+        if (ZLevelScene < 0 || ZLevelScene >= Z_LEVELS || ZLevelEnemies < 0 || ZLevelEnemies >= Z_LEVELS)
+            return mergedObservation(ZLevelScene, ZLevelEnemies, newObservationBuffer());
+        CachedObservation cached = mergedObservations[ZLevelScene * Z_LEVELS + ZLevelEnemies];
+        if (cached.stamp != observationStamp)
+        {
+            mergedObservation(ZLevelScene, ZLevelEnemies, cached.buffer);
+            cached.stamp = observationStamp;
+        }
+        return cached.buffer;
+    }
+
+    // fills dst, a 22x22 array, with the level and sprites around Mario and returns it
+    public byte[][] mergedObservation(int ZLevelScene, int ZLevelEnemies, byte[][] dst)
+    {
         //TODO: Move to constants 16
         int MarioXInMap = (int)mario.x/16;
         int MarioYInMap = (int)mario.y/16;
 
         for (int y = MarioYInMap - Environment.HalfObsHeight, obsX = 0; y < MarioYInMap + Environment.HalfObsHeight; y++, obsX++)
         {
+            byte[] row = dst[obsX];
             for (int x = MarioXInMap - Environment.HalfObsWidth, obsY = 0; x < MarioXInMap + Environment.HalfObsWidth; x++, obsY++)
             {
                 if (x >=0 /*&& x <= level.xExit*/ && y >= 0 && y < level.height)
                 {
-                    ret[obsX][obsY] = ZLevelMapElementGeneralization(level.map[x][y], ZLevelScene);
+                    row[obsY] = ZLevelMapElementGeneralization(level.map[x][y], ZLevelScene);
                 }
                 else
-                    ret[obsX][obsY] = 0;
-//                if (x == MarioXInMap && y == MarioYInMap)
-//                    ret[obsX][obsY] = mario.kind;
+                    row[obsY] = 0;
             }
         }
 
-//        for (int w = 0; w < ret.length; w++)
-//            for (int h = 0; h < ret[0].length; h++)
-//                ret[w][h] = -1;
-//        ret[Environment.HalfObsWidth][Environment.HalfObsHeight] = mario.kind;
         for (Sprite sprite : sprites)
         {
             if (sprite.kind == mario.kind)
@@ -391,16 +720,16 @@ public class LevelScene extends Scene implements SpriteContext
                 int obsX = sprite.mapY - MarioYInMap + Environment.HalfObsHeight;
                 int obsY = sprite.mapX - MarioXInMap + Environment.HalfObsWidth;
                 // quick fix TODO: handle this in more general way.
-                if (ret[obsX][obsY] != 14)
+                if (dst[obsX][obsY] != 14)
                 {
                     byte tmp = ZLevelEnemyGeneralization(sprite.kind, ZLevelEnemies);
                     if (tmp != Sprite.KIND_NONE)
-                        ret[obsX][obsY] = tmp;
+                        dst[obsX][obsY] = tmp;
                 }
             }
         }
 
-        return ret;
+        return dst;
     }
 
     private String encode(byte[][] state, Generalizer generalize)
@@ -605,15 +934,8 @@ public class LevelScene extends Scene implements SpriteContext
 
     public void init()
     {
-        try
-        {
-            Level.loadBehaviors(new DataInputStream(LevelScene.class.getResourceAsStream("/tiles.dat")));
-        }
-        catch (IOException e)
-        {
-            e.printStackTrace();
-            System.exit(0);
-        }
+        observationStamp++;
+        random.setSeed(randomSeed);
         /*        if (replayer!=null)
          {
          level = LevelGenerator.createLevel(2048, 15, replayer.nextLong());
@@ -634,18 +956,14 @@ public class LevelScene extends Scene implements SpriteContext
 
 
         paused = false;
-        Sprite.spriteContext = this;
         sprites.clear();
-        layer = new LevelRenderer(level, graphicsConfiguration, 320, 240);
-        for (int i = 0; i < 2; i++)
+        layer = null;
+        if (graphicsConfiguration != null && GlobalOptions.VisualizationOn)
         {
-            int scrollSpeed = 4 >> i;
-            int w = ((level.width * 16) - 320) / scrollSpeed + 320;
-            int h = ((level.height * 16) - 240) / scrollSpeed + 240;
-            Level bgLevel = BgLevelGenerator.createLevel(w / 32 + 1, h / 32 + 1, i == 0, levelType);
-            bgLayer[i] = new BgRenderer(bgLevel, graphicsConfiguration, 320, 240, scrollSpeed);
+            createRenderers();
         }
         mario = new Mario(this);
+        mario.spriteContext = this;
         sprites.add(mario);
         startTime = 1;
 
@@ -654,8 +972,27 @@ public class LevelScene extends Scene implements SpriteContext
         tick = 0;
     }
 
+    // renderers and background levels are only built for scenes that get drawn,
+    // either when the scene starts or on the first render after visualization is turned on
+    private void createRenderers()
+    {
+        layer = new LevelRenderer(level, graphicsConfiguration, VIEW_WIDTH, VIEW_HEIGHT);
+        for (int i = 0; i < 2; i++)
+        {
+            int scrollSpeed = 4 >> i;
+            int w = ((level.width * 16) - VIEW_WIDTH) / scrollSpeed + VIEW_WIDTH;
+            int h = ((level.height * 16) - VIEW_HEIGHT) / scrollSpeed + VIEW_HEIGHT;
+            Level bgLevel = BgLevelGenerator.createLevel(w / 32 + 1, h / 32 + 1, i == 0, levelType);
+            bgLayer[i] = new BgRenderer(bgLevel, graphicsConfiguration, VIEW_WIDTH, VIEW_HEIGHT, scrollSpeed);
+        }
+    }
+
     public int fireballsOnScreen = 0;
 
+    // sprites only touch Mario, shells or fireballs less than this many pixels away from them in x
+    private static final float COLLIDE_REACH = 17;
+    private final SpriteGrid spriteGrid = new SpriteGrid(VIEW_WIDTH);
+
     List<Shell> shellsToCheck = new ArrayList<Shell>();
 
     public void checkShellCollide(Shell shell)
@@ -672,9 +1009,14 @@ public class LevelScene extends Scene implements SpriteContext
 
     public void tick()
     {
-        if (GlobalOptions.TimerOn) {
+        long tickStart = metrics != null ? System.nanoTime() : 0;
+        observationStamp++;
+        int collisionChecks = 0;
+        int spawns = 0;
+
+        if (timerOn)
+        {
             timeLeft--;
-            System.out.println("Tick down " + timeLeft);
         }
         if (timeLeft==0)
         {
@@ -749,8 +1091,8 @@ public class LevelScene extends Scene implements SpriteContext
             boolean hasShotCannon = false;
             int xCannon = 0;
 
-            for (int x = (int) xCam / 16 - 1; x <= (int) (xCam + layer.width) / 16 + 1; x++)
-                for (int y = (int) yCam / 16 - 1; y <= (int) (yCam + layer.height) / 16 + 1; y++)
+            for (int x = (int) xCam / 16 - 1; x <= (int) (xCam + VIEW_WIDTH) / 16 + 1; x++)
+                for (int y = (int) yCam / 16 - 1; y <= (int) (yCam + VIEW_HEIGHT) / 16 + 1; y++)
                 {
                     int dir = 0;
 
@@ -766,6 +1108,7 @@ public class LevelScene extends Scene implements SpriteContext
                             if (st.sprite == null || !sprites.contains(st.sprite))
                             {
                                 st.spawn(this, x, y, dir);
+                                spawns++;
                             }
                         }
 
@@ -784,9 +1127,10 @@ public class LevelScene extends Scene implements SpriteContext
                                     xCannon = x;
                                     for (int i = 0; i < 8; i++)
                                     {
-                                        addSprite(new Sparkle(x * 16 + 8, y * 16 + (int) (Math.random() * 16), (float) Math.random() * dir, 0, 0, 1, 5));
+                                        addSprite(new Sparkle(this, x * 16 + 8, y * 16 + (int) (random.nextDouble() * 16), (float) random.nextDouble() * dir, 0, 0, 1, 5));
                                     }
                                     addSprite(new BulletBill(this, x * 16 + 8 + dir * 8, y * 16 + 15, dir));
+                                    spawns++;
                                     hasShotCannon = true;
                                 }
                             }
@@ -799,15 +1143,23 @@ public class LevelScene extends Scene implements SpriteContext
                 sprite.tick();
             }
 
-            for (Sprite sprite : sprites)
+            // only sprites close enough to touch are checked, in the order of the sprite store
+            spriteGrid.build(sprites, xCam);
+
+            int candidates = spriteGrid.query(mario.x - COLLIDE_REACH, mario.x + COLLIDE_REACH);
+            for (int i = 0; i < candidates; i++)
             {
-                sprite.collideCheck();
+                sprites.at(spriteGrid.get(i)).collideCheck();
             }
+            collisionChecks += candidates;
 
             for (Shell shell : shellsToCheck)
             {
-                for (Sprite sprite : sprites)
+                candidates = spriteGrid.query(shell.x - COLLIDE_REACH, shell.x + COLLIDE_REACH);
+                collisionChecks += candidates;
+                for (int i = 0; i < candidates; i++)
                 {
+                    Sprite sprite = sprites.at(spriteGrid.get(i));
                     if (sprite != shell && !shell.dead)
                     {
                         if (sprite.shellCollideCheck(shell))
@@ -826,8 +1178,11 @@ public class LevelScene extends Scene implements SpriteContext
 
             for (Fireball fireball : fireballsToCheck)
             {
-                for (Sprite sprite : sprites)
+                candidates = spriteGrid.query(fireball.x - COLLIDE_REACH, fireball.x + COLLIDE_REACH);
+                collisionChecks += candidates;
+                for (int i = 0; i < candidates; i++)
                 {
+                    Sprite sprite = sprites.at(spriteGrid.get(i));
                     if (sprite != fireball && !fireball.dead)
                     {
                         if (sprite.fireballCollideCheck(fireball))
@@ -840,10 +1195,15 @@ public class LevelScene extends Scene implements SpriteContext
             fireballsToCheck.clear();
         }
 
-        sprites.addAll(0, spritesToAdd);
+        sprites.addAllFirst(spritesToAdd);
         sprites.removeAll(spritesToRemove);
         spritesToAdd.clear();
         spritesToRemove.clear();
+
+        if (metrics != null)
+        {
+            metrics.recordTick(System.nanoTime() - tickStart, sprites.size(), collisionChecks, spawns);
+        }
     }
 
     private DecimalFormat df = new DecimalFormat("00");
@@ -851,6 +1211,12 @@ public class LevelScene extends Scene implements SpriteContext
 
     public void render(Graphics g, float alpha)
     {
+        if (layer == null)
+        {
+            if (graphicsConfiguration == null)
+                return;
+            createRenderers();
+        }
         int xCam = (int) (mario.xOld + (mario.x - mario.xOld) * alpha) - 160;
         int yCam = (int) (mario.yOld + (mario.y - mario.yOld) * alpha) - 120;
 
@@ -916,9 +1282,9 @@ public class LevelScene extends Scene implements SpriteContext
         drawStringDropShadow(g, "SEED:" + this.levelSeed, 0, 1, 7);
         drawStringDropShadow(g, "TYPE:" + LEVEL_TYPES[this.levelType], 0, 2, 7);                  drawStringDropShadow(g, "ALL KILLS: " + killedCreaturesTotal, 19, 1, 1);
         drawStringDropShadow(g, "LENGTH:" + (int)mario.x/16 + " of " + this.levelLength, 0, 3, 7); drawStringDropShadow(g, "by Fire  : " + killedCreaturesByFireBall, 19, 2, 1);
-        drawStringDropShadow(g,"COINS    : " + df.format(Mario.coins), 0, 4, 4);                      drawStringDropShadow(g, "by Shell : " + killedCreaturesByShell, 19, 3, 1);
-        drawStringDropShadow(g, "MUSHROOMS: " + df.format(Mario.gainedMushrooms), 0, 5, 4);                  drawStringDropShadow(g, "by Stomp : " + killedCreaturesByStomp, 19, 4, 1);
-        drawStringDropShadow(g, "FLOWERS  : " + df.format(Mario.gainedFlowers), 0, 6, 4);
+        drawStringDropShadow(g,"COINS    : " + df.format(mario.coins), 0, 4, 4);                      drawStringDropShadow(g, "by Shell : " + killedCreaturesByShell, 19, 3, 1);
+        drawStringDropShadow(g, "MUSHROOMS: " + df.format(mario.gainedMushrooms), 0, 5, 4);                  drawStringDropShadow(g, "by Stomp : " + killedCreaturesByStomp, 19, 4, 1);
+        drawStringDropShadow(g, "FLOWERS  : " + df.format(mario.gainedFlowers), 0, 6, 4);
 
 
         drawStringDropShadow(g, "TIME", 33, 0, 7);
@@ -1046,6 +1412,7 @@ public class LevelScene extends Scene implements SpriteContext
 
     public void addSprite(Sprite sprite)
     {
+        sprite.spriteContext = this;
         spritesToAdd.add(sprite);
         sprite.tick();
     }
@@ -1084,7 +1451,7 @@ public class LevelScene extends Scene implements SpriteContext
 
             if (((Level.TILE_BEHAVIORS[block & 0xff]) & Level.BIT_SPECIAL) > 0)
             {
-                if (!Mario.large)
+                if (!mario.large)
                 {
                     addSprite(new Mushroom(this, x * 16 + 8, y * 16 + 8));
                 }
@@ -1095,8 +1462,8 @@ public class LevelScene extends Scene implements SpriteContext
             }
             else
             {
-                Mario.getCoin();
-                addSprite(new CoinAnim(x, y));
+                mario.getCoin();
+                addSprite(new CoinAnim(this, x, y));
             }
         }
 
@@ -1108,7 +1475,7 @@ public class LevelScene extends Scene implements SpriteContext
                 level.setBlock(x, y, (byte) 0);
                 for (int xx = 0; xx < 2; xx++)
                     for (int yy = 0; yy < 2; yy++)
-                        addSprite(new Particle(x * 16 + xx * 8 + 4, y * 16 + yy * 8 + 4, (xx * 2 - 1) * 4, (yy * 2 - 1) * 4 - 8));
+                        addSprite(new Particle(this, x * 16 + xx * 8 + 4, y * 16 + yy * 8 + 4, (xx * 2 - 1) * 4, (yy * 2 - 1) * 4 - 8));
             }
             else
             {
@@ -1122,9 +1489,9 @@ public class LevelScene extends Scene implements SpriteContext
         byte block = level.getBlock(x, y);
         if (((Level.TILE_BEHAVIORS[block & 0xff]) & Level.BIT_PICKUPABLE) > 0)
         {
-            Mario.getCoin();
+            mario.getCoin();
             level.setBlock(x, y, (byte) 0);
-            addSprite(new CoinAnim(x, y + 1));
+            addSprite(new CoinAnim(this, x, y + 1));
         }
 
         for (Sprite sprite : sprites)
@@ -6,10 +6,8 @@ import ch.idsia.mario.engine.level.Level;
 import ch.idsia.mario.engine.level.LevelGenerator;
 import ch.idsia.mario.engine.sprites.Mario;
 import ch.idsia.mario.environments.Environment;
-import ch.idsia.tools.ActionTrace;
 import ch.idsia.tools.EvaluationInfo;
 import ch.idsia.tools.GameViewer;
-import ch.idsia.tools.tcp.ServerAgent;
 
 import javax.swing.*;
 import java.awt.*;
@@ -17,7 +15,6 @@ import java.awt.event.FocusEvent;
 import java.awt.event.FocusListener;
 import java.awt.event.KeyAdapter;
 import java.awt.image.VolatileImage;
-import java.util.ArrayList;
 import java.util.List;
 
 
@@ -31,13 +28,9 @@ public class MarioComponent extends JComponent implements Runnable, /*KeyListene
     private Scene scene;
     private boolean focused = false;
 
-    int frame;
     int delay;
     Thread animator;
 
-    private int ZLevelEnemies = 1;
-    private int ZLevelScene = 1;
-
     public void setGameViewer(GameViewer gameViewer) {
         this.gameViewer = gameViewer;
     }
@@ -50,6 +43,8 @@ public class MarioComponent extends JComponent implements Runnable, /*KeyListene
     private KeyAdapter prevHumanKeyBoardAgent;
     private Mario mario = null;
     private LevelScene levelScene = null;
+    // the component only draws and paces the game, the simulation plays it
+    private final MarioSimulation simulation = new MarioSimulation();
 
     public MarioComponent(int width, int height) {
         adjustFPS();
@@ -105,6 +100,7 @@ public class MarioComponent extends JComponent implements Runnable, /*KeyListene
 
     public void stop() {
         running = false;
+        simulation.stop();
     }
 
     public void run() {
@@ -114,24 +110,12 @@ public class MarioComponent extends JComponent implements Runnable, /*KeyListene
     public EvaluationInfo run1(int currentTrial, int totalNumberOfTrials) {
         running = true;
         adjustFPS();
-        EvaluationInfo evaluationInfo = new EvaluationInfo();
 
+        // the back buffer is only created once something is drawn, so headless runs never touch it
         VolatileImage image = null;
         Graphics g = null;
         Graphics og = null;
 
-        ArrayList<ActionTrace> actions = new ArrayList<>();
-
-        image = createVolatileImage(320, 240);
-        g = getGraphics();
-        og = image.getGraphics();
-
-        if (!GlobalOptions.VisualizationOn) {
-            String msgClick = "Vizualization is not available";
-            drawString(og, msgClick, 160 - msgClick.length() * 4, 110, 1);
-            drawString(og, msgClick, 160 - msgClick.length() * 4, 110, 7);
-        }
-
         addFocusListener(this);
 
         // Remember the starting time
@@ -139,64 +123,39 @@ public class MarioComponent extends JComponent implements Runnable, /*KeyListene
         long tick = tm;
         int marioStatus = Mario.STATUS_RUNNING;
 
-        mario = ((LevelScene) scene).mario;
-        int totalActionsPerfomed = 0;
-// TODO: Manage better place for this:
-        Mario.resetCoins();
+        mario = levelScene.mario;
 
-        while (/*Thread.currentThread() == animator*/ running) {
+        while (/*Thread.currentThread() == animator*/ running && simulation.isRunning()) {
+            // The options below can be toggled from the GUI while the level runs
+            simulation.setTimerOn(GlobalOptions.TimerOn);
+            simulation.setPowerRestoration(GlobalOptions.PowerRestoration);
             // Display the next frame of animation.
 //                repaint();
-            scene.tick();
+            simulation.tickScene();
             if (gameViewer != null && gameViewer.getContinuousUpdatesState())
                 gameViewer.tick();
 
             float alpha = 0;
 
+            if (GlobalOptions.VisualizationOn && image == null) {
+                image = createVolatileImage(320, 240);
+                g = getGraphics();
+                og = image.getGraphics();
+            }
+
 //            og.setColor(Color.RED);
             if (GlobalOptions.VisualizationOn) {
                 og.fillRect(0, 0, 320, 240);
                 scene.render(og, alpha);
             }
 
-            if (agent instanceof ServerAgent && !((ServerAgent) agent).isAvailable()) {
-                System.err.println("Agent became unavailable. Simulation Stopped");
+            //Apply action;
+            simulation.setCheatKeys(cheatAgent.getAction(null));
+            if (!simulation.act()) {
                 running = false;
                 break;
             }
-
-            boolean[] action = agent.getAction(this/*DummyEnvironment*/);
-            if (action != null)
-            {
-                for (int i = 0; i < Environment.numberOfButtons; ++i)
-                    if (action[i])
-                    {
-                        ++totalActionsPerfomed;
-                        break;
-                    }
-            }
-            else
-            {
-                System.err.println("Null Action received. Skipping simulation...");
-                action = new boolean[5];
-                stop();
-            }
-            actions.add(new ActionTrace(
-                ((LevelScene) scene).getTick(),
-                new int[]{
-                    action[0]?1:0,
-                    action[1]?1:0,
-                    action[2]?1:0,
-                    action[3]?1:0,
-                    action[4]?1:0
-                }
-            ));
-
-
-            //Apply action;
-//            scene.keys = action;
-            ((LevelScene) scene).mario.keys = action;
-            ((LevelScene) scene).mario.cheatKeys = cheatAgent.getAction(null);
+            boolean[] action = mario.keys;
 
             if (GlobalOptions.VisualizationOn) {
 
@@ -240,7 +199,7 @@ public class MarioComponent extends JComponent implements Runnable, /*KeyListene
                 }
             } else {
                 // Win or Die without renderer!! independently.
-                marioStatus = ((LevelScene) scene).mario.getStatus();
+                marioStatus = mario.getStatus();
                 if (marioStatus != Mario.STATUS_RUNNING)
                     stop();
             }
@@ -252,32 +211,9 @@ public class MarioComponent extends JComponent implements Runnable, /*KeyListene
                 } catch (InterruptedException e) {
                     break;
                 }
-            // Advance the frame
-            frame++;
         }
-//=========
-        evaluationInfo.agentType = agent.getClass().getSimpleName();
-        evaluationInfo.agentName = agent.getName();
-        evaluationInfo.marioStatus = mario.getStatus();
-        evaluationInfo.livesLeft = mario.lives;
-        evaluationInfo.lengthOfLevelPassedPhys = mario.x;
-        evaluationInfo.lengthOfLevelPassedCells = mario.mapX;
-        evaluationInfo.totalLengthOfLevelCells = levelScene.level.getWidthCells();
-        evaluationInfo.totalLengthOfLevelPhys = levelScene.level.getWidthPhys();
-        evaluationInfo.timeSpentOnLevel = levelScene.getStartTime();
-        evaluationInfo.timeLeft = levelScene.getTimeLeft();
-        evaluationInfo.totalTimeGiven = levelScene.getTotalTime();
-        evaluationInfo.numberOfGainedCoins = Mario.coins;
-//        evaluationInfo.totalNumberOfCoins   = -1 ; // TODO: total Number of coins.
-        evaluationInfo.totalActionsPerfomed = totalActionsPerfomed; // Counted during the play/simulation process
-        evaluationInfo.totalFramesPerfomed = frame;
-        evaluationInfo.marioMode = mario.getMode();
-        evaluationInfo.killsTotal = mario.world.killedCreaturesTotal;
-        evaluationInfo.actions = actions;
-//        evaluationInfo.Memo = "Number of attempt: " + Mario.numberOfAttempts;
-        if (agent instanceof ServerAgent && mario.keys != null /*this will happen if client quits unexpectedly in case of Server mode*/)
-            ((ServerAgent)agent).integrateEvaluationInfo(evaluationInfo);
-        return evaluationInfo;
+        running = false;
+        return simulation.finishLevel();
     }
 
     private void drawString(Graphics g, String text, int x, int y, int c) {
@@ -287,23 +223,37 @@ public class MarioComponent extends JComponent implements Runnable, /*KeyListene
         }
     }
 
+    public MarioSimulation getSimulation() {
+        return simulation;
+    }
+
     public void startLevel(long seed, int difficulty, int type, int levelLength, int timeLimit) {
-        scene = new LevelScene(graphicsConfiguration, this, seed, difficulty, type, levelLength, timeLimit);
-        levelScene = ((LevelScene) scene);
-        scene.init();
+        startScene(new LevelScene(graphicsConfiguration, this, seed, difficulty, type, levelLength, timeLimit));
     }
 
     public void startLevel(Level level) {
-        // TODO figure out if this time limit is appropriate
-        scene = new LevelScene(graphicsConfiguration, this, 0L, 1, LevelGenerator.TYPE_OVERGROUND, level.width, level.xExit * 4);
-        levelScene = ((LevelScene) scene);
-        levelScene.setLevel(level);
-        scene.init();
+        startLevel(level, 0L);
+    }
+
+    public void startLevel(Level level, long seed) {
+        LevelScene scene = new LevelScene(graphicsConfiguration, this, seed, 1, LevelGenerator.TYPE_OVERGROUND, level.width,
+                MarioSimulation.timeLimitFor(level));
+        scene.setLevel(level);
+        startScene(scene);
+    }
+
+    private void startScene(LevelScene scene) {
+        simulation.setTimerOn(GlobalOptions.TimerOn);
+        simulation.setPowerRestoration(GlobalOptions.PowerRestoration);
+        simulation.startLevel(scene);
+        this.scene = scene;
+        levelScene = scene;
+        mario = scene.mario;
     }
 
     public void levelFailed() {
 //        scene = mapScene;
-        Mario.lives--;
+        mario.lives--;
         stop();
     }
 
@@ -328,96 +278,85 @@ public class MarioComponent extends JComponent implements Runnable, /*KeyListene
     }
 
     public List<String> getTextObservation(boolean Enemies, boolean LevelMap, boolean Complete, int ZLevelMap, int ZLevelEnemies) {
-        if (scene instanceof LevelScene)
-            return ((LevelScene) scene).LevelSceneAroundMarioASCII(Enemies, LevelMap, Complete, ZLevelMap, ZLevelEnemies);
-        else {
-            return new ArrayList<String>();
-        }
+        return simulation.getTextObservation(Enemies, LevelMap, Complete, ZLevelMap, ZLevelEnemies);
     }
 
-    public String getBitmapEnemiesObservation()
-    {
-        if (scene instanceof LevelScene)
-            return ((LevelScene) scene).bitmapEnemiesObservation(1);
-        else {
-            //
-            return new String();
-        }                
+    public String getBitmapEnemiesObservation() {
+        return simulation.getBitmapEnemiesObservation();
     }
 
-    public String getBitmapLevelObservation()
-    {
-        if (scene instanceof LevelScene)
-            return ((LevelScene) scene).bitmapLevelObservation(1);
-        else {
-            //
-            return null;
-        }
+    public String getBitmapLevelObservation() {
+        return simulation.getBitmapLevelObservation();
     }
 
     // Chaning ZLevel during the game on-the-fly;
     public byte[][] getMergedObservationZ(int zLevelScene, int zLevelEnemies) {
-        if (scene instanceof LevelScene)
-            return ((LevelScene) scene).mergedObservation(zLevelScene, zLevelEnemies);
-        return null;
+        return simulation.getMergedObservationZ(zLevelScene, zLevelEnemies);
     }
 
     public byte[][] getLevelSceneObservationZ(int zLevelScene) {
-        if (scene instanceof LevelScene)
-            return ((LevelScene) scene).levelSceneObservation(zLevelScene);
-        return null;
+        return simulation.getLevelSceneObservationZ(zLevelScene);
     }
 
     public byte[][] getEnemiesObservationZ(int zLevelEnemies) {
-        if (scene instanceof LevelScene)
-            return ((LevelScene) scene).enemiesObservation(zLevelEnemies);
-        return null;
+        return simulation.getEnemiesObservationZ(zLevelEnemies);
+    }
+
+    public byte[][] getMergedObservationZ(int zLevelScene, int zLevelEnemies, byte[][] dst) {
+        return simulation.getMergedObservationZ(zLevelScene, zLevelEnemies, dst);
+    }
+
+    public byte[][] getLevelSceneObservationZ(int zLevelScene, byte[][] dst) {
+        return simulation.getLevelSceneObservationZ(zLevelScene, dst);
+    }
+
+    public byte[][] getEnemiesObservationZ(int zLevelEnemies, byte[][] dst) {
+        return simulation.getEnemiesObservationZ(zLevelEnemies, dst);
     }
 
     public int getKillsTotal() {
-        return mario.world.killedCreaturesTotal;
+        return simulation.getKillsTotal();
     }
 
     public int getKillsByFire() {
-        return mario.world.killedCreaturesByFireBall;
+        return simulation.getKillsByFire();
     }
 
     public int getKillsByStomp() {
-        return mario.world.killedCreaturesByStomp;
+        return simulation.getKillsByStomp();
     }
 
     public int getKillsByShell() {
-        return mario.world.killedCreaturesByShell;
+        return simulation.getKillsByShell();
     }
 
     public byte[][] getCompleteObservation() {
-        if (scene instanceof LevelScene)
-            return ((LevelScene) scene).mergedObservation(this.ZLevelScene, this.ZLevelEnemies);
-        return null;
+        return simulation.getCompleteObservation();
+    }
+
+    public byte[][] getCompleteObservation(byte[][] dst) {
+        return simulation.getCompleteObservation(dst);
     }
 
     public byte[][] getEnemiesObservation() {
-        if (scene instanceof LevelScene)
-            return ((LevelScene) scene).enemiesObservation(this.ZLevelEnemies);
-        return null;
+        return simulation.getEnemiesObservation();
     }
 
     public byte[][] getLevelSceneObservation() {
-        if (scene instanceof LevelScene)
-            return ((LevelScene) scene).levelSceneObservation(this.ZLevelScene);
-        return null;
+        return simulation.getLevelSceneObservation();
     }
 
     public boolean isMarioOnGround() {
-        return mario.isOnGround();
+        return simulation.isMarioOnGround();
     }
 
     public boolean mayMarioJump() {
-        return mario.mayJump();
+        return simulation.mayMarioJump();
     }
 
     public void setAgent(Agent agent) {
         this.agent = agent;
+        simulation.setAgent(agent);
         if (agent instanceof KeyAdapter) {
             if (prevHumanKeyBoardAgent != null)
                 this.removeKeyListener(prevHumanKeyBoardAgent);
@@ -426,42 +365,54 @@ public class MarioComponent extends JComponent implements Runnable, /*KeyListene
         }
     }
 
+    public void setMarioMode(int marioMode) {
+        simulation.setMarioMode(marioMode);
+    }
+
     public void setMarioInvulnerable(boolean invulnerable)
     {
-        Mario.isMarioInvulnerable = invulnerable;
+        simulation.setMarioInvulnerable(invulnerable);
     }
 
     public void setPaused(boolean paused) {
-        levelScene.paused = paused;
+        simulation.setPaused(paused);
     }
 
     public void setZLevelEnemies(int ZLevelEnemies) {
-        this.ZLevelEnemies = ZLevelEnemies;
+        simulation.setZLevelEnemies(ZLevelEnemies);
     }
 
     public void setZLevelScene(int ZLevelScene) {
-        this.ZLevelScene = ZLevelScene;
+        simulation.setZLevelScene(ZLevelScene);
     }
 
     public float[] getMarioFloatPos()
     {
-        return new float[]{this.mario.x, this.mario.y};
+        return simulation.getMarioFloatPos();
+    }
+
+    public float[] getMarioFloatPos(float[] dst)
+    {
+        return simulation.getMarioFloatPos(dst);
     }
 
     public float[] getEnemiesFloatPos()
     {
-        if (scene instanceof LevelScene)
-            return ((LevelScene) scene).enemiesFloatPos();
-        return null;
+        return simulation.getEnemiesFloatPos();
+    }
+
+    public int getEnemiesFloatPos(float[] dst)
+    {
+        return simulation.getEnemiesFloatPos(dst);
     }
 
     public int getMarioMode()
     {
-        return mario.getMode();
+        return simulation.getMarioMode();
     }
 
     public boolean isMarioCarrying()
     {
-        return mario.carried != null;
+        return simulation.isMarioCarrying();
     }
-}
\ No newline at end of file
+}
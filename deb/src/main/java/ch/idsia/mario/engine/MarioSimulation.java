@@ -0,0 +1,551 @@
+package ch.idsia.mario.engine;
+
+import ch.idsia.ai.agents.Agent;
+import ch.idsia.mario.engine.level.Level;
+import ch.idsia.mario.engine.level.LevelGenerator;
+import ch.idsia.mario.engine.sprites.Mario;
+import ch.idsia.mario.environments.Environment;
+import ch.idsia.tools.ActionTrace;
+import ch.idsia.tools.EvaluationInfo;
+import ch.idsia.tools.SimulationMetrics;
+import ch.idsia.tools.tcp.ServerAgent;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MarioSimulation plays one level with an agent, without a window.
+ *
+ * Everything a run changes lives in the simulation, its LevelScene and
+ * its Mario, so any number of simulations can run side by side in one
+ * JVM, as long as each one is only used from one thread at a time and
+ * gets its own Level. MarioComponent wraps a simulation to show it on
+ * screen.
+ */
+public class MarioSimulation implements Environment
+{
+    private Agent agent = null;
+    private LevelScene levelScene = null;
+    private Mario mario = null;
+
+    private int marioMode = 0;
+    private boolean marioInvulnerable = false;
+    private boolean paused = false;
+    private boolean timerOn = true;
+    private boolean powerRestoration = false;
+    private boolean[] cheatKeys = new boolean[16];
+    private SimulationMetrics metrics = null;
+
+    private int ZLevelEnemies = 1;
+    private int ZLevelScene = 1;
+
+    private boolean running = false;
+    private int frame;
+    private int totalActionsPerfomed;
+    private ActionTrace actions = new ActionTrace();
+    private WritableByteChannel actionTraceOut = null;
+
+    public void setAgent(Agent agent)
+    {
+        this.agent = agent;
+    }
+
+    public Agent getAgent()
+    {
+        return agent;
+    }
+
+    // 0 small, 1 large, 2 fire; used by the next level started
+    public void setMarioMode(int marioMode)
+    {
+        this.marioMode = marioMode;
+    }
+
+    public void setMarioInvulnerable(boolean invulnerable)
+    {
+        this.marioInvulnerable = invulnerable;
+        if (mario != null)
+            mario.isMarioInvulnerable = invulnerable;
+    }
+
+    public void setPaused(boolean paused)
+    {
+        this.paused = paused;
+        if (levelScene != null)
+        {
+            levelScene.paused = paused;
+            levelScene.pauseWorld = paused;
+        }
+    }
+
+    public void setTimerOn(boolean timerOn)
+    {
+        this.timerOn = timerOn;
+        if (levelScene != null)
+            levelScene.timerOn = timerOn;
+    }
+
+    public void setPowerRestoration(boolean powerRestoration)
+    {
+        this.powerRestoration = powerRestoration;
+        if (levelScene != null)
+            levelScene.powerRestoration = powerRestoration;
+    }
+
+    // keys of the cheat agent, applied to Mario along with every action
+    public void setCheatKeys(boolean[] cheatKeys)
+    {
+        this.cheatKeys = cheatKeys;
+    }
+
+    /**
+     * setMetrics plugs a metrics sink into this simulation. Every tick of
+     * the current and later levels is recorded, and the sink is told when
+     * run finishes a level.
+     * @param metrics Sink to record into, or null to record nothing
+     */
+    public void setMetrics(SimulationMetrics metrics)
+    {
+        this.metrics = metrics;
+        if (levelScene != null)
+            levelScene.metrics = metrics;
+    }
+
+    public SimulationMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * setActionTraceOutput makes the action traces of later levels stream to
+     * a channel while they are recorded, see ActionTrace. The traces follow
+     * each other, one per level, and ActionTrace.read reads them back in turn.
+     * @param out Channel to write to, or null to keep the traces in memory only
+     */
+    public void setActionTraceOutput(WritableByteChannel out)
+    {
+        this.actionTraceOut = out;
+    }
+
+    public void setZLevelEnemies(int ZLevelEnemies)
+    {
+        this.ZLevelEnemies = ZLevelEnemies;
+    }
+
+    public void setZLevelScene(int ZLevelScene)
+    {
+        this.ZLevelScene = ZLevelScene;
+    }
+
+    public void startLevel(long seed, int difficulty, int type, int levelLength, int timeLimit)
+    {
+        startLevel(new LevelScene(seed, difficulty, type, levelLength, timeLimit));
+    }
+
+    public void startLevel(Level level)
+    {
+        startLevel(level, 0L);
+    }
+
+    // seed only drives the random effects of the scene, the level is played as given
+    public void startLevel(Level level, long seed)
+    {
+        LevelScene scene = new LevelScene(seed, 1, LevelGenerator.TYPE_OVERGROUND, level.width, timeLimitFor(level));
+        scene.setLevel(level);
+        startLevel(scene);
+    }
+
+    // time limit of a level that is played as given rather than generated
+    static int timeLimitFor(Level level)
+    {
+        // TODO figure out if this time limit is appropriate
+        return level.xExit * 4;
+    }
+
+    /**
+     * startLevel with a scene that has not been initialized yet. The scene
+     * is set up with the options of this simulation and then initialized.
+     * @param scene Scene to play
+     */
+    public void startLevel(LevelScene scene)
+    {
+        scene.setMarioMode(marioMode);
+        scene.timerOn = timerOn;
+        scene.powerRestoration = powerRestoration;
+        scene.metrics = metrics;
+        scene.init();
+        levelScene = scene;
+        mario = scene.mario;
+        mario.isMarioInvulnerable = marioInvulnerable;
+        setPaused(paused);
+
+        running = true;
+        frame = 0;
+        totalActionsPerfomed = 0;
+        actions = new ActionTrace(actionTraceOut);
+    }
+
+    public LevelScene getLevelScene()
+    {
+        return levelScene;
+    }
+
+    // see LevelScene.stateHash
+    public long getStateHash()
+    {
+        return levelScene.stateHash();
+    }
+
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    public void stop()
+    {
+        running = false;
+    }
+
+    /**
+     * Checkpoint is the state of a running level between two ticks, see
+     * checkpoint. It can be restored any number of times.
+     */
+    public static class Checkpoint
+    {
+        private final LevelScene scene;
+        private final int frame;
+        private final int totalActionsPerfomed;
+        private final ActionTrace actions;
+
+        private Checkpoint(LevelScene scene, int frame, int totalActionsPerfomed, ActionTrace actions)
+        {
+            this.scene = scene;
+            this.frame = frame;
+            this.totalActionsPerfomed = totalActionsPerfomed;
+            this.actions = actions;
+        }
+
+        // copy of the scene as it was; do not tick it, copy it
+        public LevelScene getLevelScene()
+        {
+            return scene;
+        }
+
+        public int getTick()
+        {
+            return scene.getTick();
+        }
+
+        public int getTotalActionsPerfomed()
+        {
+            return totalActionsPerfomed;
+        }
+    }
+
+    /**
+     * checkpoint copies the state of the level being played, to go on from
+     * it later with restore. Only the simulation is copied; the agent has to
+     * be checkpointed along with it if it keeps any state. Must be called
+     * between two ticks of a running level.
+     * @return Checkpoint of the simulation
+     */
+    public Checkpoint checkpoint()
+    {
+        if (!running)
+            throw new IllegalStateException("Cannot checkpoint a level that is not running");
+        return new Checkpoint(levelScene.copy(), frame, totalActionsPerfomed, actions.copy());
+    }
+
+    /**
+     * restore goes back to a checkpoint, so that run goes on from it. The
+     * action trace from then on is only kept in memory.
+     * @param checkpoint Checkpoint taken by any simulation
+     */
+    public void restore(Checkpoint checkpoint)
+    {
+        levelScene = checkpoint.scene.copy();
+        levelScene.metrics = metrics;
+        mario = levelScene.mario;
+        mario.cheatKeys = cheatKeys;
+        running = true;
+        frame = checkpoint.frame;
+        totalActionsPerfomed = checkpoint.totalActionsPerfomed;
+        actions = checkpoint.actions.copy();
+    }
+
+    /**
+     * restore goes back to a checkpoint, taking the actions that led to it
+     * from another run that got into the same state at the same tick.
+     * @param checkpoint Checkpoint taken by any simulation
+     * @param history Trace of a run that was in the state of the checkpoint at its tick
+     */
+    public void restore(Checkpoint checkpoint, ActionTrace history)
+    {
+        restore(checkpoint);
+        actions = history.copyBefore(checkpoint.getTick() + 1);
+    }
+
+    /**
+     * run the level until Mario wins or dies, or the agent stops responding.
+     * Interrupting the thread cancels the run at the start of the next tick;
+     * the interrupt stays set so the caller can tell it was cancelled.
+     * @return EvaluationInfo of the run
+     */
+    public EvaluationInfo run()
+    {
+        while (running)
+        {
+            if (Thread.currentThread().isInterrupted())
+                break;
+            tickScene();
+            if (!act())
+                break;
+            if (mario.getStatus() != Mario.STATUS_RUNNING)
+                stop();
+        }
+        return finishLevel();
+    }
+
+    /**
+     * finishLevel finishes the action trace and reports the end of the level
+     * to the metrics sink, if any.
+     * @return EvaluationInfo of the run
+     * @throws IllegalStateException if the action trace could not be written to its channel
+     */
+    public EvaluationInfo finishLevel()
+    {
+        try
+        {
+            actions.finish();
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException("Could not write the action trace", e);
+        }
+        EvaluationInfo info = getEvaluationInfo();
+        if (metrics != null)
+            metrics.levelFinished(info);
+        return info;
+    }
+
+    public void tickScene()
+    {
+        levelScene.tick();
+    }
+
+    /**
+     * act asks the agent for the next action and hands it to Mario.
+     * A null action is replaced with no buttons and stops the simulation.
+     * @return false if the agent is gone and the run should end right away
+     */
+    public boolean act()
+    {
+        if (agent instanceof ServerAgent && !((ServerAgent) agent).isAvailable())
+        {
+            System.err.println("Agent became unavailable. Simulation Stopped");
+            running = false;
+            return false;
+        }
+
+        boolean[] action = agent.getAction(this);
+        if (action != null)
+        {
+            for (int i = 0; i < Environment.numberOfButtons; ++i)
+                if (action[i])
+                {
+                    ++totalActionsPerfomed;
+                    break;
+                }
+        }
+        else
+        {
+            System.err.println("Null Action received. Skipping simulation...");
+            action = new boolean[5];
+            stop();
+        }
+        actions.add(levelScene.getTick(), action);
+
+        mario.keys = action;
+        mario.cheatKeys = cheatKeys;
+        frame++;
+        return true;
+    }
+
+    public EvaluationInfo getEvaluationInfo()
+    {
+        EvaluationInfo evaluationInfo = new EvaluationInfo();
+        evaluationInfo.agentType = agent.getClass().getSimpleName();
+        evaluationInfo.agentName = agent.getName();
+        evaluationInfo.marioStatus = mario.getStatus();
+        evaluationInfo.livesLeft = mario.lives;
+        evaluationInfo.lengthOfLevelPassedPhys = mario.x;
+        evaluationInfo.lengthOfLevelPassedCells = mario.mapX;
+        evaluationInfo.totalLengthOfLevelCells = levelScene.level.getWidthCells();
+        evaluationInfo.totalLengthOfLevelPhys = levelScene.level.getWidthPhys();
+        evaluationInfo.timeSpentOnLevel = levelScene.getStartTime();
+        evaluationInfo.timeLeft = levelScene.getTimeLeft();
+        evaluationInfo.totalTimeGiven = levelScene.getTotalTime();
+        evaluationInfo.numberOfGainedCoins = mario.coins;
+//        evaluationInfo.totalNumberOfCoins   = -1 ; // TODO: total Number of coins.
+        evaluationInfo.totalActionsPerfomed = totalActionsPerfomed; // Counted during the play/simulation process
+        evaluationInfo.totalFramesPerfomed = frame;
+        evaluationInfo.marioMode = mario.getMode();
+        evaluationInfo.killsTotal = levelScene.killedCreaturesTotal;
+        evaluationInfo.actions = actions;
+        if (agent instanceof ServerAgent && mario.keys != null /*this will happen if client quits unexpectedly in case of Server mode*/)
+            ((ServerAgent)agent).integrateEvaluationInfo(evaluationInfo);
+        return evaluationInfo;
+    }
+
+    public List<String> getTextObservation(boolean Enemies, boolean LevelMap, boolean Complete, int ZLevelMap, int ZLevelEnemies)
+    {
+        if (levelScene != null)
+            return levelScene.LevelSceneAroundMarioASCII(Enemies, LevelMap, Complete, ZLevelMap, ZLevelEnemies);
+        return new ArrayList<String>();
+    }
+
+    public String getBitmapEnemiesObservation()
+    {
+        if (levelScene != null)
+            return levelScene.bitmapEnemiesObservation(1);
+        return new String();
+    }
+
+    public String getBitmapLevelObservation()
+    {
+        if (levelScene != null)
+            return levelScene.bitmapLevelObservation(1);
+        return null;
+    }
+
+    // Chaning ZLevel during the game on-the-fly;
+    public byte[][] getMergedObservationZ(int zLevelScene, int zLevelEnemies)
+    {
+        if (levelScene != null)
+            return levelScene.mergedObservation(zLevelScene, zLevelEnemies);
+        return null;
+    }
+
+    public byte[][] getLevelSceneObservationZ(int zLevelScene)
+    {
+        if (levelScene != null)
+            return levelScene.levelSceneObservation(zLevelScene);
+        return null;
+    }
+
+    public byte[][] getEnemiesObservationZ(int zLevelEnemies)
+    {
+        if (levelScene != null)
+            return levelScene.enemiesObservation(zLevelEnemies);
+        return null;
+    }
+
+    public byte[][] getMergedObservationZ(int zLevelScene, int zLevelEnemies, byte[][] dst)
+    {
+        if (levelScene != null)
+            return levelScene.mergedObservation(zLevelScene, zLevelEnemies, dst);
+        return null;
+    }
+
+    public byte[][] getLevelSceneObservationZ(int zLevelScene, byte[][] dst)
+    {
+        if (levelScene != null)
+            return levelScene.levelSceneObservation(zLevelScene, dst);
+        return null;
+    }
+
+    public byte[][] getEnemiesObservationZ(int zLevelEnemies, byte[][] dst)
+    {
+        if (levelScene != null)
+            return levelScene.enemiesObservation(zLevelEnemies, dst);
+        return null;
+    }
+
+    public int getKillsTotal()
+    {
+        return levelScene.killedCreaturesTotal;
+    }
+
+    public int getKillsByFire()
+    {
+        return levelScene.killedCreaturesByFireBall;
+    }
+
+    public int getKillsByStomp()
+    {
+        return levelScene.killedCreaturesByStomp;
+    }
+
+    public int getKillsByShell()
+    {
+        return levelScene.killedCreaturesByShell;
+    }
+
+    public byte[][] getCompleteObservation()
+    {
+        return getMergedObservationZ(this.ZLevelScene, this.ZLevelEnemies);
+    }
+
+    public byte[][] getCompleteObservation(byte[][] dst)
+    {
+        return getMergedObservationZ(this.ZLevelScene, this.ZLevelEnemies, dst);
+    }
+
+    public byte[][] getEnemiesObservation()
+    {
+        return getEnemiesObservationZ(this.ZLevelEnemies);
+    }
+
+    public byte[][] getLevelSceneObservation()
+    {
+        return getLevelSceneObservationZ(this.ZLevelScene);
+    }
+
+    public boolean isMarioOnGround()
+    {
+        return mario.isOnGround();
+    }
+
+    public boolean mayMarioJump()
+    {
+        return mario.mayJump();
+    }
+
+    public float[] getMarioFloatPos()
+    {
+        return getMarioFloatPos(new float[2]);
+    }
+
+    public float[] getMarioFloatPos(float[] dst)
+    {
+        dst[0] = this.mario.x;
+        dst[1] = this.mario.y;
+        return dst;
+    }
+
+    public float[] getEnemiesFloatPos()
+    {
+        if (levelScene != null)
+            return levelScene.enemiesFloatPos();
+        return null;
+    }
+
+    public int getEnemiesFloatPos(float[] dst)
+    {
+        if (levelScene != null)
+            return levelScene.enemiesFloatPos(dst);
+        return 0;
+    }
+
+    public int getMarioMode()
+    {
+        return mario.getMode();
+    }
+
+    public boolean isMarioCarrying()
+    {
+        return mario.carried != null;
+    }
+}
@@ -0,0 +1,103 @@
+package ch.idsia.mario.engine;
+
+import ch.idsia.mario.engine.sprites.Sprite;
+import ch.idsia.mario.engine.sprites.SpriteStore;
+
+import java.util.Arrays;
+
+// Broad phase for the sprite interactions of LevelScene.tick.
+// Sprites are bucketed by the 16 pixel column their x lies in, over the camera
+// window and a margin around it. Sprites outside of that go into a list every
+// query returns. A query gives the positions in the sprite store of all sprites
+// that may lie in an x range, in tick order, so checking only those sprites
+// gives the same results as checking every sprite.
+
+class SpriteGrid
+{
+    private static final int COLUMN_WIDTH = 16;
+    // sprites further than 64 pixels from the camera are removed, so few fall outside the margin
+    private static final int MARGIN_COLUMNS = 6;
+
+    private final int columns;
+    // per column the first sprite in it (+1, 0 is empty), each linking to the next one
+    private final int[] heads;
+    private int[] next = new int[64];
+    private int[] outside = new int[16];
+    private int outsideCount = 0;
+    private int firstColumn = 0;
+
+    private int[] result = new int[64];
+    private int resultCount = 0;
+
+    SpriteGrid(int viewWidth)
+    {
+        columns = viewWidth / COLUMN_WIDTH + 1 + 2 * MARGIN_COLUMNS;
+        heads = new int[columns];
+    }
+
+    // buckets the sprites as they are now; call again once they have moved or the store changed
+    void build(SpriteStore sprites, float xCam)
+    {
+        Arrays.fill(heads, 0);
+        outsideCount = 0;
+        firstColumn = (int) Math.floor(xCam / COLUMN_WIDTH) - MARGIN_COLUMNS;
+
+        int n = sprites.positions();
+        if (next.length < n)
+            next = new int[Math.max(n, next.length * 2)];
+        if (result.length < n)
+            result = new int[Math.max(n, result.length * 2)];
+
+        // added back to front, so every column lists its sprites in tick order
+        for (int i = n - 1; i >= 0; i--)
+        {
+            Sprite sprite = sprites.at(i);
+            if (sprite == null)
+                continue;
+            int c = column(sprite.x);
+            if (c < 0)
+            {
+                if (outsideCount == outside.length)
+                    outside = Arrays.copyOf(outside, outsideCount * 2);
+                outside[outsideCount++] = i;
+            }
+            else
+            {
+                next[i] = heads[c];
+                heads[c] = i + 1;
+            }
+        }
+    }
+
+    // finds every sprite that may have minX <= x <= maxX; returns how many, see get
+    int query(float minX, float maxX)
+    {
+        resultCount = 0;
+        for (int i = 0; i < outsideCount; i++)
+            result[resultCount++] = outside[i];
+
+        int c0 = Math.max(0, (int) Math.floor(minX / COLUMN_WIDTH) - firstColumn);
+        int c1 = Math.min(columns - 1, (int) Math.floor(maxX / COLUMN_WIDTH) - firstColumn);
+        for (int c = c0; c <= c1; c++)
+            for (int i = heads[c]; i != 0; i = next[i - 1])
+                result[resultCount++] = i - 1;
+
+        Arrays.sort(result, 0, resultCount);
+        return resultCount;
+    }
+
+    // position in the sprite store of the i-th sprite found by the last query
+    int get(int i)
+    {
+        return result[i];
+    }
+
+    // column of x in the grid, or -1 if x is not in it
+    private int column(float x)
+    {
+        double c = Math.floor(x / COLUMN_WIDTH) - firstColumn;
+        if (!(c >= 0 && c < columns))
+            return -1;
+        return (int) c;
+    }
+}
@@ -16,7 +16,25 @@ public class Level
             "ANIMATED",//
     };
 
-    public static byte[] TILE_BEHAVIORS = new byte[256];
+    // read once per JVM and shared by every scene; only the level editor writes to it
+    public static final byte[] TILE_BEHAVIORS = new byte[256];
+
+    static
+    {
+        InputStream is = Level.class.getResourceAsStream("/tiles.dat");
+        if (is == null)
+        {
+            throw new IllegalStateException("/tiles.dat is missing from the class path");
+        }
+        try (DataInputStream dis = new DataInputStream(is))
+        {
+            loadBehaviors(dis);
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException("Can't read /tiles.dat", e);
+        }
+    }
 
     public static final int BIT_BLOCK_UPPER = 1 << 0;
     public static final int BIT_BLOCK_ALL = 1 << 1;
@@ -54,6 +72,38 @@ public class Level
         observation = new byte[width][height];
     }
 
+    /**
+     * Constructor that copies the tiles, tile data, exit and sprite templates
+     * of a level. The copied templates still point to the sprites of that
+     * level, see LevelScene.copy.
+     * @param level Level to copy
+     */
+    public Level(Level level)
+    {
+        this(level.width, level.height);
+        xExit = level.xExit;
+        yExit = level.yExit;
+        for (int x = 0; x < width; x++)
+        {
+            System.arraycopy(level.map[x], 0, map[x], 0, height);
+            System.arraycopy(level.data[x], 0, data[x], 0, height);
+            for (int y = 0; y < height; y++)
+            {
+                if (level.spriteTemplates[x][y] != null)
+                    spriteTemplates[x][y] = new SpriteTemplate(level.spriteTemplates[x][y]);
+            }
+        }
+    }
+
+    /**
+     * copy this level, see Level(Level).
+     * @return Copy that shares nothing a tick changes with this level
+     */
+    public Level copy()
+    {
+        return new Level(this);
+    }
+
 //    public void ASCIIToOutputStream(OutputStream os) throws IOException {
 //        BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(os));
 //        bw.write("\nwidth = " + width);
@@ -17,12 +17,26 @@ public class SpriteTemplate
     }
 
     private int type;
+
+    public boolean getWinged() {
+        return winged;
+    }
     
     public SpriteTemplate(int type, boolean winged)
     {
         this.type = type;
         this.winged = winged;
     }
+
+    // copy of other, still pointing to the sprite of other
+    public SpriteTemplate(SpriteTemplate other)
+    {
+        this.type = other.type;
+        this.winged = other.winged;
+        this.lastVisibleTick = other.lastVisibleTick;
+        this.isDead = other.isDead;
+        this.sprite = other.sprite;
+    }
     
     public void spawn(LevelScene world, int x, int y, int dir)
     {
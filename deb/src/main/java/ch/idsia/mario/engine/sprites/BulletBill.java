@@ -40,6 +40,12 @@ public class BulletBill extends Sprite
         this.facing = dir;
     }
 
+    @Override
+    protected void onCopy(LevelScene world)
+    {
+        this.world = world;
+    }
+
     public void collideCheck()
     {
         if (dead) return;
@@ -79,7 +85,7 @@ public class BulletBill extends Sprite
                 deadTime = 1;
                 for (int i = 0; i < 8; i++)
                 {
-                    world.addSprite(new Sparkle((int) (x + Math.random() * 16 - 8) + 4, (int) (y - Math.random() * 8) + 4, (float) (Math.random() * 2 - 1), (float) Math.random() * -1, 0, 1, 5));
+                    world.addSprite(new Sparkle(world, (int) (x + world.random.nextDouble() * 16 - 8) + 4, (int) (y - world.random.nextDouble() * 8) + 4, (float) (world.random.nextDouble() * 2 - 1), (float) world.random.nextDouble() * -1, 0, 1, 5));
                 }
                 spriteContext.removeSprite(this);
             }
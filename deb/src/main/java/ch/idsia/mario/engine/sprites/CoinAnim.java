@@ -1,14 +1,17 @@
 package ch.idsia.mario.engine.sprites;
 
 import ch.idsia.mario.engine.Art;
+import ch.idsia.mario.engine.LevelScene;
 
 
 public class CoinAnim extends Sprite
 {
     private int life = 16;
+    private LevelScene world;
 
-    public CoinAnim(int xTile, int yTile)
+    public CoinAnim(LevelScene world, int xTile, int yTile)
     {
+        this.world = world;
         kind = KIND_COIN_ANIM;
         sheet = Art.level;
         wPic = hPic = 16;
@@ -21,14 +24,20 @@ public class CoinAnim extends Sprite
         yPic = 2;
     }
 
+    @Override
+    protected void onCopy(LevelScene world)
+    {
+        this.world = world;
+    }
+
     public void move()
     {
         if (life-- < 0)
         {
-            Sprite.spriteContext.removeSprite(this);
+            spriteContext.removeSprite(this);
             for (int xx = 0; xx < 2; xx++)
                 for (int yy = 0; yy < 2; yy++)
-                    Sprite.spriteContext.addSprite(new Sparkle((int)x + xx * 8 + (int) (Math.random() * 8), (int)y + yy * 8 + (int) (Math.random() * 8), 0, 0, 0, 2, 5));
+                    spriteContext.addSprite(new Sparkle(world, (int)x + xx * 8 + (int) (world.random.nextDouble() * 8), (int)y + yy * 8 + (int) (world.random.nextDouble() * 8), 0, 0, 0, 2, 5));
         }
 
         xPic = life & 3;
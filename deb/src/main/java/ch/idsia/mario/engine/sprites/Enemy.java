@@ -85,6 +85,12 @@ public class Enemy extends Sprite
         this.wPic = 16;
     }
 
+    @Override
+    protected void onCopy(LevelScene world)
+    {
+        this.world = world;
+    }
+
     public void collideCheck()
     {
         if (deadTime != 0)
@@ -124,8 +130,8 @@ public class Enemy extends Sprite
                             spriteContext.addSprite(new Shell(world, x, y, 1));
                         }
 //                        System.out.println("collideCheck and stomp");
-                        ++LevelScene.killedCreaturesTotal;
-                        ++LevelScene.killedCreaturesByStomp;
+                        ++world.killedCreaturesTotal;
+                        ++world.killedCreaturesByStomp;
                     }
                 }
                 else
@@ -148,7 +154,7 @@ public class Enemy extends Sprite
                 deadTime = 1;
                 for (int i = 0; i < 8; i++)
                 {
-                    world.addSprite(new Sparkle((int) (x + Math.random() * 16 - 8) + 4, (int) (y - Math.random() * 8) + 4, (float) (Math.random() * 2 - 1), (float) Math.random() * -1, 0, 1, 5));
+                    world.addSprite(new Sparkle(world, (int) (x + world.random.nextDouble() * 16 - 8) + 4, (int) (y - world.random.nextDouble() * 8) + 4, (float) (world.random.nextDouble() * 2 - 1), (float) world.random.nextDouble() * -1, 0, 1, 5));
                 }
                 spriteContext.removeSprite(this);
             }
@@ -347,8 +353,8 @@ public class Enemy extends Sprite
                 hPic = -hPic;
                 yPicO = -yPicO + 16;
 //                System.out.println("shellCollideCheck");
-                ++LevelScene.killedCreaturesTotal;
-                ++LevelScene.killedCreaturesByShell;
+                ++world.killedCreaturesTotal;
+                ++world.killedCreaturesByShell;
                 return true;
             }
         }
@@ -377,8 +383,8 @@ public class Enemy extends Sprite
                 hPic = -hPic;
                 yPicO = -yPicO + 16;
 //                System.out.println("fireballCollideCheck");
-                ++LevelScene.killedCreaturesTotal;
-                ++LevelScene.killedCreaturesByFireBall;
+                ++world.killedCreaturesTotal;
+                ++world.killedCreaturesByFireBall;
                 return true;
             }
         }
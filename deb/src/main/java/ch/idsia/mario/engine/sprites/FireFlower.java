@@ -34,6 +34,12 @@ public class FireFlower extends Sprite
         life = 0;
     }
 
+    @Override
+    protected void onCopy(LevelScene world)
+    {
+        this.world = world;
+    }
+
     public void collideCheck()
     {
         float xMarioD = world.mario.x - x;
@@ -45,13 +45,19 @@ public class Fireball extends Sprite
         ya = 4;
     }
 
+    @Override
+    protected void onCopy(LevelScene world)
+    {
+        this.world = world;
+    }
+
     public void move()
     {
         if (deadTime > 0)
         {
             for (int i = 0; i < 8; i++)
             {
-                world.addSprite(new Sparkle((int) (x + Math.random() * 8 - 4)+4, (int) (y + Math.random() * 8-4)+2, (float) Math.random() * 2 - 1-facing, (float) Math.random() *2 -1, 0, 1, 5));
+                world.addSprite(new Sparkle(world, (int) (x + world.random.nextDouble() * 8 - 4)+4, (int) (y + world.random.nextDouble() * 8-4)+2, (float) world.random.nextDouble() * 2 - 1-facing, (float) world.random.nextDouble() *2 -1, 0, 1, 5));
             }
             spriteContext.removeSprite(this);
 
@@ -2,43 +2,27 @@ package ch.idsia.mario.engine.sprites;
 
 
 import ch.idsia.mario.engine.Art;
-import ch.idsia.mario.engine.GlobalOptions;
 import ch.idsia.mario.engine.LevelScene;
-import ch.idsia.mario.engine.Scene;
 import ch.idsia.mario.engine.level.Level;
 
 
 public class Mario extends Sprite
 {
-    public static boolean large = false;
-    public static boolean fire = false;
-    public static int coins = 0;
-    public static int lives = 1024;
+    public boolean large = false;
+    public boolean fire = false;
+    public int coins = 0;
+    public int lives = 1024;
 //    public static int numberOfAttempts = 0;
 //    public static String levelString = "none";
     private int status = STATUS_RUNNING;
     private final int FractionalPowerUpTime = 0;
-    public static int gainedMushrooms;
-    public static int gainedFlowers;
-    public static boolean isMarioInvulnerable;
+    public int gainedMushrooms;
+    public int gainedFlowers;
+    public boolean isMarioInvulnerable;
 
-    public static void resetStatic(int marioMode)
+    public void setMode(MODE mode)
     {
-        large = marioMode > 0;
-        fire = marioMode == 2;
-        coins = 0;
-        gainedMushrooms = 0;
-        gainedFlowers = 0;
-
-//        lives = 65536;
-//        levelString = "none";
-//        numberOfAttempts = 0;
-    }
-
-    public static void setMode(MODE mode)
-    {
-        large = (mode == MODE.MODE_LARGE);
-        fire = (mode == MODE.MODE_FIRE);
+        setLarge(mode != MODE.MODE_SMALL, mode == MODE.MODE_FIRE);
     }
 
     public int getMode()
@@ -48,12 +32,6 @@ public class Mario extends Sprite
 
     public static enum MODE {MODE_SMALL, MODE_LARGE, MODE_FIRE}
 
-    public static void resetCoins()
-    {
-        coins = 0;
-//        ++numberOfAttempts;
-    }
-
     public static final int KEY_LEFT = 0;
     public static final int KEY_RIGHT = 1;
     public static final int KEY_DOWN = 2;
@@ -100,20 +78,31 @@ public class Mario extends Sprite
     private int invulnerableTime = 0;
 
     public Sprite carried = null;
-    private static Mario instance;
 
+    // Mario starts in the mode set with LevelScene.setMarioMode
     public Mario(LevelScene world)
     {
         kind = KIND_MARIO;
-        Mario.instance = this;
         this.world = world;
-        keys = Scene.keys;      // SK: in fact, this is already redundant due to using Agent
-        cheatKeys = Scene.keys; // SK: in fact, this is already redundant due to using Agent
+        keys = new boolean[16];
+        cheatKeys = keys;
         x = 32;
         y = 0;
 
         facing = 1;
-        setLarge(Mario.large, Mario.fire);
+        large = world.getMarioMode() > 0;
+        fire = world.getMarioMode() == 2;
+        setLarge(large, fire);
+    }
+
+    @Override
+    protected void onCopy(LevelScene world)
+    {
+        this.world = world;
+        // the keys may be the agent's own array, so the copy gets its own
+        boolean sharedKeys = cheatKeys == keys;
+        keys = keys.clone();
+        cheatKeys = sharedKeys ? keys : cheatKeys.clone();
     }
     
     private boolean lastLarge;
@@ -123,8 +112,8 @@ public class Mario extends Sprite
     
     private void blink(boolean on)
     {
-        Mario.large = on?newLarge:lastLarge;
-        Mario.fire = on?newFire:lastFire;
+        large = on?newLarge:lastLarge;
+        fire = on?newFire:lastFire;
         
         if (large)
         {
@@ -153,14 +142,14 @@ public class Mario extends Sprite
         if (fire) large = true;
         if (!large) fire = false;
         
-        lastLarge = Mario.large;
-        lastFire = Mario.fire;
+        lastLarge = this.large;
+        lastFire = this.fire;
         
-        Mario.large = large;
-        Mario.fire = fire;
+        this.large = large;
+        this.fire = fire;
 
-        newLarge = Mario.large;
-        newFire = Mario.fire;
+        newLarge = this.large;
+        newFire = this.fire;
         
         blink(true);
     }
@@ -303,16 +292,16 @@ public class Mario extends Sprite
             sliding = false;
         }
         
-        if (keys[KEY_SPEED] && canShoot && Mario.fire && world.fireballsOnScreen<2)
+        if (keys[KEY_SPEED] && canShoot && fire && world.fireballsOnScreen<2)
         {
             world.addSprite(new Fireball(world, x+facing*6, y-20, facing));
         }
         // Cheats:
-        if (GlobalOptions.PowerRestoration && keys[KEY_SPEED] && (!Mario.large || !Mario.fire))
+        if (world.powerRestoration && keys[KEY_SPEED] && (!large || !fire))
             setLarge(true, true);
         if (cheatKeys[KEY_LIFE_UP])
             this.lives++;
-        world.paused = GlobalOptions.pauseWorld;
+        world.paused = world.pauseWorld || cheatKeys[KEY_PAUSE];
         if (cheatKeys[KEY_WIN])
             win();
 //        if (keys[KEY_DUMP_CURRENT_WORLD])
@@ -343,7 +332,7 @@ public class Mario extends Sprite
         {
             for (int i = 0; i < 1; i++)
             {
-                world.addSprite(new Sparkle((int) (x + Math.random() * 4 - 2) + facing * 8, (int) (y + Math.random() * 4) - 24, (float) (Math.random() * 2 - 1), (float) Math.random() * 1, 0, 1, 5));
+                world.addSprite(new Sparkle(world, (int) (x + world.random.nextDouble() * 4 - 2) + facing * 8, (int) (y + world.random.nextDouble() * 4) - 24, (float) (world.random.nextDouble() * 2 - 1), (float) world.random.nextDouble() * 1, 0, 1, 5));
             }
             ya *= 0.5f;
         }
@@ -440,7 +429,7 @@ public class Mario extends Sprite
             {
                 for (int i = 0; i < 3; i++)
                 {
-                    world.addSprite(new Sparkle((int) (x + Math.random() * 8 - 4), (int) (y + Math.random() * 4), (float) (Math.random() * 2 - 1), (float) Math.random() * -1, 0, 1, 5));
+                    world.addSprite(new Sparkle(world, (int) (x + world.random.nextDouble() * 8 - 4), (int) (y + world.random.nextDouble() * 4), (float) (world.random.nextDouble() * 2 - 1), (float) world.random.nextDouble() * -1, 0, 1, 5));
                 }
             }
         }
@@ -561,11 +550,11 @@ public class Mario extends Sprite
 
         if (((Level.TILE_BEHAVIORS[block & 0xff]) & Level.BIT_PICKUPABLE) > 0)
         {
-            Mario.getCoin();
+            getCoin();
             world.level.setBlock(x, y, (byte) 0);
             for (int xx = 0; xx < 2; xx++)
                 for (int yy = 0; yy < 2; yy++)
-                    world.addSprite(new Sparkle(x * 16 + xx * 8 + (int) (Math.random() * 8), y * 16 + yy * 8 + (int) (Math.random() * 8), 0, 0, 0, 2, 5));
+                    world.addSprite(new Sparkle(world, x * 16 + xx * 8 + (int) (world.random.nextDouble() * 8), y * 16 + yy * 8 + (int) (world.random.nextDouble() * 8), 0, 0, 0, 2, 5));
         }
 
         if (blocking && ya < 0)
@@ -673,7 +662,7 @@ public class Mario extends Sprite
         }
         else
         {
-            Mario.getCoin();
+            getCoin();
         }
         ++gainedFlowers;
     }
@@ -690,7 +679,7 @@ public class Mario extends Sprite
         }
         else
         {
-            Mario.getCoin();
+            getCoin();
         }
         ++gainedMushrooms;        
     }
@@ -744,12 +733,12 @@ public class Mario extends Sprite
         }
     }
 
-    public static void get1Up()
+    public void get1Up()
     {
         lives++;
     }
     
-    public static void getCoin()
+    public void getCoin()
     {
         coins++;
         if (coins % 100 == 0)
@@ -43,6 +43,12 @@ public class Mushroom extends Sprite
         life = 0;
     }
 
+    @Override
+    protected void onCopy(LevelScene world)
+    {
+        this.world = world;
+    }
+
     public void collideCheck()
     {
         float xMarioD = world.mario.x - x;
@@ -1,14 +1,15 @@
 package ch.idsia.mario.engine.sprites;
 
 import ch.idsia.mario.engine.Art;
+import ch.idsia.mario.engine.LevelScene;
 
 public class Particle extends Sprite
 {
     public int life;
     
-    public Particle(int x, int y, float xa, float ya)
+    public Particle(LevelScene world, int x, int y, float xa, float ya)
     {
-        this(x, y, xa, ya, (int)(Math.random()*2), 0);
+        this(x, y, xa, ya, (int)(world.random.nextDouble()*2), 0);
     }
 
     public Particle(int x, int y, float xa, float ya, int xPic, int yPic)
@@ -31,7 +32,7 @@ public class Particle extends Sprite
 
     public void move()
     {
-        if (life--<0) Sprite.spriteContext.removeSprite(this);
+        if (life--<0) spriteContext.removeSprite(this);
         x+=xa;
         y+=ya;
         ya*=0.95f;
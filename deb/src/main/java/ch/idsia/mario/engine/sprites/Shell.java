@@ -45,6 +45,12 @@ public class Shell extends Sprite
         xPic = 4;
         ya = -5;
     }
+
+    @Override
+    protected void onCopy(LevelScene world)
+    {
+        this.world = world;
+    }
     
     public boolean fireballCollideCheck(Fireball fireball)
     {
@@ -128,7 +134,7 @@ public class Shell extends Sprite
                 deadTime = 1;
                 for (int i = 0; i < 8; i++)
                 {
-                    world.addSprite(new Sparkle((int) (x + Math.random() * 16 - 8) + 4, (int) (y - Math.random() * 8) + 4, (float) (Math.random() * 2 - 1), (float) Math.random() * -1, 0, 1, 5));
+                    world.addSprite(new Sparkle(world, (int) (x + world.random.nextDouble() * 16 - 8) + 4, (int) (y - world.random.nextDouble() * 8) + 4, (float) (world.random.nextDouble() * 2 - 1), (float) world.random.nextDouble() * -1, 0, 1, 5));
                 }
                 spriteContext.removeSprite(this);
             }
@@ -1,18 +1,19 @@
 package ch.idsia.mario.engine.sprites;
 
 import ch.idsia.mario.engine.Art;
+import ch.idsia.mario.engine.LevelScene;
 
 public class Sparkle extends Sprite
 {
     public int life;
     public int xPicStart;
     
-    public Sparkle(int x, int y, float xa, float ya)
+    public Sparkle(LevelScene world, int x, int y, float xa, float ya)
     {
-        this(x, y, xa, ya, (int)(Math.random()*2), 0, 5);
+        this(world, x, y, xa, ya, (int)(world.random.nextDouble()*2), 0, 5);
     }
 
-    public Sparkle(int x, int y, float xa, float ya, int xPic, int yPic, int timeSpan)
+    public Sparkle(LevelScene world, int x, int y, float xa, float ya, int xPic, int yPic, int timeSpan)
     {
         kind = KIND_SPARCLE;
         sheet = Art.particles;
@@ -28,7 +29,7 @@ public class Sparkle extends Sprite
         
         wPic = 8;
         hPic = 8;
-        life = 10+(int)(Math.random()*timeSpan);
+        life = 10+(int)(world.random.nextDouble()*timeSpan);
     }
 
     public void move()
@@ -38,7 +39,7 @@ public class Sparkle extends Sprite
         else
             xPic = xPicStart+(10-life)*4/10;
         
-        if (life--<0) Sprite.spriteContext.removeSprite(this);
+        if (life--<0) spriteContext.removeSprite(this);
         
         x+=xa;
         y+=ya;
@@ -1,11 +1,12 @@
 package ch.idsia.mario.engine.sprites;
 
 import ch.idsia.mario.engine.GlobalOptions;
+import ch.idsia.mario.engine.LevelScene;
 import ch.idsia.mario.engine.level.SpriteTemplate;
 
 import java.awt.*;
 
-public class Sprite
+public class Sprite implements Cloneable
 {
     public static final int KIND_NONE = 0;
     public static final int KIND_MARIO = -31;
@@ -30,7 +31,7 @@ public class Sprite
 
     public static final int KIND_UNDEF = -42;
 
-    public static SpriteContext spriteContext;
+    public SpriteContext spriteContext;
     public byte kind = KIND_UNDEF;
     
     public float xOld, yOld, x, y, xa, ya;
@@ -49,6 +50,39 @@ public class Sprite
 
     public SpriteTemplate spriteTemplate;
 
+    // slot of the sprite in its SpriteStore, -1 if it is in none; not part of
+    // the state of the sprite, which is why StateHash leaves it out
+    transient int storeSlot = -1;
+
+    /**
+     * copy this sprite into another scene, see LevelScene.copy. References to
+     * other sprites and to sprite templates still point into the old scene;
+     * the scene fixes them once all its sprites are copied.
+     * @param world Scene the copy belongs to
+     * @return Copy of this sprite, in no SpriteStore yet
+     */
+    public Sprite copy(LevelScene world)
+    {
+        Sprite copy;
+        try
+        {
+            copy = (Sprite) clone();
+        }
+        catch (CloneNotSupportedException e)
+        {
+            throw new IllegalStateException(e);
+        }
+        copy.spriteContext = world;
+        copy.storeSlot = -1;
+        copy.onCopy(world);
+        return copy;
+    }
+
+    // called on a new copy; sprites that keep their scene or arrays they change point them at the copy's own
+    protected void onCopy(LevelScene world)
+    {
+    }
+
     public void move()
     {
         x+=xa;
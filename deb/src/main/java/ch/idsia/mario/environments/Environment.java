@@ -24,6 +24,9 @@ public interface Environment
     // Chaning ZLevel during the game on-the-fly;
     // if your agent recieves too ambiguous observation, it might request for more precise one for the next step
 
+    // The observation arrays are computed once per tick and shared by all callers until the next tick:
+    // copy them to keep them and do not modify them. The methods taking a dst array fill it instead.
+
 
     public byte[][] getCompleteObservation();   // default: ZLevelScene = 1, ZLevelEnemies = 0
 
@@ -45,6 +48,17 @@ public interface Environment
     public byte[][] getLevelSceneObservationZ(int ZLevelScene);
     public byte[][] getEnemiesObservationZ(int ZLevelEnemies);
 
+    // fill dst, a 22x22 array, and return it
+    public byte[][] getMergedObservationZ(int ZLevelScene, int ZLevelEnemies, byte[][] dst);
+    public byte[][] getLevelSceneObservationZ(int ZLevelScene, byte[][] dst);
+    public byte[][] getEnemiesObservationZ(int ZLevelEnemies, byte[][] dst);
+    public byte[][] getCompleteObservation(byte[][] dst);
+
+    // fill dst, which has room for 2 floats, and return it
+    public float[] getMarioFloatPos(float[] dst);
+    // fill dst as far as it has room and return the number of floats there are
+    public int getEnemiesFloatPos(float[] dst);
+
     public int getKillsTotal();
     public int getKillsByFire();
     public int getKillsByStomp();
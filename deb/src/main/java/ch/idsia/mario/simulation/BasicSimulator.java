@@ -5,8 +5,9 @@ import com.mojang.mario.util.Logger;
 import ch.idsia.ai.agents.Agent;
 import ch.idsia.mario.engine.GlobalOptions;
 import ch.idsia.mario.engine.MarioComponent;
-import ch.idsia.mario.engine.sprites.Mario;
+import ch.idsia.mario.engine.MarioSimulation;
 import ch.idsia.tools.EvaluationInfo;
+import ch.idsia.tools.LOGGER;
 
 /**
  * Created by IntelliJ IDEA.
@@ -19,21 +20,43 @@ import ch.idsia.tools.EvaluationInfo;
 public class BasicSimulator implements Simulation
 {
     SimulationOptions simulationOptions = null;
+    // only used with visualization, the window is shared by the whole program
     private MarioComponent marioComponent;
+    // every simulator plays headless runs in its own simulation
+    private final MarioSimulation simulation = new MarioSimulation();
 
     public BasicSimulator(SimulationOptions simulationOptions)
     {
-        GlobalOptions.VisualizationOn = simulationOptions.isVisualization();
-        this.marioComponent = GlobalOptions.getMarioComponent();
         this.setSimulationOptions(simulationOptions);
     }
 
-    private MarioComponent prepareMarioComponent()
+    private MarioSimulation prepareSimulation()
     {
         Agent agent = simulationOptions.getAgent();
         agent.reset();
-        marioComponent.setAgent(agent);
-        return marioComponent;
+        marioComponent = null;
+        if (simulationOptions.isVisualization())
+        {
+            GlobalOptions.VisualizationOn = true;
+            marioComponent = GlobalOptions.getMarioComponent();
+        }
+        MarioSimulation sim = simulation;
+        if (marioComponent != null)
+        {
+            marioComponent.setAgent(agent);
+            sim = marioComponent.getSimulation();
+        }
+        else
+        {
+            sim.setAgent(agent);
+            sim.setTimerOn(simulationOptions.isTimer());
+            sim.setPowerRestoration(simulationOptions.isPowerRestoration());
+        }
+        sim.setMarioMode(simulationOptions.getMarioMode());
+        sim.setZLevelScene(simulationOptions.getZLevelMap());
+        sim.setZLevelEnemies(simulationOptions.getZLevelEnemies());
+        sim.setMetrics(simulationOptions.getMetrics());
+        return sim;
     }
 
     public void setSimulationOptions(SimulationOptions simulationOptions)
@@ -43,31 +66,36 @@ public class BasicSimulator implements Simulation
 
     public EvaluationInfo simulateOneLevel()
     {
-        System.out.println("Called simulateOneLevel");
-        Mario.resetStatic(simulationOptions.getMarioMode());        
-        prepareMarioComponent();
-        marioComponent.setZLevelScene(simulationOptions.getZLevelMap());
-        marioComponent.setZLevelEnemies(simulationOptions.getZLevelEnemies());
-        System.out.print("value of getLevel() ");
-        System.out.println(simulationOptions.getLevel()==null);
+        MarioSimulation sim = prepareSimulation();
         if (simulationOptions.getLevel() != null)
         {
-            System.out.println("Using given level ");
-            marioComponent.startLevel(simulationOptions.getLevel());
+            LOGGER.println("Using given level", LOGGER.VERBOSE_MODE.ALL);
+            if (marioComponent != null)
+                marioComponent.startLevel(simulationOptions.getLevel(), simulationOptions.getLevelRandSeed());
+            else
+                sim.startLevel(simulationOptions.getLevel(), simulationOptions.getLevelRandSeed());
         }
         else
         {
-            System.out.println("Creating level ");
-            marioComponent.startLevel(simulationOptions.getLevelRandSeed(), simulationOptions.getLevelDifficulty(), 
-                    simulationOptions.getLevelType(), simulationOptions.getLevelLength(),
-                    simulationOptions.getTimeLimit());
+            LOGGER.println("Creating level", LOGGER.VERBOSE_MODE.ALL);
+            if (marioComponent != null)
+                marioComponent.startLevel(simulationOptions.getLevelRandSeed(), simulationOptions.getLevelDifficulty(),
+                        simulationOptions.getLevelType(), simulationOptions.getLevelLength(),
+                        simulationOptions.getTimeLimit());
+            else
+                sim.startLevel(simulationOptions.getLevelRandSeed(), simulationOptions.getLevelDifficulty(),
+                        simulationOptions.getLevelType(), simulationOptions.getLevelLength(),
+                        simulationOptions.getTimeLimit());
         }
-        marioComponent.setPaused(simulationOptions.isPauseWorld());
-        marioComponent.setZLevelEnemies(simulationOptions.getZLevelEnemies());
-        marioComponent.setZLevelScene(simulationOptions.getZLevelMap());
-        marioComponent.setMarioInvulnerable(simulationOptions.isMarioInvulnerable());
-        return marioComponent.run1(simulationOptions.currentTrial++,
-                simulationOptions.getNumberOfTrials()
-        );
+        sim.setPaused(simulationOptions.isPauseWorld());
+        sim.setZLevelEnemies(simulationOptions.getZLevelEnemies());
+        sim.setZLevelScene(simulationOptions.getZLevelMap());
+        sim.setMarioInvulnerable(simulationOptions.isMarioInvulnerable());
+        if (marioComponent != null)
+            return marioComponent.run1(SimulationOptions.nextTrial(),
+                    simulationOptions.getNumberOfTrials()
+            );
+        SimulationOptions.nextTrial();
+        return sim.run();
     }
 }
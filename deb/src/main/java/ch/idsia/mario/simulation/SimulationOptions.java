@@ -2,6 +2,8 @@ package ch.idsia.mario.simulation;
 
 import ch.idsia.ai.agents.Agent;
 import ch.idsia.mario.engine.level.Level;
+import ch.idsia.tools.LOGGER;
+import ch.idsia.tools.SimulationMetrics;
 import ch.idsia.utils.ParameterContainer;
 
 /**
@@ -17,6 +19,7 @@ public class SimulationOptions extends ParameterContainer
 {
     protected Agent agent;
     protected Level level;
+    protected SimulationMetrics metrics;
 //    protected MarioComponent marioComponent = null;
 
     public static int currentTrial = 1;
@@ -37,10 +40,12 @@ public class SimulationOptions extends ParameterContainer
         ret.setLevelRandSeed(getLevelRandSeed());
         ret.setLevelType(getLevelType());
         ret.setLevel(getLevel());
+        ret.setMetrics(getMetrics());
 //        ret.setMarioComponent(marioComponent);
         ret.setVisualization(isVisualization());
         ret.setPauseWorld(isPauseWorld());
         ret.setPowerRestoration(isPowerRestoration());
+        ret.setTimer(isTimer());
         ret.setNumberOfTrials(getNumberOfTrials());
         ret.setMarioMode(getMarioMode());
         ret.setTimeLimit(getTimeLimit());
@@ -66,11 +71,20 @@ public class SimulationOptions extends ParameterContainer
     }
 
     public void setLevel(Level level) {
-        System.out.printf("called setLevel() in SimulationOptions");
-        System.out.println(level == null);
+        if (LOGGER.isLoggable(LOGGER.VERBOSE_MODE.ALL))
+            LOGGER.println("called setLevel() in SimulationOptions, level is null: " + (level == null), LOGGER.VERBOSE_MODE.ALL);
         this.level = level;
     }
 
+    // Metrics sink every simulation run with these options records into; null records nothing
+    public SimulationMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(SimulationMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     // TODO? LEVEL_TYPE enum?
     // LevelType
     public int getLevelType() {
@@ -122,6 +136,13 @@ public class SimulationOptions extends ParameterContainer
     public void setPowerRestoration(boolean powerRestoration) {
         setParameterValue("-pr", s(powerRestoration));    }
 
+    //Timer
+    public boolean isTimer() {
+        return b(getParameterValue("-t"));     }
+
+    public void setTimer(boolean timer) {
+        setParameterValue("-t", s(timer));    }
+
     //StopSimulationIfWin
     public Boolean isStopSimulationIfWin() {
         return b(getParameterValue("-ssiw"));     }
@@ -185,8 +206,17 @@ public class SimulationOptions extends ParameterContainer
 
     public void resetCurrentTrial()
     {
-        currentTrial = 1;
+        synchronized (SimulationOptions.class)
+        {
+            currentTrial = 1;
+        }
     }    
+
+    // the counter is shared by every simulation, which may run on several threads
+    public static synchronized int nextTrial()
+    {
+        return currentTrial++;
+    }
 //    public void setCurrentTrial(int curTrial) {
 //        setParameterValue("-not", s(curTrial));
 //    }
@@ -0,0 +1,90 @@
+package ch.idsia.scenarios;
+
+import ch.idsia.mario.engine.level.LevelGenerator;
+import ch.idsia.tools.Replay;
+import competition.cig.robinbaumgarten.AStarAgent;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Records A* runs as replays, or replays them to check that the engine still
+ * plays them out the same way and to measure how fast it ticks.
+ *
+ * record dir n [firstSeed] : records n runs on seeds firstSeed.. into dir
+ * verify dir               : replays every .replay file in dir
+ */
+public class ReplayRegression
+{
+    private static final int DIFFICULTY = 3;
+    private static final int LENGTH = 320;
+    // the scene counts its time limit in ticks
+    private static final int TIME_LIMIT = 200 * 15;
+    // a fixed budget makes A* plan the same way however busy the machine is
+    private static final int EXPANSION_BUDGET = 2000;
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length >= 3 && args[0].equals("record"))
+            record(new File(args[1]), Integer.parseInt(args[2]), args.length > 3 ? Integer.parseInt(args[3]) : 0);
+        else if (args.length == 2 && args[0].equals("verify"))
+            System.exit(verify(new File(args[1])) ? 0 : 1);
+        else
+            System.err.println("Usage: ReplayRegression record <dir> <n> [firstSeed] | verify <dir>");
+    }
+
+    public static void record(File dir, int n, int firstSeed) throws IOException
+    {
+        dir.mkdirs();
+        for (int i = 0; i < n; i++)
+        {
+            int seed = firstSeed + i;
+            Replay replay = Replay.record(new AStarAgent(EXPANSION_BUDGET, 1), seed, DIFFICULTY,
+                    i % 2 == 0 ? LevelGenerator.TYPE_OVERGROUND : LevelGenerator.TYPE_UNDERGROUND,
+                    LENGTH, TIME_LIMIT, 2);
+            File file = new File(dir, "astar-" + seed + ".replay");
+            try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+            {
+                replay.write(out);
+            }
+            System.out.println("Recorded " + file.getName() + ": " + replay);
+        }
+    }
+
+    public static boolean verify(File dir) throws IOException
+    {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".replay"));
+        if (files == null || files.length == 0)
+        {
+            System.err.println("No replays in " + dir);
+            return false;
+        }
+        Arrays.sort(files);
+        int failed = 0;
+        long ticks = 0;
+        long start = System.nanoTime();
+        for (File file : files)
+        {
+            Replay replay;
+            try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+            {
+                replay = Replay.read(in);
+            }
+            boolean ok = replay.verify();
+            ticks += replay.getTicks();
+            if (!ok)
+                failed++;
+            System.out.printf("%s %s: %d ticks, %.0f ticks/s%s%n", ok ? "PASS" : "FAIL", file.getName(),
+                    replay.getTicks(), replay.getLastTicksPerSecond(),
+                    ok ? "" : String.format(" (hash %x, expected %x)", replay.getLastReplayHash(), replay.getStateHash()));
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d of %d replays passed, %d ticks in %.2f s, %.0f ticks/s%n",
+                files.length - failed, files.length, ticks, seconds, ticks / seconds);
+        return failed == 0;
+    }
+}
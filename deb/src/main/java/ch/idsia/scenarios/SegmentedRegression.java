@@ -0,0 +1,103 @@
+package ch.idsia.scenarios;
+
+import ch.idsia.tools.ActionTrace;
+import ch.idsia.tools.EvaluationInfo;
+import com.mojang.mario.level.Level;
+import com.mojang.mario.level.LevelGenerator;
+import com.mojang.mario.level.SpriteTemplate;
+import com.mojang.mario.sprites.Enemy;
+import com.mojang.mario.util.SegmentedLevelTester;
+
+import java.util.Random;
+
+/**
+ * Checks that SegmentedLevelTester gives the same results after an edit as a
+ * fresh tester does. For every seed a level is generated and tested, then
+ * edited a few columns at a time and tested again after every edit, both by
+ * the tester that saw the earlier edits and by a new one.
+ *
+ * SegmentedRegression [width] [firstSeed] [seeds] [edits]
+ */
+public class SegmentedRegression
+{
+    private static final int HEIGHT = 15;
+    private static final int DIFFICULTY = 1;
+    // tiles edits put into a column: air, a block and ground
+    private static final byte[] TILES = {0, 16 + 1, 16 + 4, (byte) (9 * 16 + 1)};
+
+    public static void main(String[] args)
+    {
+        int width = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        int firstSeed = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        int seeds = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        int edits = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        System.exit(verify(width, firstSeed, seeds, edits) ? 0 : 1);
+    }
+
+    public static boolean verify(int width, int firstSeed, int seeds, int edits)
+    {
+        int tests = 0;
+        int failed = 0;
+        long ticksPlayed = 0;
+        long ticksFresh = 0;
+        for (int seed = firstSeed; seed < firstSeed + seeds; seed++)
+        {
+            Level level = LevelGenerator.createLevel(width, HEIGHT, seed, DIFFICULTY, LevelGenerator.TYPE_OVERGROUND);
+            SegmentedLevelTester tester = new SegmentedLevelTester();
+            tester.test(level);
+            Random random = new Random(seed);
+            for (int e = 0; e < edits; e++)
+            {
+                level = new Level(level);
+                edit(level, random);
+                EvaluationInfo got = tester.test(level);
+                ticksPlayed += tester.getTicksPlayed();
+                SegmentedLevelTester fresh = new SegmentedLevelTester();
+                EvaluationInfo want = fresh.test(level);
+                ticksFresh += fresh.getTicksPlayed();
+                tests++;
+                String gotSummary = summary(got);
+                String wantSummary = summary(want);
+                if (!gotSummary.equals(wantSummary))
+                {
+                    failed++;
+                    System.out.printf("FAIL seed %d edit %d%n  got  %s%n  want %s%n", seed, e, gotSummary, wantSummary);
+                }
+            }
+        }
+        System.out.printf("%d of %d tests matched a fresh run, %d ticks played instead of %d%n",
+                tests - failed, tests, ticksPlayed, ticksFresh);
+        return failed == 0;
+    }
+
+    // changes one to three columns next to each other, away from the start
+    private static void edit(Level level, Random random)
+    {
+        int columns = 1 + random.nextInt(3);
+        int x = 8 + random.nextInt(level.width - 16 - columns);
+        for (int c = x; c < x + columns; c++)
+        {
+            int y = 4 + random.nextInt(level.height - 5);
+            if (random.nextInt(4) == 0)
+                level.setSpriteTemplate(c, y, level.getSpriteTemplate(c, y) == null
+                        ? new SpriteTemplate(Enemy.ENEMY_GOOMBA, false) : null);
+            else
+                level.setBlock(c, y, TILES[random.nextInt(TILES.length)]);
+        }
+    }
+
+    private static String summary(EvaluationInfo info)
+    {
+        long hash = 0;
+        int frames = 0;
+        ActionTrace.Cursor cursor = info.actions.cursor();
+        while (cursor.next())
+        {
+            hash = hash * 31 + cursor.getFrame() * 7 + cursor.getKeys();
+            frames++;
+        }
+        return String.format("status %d, distance %.1f, time left %d, coins %d, kills %d, mode %d, %d action frames %x",
+                info.marioStatus, info.lengthOfLevelPassedPhys, info.timeLeft, info.numberOfGainedCoins,
+                info.killsTotal, info.marioMode, frames, hash);
+    }
+}
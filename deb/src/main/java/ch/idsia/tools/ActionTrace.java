@@ -1,25 +1,339 @@
 package ch.idsia.tools;
 
-public class ActionTrace {
-    private int frame;
-    private int[] keys;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * ActionTrace records the keys an agent pressed during a run.
+ *
+ * The keys of a frame are packed into one byte, bit i holding key i, and
+ * consecutive frames with the same keys are stored as one run, so a trace
+ * takes a few bytes per key change instead of an object per frame. Read it
+ * back through a Cursor, frame by frame, or run by run with getRunCount and
+ * the getRun methods.
+ *
+ * A trace can also stream its runs to a channel while it is recorded. Every
+ * run is written as a big-endian int first frame, int length and the key
+ * byte, and finish ends the trace with a run of length 0 whose first frame
+ * is the number of runs before it. Several traces can follow each other in
+ * one channel; read(ReadableByteChannel) reads them back one at a time.
+ */
+public class ActionTrace
+{
     public static final String[] KEYS = {"LEFT  ", "RIGHT ", " DOWN ", " JUMP ", " SPEED"};
 
-    public ActionTrace(int frame, int[] keys)
+    private static final int RUN_BYTES = 4 + 4 + 1;
+
+    // run i covers the frames firstFrames[i] to firstFrames[i] + lengths[i] - 1, all with runKeys[i]
+    private int[] firstFrames = new int[16];
+    private int[] lengths = new int[16];
+    private byte[] runKeys = new byte[16];
+    private int runs = 0;
+    private int frames = 0;
+
+    private final WritableByteChannel out;
+    private final ByteBuffer outBuffer;
+    private int writtenRuns = 0;
+    private IOException writeFailure = null;
+    private boolean finished = false;
+
+    public ActionTrace()
+    {
+        this(null);
+    }
+
+    /**
+     * Constructor.
+     * @param out Channel every finished run is written to, or null to only keep the trace in memory
+     */
+    public ActionTrace(WritableByteChannel out)
+    {
+        this.out = out;
+        this.outBuffer = out == null ? null : ByteBuffer.allocate(RUN_BYTES * 512);
+    }
+
+    /**
+     * pack the keys of one frame into a byte.
+     * @param action Keys, true for pressed
+     * @return Byte with bit i set if key i is pressed
+     */
+    public static byte pack(boolean[] action)
+    {
+        int keys = 0;
+        for (int i = 0; i < action.length && i < 8; i++)
+        {
+            if (action[i])
+                keys |= 1 << i;
+        }
+        return (byte) keys;
+    }
+
+    /**
+     * add the keys of a frame to the end of the trace.
+     * @param frame Tick the keys were pressed at
+     * @param action Keys, true for pressed
+     */
+    public void add(int frame, boolean[] action)
+    {
+        add(frame, pack(action));
+    }
+
+    /**
+     * add the keys of a frame to the end of the trace.
+     * @param frame Tick the keys were pressed at
+     * @param keys Keys as packed by pack
+     */
+    public void add(int frame, byte keys)
+    {
+        addRun(frame, 1, keys);
+    }
+
+    private void addRun(int frame, int length, byte keys)
+    {
+        if (finished)
+            throw new IllegalStateException("Cannot add to a finished ActionTrace");
+        frames += length;
+        int last = runs - 1;
+        if (last >= 0 && runKeys[last] == keys && firstFrames[last] + lengths[last] == frame)
+        {
+            lengths[last] += length;
+            return;
+        }
+        if (runs == lengths.length)
+        {
+            firstFrames = Arrays.copyOf(firstFrames, runs * 2);
+            lengths = Arrays.copyOf(lengths, runs * 2);
+            runKeys = Arrays.copyOf(runKeys, runs * 2);
+        }
+        firstFrames[runs] = frame;
+        lengths[runs] = length;
+        runKeys[runs] = keys;
+        runs++;
+        // every run but the one just started is complete now
+        if (out != null)
+            write(runs - 1);
+    }
+
+    /**
+     * addFrom adds the frames of another trace from a frame on to the end of
+     * this trace, to carry on a run the way another run went on.
+     * @param other Trace to take the frames from
+     * @param fromFrame First frame to take
+     */
+    public void addFrom(ActionTrace other, int fromFrame)
+    {
+        for (int i = 0; i < other.runs; i++)
+        {
+            int first = other.firstFrames[i];
+            int end = first + other.lengths[i];
+            if (end > fromFrame)
+            {
+                first = Math.max(first, fromFrame);
+                addRun(first, end - first, other.runKeys[i]);
+            }
+        }
+    }
+
+    /**
+     * copy the frames recorded so far into a new trace, which keeps them in
+     * memory only and can be added to.
+     * @return Copy of the trace
+     */
+    public ActionTrace copy()
+    {
+        ActionTrace copy = new ActionTrace();
+        copy.firstFrames = Arrays.copyOf(firstFrames, Math.max(runs, 16));
+        copy.lengths = Arrays.copyOf(lengths, copy.firstFrames.length);
+        copy.runKeys = Arrays.copyOf(runKeys, copy.firstFrames.length);
+        copy.runs = runs;
+        copy.frames = frames;
+        return copy;
+    }
+
+    /**
+     * copyBefore copies the frames before a frame into a new trace, which
+     * keeps them in memory only and can be added to.
+     * @param endFrame First frame not to copy
+     * @return Copy of the start of the trace
+     */
+    public ActionTrace copyBefore(int endFrame)
+    {
+        ActionTrace copy = new ActionTrace();
+        for (int i = 0; i < runs && firstFrames[i] < endFrame; i++)
+        {
+            copy.addRun(firstFrames[i], Math.min(lengths[i], endFrame - firstFrames[i]), runKeys[i]);
+        }
+        return copy;
+    }
+
+    /**
+     * finish writes the last run and the end of the trace to the channel, if
+     * there is one. Nothing can be added afterwards. The channel is not closed.
+     * @throws IOException if writing to the channel failed, now or while the
+     * trace was recorded; the runs in memory are complete all the same
+     */
+    public void finish() throws IOException
+    {
+        if (finished)
+            return;
+        finished = true;
+        if (out != null)
+        {
+            write(runs);
+            if (outBuffer.remaining() < RUN_BYTES)
+                flush();
+            outBuffer.putInt(runs);
+            outBuffer.putInt(0);
+            outBuffer.put((byte) 0);
+            flush();
+            if (writeFailure != null)
+                throw writeFailure;
+        }
+    }
+
+    // writes the runs up to, not including, end
+    private void write(int end)
     {
-        this.frame = frame;
-        this.keys = keys;
+        for (; writtenRuns < end; writtenRuns++)
+        {
+            if (outBuffer.remaining() < RUN_BYTES)
+                flush();
+            outBuffer.putInt(firstFrames[writtenRuns]);
+            outBuffer.putInt(lengths[writtenRuns]);
+            outBuffer.put(runKeys[writtenRuns]);
+        }
     }
 
-    public int getKey(int index)
+    // once a write has failed nothing more is written, as the channel would miss runs anyway
+    private void flush()
     {
-        return keys[index];
+        outBuffer.flip();
+        try
+        {
+            while (writeFailure == null && outBuffer.hasRemaining())
+                out.write(outBuffer);
+        }
+        catch (IOException e)
+        {
+            writeFailure = e;
+        }
+        outBuffer.clear();
     }
 
-    public int getFrame()
+    /**
+     * read the next trace written by a streaming ActionTrace. Nothing after
+     * the end of that trace is read from the channel.
+     * @param in Channel to read runs from
+     * @return Finished trace holding the runs read, or null if the channel
+     * ended before another trace
+     */
+    public static ActionTrace read(ReadableByteChannel in) throws IOException
     {
-        return frame;
+        ActionTrace trace = new ActionTrace();
+        ByteBuffer buffer = ByteBuffer.allocate(RUN_BYTES);
+        while (true)
+        {
+            buffer.clear();
+            while (buffer.hasRemaining())
+            {
+                if (in.read(buffer) < 0)
+                {
+                    if (trace.runs == 0 && buffer.position() == 0)
+                        return null;
+                    throw new IOException("ActionTrace ends in the middle of a trace");
+                }
+            }
+            buffer.flip();
+            int first = buffer.getInt();
+            int length = buffer.getInt();
+            byte keys = buffer.get();
+            if (length == 0)
+            {
+                if (first != trace.runs)
+                    throw new IOException("ActionTrace ends after " + trace.runs + " runs instead of " + first);
+                trace.finished = true;
+                return trace;
+            }
+            trace.addRun(first, length, keys);
+        }
     }
 
+    // number of frames recorded
+    public int size()
+    {
+        return frames;
+    }
 
+    public int getRunCount()
+    {
+        return runs;
+    }
+
+    public int getRunFirstFrame(int run)
+    {
+        return firstFrames[run];
+    }
+
+    public int getRunLength(int run)
+    {
+        return lengths[run];
+    }
+
+    public byte getRunKeys(int run)
+    {
+        return runKeys[run];
+    }
+
+    public Cursor cursor()
+    {
+        return new Cursor();
+    }
+
+    /**
+     * Cursor walks a trace frame by frame. It starts before the first frame;
+     * call next to move to a frame before reading it.
+     */
+    public class Cursor
+    {
+        private int run = 0;
+        private int offset = -1;
+
+        /**
+         * next moves to the next frame.
+         * @return false if there are no more frames
+         */
+        public boolean next()
+        {
+            if (run >= runs)
+                return false;
+            if (++offset < lengths[run])
+                return true;
+            offset = 0;
+            return ++run < runs;
+        }
+
+        public int getFrame()
+        {
+            return firstFrames[run] + offset;
+        }
+
+        public byte getKeys()
+        {
+            return runKeys[run];
+        }
+
+        // 1 if key index is pressed in the current frame, else 0
+        public int getKey(int index)
+        {
+            return (runKeys[run] >> index) & 1;
+        }
+
+        public boolean isPressed(int index)
+        {
+            return getKey(index) != 0;
+        }
+    }
 }
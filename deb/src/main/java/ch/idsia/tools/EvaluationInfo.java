@@ -4,7 +4,6 @@ import ch.idsia.mario.engine.sprites.Mario;
 
 import java.text.DecimalFormat;
 import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Created by IntelliJ IDEA.
@@ -13,7 +12,7 @@ import java.util.List;
  * Time: 12:44:51 AM
  * Package: .Tools
  */
-public class EvaluationInfo
+public class EvaluationInfo implements Cloneable
 {
     private static final int MagicNumberUndef = -42;
     public int levelType = MagicNumberUndef;
@@ -40,7 +39,7 @@ public class EvaluationInfo
     public int levelRandSeed = MagicNumberUndef;
     public int marioMode = MagicNumberUndef;
     public int killsTotal = MagicNumberUndef;
-    public List<ActionTrace> actions;
+    public ActionTrace actions;
 
     public double computeBasicFitness()
     {
@@ -81,6 +80,21 @@ public class EvaluationInfo
 
     private DecimalFormat df = new DecimalFormat("0.00");
 
+    // copy of all fields; the copy shares the action trace
+    public EvaluationInfo copy()
+    {
+        try
+        {
+            EvaluationInfo copy = (EvaluationInfo) super.clone();
+            copy.df = new DecimalFormat("0.00");
+            return copy;
+        }
+        catch (CloneNotSupportedException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
     public String toString()
     {
 
@@ -1,7 +1,9 @@
 package ch.idsia.tools;
 
 import ch.idsia.mario.engine.GlobalOptions;
+import ch.idsia.mario.engine.level.Level;
 import ch.idsia.mario.simulation.SimulationOptions;
+import ch.idsia.tools.tcp.TCP_MODE;
 
 import java.awt.*;
 
@@ -17,6 +19,21 @@ public class EvaluationOptions extends SimulationOptions
 {
     public EvaluationOptions() { super(); }
 
+    // copy that shares the agent but none of the settings, and has its own copy of the level,
+    // since playing a level changes it, so that copies can be changed, read and played on
+    // different threads at the same time. A MetricsRecorder is not thread safe either, so the
+    // copy gets its own empty one to merge back afterwards; any other sink is not copied.
+    public EvaluationOptions getEvaluationOptionsCopy()
+    {
+        EvaluationOptions ret = new EvaluationOptions();
+        ret.optionsHashMap.putAll(optionsHashMap);
+        ret.agent = agent;
+        ret.level = level == null ? null : new Level(level);
+        if (metrics instanceof MetricsRecorder)
+            ret.metrics = new MetricsRecorder(((MetricsRecorder) metrics).getCapacity());
+        return ret;
+    }
+
     public void setUpOptions(String[] args) {
         for (int i = 0; i < args.length - 1; i += 2)
             try
@@ -99,7 +116,16 @@ public class EvaluationOptions extends SimulationOptions
         return b(getParameterValue("-fastTCP"));
     }
 
-    public boolean isTimer() {
-        return b(getParameterValue("-t"));      }
+    public boolean isBinaryTCP()
+    {
+        return b(getParameterValue("-binaryTCP"));
+    }
+
+    public TCP_MODE getTcpMode()
+    {
+        if (isBinaryTCP())
+            return TCP_MODE.BINARY_TCP;
+        return isFastTCP() ? TCP_MODE.FAST_TCP : TCP_MODE.SIMPLE_TCP;
+    }
 
 }
@@ -32,7 +32,7 @@ public class Evaluator implements Runnable
     private void evaluateServerMode()
     {
         Server server = new Server(evaluationOptions.getServerAgentPort(), Environment.numberOfObservationElements, Environment.numberOfButtons);
-        evaluationOptions.setAgent(new ServerAgent(server, evaluationOptions.isFastTCP()));
+        evaluationOptions.setAgent(new ServerAgent(server, evaluationOptions.getTcpMode()));
 
         Simulation simulator = new BasicSimulator(evaluationOptions.getSimulationOptionsCopy());
         while (server.isRunning())
@@ -49,7 +49,7 @@ public class Evaluator implements Runnable
                 resetData = resetData.split("reset\\s*")[1];
                 evaluationOptions.setUpOptions(resetData.split("[\\s]+"));
                 //TODO: Fix this in more general way
-                ((ServerAgent)evaluationOptions.getAgent()).setFastTCP(evaluationOptions.isFastTCP());
+                ((ServerAgent)evaluationOptions.getAgent()).setTcpMode(evaluationOptions.getTcpMode());
                 init(evaluationOptions);
                 // Simulate One Level
                 EvaluationInfo evaluationInfo;
@@ -66,7 +66,8 @@ public class Evaluator implements Runnable
                 evaluationInfo.levelRandSeed = evaluationOptions.getLevelRandSeed();
                 evaluationSummary.add(evaluationInfo);
                 LOGGER.VERBOSE_MODE VM = (evaluationInfo.marioStatus == Mario.STATUS_WIN) ? LOGGER.VERBOSE_MODE.INFO : LOGGER.VERBOSE_MODE.ALL;
-                LOGGER.println("run  finished with result : " + evaluationInfo, VM);
+                if (LOGGER.isLoggable(VM))
+                    LOGGER.println("run  finished with result : " + evaluationInfo, VM);
 
                 String fileName = "";
                 if (!this.evaluationOptions.getMatlabFileName().equals(""))
@@ -125,7 +126,8 @@ public class Evaluator implements Runnable
             evaluationInfo.levelRandSeed = evaluationOptions.getLevelRandSeed();
             evaluationSummary.add(evaluationInfo);
             LOGGER.VERBOSE_MODE VM = (evaluationInfo.marioStatus == Mario.STATUS_WIN) ? LOGGER.VERBOSE_MODE.INFO : LOGGER.VERBOSE_MODE.ALL;
-            LOGGER.println("run  finished with result : " + evaluationInfo, VM);
+            if (LOGGER.isLoggable(VM))
+                LOGGER.println("run  finished with result : " + evaluationInfo, VM);
 //            continueCondition = !GlobalOptions.StopSimulationIfWin || !(evaluationInfo.marioStatus == Mario.STATUS_WIN);
 //        }
 //        while ((evaluationOptions.getNumberOfTrials() > i || evaluationOptions.getNumberOfTrials() == -1 ) && continueCondition);
@@ -218,8 +220,10 @@ public class Evaluator implements Runnable
 
     public void init(EvaluationOptions evaluationOptions)
     {
-        ToolsConfigurator.CreateMarioComponentFrame(
-                evaluationOptions);
+        // headless evaluations never touch the window
+        if (evaluationOptions.isVisualization())
+            ToolsConfigurator.CreateMarioComponentFrame(
+                    evaluationOptions);
         
         GlobalOptions.pauseWorld = evaluationOptions.isPauseWorld();
         this.evaluationOptions = evaluationOptions;
@@ -46,6 +46,15 @@ public class LOGGER
 
     private static String history = "console:\n";
 
+    /**
+     * isLoggable tells whether a record of level vm would be printed.
+     * Check it before building an expensive record string.
+     */
+    public static boolean isLoggable(VERBOSE_MODE vm)
+    {
+        return verbose_mode != VERBOSE_MODE.TOTAL_SILENCE && vm.compareTo(verbose_mode) >= 0;
+    }
+
     public static void println(String record, VERBOSE_MODE vm)
     {
         LOGGER.print(record + "\n", vm);
@@ -54,7 +63,7 @@ public class LOGGER
     private static DecimalFormat df = new DecimalFormat("000");
 
 
-    public static void print(String record, VERBOSE_MODE vm) {
+    public static synchronized void print(String record, VERBOSE_MODE vm) {
         try
         {
             // upperbounded by maximum size of the string : 6826363
@@ -0,0 +1,320 @@
+package ch.idsia.tools;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * MetricsRecorder keeps counters, histograms and the most recent ticks of
+ * the scenes it is plugged into.
+ *
+ * All storage is allocated up front: the last ticks go into fixed size
+ * ring buffers and tick times, sprite counts, collision checks and spawns
+ * into fixed histograms, so recording a tick only writes a few array
+ * slots. A recorder is not thread safe; give every simulation that runs on
+ * its own thread its own recorder, and merge them once the threads are done.
+ */
+public class MetricsRecorder implements SimulationMetrics
+{
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    // tick times are bucketed by their highest bit, so bucket b holds [2^(b-1), 2^b) ns
+    private static final int TIME_BUCKETS = 64;
+    // sprite counts get a bucket each, the last bucket holds everything above
+    private static final int SPRITE_BUCKETS = 128;
+    // collision checks are bucketed like tick times, bucket 0 holds ticks without any
+    private static final int COLLISION_BUCKETS = 32;
+    // spawns get a bucket each, the last bucket holds everything above
+    private static final int SPAWN_BUCKETS = 16;
+
+    private final long[] recentNanos;
+    private final int[] recentSprites;
+    private final int[] recentCollisionChecks;
+    private final int[] recentSpawns;
+    private int next = 0;
+
+    private final long[] timeHistogram = new long[TIME_BUCKETS];
+    private final long[] spriteHistogram = new long[SPRITE_BUCKETS];
+    private final long[] collisionHistogram = new long[COLLISION_BUCKETS];
+    private final long[] spawnHistogram = new long[SPAWN_BUCKETS];
+
+    private long ticks = 0;
+    private long levels = 0;
+    private long totalNanos = 0;
+    private long maxNanos = 0;
+    private long totalSprites = 0;
+    private int maxSprites = 0;
+    private long totalCollisionChecks = 0;
+    private long totalSpawns = 0;
+
+    private PrintStream dumpAtLevelEnd = null;
+
+    public MetricsRecorder()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor.
+     * @param capacity Number of recent ticks kept in the ring buffers, at least 1
+     */
+    public MetricsRecorder(int capacity)
+    {
+        if (capacity < 1)
+        {
+            throw new IllegalArgumentException("A MetricsRecorder needs room for at least one tick");
+        }
+        recentNanos = new long[capacity];
+        recentSprites = new int[capacity];
+        recentCollisionChecks = new int[capacity];
+        recentSpawns = new int[capacity];
+    }
+
+    /**
+     * setDumpAtLevelEnd makes the recorder dump itself every time a level finishes.
+     * @param out Stream to dump to, or null to only dump on demand
+     */
+    public void setDumpAtLevelEnd(PrintStream out)
+    {
+        this.dumpAtLevelEnd = out;
+    }
+
+    @Override
+    public void recordTick(long nanos, int sprites, int collisionChecks, int spawns)
+    {
+        recentNanos[next] = nanos;
+        recentSprites[next] = sprites;
+        recentCollisionChecks[next] = collisionChecks;
+        recentSpawns[next] = spawns;
+        if (++next == recentNanos.length)
+            next = 0;
+
+        timeHistogram[Math.min(TIME_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(Math.max(nanos, 0)))]++;
+        spriteHistogram[Math.min(SPRITE_BUCKETS - 1, sprites)]++;
+        collisionHistogram[Math.min(COLLISION_BUCKETS - 1, 32 - Integer.numberOfLeadingZeros(Math.max(collisionChecks, 0)))]++;
+        spawnHistogram[Math.min(SPAWN_BUCKETS - 1, Math.max(spawns, 0))]++;
+
+        ticks++;
+        totalNanos += nanos;
+        if (nanos > maxNanos)
+            maxNanos = nanos;
+        totalSprites += sprites;
+        if (sprites > maxSprites)
+            maxSprites = sprites;
+        totalCollisionChecks += collisionChecks;
+        totalSpawns += spawns;
+    }
+
+    @Override
+    public void levelFinished(EvaluationInfo info)
+    {
+        levels++;
+        if (dumpAtLevelEnd != null)
+            dump(dumpAtLevelEnd);
+    }
+
+    /**
+     * merge everything another recorder recorded into this one. The recent
+     * ticks of other are added after the recent ticks of this recorder.
+     * @param other Recorder to merge, which is left unchanged
+     */
+    public void merge(MetricsRecorder other)
+    {
+        int kept = (int) Math.min(other.ticks, other.getCapacity());
+        int start = other.next - kept;
+        if (start < 0)
+            start += other.getCapacity();
+        for (int i = 0; i < kept; i++)
+        {
+            int j = (start + i) % other.getCapacity();
+            recentNanos[next] = other.recentNanos[j];
+            recentSprites[next] = other.recentSprites[j];
+            recentCollisionChecks[next] = other.recentCollisionChecks[j];
+            recentSpawns[next] = other.recentSpawns[j];
+            if (++next == recentNanos.length)
+                next = 0;
+        }
+
+        addHistogram(timeHistogram, other.timeHistogram);
+        addHistogram(spriteHistogram, other.spriteHistogram);
+        addHistogram(collisionHistogram, other.collisionHistogram);
+        addHistogram(spawnHistogram, other.spawnHistogram);
+
+        ticks += other.ticks;
+        levels += other.levels;
+        totalNanos += other.totalNanos;
+        maxNanos = Math.max(maxNanos, other.maxNanos);
+        totalSprites += other.totalSprites;
+        maxSprites = Math.max(maxSprites, other.maxSprites);
+        totalCollisionChecks += other.totalCollisionChecks;
+        totalSpawns += other.totalSpawns;
+    }
+
+    private static void addHistogram(long[] histogram, long[] other)
+    {
+        for (int b = 0; b < histogram.length; b++)
+        {
+            histogram[b] += other[b];
+        }
+    }
+
+    /**
+     * getCapacity of the ring buffers.
+     * @return Number of recent ticks kept
+     */
+    public int getCapacity()
+    {
+        return recentNanos.length;
+    }
+
+    public long getTicks()
+    {
+        return ticks;
+    }
+
+    public long getLevels()
+    {
+        return levels;
+    }
+
+    public long getTotalCollisionChecks()
+    {
+        return totalCollisionChecks;
+    }
+
+    public long getTotalSpawns()
+    {
+        return totalSpawns;
+    }
+
+    public int getMaxSprites()
+    {
+        return maxSprites;
+    }
+
+    public double getMeanTickMicros()
+    {
+        return ticks == 0 ? 0 : totalNanos / 1e3 / ticks;
+    }
+
+    /**
+     * getTickMicrosPercentile estimates a percentile of the tick time from the
+     * histogram. The estimate is the upper edge of the bucket the percentile
+     * falls in, so it is at most twice the real value.
+     * @param p Percentile, in [0, 100]
+     * @return Estimated tick time in microseconds
+     */
+    public double getTickMicrosPercentile(double p)
+    {
+        if (ticks == 0)
+            return 0;
+        long rank = (long) Math.ceil(ticks * Math.min(Math.max(p, 0), 100) / 100.0);
+        long seen = 0;
+        for (int b = 0; b < TIME_BUCKETS; b++)
+        {
+            seen += timeHistogram[b];
+            if (seen >= rank && seen > 0)
+                return Math.min(maxNanos, (1L << b) - 1) / 1e3;
+        }
+        return maxNanos / 1e3;
+    }
+
+    /**
+     * recentTickNanos copies the times of the most recent ticks, oldest first.
+     * @param dst Array to copy into; at most dst.length ticks are copied
+     * @return Number of ticks copied
+     */
+    public int recentTickNanos(long[] dst)
+    {
+        int kept = (int) Math.min(ticks, recentNanos.length);
+        int n = Math.min(kept, dst.length);
+        int start = next - n;
+        if (start < 0)
+            start += recentNanos.length;
+        for (int i = 0; i < n; i++)
+        {
+            dst[i] = recentNanos[(start + i) % recentNanos.length];
+        }
+        return n;
+    }
+
+    public void reset()
+    {
+        next = 0;
+        Arrays.fill(timeHistogram, 0);
+        Arrays.fill(spriteHistogram, 0);
+        Arrays.fill(collisionHistogram, 0);
+        Arrays.fill(spawnHistogram, 0);
+        ticks = 0;
+        levels = 0;
+        totalNanos = 0;
+        maxNanos = 0;
+        totalSprites = 0;
+        maxSprites = 0;
+        totalCollisionChecks = 0;
+        totalSpawns = 0;
+    }
+
+    /**
+     * dump a summary of everything recorded so far.
+     * @param out Stream to print to
+     */
+    public void dump(PrintStream out)
+    {
+        out.println(toString());
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("levels: ").append(levels).append(", ticks: ").append(ticks).append('\n');
+        sb.append(String.format("tick time (us): mean %.1f, p50 <= %.1f, p99 <= %.1f, max %.1f%n",
+                getMeanTickMicros(), getTickMicrosPercentile(50), getTickMicrosPercentile(99), maxNanos / 1e3));
+        sb.append(String.format("sprites: mean %.1f, max %d%n",
+                ticks == 0 ? 0.0 : (double) totalSprites / ticks, maxSprites));
+        sb.append(String.format("collision checks: %d (%.1f per tick)%n",
+                totalCollisionChecks, ticks == 0 ? 0.0 : (double) totalCollisionChecks / ticks));
+        sb.append("spawns: ").append(totalSpawns).append('\n');
+        appendPowerOfTwoHistogram(sb, "tick time (ns)", timeHistogram);
+        appendLinearHistogram(sb, "sprites", spriteHistogram);
+        appendPowerOfTwoHistogram(sb, "collision checks", collisionHistogram);
+        appendLinearHistogram(sb, "spawns", spawnHistogram);
+        sb.setLength(sb.length() - 1);
+        return sb.toString();
+    }
+
+    // prints the non-empty buckets of a histogram where bucket b holds [2^(b-1), 2^b)
+    private static void appendPowerOfTwoHistogram(StringBuilder sb, String name, long[] histogram)
+    {
+        sb.append(name).append(" histogram:");
+        for (int b = 0; b < histogram.length; b++)
+        {
+            if (histogram[b] == 0)
+                continue;
+            if (b == 0)
+                sb.append(" 0: ");
+            else if (b == histogram.length - 1)
+                sb.append(" >=").append(1L << (b - 1)).append(": ");
+            else
+                sb.append(" [").append(1L << (b - 1)).append(',').append(1L << b).append("): ");
+            sb.append(histogram[b]);
+        }
+        sb.append('\n');
+    }
+
+    // prints the non-empty buckets of a histogram where bucket b holds b
+    private static void appendLinearHistogram(StringBuilder sb, String name, long[] histogram)
+    {
+        sb.append(name).append(" histogram:");
+        for (int b = 0; b < histogram.length; b++)
+        {
+            if (histogram[b] == 0)
+                continue;
+            sb.append(' ');
+            if (b == histogram.length - 1)
+                sb.append(">=");
+            sb.append(b).append(": ").append(histogram[b]);
+        }
+        sb.append('\n');
+    }
+}
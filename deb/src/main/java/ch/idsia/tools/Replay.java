@@ -0,0 +1,258 @@
+package ch.idsia.tools;
+
+import ch.idsia.ai.agents.Agent;
+import ch.idsia.mario.engine.MarioSimulation;
+import ch.idsia.mario.engine.sprites.Mario;
+import ch.idsia.mario.environments.Environment;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Replay is a recorded run: the options of a generated level, the keys an
+ * agent pressed on it and the state hash of the scene at the end.
+ *
+ * The simulation is deterministic, so playing the keys back on the same
+ * level must end in the same state. verify does that headless and as fast
+ * as it can, which makes recorded runs usable both as regression tests for
+ * the engine and as a repeatable benchmark of its tick rate.
+ *
+ * A replay is written as a big-endian header, see write, followed by its
+ * ActionTrace.
+ */
+public class Replay
+{
+    private static final int MAGIC = 0x4d52504c; // "MRPL"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 5 * 4 + 4 + 8;
+
+    private final long seed;
+    private final int difficulty;
+    private final int type;
+    private final int length;
+    private final int timeLimit;
+    private final int marioMode;
+    private final ActionTrace trace;
+    private final int ticks;
+    private final long stateHash;
+
+    private long lastReplayNanos = 0;
+    private long lastReplayHash = 0;
+
+    private Replay(long seed, int difficulty, int type, int length, int timeLimit, int marioMode,
+                   ActionTrace trace, int ticks, long stateHash)
+    {
+        this.seed = seed;
+        this.difficulty = difficulty;
+        this.type = type;
+        this.length = length;
+        this.timeLimit = timeLimit;
+        this.marioMode = marioMode;
+        this.trace = trace;
+        this.ticks = ticks;
+        this.stateHash = stateHash;
+    }
+
+    /**
+     * record a run of an agent on a generated level.
+     * @param agent Agent to play the level
+     * @param seed Seed of the level and of the random effects of the scene
+     * @param difficulty Difficulty of the level
+     * @param type Type of the level, see LevelGenerator
+     * @param length Length of the level in cells
+     * @param timeLimit Time limit in ticks
+     * @param marioMode 0 small, 1 large, 2 fire
+     * @return Replay of the run
+     */
+    public static Replay record(Agent agent, long seed, int difficulty, int type, int length, int timeLimit, int marioMode)
+    {
+        MarioSimulation simulation = new MarioSimulation();
+        simulation.setAgent(agent);
+        simulation.setMarioMode(marioMode);
+        agent.reset();
+        simulation.startLevel(seed, difficulty, type, length, timeLimit);
+        EvaluationInfo info = simulation.run();
+        return new Replay(seed, difficulty, type, length, timeLimit, marioMode,
+                info.actions, simulation.getLevelScene().getTick(), simulation.getStateHash());
+    }
+
+    /**
+     * replay the recorded keys on a new simulation of the level.
+     * @return State hash of the scene at the end of the replay
+     */
+    public long replay()
+    {
+        MarioSimulation simulation = new MarioSimulation();
+        TraceAgent agent = new TraceAgent(simulation, trace);
+        simulation.setAgent(agent);
+        simulation.setMarioMode(marioMode);
+
+        long start = System.nanoTime();
+        simulation.startLevel(seed, difficulty, type, length, timeLimit);
+        Mario mario = simulation.getLevelScene().mario;
+        // the same loop as MarioSimulation.run, but it ends with the trace
+        for (int i = trace.size(); i > 0 && simulation.isRunning(); i--)
+        {
+            simulation.tickScene();
+            simulation.act();
+            if (mario.getStatus() != Mario.STATUS_RUNNING)
+                simulation.stop();
+        }
+        lastReplayNanos = System.nanoTime() - start;
+
+        // a replay that ran out of step with the trace cannot end in the recorded state
+        lastReplayHash = agent.diverged || simulation.getLevelScene().getTick() != ticks
+                ? ~stateHash
+                : simulation.getStateHash();
+        return lastReplayHash;
+    }
+
+    /**
+     * verify replays the run and compares the final state with the recorded one.
+     * @return true if the replay ends in the recorded state
+     */
+    public boolean verify()
+    {
+        return replay() == stateHash;
+    }
+
+    public long getStateHash()
+    {
+        return stateHash;
+    }
+
+    public long getLastReplayHash()
+    {
+        return lastReplayHash;
+    }
+
+    public int getTicks()
+    {
+        return ticks;
+    }
+
+    public ActionTrace getTrace()
+    {
+        return trace;
+    }
+
+    // ticks per second of the last replay, including setting up the level
+    public double getLastTicksPerSecond()
+    {
+        return lastReplayNanos == 0 ? 0 : ticks / (lastReplayNanos / 1e9);
+    }
+
+    /**
+     * write the replay to a channel: magic, version, seed, difficulty, type,
+     * length, time limit, Mario mode, ticks and state hash, then the trace as
+     * a streaming ActionTrace writes it. The channel is not closed.
+     * @param out Channel to write to
+     */
+    public void write(WritableByteChannel out) throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION).putLong(seed);
+        header.putInt(difficulty).putInt(type).putInt(length).putInt(timeLimit).putInt(marioMode);
+        header.putInt(ticks).putLong(stateHash);
+        header.flip();
+        while (header.hasRemaining())
+            out.write(header);
+
+        ActionTrace copy = new ActionTrace(out);
+        for (int run = 0; run < trace.getRunCount(); run++)
+        {
+            int first = trace.getRunFirstFrame(run);
+            for (int frame = 0; frame < trace.getRunLength(run); frame++)
+                copy.add(first + frame, trace.getRunKeys(run));
+        }
+        copy.finish();
+    }
+
+    /**
+     * read a replay written by write.
+     * @param in Channel to read from; nothing after the replay is read
+     * @return Replay read
+     */
+    public static Replay read(ReadableByteChannel in) throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (header.hasRemaining())
+        {
+            if (in.read(header) < 0)
+                throw new IOException("Replay ends in its header");
+        }
+        header.flip();
+        if (header.getInt() != MAGIC)
+            throw new IOException("Not a replay");
+        int version = header.getInt();
+        if (version != VERSION)
+            throw new IOException("Unsupported replay version " + version);
+        long seed = header.getLong();
+        int difficulty = header.getInt();
+        int type = header.getInt();
+        int length = header.getInt();
+        int timeLimit = header.getInt();
+        int marioMode = header.getInt();
+        int ticks = header.getInt();
+        long stateHash = header.getLong();
+        ActionTrace trace = ActionTrace.read(in);
+        if (trace == null)
+            throw new IOException("Replay ends before its trace");
+        return new Replay(seed, difficulty, type, length, timeLimit, marioMode, trace, ticks, stateHash);
+    }
+
+    public String toString()
+    {
+        return "seed " + seed + ", difficulty " + difficulty + ", type " + type + ", length " + length
+                + ", " + ticks + " ticks, " + trace.getRunCount() + " runs";
+    }
+
+    // plays back a trace, noting when the scene is not at the tick the keys were recorded at
+    private static class TraceAgent implements Agent
+    {
+        private final MarioSimulation simulation;
+        private final ActionTrace.Cursor cursor;
+        private final boolean[] action = new boolean[Environment.numberOfButtons];
+        private boolean diverged = false;
+
+        TraceAgent(MarioSimulation simulation, ActionTrace trace)
+        {
+            this.simulation = simulation;
+            this.cursor = trace.cursor();
+        }
+
+        public void reset()
+        {
+        }
+
+        public boolean[] getAction(Environment observation)
+        {
+            if (!cursor.next())
+            {
+                diverged = true;
+                return null;
+            }
+            if (cursor.getFrame() != simulation.getLevelScene().getTick())
+                diverged = true;
+            for (int i = 0; i < action.length; i++)
+                action[i] = cursor.isPressed(i);
+            return action;
+        }
+
+        public AGENT_TYPE getType()
+        {
+            return AGENT_TYPE.AI;
+        }
+
+        public String getName()
+        {
+            return "Replay";
+        }
+
+        public void setName(String name)
+        {
+        }
+    }
+}
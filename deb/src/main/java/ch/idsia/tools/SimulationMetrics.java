@@ -0,0 +1,26 @@
+package ch.idsia.tools;
+
+/**
+ * SimulationMetrics receives measurements from a running LevelScene.
+ *
+ * A scene without metrics measures nothing, so plugging in a sink is the
+ * only thing that costs time. recordTick is called once per tick on the
+ * thread running the scene and should not allocate or block.
+ */
+public interface SimulationMetrics
+{
+    /**
+     * recordTick is called at the end of every tick of the scene.
+     * @param nanos Time the tick took
+     * @param sprites Number of sprites in the scene after the tick
+     * @param collisionChecks Number of sprite collision checks done during the tick
+     * @param spawns Number of enemies and bullet bills spawned during the tick
+     */
+    void recordTick(long nanos, int sprites, int collisionChecks, int spawns);
+
+    /**
+     * levelFinished is called when a simulation has played its level to the end.
+     * @param info EvaluationInfo of the run
+     */
+    void levelFinished(EvaluationInfo info);
+}
@@ -2,8 +2,12 @@ package ch.idsia.tools.tcp;
 
 import java.io.*;
 import java.net.BindException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.util.List;
 import java.util.Random;
 
@@ -37,6 +41,9 @@ public class Server
     PrintWriter out = null;
     ServerSocket serverSocket = null;
     private Socket socket = null;
+    // binary observation frames are written straight to the channel, which is safe as out is
+    // flushed after every message; everything the client sends is read through in
+    private SocketChannel channel = null;
 
     public Server(int port, int requiredSentDataSize, int requiredReceiveDataSize)
     {
@@ -51,17 +58,21 @@ public class Server
         try
         {
             System.out.println("Server: Binding Server to listern port " + port);
-            serverSocket = new ServerSocket(this.port);
+            ServerSocketChannel serverChannel = ServerSocketChannel.open();
+            serverSocket = serverChannel.socket();
+            serverSocket.bind(new InetSocketAddress(this.port));
             running= true;
             System.out.println ("Server: Waiting for a client to connect on port " + this.port);
-            socket = serverSocket.accept ();
+            channel = serverChannel.accept ();
+            socket = channel.socket();
+            socket.setTcpNoDelay(true);
             System.out.println ("Server: We have a connection from " + socket.getInetAddress ());
 
             out = new PrintWriter( new OutputStreamWriter(socket.getOutputStream(), "UTF-8") );
 
 //            out = new PrintWriter(socket.getOutputStream (), "UTF-8");
             this.send("Server: Hi! Welcome.");
-            in = new BufferedReader (new InputStreamReader(socket.getInputStream ()));
+            in = new BufferedReader (new InputStreamReader(socket.getInputStream (), "UTF-8"));
             final String greetingMessage = in.readLine();
             this.setClientName(greetingMessage);
             System.out.println(greetingMessage);
@@ -141,6 +152,65 @@ public class Server
         return STATUS.SUCCEED;
     }
 
+    /**
+     * Sends the bytes between position and limit of frame, leaving its position at the limit.
+     */
+    public STATUS sendSafe(ByteBuffer frame)
+    {
+        try
+        {
+            while (frame.hasRemaining())
+                channel.write(frame);
+            return STATUS.SUCCEED;
+        }
+        catch (IOException e)
+        {
+            System.err.println("Server.sendSafe() >> Error detected while sending: " + e.getMessage());
+            restartServer();
+            return STATUS.ERROR_SENDING;
+        }
+    }
+
+    /**
+     * Reads a binary action of dst.length bytes, each 0 for released and 1 for pressed.
+     * The bytes are read through the same reader as text, which decodes them one for one.
+     * If the client sends a line starting with "reset" instead, the line is kept for the next recvUnSafe.
+     * @return false if a reset was read or no valid action could be read
+     */
+    public boolean recvAction(boolean[] dst)
+    {
+        try
+        {
+            for (int i = 0; i < dst.length; ++i)
+            {
+                int c = in.read();
+                if (c < 0)
+                {
+                    System.err.println("Server.recvAction() >> Client cancelled connection");
+                    return false;
+                }
+                if (i == 0 && c == 'r')
+                {
+                    messageCache = 'r' + recv();
+                    return false;
+                }
+                if (c != 0 && c != 1)
+                {
+                    System.err.println("Server.recvAction() >> Button byte " + c + " is neither 0 nor 1");
+                    restartServer();
+                    return false;
+                }
+                dst[i] = c == 1;
+            }
+            return true;
+        }
+        catch (IOException e)
+        {
+            System.err.println("Server.recvAction() >> I/O exception. Cause: " + e.getCause());
+            return false;
+        }
+    }
+
     private String recv()
     {
         String ret = null;
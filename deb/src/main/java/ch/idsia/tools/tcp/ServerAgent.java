@@ -6,6 +6,8 @@ import ch.idsia.mario.environments.Environment;
 import ch.idsia.tools.EvaluationInfo;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 /**
  * Created by IntelliJ IDEA.
@@ -21,6 +23,15 @@ public class ServerAgent extends BasicAIAgent implements Agent
     private int port;
     private TCP_MODE tcpMode = TCP_MODE.SIMPLE_TCP;
 
+    // BINARY_TCP: observation frames are built in and sent from this buffer, from the observation
+    // and positions filled into the arrays below, and actions are read into binaryAction; all of
+    // them are reused every tick
+    private ByteBuffer observationFrame = null;
+    private final byte[][] binaryObservation = new byte[Environment.HalfObsWidth * 2][Environment.HalfObsHeight * 2];
+    private final float[] binaryMarioPos = new float[2];
+    private float[] binaryEnemiesPos = new float[3 * 16];
+    private final boolean[] binaryAction = new boolean[Environment.numberOfButtons];
+
     public ServerAgent(int port, boolean enable)
     {
         super("ServerAgent");
@@ -32,10 +43,15 @@ public class ServerAgent extends BasicAIAgent implements Agent
     }
 
     public ServerAgent(Server server, boolean isFastTCP)
+    {
+        this(server, (isFastTCP) ? TCP_MODE.FAST_TCP : TCP_MODE.SIMPLE_TCP);
+    }
+
+    public ServerAgent(Server server, TCP_MODE tcpMode)
     {
         super("ServerAgent");
         this.server = server;
-        this.tcpMode = (isFastTCP) ? TCP_MODE.FAST_TCP : TCP_MODE.SIMPLE_TCP;
+        this.tcpMode = tcpMode;
     }
 
     public String getName()
@@ -48,6 +64,11 @@ public class ServerAgent extends BasicAIAgent implements Agent
         this.tcpMode = (isFastTCP) ? TCP_MODE.FAST_TCP : TCP_MODE.SIMPLE_TCP;
     }
 
+    public void setTcpMode(TCP_MODE tcpMode)
+    {
+        this.tcpMode = tcpMode;
+    }
+
     // A tiny bit of singletone-like concept. Server is created ones for each egent. Basically we are not going
     // To create more than one ServerAgent at a run, but this flexibility allows to add this feature with certain ease.
     private void createServer(int port) {
@@ -103,6 +124,55 @@ public class ServerAgent extends BasicAIAgent implements Agent
         {
             this.sendBitmapObservation(observation);
         }
+        else if (this.tcpMode == TCP_MODE.BINARY_TCP)
+        {
+            this.sendBinaryObservation(observation);
+        }
+    }
+
+    // Frame layout, little-endian:
+    //   int32  number of bytes following this field
+    //   byte   'B'
+    //   byte   flags: bit 0 mayMarioJump, bit 1 isMarioOnGround
+    //   int16  rows, int16 columns of the merged observation
+    //   int16  number of enemy floats
+    //   byte   merged observation, rows * columns cells, row by row
+    //   float  Mario x, Mario y
+    //   float  enemy floats
+    // The client answers with Environment.numberOfButtons bytes, 0 for released and 1 for pressed,
+    // or with a text line starting with "reset"; as its first byte is 'r', the two cannot be confused.
+    private void sendBinaryObservation(Environment observation)
+    {
+        byte[][] mergedObs = observation.getCompleteObservation(binaryObservation);
+        observation.getMarioFloatPos(binaryMarioPos);
+        int enemyFloats = observation.getEnemiesFloatPos(binaryEnemiesPos);
+        if (enemyFloats > binaryEnemiesPos.length)
+        {
+            binaryEnemiesPos = new float[enemyFloats * 2];
+            observation.getEnemiesFloatPos(binaryEnemiesPos);
+        }
+        int rows = mergedObs.length;
+        int columns = rows == 0 ? 0 : mergedObs[0].length;
+        int size = 4 + 1 + 1 + 2 + 2 + 2 + rows * columns + 4 * 2 + 4 * enemyFloats;
+
+        if (observationFrame == null || observationFrame.capacity() < size)
+            observationFrame = ByteBuffer.allocateDirect(Math.max(size, 1024)).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer frame = observationFrame;
+        frame.clear();
+        frame.putInt(size - 4);
+        frame.put((byte) 'B');
+        frame.put((byte) ((observation.mayMarioJump() ? 1 : 0) | (observation.isMarioOnGround() ? 2 : 0)));
+        frame.putShort((short) rows);
+        frame.putShort((short) columns);
+        frame.putShort((short) enemyFloats);
+        for (byte[] row : mergedObs)
+            frame.put(row, 0, columns);
+        frame.putFloat(binaryMarioPos[0]);
+        frame.putFloat(binaryMarioPos[1]);
+        for (int i = 0; i < enemyFloats; ++i)
+            frame.putFloat(binaryEnemiesPos[i]);
+        frame.flip();
+        server.sendSafe(frame);
     }
 
     private void sendBitmapObservation(Environment observation)
@@ -147,8 +217,16 @@ public class ServerAgent extends BasicAIAgent implements Agent
         server.sendSafe(fitnessStr);
     }
 
+    private boolean[] receiveBinaryAction()
+    {
+        // on a reset the server keeps the line for the Evaluator
+        return server.recvAction(binaryAction) ? binaryAction : null;
+    }
+
     private boolean[] receiveAction() throws IOException, NullPointerException
     {
+        if (this.tcpMode == TCP_MODE.BINARY_TCP)
+            return receiveBinaryAction();
         String data = server.recvSafe();
         if (data == null || data.startsWith("reset"))
             return null;
@@ -9,5 +9,7 @@ package ch.idsia.tools.tcp;
  */
 public enum TCP_MODE {
     SIMPLE_TCP,
-    FAST_TCP
+    FAST_TCP,
+    // fixed layout little-endian frames, see ServerAgent.sendBinaryObservation
+    BINARY_TCP
 }
@@ -0,0 +1,58 @@
+package ch.idsia.utils;
+
+import java.util.Random;
+
+/**
+ * CopyableRandom draws exactly the numbers java.util.Random draws for the
+ * same seed, but its state can be copied and compared, so a copy of a scene
+ * goes on drawing what the scene would have drawn.
+ *
+ * The spare value nextGaussian keeps is not part of the copied state.
+ */
+public class CopyableRandom extends Random
+{
+    private static final long serialVersionUID = 1L;
+
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    // set by setSeed, which Random calls before the fields are initialized
+    private long state;
+
+    public CopyableRandom()
+    {
+        super();
+    }
+
+    public CopyableRandom(long seed)
+    {
+        super(seed);
+    }
+
+    @Override
+    public synchronized void setSeed(long seed)
+    {
+        state = (seed ^ MULTIPLIER) & MASK;
+        super.setSeed(seed);
+    }
+
+    @Override
+    protected int next(int bits)
+    {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+
+    // continue from where other is
+    public void copyFrom(CopyableRandom other)
+    {
+        state = other.state;
+    }
+
+    // true if this and other draw the same numbers from now on
+    public boolean sameState(CopyableRandom other)
+    {
+        return state == other.state;
+    }
+}
@@ -27,6 +27,7 @@ public class ParameterContainer
         if (allowed == null)
             allowed = new String[]{
                     "-ag",
+                    "-binaryTCP",
 //            "-agentName",
 //            "-attemptsNumber",
 //            "-e",
@@ -180,6 +181,7 @@ public class ParameterContainer
             defaultOptionsHashMap = new HashMap<String, String>();
 //            new HumanKeyboardAgent();
             defaultOptionsHashMap.put("-ag","HumanKeyboardAgent"); //defaultOptionsHashMap.put("-agentName","NoAgent");
+            defaultOptionsHashMap.put("-binaryTCP","off"); //
             defaultOptionsHashMap.put("-echo","off"); //defaultOptionsHashMap.put("-echo","off");
             defaultOptionsHashMap.put("-ewf","on"); //defaultOptionsHashMap.put("-exitWhenFinished","off");
             defaultOptionsHashMap.put("-fastTCP","off"); //
@@ -0,0 +1,112 @@
+package ch.idsia.utils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * StateHash hashes the primitive state of an object by reflection: its class
+ * and every field of a primitive type or a primitive array, declared by the
+ * class or a superclass, that is neither static nor transient. References to
+ * other objects are left out, whoever hashes a graph of objects follows them.
+ *
+ * Two objects of the same class with equal fields get the same hash, so
+ * comparing hashes tells, barring a collision, whether two copies of a
+ * simulation are still in the same state.
+ */
+public final class StateHash
+{
+    private static final ClassValue<Field[]> FIELDS = new ClassValue<Field[]>()
+    {
+        @Override
+        protected Field[] computeValue(Class<?> type)
+        {
+            List<Field> fields = new ArrayList<Field>();
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass())
+            {
+                for (Field field : c.getDeclaredFields())
+                {
+                    int modifiers = field.getModifiers();
+                    Class<?> fieldType = field.getType();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers))
+                        continue;
+                    if (fieldType.isPrimitive()
+                            || (fieldType.isArray() && fieldType.getComponentType().isPrimitive()))
+                    {
+                        field.setAccessible(true);
+                        fields.add(field);
+                    }
+                }
+            }
+            return fields.toArray(new Field[0]);
+        }
+    };
+
+    private StateHash()
+    {
+    }
+
+    /**
+     * of hashes the primitive fields of an object.
+     * @param o Object to hash, or null
+     * @return Hash of the class and primitive fields of o
+     */
+    public static long of(Object o)
+    {
+        if (o == null)
+            return 0;
+        long h = o.getClass().getName().hashCode();
+        try
+        {
+            for (Field field : FIELDS.get(o.getClass()))
+                h = h * 31 + hashField(field, o);
+        }
+        catch (IllegalAccessException e)
+        {
+            throw new IllegalStateException("Cannot read the fields of " + o.getClass().getName(), e);
+        }
+        return h;
+    }
+
+    private static long hashField(Field field, Object o) throws IllegalAccessException
+    {
+        Class<?> type = field.getType();
+        if (type == int.class)
+            return field.getInt(o);
+        if (type == float.class)
+            return Float.floatToIntBits(field.getFloat(o));
+        if (type == boolean.class)
+            return field.getBoolean(o) ? 1231 : 1237;
+        if (type == long.class)
+            return field.getLong(o);
+        if (type == double.class)
+            return Double.doubleToLongBits(field.getDouble(o));
+        if (type == byte.class)
+            return field.getByte(o);
+        if (type == short.class)
+            return field.getShort(o);
+        if (type == char.class)
+            return field.getChar(o);
+
+        Object array = field.get(o);
+        if (array == null)
+            return 0;
+        if (array instanceof boolean[])
+            return Arrays.hashCode((boolean[]) array);
+        if (array instanceof int[])
+            return Arrays.hashCode((int[]) array);
+        if (array instanceof float[])
+            return Arrays.hashCode((float[]) array);
+        if (array instanceof byte[])
+            return Arrays.hashCode((byte[]) array);
+        if (array instanceof long[])
+            return Arrays.hashCode((long[]) array);
+        if (array instanceof double[])
+            return Arrays.hashCode((double[]) array);
+        if (array instanceof short[])
+            return Arrays.hashCode((short[]) array);
+        return Arrays.hashCode((char[]) array);
+    }
+}
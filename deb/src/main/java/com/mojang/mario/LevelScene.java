@@ -15,7 +15,7 @@ import com.mojang.mario.level.*;
 
 public class LevelScene extends Scene implements SpriteContext
 {
-    private List<Sprite> sprites = new ArrayList<Sprite>();
+    private SpriteStore sprites = new SpriteStore();
     private List<Sprite> spritesToAdd = new ArrayList<Sprite>();
     private List<Sprite> spritesToRemove = new ArrayList<Sprite>();
 
@@ -417,7 +417,7 @@ public class LevelScene extends Scene implements SpriteContext
             fireballsToCheck.clear();
         }
 
-        sprites.addAll(0, spritesToAdd);
+        sprites.addAllFirst(spritesToAdd);
         sprites.removeAll(spritesToRemove);
         spritesToAdd.clear();
         spritesToRemove.clear();
@@ -3,17 +3,28 @@ package com.mojang.mario.level;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ExecutionException;
 
 import com.mojang.mario.util.Logger;
 
 /**
  * ChunkLibrary manages chunks internally and provides
  * an application-wide point of access for them.
+ *
+ * The library is stored as a single ChunkPack (chunks.pack) in the program
+ * directory. Chunks of a pack are only decoded when first accessed. The old
+ * layout of one folder per chunk under chunks/ can still be imported and
+ * exported, and is loaded when there is no pack yet.
  */
 public class ChunkLibrary {
     
@@ -25,6 +36,7 @@ public class ChunkLibrary {
 
     private static final String CHUNK_TAG_FILE_NAME = "tags.txt";
     private static final String CHUNK_PARENT_DIR_NAME = "chunks";
+    private static final String CHUNK_PACK_FILE_NAME = "chunks.pack";
     private static ChunkLibrary ref;
 
     private ChunkLibrary(File programDirectory)
@@ -32,7 +44,8 @@ public class ChunkLibrary {
         this.programDirectory = programDirectory;
         chunks = new ArrayList<>();
         lfListeners = new ArrayList<>();
-        tags = new HashMap<>();
+        // chunks of a pack fill in their tags when first accessed, possibly from several threads
+        tags = new ConcurrentHashMap<>();
     }
 
     /**
@@ -76,21 +89,8 @@ public class ChunkLibrary {
     {
         if (ref != null)
         {
-            int i = ref.chunks.indexOf(chunk);
             ref.chunks.remove(chunk);
             ref.tags.remove(chunk);
-
-            File chunksDirectory = new File(ref.programDirectory.getPath() + File.separatorChar + CHUNK_PARENT_DIR_NAME);
-            File levelDirectory = new File(String.format("%s%s%03d", chunksDirectory, File.separator, i));
-            File[] contents = levelDirectory.listFiles();
-            if (contents != null)
-            {
-                for (File file : contents)
-                {
-                    file.delete();
-                }
-                levelDirectory.delete();
-            }
         }
         else
         {
@@ -191,16 +191,53 @@ public class ChunkLibrary {
     }
 
     /**
-     * saveChunks in the panel to the chunks directory in program directory.
+     * getProgramDirectory the library was initialized with.
+     * @return Main program directory, or null if ChunkLibrary has not been initialized.
+     */
+    public static File getProgramDirectory()
+    {
+        if (ref != null)
+            return ref.programDirectory;
+        else
+            return null;
+    }
+
+    /**
+     * saveChunks in the library to the chunk pack in program directory.
+     * Every chunk is decoded first, since the pack they are read from is
+     * replaced.
+     * @throws IOException If the pack can't be written. The old pack is left as it was.
+     * @throws IllegalStateException if ChunkLibrary.init() has not been called.
+     */
+    public static void saveChunks() throws IOException
+    {
+        if (ref == null) 
+        {
+            throw new IllegalStateException("ChunkLibrary has not been intialized");
+        }
+        List<Level> chunks = new ArrayList<>(ref.chunks);
+        ref.chunks = chunks;
+        List<List<String>> chunkTags = new ArrayList<>(chunks.size());
+        for (Level chunk : chunks)
+        {
+            chunk.xExit = chunk.yExit = -1;
+            chunkTags.add(ref.tags.get(chunk));
+        }
+        ChunkPack.write(packFile(), chunks, chunkTags);
+    }
+
+    /**
+     * exportChunks in the library to a directory, one folder per chunk, in
+     * the format read by importChunks.
+     * @param chunksDirectory Directory to export to. Created if needed.
      * @throws IllegalStateException if ChunkLibrary.init() has not been called.
      */
-    public static void saveChunks()
+    public static void exportChunks(File chunksDirectory)
     {
         if (ref == null) 
         {
             throw new IllegalStateException("ChunkLibrary has not been intialized");
         }
-        File chunksDirectory = new File(ref.programDirectory.getPath() + File.separatorChar + CHUNK_PARENT_DIR_NAME);
         chunksDirectory.mkdirs();
 
         int n = ref.chunks.size();
@@ -261,7 +298,8 @@ public class ChunkLibrary {
     }
 
     /**
-     * loadChunks in the panel to the chunks directory in program directory.
+     * loadChunks from the chunk pack in program directory, or from the
+     * chunks directory if there is no pack yet.
      * @throws IllegalStateException if ChunkLibrary.init() has not been called.
      */
     public static void loadChunks()
@@ -270,13 +308,14 @@ public class ChunkLibrary {
         {
             throw new IllegalStateException("ChunkLibrary has not been intialized");
         }
-        if (Runtime.getRuntime().availableProcessors() > 1) 
+        File pack = packFile();
+        if (pack.exists())
         {
-            loadChunksThreaded();
-        } 
-        else 
+            loadPack(pack);
+        }
+        else
         {
-            loadChunksNoThreading();
+            importChunks(new File(ref.programDirectory.getPath() + File.separatorChar + CHUNK_PARENT_DIR_NAME));
         }
         // int i =11;
         for (LoadingFinishedListener lf : ref.lfListeners)
@@ -286,12 +325,53 @@ public class ChunkLibrary {
         }
     }
 
-    public static void loadChunksNoThreading()
+    /**
+     * importChunks from a directory holding one folder per chunk, as written
+     * by exportChunks. The chunks are added to the library.
+     * @param chunksDirectory Directory to import from.
+     * @throws IllegalStateException if ChunkLibrary.init() has not been called.
+     */
+    public static void importChunks(File chunksDirectory)
+    {
+        if (ref == null) 
+        {
+            throw new IllegalStateException("ChunkLibrary has not been intialized");
+        }
+        if (Runtime.getRuntime().availableProcessors() > 1) 
+        {
+            loadChunksThreaded(chunksDirectory);
+        } 
+        else 
+        {
+            loadChunksNoThreading(chunksDirectory);
+        }
+    }
+
+    private static void loadPack(File packFile)
     {
         long start = System.currentTimeMillis();
+        try {
+            ChunkPack pack = ChunkPack.open(packFile);
+            PackedChunks packed = new PackedChunks(pack);
+            packed.addAll(ref.chunks);
+            ref.chunks = packed;
+        } catch (IOException ie) {
+            System.err.println(ie);
+        }
+        long end = System.currentTimeMillis();
+        System.out.println("Opened chunk pack in " + (end - start) + " ms");
+    }
 
-        File chunksDirectory = new File(ref.programDirectory.getPath() + File.separatorChar + CHUNK_PARENT_DIR_NAME);
-        File[] chunkDirs = chunksDirectory.listFiles();
+    private static File packFile()
+    {
+        return new File(ref.programDirectory.getPath() + File.separatorChar + CHUNK_PACK_FILE_NAME);
+    }
+
+    private static void loadChunksNoThreading(File chunksDirectory)
+    {
+        long start = System.currentTimeMillis();
+
+        File[] chunkDirs = listChunkDirectories(chunksDirectory);
         if (chunkDirs != null)
         {
             for (File chunkDir : chunkDirs)
@@ -315,41 +395,39 @@ public class ChunkLibrary {
         System.out.println("Loaded levels in " + (end - start) + " ms");
     }
 
-    private static void loadChunksThreaded()
+    private static void loadChunksThreaded(File chunksDirectory)
     {
         long start = System.currentTimeMillis();
-        File chunksDirectory = new File(ref.programDirectory.getPath() + File.separatorChar + CHUNK_PARENT_DIR_NAME);
         System.out.println("Looking for chunks in " + chunksDirectory);
-        File[] chunkDirs = chunksDirectory.listFiles();
+        File[] chunkDirs = listChunkDirectories(chunksDirectory);
         if (chunkDirs != null)
         {
+            ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
             List<Loader> loaders = new ArrayList<>(chunkDirs.length);
-            List<Thread> threads = new ArrayList<>(chunkDirs.length);
-            Loader tmpLoader;
-            Thread tmpThread;
+            List<Future<?>> futures = new ArrayList<>(chunkDirs.length);
             for (File chunkDir : chunkDirs)
             {
-                tmpLoader = new Loader(chunkDir);
-                tmpThread = new Thread(tmpLoader);
-                loaders.add(tmpLoader);
-                threads.add(tmpThread);
-                tmpThread.start();
+                Loader loader = new Loader(chunkDir);
+                loaders.add(loader);
+                futures.add(pool.submit(loader));
             }
+            pool.shutdown();
             int n = loaders.size();
             for (int i = 0; i < n; i++)
             {
-                tmpThread = threads.get(i);
                 try {
-                    tmpThread.join();
-                    tmpLoader = loaders.get(i);
-                    Level result = tmpLoader.getResult();
+                    futures.get(i).get();
+                    Loader loader = loaders.get(i);
+                    Level result = loader.getResult();
                     if (result != null)
                     {
                         addChunk(result);
-                        loadTags(result, tmpLoader.getChunkDirectory());
+                        loadTags(result, loader.getChunkDirectory());
                     }
                 } catch (InterruptedException ie) {
-                    System.err.println("Thread " + i + " interrupted while joining");
+                    System.err.println("Interrupted while loading chunk " + i);
+                } catch (ExecutionException ee) {
+                    System.err.println(ee.getCause());
                 }
             }
         }
@@ -357,6 +435,23 @@ public class ChunkLibrary {
         System.out.println("Loaded levels in " + (end - start) + " ms");
     }
 
+    /**
+     * listChunkDirectories in name order, so chunks are always loaded in
+     * the order they were saved in, and generators seeded the same way
+     * produce the same levels.
+     * @param chunksDirectory Directory holding one folder per chunk.
+     * @return Sorted chunk folders, or null if chunksDirectory can't be listed.
+     */
+    private static File[] listChunkDirectories(File chunksDirectory)
+    {
+        File[] chunkDirs = chunksDirectory.listFiles();
+        if (chunkDirs != null)
+        {
+            Arrays.sort(chunkDirs);
+        }
+        return chunkDirs;
+    }
+
     /**
      * addLoadingFinishedListener add a listener to be notified when chunk loading is done.
      * @param listener
@@ -401,6 +496,77 @@ public class ChunkLibrary {
         }
     }
 
+    /**
+     * PackedChunks lists the chunks of a ChunkPack, decoding each one (and
+     * its tags) the first time it is read. Chunks can be added and removed
+     * like in any other list.
+     */
+    private static class PackedChunks extends AbstractList<Level> {
+        private final ChunkPack pack;
+        // a Level, or the Integer index in pack of a chunk not decoded yet
+        private final List<Object> entries;
+
+        public PackedChunks(ChunkPack pack)
+        {
+            this.pack = pack;
+            int n = pack.size();
+            entries = new ArrayList<>(n);
+            for (int i = 0; i < n; i++)
+            {
+                entries.add(i);
+            }
+        }
+
+        @Override
+        public synchronized Level get(int index)
+        {
+            Object entry = entries.get(index);
+            if (entry instanceof Level)
+            {
+                return (Level) entry;
+            }
+            int i = (Integer) entry;
+            try {
+                Level chunk = pack.readChunk(i);
+                ref.tags.put(chunk, pack.readTags(i));
+                entries.set(index, chunk);
+                return chunk;
+            } catch (IOException ie) {
+                throw new IllegalStateException("Chunk " + i + " of the chunk pack is corrupt", ie);
+            }
+        }
+
+        @Override
+        public synchronized int size()
+        {
+            return entries.size();
+        }
+
+        @Override
+        public synchronized Level set(int index, Level chunk)
+        {
+            Level old = get(index);
+            entries.set(index, chunk);
+            return old;
+        }
+
+        @Override
+        public synchronized void add(int index, Level chunk)
+        {
+            entries.add(index, chunk);
+            modCount++;
+        }
+
+        @Override
+        public synchronized Level remove(int index)
+        {
+            Level old = get(index);
+            entries.remove(index);
+            modCount++;
+            return old;
+        }
+    }
+
     /**
      * LoadingFinishedListener can be notified when loadChunks() is done
      */
@@ -0,0 +1,244 @@
+package com.mojang.mario.level;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ChunkPack is a single file holding a whole chunk library.
+ *
+ * The file starts with a header and an index of where each chunk is
+ * stored, followed by one record per chunk. A record holds the same
+ * bytes Level.save writes to map.lvl, enemy.lvl and hazard.lvl, then
+ * the tags of the chunk. Opening a pack only reads the index, and a chunk
+ * is only read and decoded when asked for.
+ *
+ * The file is only held open while it is read, never mapped, so it can be
+ * replaced while the pack is in use (which Windows does not allow for a
+ * mapped file). A pack must not be read from once its file has been
+ * replaced, its index no longer matches.
+ */
+public class ChunkPack
+{
+    private static final int MAGIC = 0x43504b31; // "CPK1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final int INDEX_ENTRY_SIZE = 12;
+
+    private final File file;
+    private final long[] offsets;
+    private final int[] lengths;
+
+    private ChunkPack(File file, long[] offsets, int[] lengths)
+    {
+        this.file = file;
+        this.offsets = offsets;
+        this.lengths = lengths;
+    }
+
+    /**
+     * open a pack file and read its index.
+     * @param file Pack file written by write.
+     * @return Pack to read chunks from.
+     * @throws IOException If the file can't be read or is not a valid pack.
+     */
+    public static ChunkPack open(File file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            long size = channel.size();
+            if (size < HEADER_SIZE)
+            {
+                throw new IOException("Bad chunk pack header");
+            }
+            ByteBuffer header = read(channel, 0, HEADER_SIZE);
+            if (header.getInt(0) != MAGIC)
+            {
+                throw new IOException("Bad chunk pack header");
+            }
+            if (header.getInt(4) != VERSION)
+            {
+                throw new IOException("Unsupported chunk pack version " + header.getInt(4));
+            }
+            int count = header.getInt(8);
+            if (count < 0 || HEADER_SIZE + (long) count * INDEX_ENTRY_SIZE > size)
+            {
+                throw new IOException("Bad chunk pack index");
+            }
+
+            ByteBuffer index = read(channel, HEADER_SIZE, count * INDEX_ENTRY_SIZE);
+            long[] offsets = new long[count];
+            int[] lengths = new int[count];
+            for (int i = 0; i < count; i++)
+            {
+                int entry = i * INDEX_ENTRY_SIZE;
+                offsets[i] = index.getLong(entry);
+                lengths[i] = index.getInt(entry + 8);
+                if (offsets[i] < 0 || lengths[i] < 0 || offsets[i] + lengths[i] > size)
+                {
+                    throw new IOException("Chunk " + i + " lies outside of the pack");
+                }
+            }
+            return new ChunkPack(file, offsets, lengths);
+        }
+    }
+
+    /**
+     * write chunks and their tags to a pack file. The pack is written next
+     * to file and then moved over it, so a failed write leaves the old pack.
+     * @param file Pack file to write.
+     * @param chunks Chunks to store, in order.
+     * @param tags Tags of each chunk, in the same order as chunks.
+     * @throws IOException If the file can't be written.
+     */
+    public static void write(File file, List<Level> chunks, List<List<String>> tags) throws IOException
+    {
+        int count = chunks.size();
+        List<byte[]> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            records.add(encode(chunks.get(i), tags.get(i)));
+        }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream dos = new DataOutputStream(new FileOutputStream(tmp)))
+        {
+            dos.writeInt(MAGIC);
+            dos.writeInt(VERSION);
+            dos.writeInt(count);
+            long offset = HEADER_SIZE + (long) count * INDEX_ENTRY_SIZE;
+            for (byte[] record : records)
+            {
+                dos.writeLong(offset);
+                dos.writeInt(record.length);
+                offset += record.length;
+            }
+            for (byte[] record : records)
+            {
+                dos.write(record);
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * size is the number of chunks in the pack.
+     * @return Number of chunks.
+     */
+    public int size()
+    {
+        return offsets.length;
+    }
+
+    /**
+     * readChunk decodes chunk i. Every call returns a new Level.
+     * @param i Index of the chunk, in [0, size())
+     * @return Decoded chunk.
+     * @throws IOException If the record of the chunk is corrupt.
+     */
+    public Level readChunk(int i) throws IOException
+    {
+        DataInputStream dis = record(i);
+        Level level = Level.loadMap(new DataInputStream(new ByteArrayInputStream(readBlock(dis))));
+        Level.loadEnemy(level, new DataInputStream(new ByteArrayInputStream(readBlock(dis))));
+        Level.loadHazard(level, new DataInputStream(new ByteArrayInputStream(readBlock(dis))));
+        return level;
+    }
+
+    /**
+     * readTags of chunk i.
+     * @param i Index of the chunk, in [0, size())
+     * @return Modifiable list of the tags of the chunk.
+     * @throws IOException If the record of the chunk is corrupt.
+     */
+    public List<String> readTags(int i) throws IOException
+    {
+        DataInputStream dis = record(i);
+        for (int block = 0; block < 3; block++)
+        {
+            dis.skipBytes(dis.readInt());
+        }
+        int n = dis.readInt();
+        List<String> tags = new ArrayList<>(n);
+        for (int t = 0; t < n; t++)
+        {
+            tags.add(dis.readUTF());
+        }
+        return tags;
+    }
+
+    private DataInputStream record(int i) throws IOException
+    {
+        // each read opens its own channel, so reads can run on any thread
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            ByteBuffer record = read(channel, offsets[i], lengths[i]);
+            return new DataInputStream(new ByteArrayInputStream(record.array()));
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining())
+        {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+            {
+                throw new EOFException("Chunk pack ends early");
+            }
+        }
+        return buffer;
+    }
+
+    private static byte[] readBlock(DataInputStream dis) throws IOException
+    {
+        int length = dis.readInt();
+        if (length < 0 || length > dis.available())
+        {
+            throw new IOException("Bad chunk record");
+        }
+        byte[] block = new byte[length];
+        dis.readFully(block);
+        return block;
+    }
+
+    private static byte[] encode(Level chunk, List<String> tags) throws IOException
+    {
+        ByteArrayOutputStream map = new ByteArrayOutputStream();
+        chunk.saveMap(new DataOutputStream(map));
+        ByteArrayOutputStream enemy = new ByteArrayOutputStream();
+        chunk.saveEnemy(new DataOutputStream(enemy));
+        ByteArrayOutputStream hazard = new ByteArrayOutputStream();
+        chunk.saveHazard(new DataOutputStream(hazard));
+
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(record);
+        for (ByteArrayOutputStream block : new ByteArrayOutputStream[] {map, enemy, hazard})
+        {
+            dos.writeInt(block.size());
+            block.writeTo(dos);
+        }
+        dos.writeInt(tags == null ? 0 : tags.size());
+        if (tags != null)
+        {
+            for (String tag : tags)
+            {
+                dos.writeUTF(tag);
+            }
+        }
+        dos.flush();
+        return record.toByteArray();
+    }
+}
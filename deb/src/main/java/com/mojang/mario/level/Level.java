@@ -38,6 +38,9 @@ public class Level
     private static final String MAP_FILE = "map.lvl";
     private static final String ENEMY_FILE = "enemy.lvl";
     private static final String HAZARD_FILE = "hazard.lvl";
+    // 64-bit FNV-1a, see contentHash
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
 
     public int width;
     public int height;
@@ -371,7 +374,9 @@ public class Level
         //System.out.printf("Width %d Height %d\n", width, height);
 
         byte tmpByte = (byte)0;
-        if (xExit != -1 && yExit != -1) {
+        // chunks narrower than the default exit at (10, 10) have no exit to mark
+        boolean hasExit = xExit >= 0 && xExit < width && yExit >= 0 && yExit < height;
+        if (hasExit) {
             tmpByte = map[xExit][yExit];
             map[xExit][yExit] = -1;
         }
@@ -392,7 +397,7 @@ public class Level
             //System.out.println();
         }
         //System.out.println();
-        if (xExit != -1 && yExit != -1)
+        if (hasExit)
         {
             map[xExit][yExit] = tmpByte;
         }
@@ -726,7 +731,8 @@ public class Level
                             tmpPlatform = new PlatformV((int)platform.x + startX, (int)platform.y + endY, platform.width, platform.trackLength);
                         }
                         tmpPlatform.setStartPosition(platform.startPos);
-                        st.sprite = tmpPlatform;
+                        // replaced rather than changed, since copies of the level may share the template
+                        hazards.set(i, new SpriteTemplate(tmpPlatform));
                     }
                 }
             }
@@ -1204,6 +1210,49 @@ public class Level
         return builder.toString();
     }
 
+    /**
+     * contentHash of everything that changes how the level plays: its size,
+     * tiles, tile data, sprites, hazards and exit. Unlike hashCode, two levels
+     * with the same content hash are the same level, barring a collision.
+     * @return 64-bit hash of the level
+     */
+    public long contentHash()
+    {
+        long hash = mix(FNV_OFFSET, width);
+        hash = mix(hash, height);
+        for (int x = 0; x < width; x++)
+        {
+            for (int y = 0; y < height; y++)
+            {
+                hash = mix(hash, map[x][y]);
+                hash = mix(hash, data[x][y]);
+                SpriteTemplate st = spriteTemplates[x][y];
+                hash = mix(hash, st == null ? -1 : st.getType() << 1 | (st.getWinged() ? 1 : 0));
+            }
+        }
+        for (SpriteTemplate st : hazards)
+        {
+            hash = mix(hash, st.getType());
+            if (st.sprite instanceof Platform)
+            {
+                Platform plat = (Platform) st.sprite;
+                hash = mix(hash, plat instanceof PlatformH ? 1 : 2);
+                hash = mix(hash, plat.startPos);
+                hash = mix(hash, Float.floatToIntBits(plat.x));
+                hash = mix(hash, Float.floatToIntBits(plat.y));
+                hash = mix(hash, plat.width);
+                hash = mix(hash, plat.trackLength);
+            }
+        }
+        hash = mix(hash, xExit);
+        return mix(hash, yExit);
+    }
+
+    private static long mix(long hash, int value)
+    {
+        return (hash ^ value) * FNV_PRIME;
+    }
+
     @Override
     public int hashCode()
     {
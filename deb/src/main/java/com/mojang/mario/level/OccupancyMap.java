@@ -0,0 +1,166 @@
+package com.mojang.mario.level;
+
+import com.mojang.mario.sprites.Enemy;
+
+/**
+ * OccupancyMap keeps one bitmask per column of a level, with a bit set
+ * for every row that holds a tile, and another for every row that holds
+ * an enemy. Rows are packed 64 to a long, so a column of any height can
+ * be tested against a mask with a few bitwise ANDs.
+ *
+ * The map does not watch the level. Call update after changing an area
+ * of the level to keep it in sync.
+ */
+public class OccupancyMap
+{
+    private final int words;
+    private long[][] tiles;
+    private long[][] enemies;
+
+    /**
+     * Constructor. Builds the masks for the whole level.
+     * @param level Level to build the map from.
+     */
+    public OccupancyMap(Level level)
+    {
+        words = wordsFor(level.height);
+        tiles = new long[level.width][words];
+        enemies = new long[level.width][words];
+        update(level, 0, level.width);
+    }
+
+    /**
+     * update rebuilds the masks of columns x to x+w-1 from level.
+     * Columns outside the level are ignored.
+     * @param level Level the map was built from.
+     * @param x First column to rebuild.
+     * @param w Number of columns to rebuild.
+     */
+    public void update(Level level, int x, int w)
+    {
+        int ex = Math.min(x + w, tiles.length);
+        for (int xi = Math.max(0, x); xi < ex; xi++)
+        {
+            long[] tileColumn = tiles[xi];
+            long[] enemyColumn = enemies[xi];
+            for (int i = 0; i < words; i++)
+            {
+                tileColumn[i] = 0;
+                enemyColumn[i] = 0;
+            }
+            for (int y = 0; y < level.height; y++)
+            {
+                if (level.map[xi][y] != Tile.AIR)
+                {
+                    set(tileColumn, y);
+                }
+                if (isEnemy(level.spriteTemplates[xi][y]))
+                {
+                    set(enemyColumn, y);
+                }
+            }
+        }
+    }
+
+    /**
+     * hasTiles checks if any row of column x set in rows, after moving
+     * rows down by shift, holds a tile.
+     * @param x Column of the level to check.
+     * @param rows Mask of rows to check, as built with set.
+     * @param shift Number of rows to move rows down by. May be negative.
+     * @return True if any of the rows hold a tile.
+     */
+    public boolean hasTiles(int x, long[] rows, int shift)
+    {
+        return intersects(tiles[x], rows, shift, false);
+    }
+
+    /**
+     * hasEmpty checks if any row of column x set in rows, after moving
+     * rows down by shift, holds no tile.
+     * @param x Column of the level to check.
+     * @param rows Mask of rows to check, as built with set.
+     * @param shift Number of rows to move rows down by. May be negative.
+     * @return True if any of the rows are air.
+     */
+    public boolean hasEmpty(int x, long[] rows, int shift)
+    {
+        return intersects(tiles[x], rows, shift, true);
+    }
+
+    /**
+     * hasEnemies checks if any row of column x set in rows, after moving
+     * rows down by shift, holds an enemy.
+     * @param x Column of the level to check.
+     * @param rows Mask of rows to check, as built with set.
+     * @param shift Number of rows to move rows down by. May be negative.
+     * @return True if any of the rows hold an enemy.
+     */
+    public boolean hasEnemies(int x, long[] rows, int shift)
+    {
+        return intersects(enemies[x], rows, shift, false);
+    }
+
+    /**
+     * wordsFor a column mask covering height rows.
+     * @param height Number of rows.
+     * @return Number of longs needed.
+     */
+    public static int wordsFor(int height)
+    {
+        return (height + 63) >> 6;
+    }
+
+    /**
+     * set the bit for row in a column mask.
+     * @param column Column mask.
+     * @param row Row to set.
+     */
+    public static void set(long[] column, int row)
+    {
+        column[row >> 6] |= 1L << (row & 63);
+    }
+
+    /**
+     * isEnemy checks if a sprite template occupies its tile.
+     * @param st SpriteTemplate, may be null.
+     * @return True if st is an enemy.
+     */
+    public static boolean isEnemy(SpriteTemplate st)
+    {
+        return st != null && st.getType() != Enemy.ENEMY_NULL;
+    }
+
+    private static boolean intersects(long[] column, long[] rows, int shift, boolean invert)
+    {
+        int first = Math.max(0, Math.floorDiv(shift, 64));
+        int last = Math.min(column.length - 1, Math.floorDiv(shift + rows.length * 64 - 1, 64));
+        for (int i = first; i <= last; i++)
+        {
+            long bits = shiftedWord(rows, i * 64 - shift);
+            long target = invert ? ~column[i] : column[i];
+            if ((bits & target) != 0)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * shiftedWord returns 64 bits of rows starting at bit start.
+     * Bits before the start or past the end of rows are 0.
+     */
+    private static long shiftedWord(long[] rows, int start)
+    {
+        int i = Math.floorDiv(start, 64);
+        int offset = Math.floorMod(start, 64);
+        long low = i >= 0 && i < rows.length ? rows[i] : 0;
+        if (offset == 0)
+        {
+            return low;
+        }
+        long high = i + 1 >= 0 && i + 1 < rows.length ? rows[i + 1] : 0;
+        return (low >>> offset) | (high << (64 - offset));
+    }
+}
@@ -22,8 +22,8 @@ import com.mojang.mario.util.Logger;
  */
 public class OreLevelGenerator 
 {
-    private static long lastSeed;
     private static final double RATIO_LAST_TO_EXPAND = 0.1;
+    private static final int NEAR_ORIGIN = 4;
 
     private boolean shouldBuildStart;
     private boolean shouldBuildEnd;
@@ -33,9 +33,11 @@ public class OreLevelGenerator
     private int difficulty;
     private int width;
     private int height;
+    private long seed;
     private Random random;
 
     private Level level;
+    private OccupancyMap occupancy;
     private int lastContextIdx;
     private RandomFreq randomGen;
     private ArrayList<AnchorPoint> anchorPoints;
@@ -108,7 +110,7 @@ public class OreLevelGenerator
         this.type = type;
         this.difficulty = difficulty;
     
-        lastSeed = seed;
+        this.seed = seed;
         random = new Random(seed);
         level = new Level(width-15, height);
 
@@ -117,6 +119,7 @@ public class OreLevelGenerator
             buildStart();
         }
 
+        occupancy = new OccupancyMap(level);
         Logger.d("ORE", "Starting chunkListStart");
         mainLoop(chunkListStart);
         Logger.d("ORE", "Starting chunkListEnd");
@@ -132,7 +135,7 @@ public class OreLevelGenerator
 
     private void mainLoop(List<Chunk> chunkList)
     {
-        randomGen = new RandomFreq(chunkList.size(), lastSeed);
+        randomGen = new RandomFreq(chunkList.size(), seed);
         failedToFilter = new ArrayList<>();
         lastContextIdx = 0;
         List<AnchorPoint> usedAnchorPoints = new ArrayList<>(anchorPoints.size());
@@ -206,7 +209,7 @@ public class OreLevelGenerator
         }
         
         anchorPoints.addAll(usedAnchorPoints);
-        Collections.shuffle(anchorPoints);
+        Collections.shuffle(anchorPoints, random);
 
         // trim the list of anchor points to a 10th of its size
         ArrayList<AnchorPoint> tmpAnchorPoints = new ArrayList<AnchorPoint>();
@@ -302,165 +305,157 @@ public class OreLevelGenerator
         List<Chunk> filteredChunks = new ArrayList<>();
         for (Chunk testChunk : chunkList)
         {
-            Chunk matchedChunk = testChunk.copy();
             Level tdata = testChunk.segment;
             //1 align the test chunk with the chosen context
             // test chunk from context.x to context.x + testChunk.width
             //                 context.y to context.y + testChunk.height
-            int ox = context.x;
-            int oy = context.y;
-            //2 for each component in the test chunk
-            // def of a component: non-null SpriteTemplate, blocking tile
 
             // For each anchor point in the test chunk
             for (AnchorPoint a : testChunk.anchors)
             {
-                boolean rejectTestChunk = false;
+                int px = context.x - a.x;
+                int py = context.y - a.y;
 
                 // If any part of the test chunk is outside the level, do not place it
-                if (level.isOutside(tdata, ox-a.x, oy-a.y))
+                if (level.isOutside(tdata, px, py))
                 {
                     continue;
                 }
 
-                // If placing this chunk has no effect, don't place it
-                if (level.equals(tdata, ox-a.x, oy-a.y))
+                // If chunk fits, add to test chunk to matched chunks
+                if (chunkFits(testChunk, px, py))
                 {
-                    continue;
+                    Chunk matched = testChunk.copy();
+                    matched.matchedAnchor = a;
+                    filteredChunks.add(matched);
+                    break;
                 }
-                
-                for (int xi = 0; xi < tdata.width && !rejectTestChunk; xi++)
+            }
+        }
+        return filteredChunks;
+    }
+
+    /**
+     * chunkFits checks if chunk can be placed with its upper left corner at px, py.
+     * 
+     * A chunk is rejected if it has no effect on the level, if any of its tiles
+     * or enemies land on a different tile, or if there is an enemy in the level
+     * in the area around any of them. These are tested with the chunk's column masks
+     * against the level's OccupancyMap, so only a few tiles have to be looked at.
+     * @param chunk Chunk to test. Must be inside the level at px, py.
+     * @param px xTile in the level of the chunk's left edge
+     * @param py yTile in the level of the chunk's top edge
+     * @return True if the chunk can be placed.
+     */
+    private boolean chunkFits(Chunk chunk, int px, int py)
+    {
+        Level tdata = chunk.segment;
+
+        // The area around the chunk's bottom row can't be checked if it's past the level
+        if (py + chunk.probeBottom >= level.height)
+        {
+            return false;
+        }
+
+        // Reject if an enemy is in the area around any tile or enemy in the chunk
+        for (int xi = 0; xi < chunk.probeRows.length; xi++)
+        {
+            if (occupancy.hasEnemies(px + xi, chunk.probeRows[xi], py - 1))
+            {
+                return false;
+            }
+        }
+
+        boolean hasEffect = false;
+        for (int xi = 0; xi < tdata.width; xi++)
+        {
+            int x = px + xi;
+            // Reject due to non-matching blocks
+            if (occupancy.hasTiles(x, chunk.occupiedRows[xi], py))
+            {
+                long[] rows = chunk.occupiedRows[xi];
+                for (int i = 0; i < rows.length; i++)
                 {
-                    for (int yi = 0; yi < tdata.height && !rejectTestChunk; yi++)
+                    for (long bits = rows[i]; bits != 0; bits &= bits - 1)
                     {
-                        // def of a component: non-null SpriteTemplate, blocking tile
-                        // no block in the test chunk at this point
-                        Component testComp = Component.fromByte(xi, yi, tdata.map[xi][yi]);
-                        if (testComp.type == Component.NULL)
+                        int yi = (i << 6) + Long.numberOfTrailingZeros(bits);
+                        byte b = level.map[x][py + yi];
+                        if (b != Tile.AIR && b != tdata.map[xi][yi])
                         {
-                            testComp = Component.fromSpriteTemplate(xi, yi, tdata.spriteTemplates[xi][yi]);
-                        }
-                        // no enemies in the test chunk at this point either, so don't test
-                        if (testComp.type == Component.NULL)
-                        {
-                            continue;
+                            return false;
                         }
+                    }
+                }
+            }
+            // Since no blocks differ, placing the chunk only has an effect if it
+            // puts a block where there is none
+            if (!hasEffect && occupancy.hasEmpty(x, chunk.solidRows[xi], py))
+            {
+                hasEffect = true;
+            }
+        }
+        if (!hasEffect)
+        {
+            return false;
+        }
 
-                        // idx, idy is the top left corner of the testChunk when placed in the queryChunk
-                        int idx = ox - a.x + xi;
-                        int idy = oy - a.y + yi;
-                        if (idx < 0 || idx >= level.width || idy < 0 || idy >= level.height) 
-                        {
-                            continue;
-                        }
-                        // Check enemy in test chunk's area for overlap with tiles or enemies in query chunk
-                        if (testComp.type == Component.ENEMY || testComp.type == Component.TILE)
-                        {
-                            // Size of the test component
-                            int tstCompW = testComp.ex - testComp.sx;
-                            int tstCompH = testComp.ey - testComp.sy;
-                            Logger.d("chunkFilter", String.format("Enemy at %d %d, checking to %d %d", idx, idy, idx+tstCompW, idy+tstCompH));
-                            
-                            // For each tile in the test chunk, check a 5x5 area for sprite templates, and a 1x1 area for tiles
-                            int startY = Math.max(0, idy-1);
-                            for (int i = idx; i < idx + tstCompW && !rejectTestChunk; i++)
-                            {
-                                for (int j = startY; j < idy + tstCompH; j++)
-                                {
-                                    // Check 5x5 area for sprite templates
-                                    Logger.d("chunkFilter", String.format("Testing for enemies from %d %d to %d %d", i - 2, j - 3, i + 2, j + 1));
-                                    for (Component comp : Component.getSpriteTemplates(level, i - 2, j - 3, i + 2, j + 1))
-                                    {
-                                        Logger.d("chunkFilter", String.format("Checking component at %d %d to %d %d", comp.sx, comp.sy, comp.ex, comp.ey));
-                                        // If an overlap is found, reject
-                                        if (Component.overlaps(testComp, comp))
-                                        {
-                                            Logger.d("chunkFilter", String.format("Enemy at %d %d to %d %d in query chunk, REJECT", comp.sx, comp.sy, comp.ex, comp.ey));
-                                            rejectTestChunk = true;
-                                            break;
-                                        }
-                                    }
-
-                                    Component tstBlock = Component.fromByte(i, j, level.map[i][j]);
-                                    Component tstEnemy = Component.fromSpriteTemplate(i, j, level.spriteTemplates[i][j]);
-                                    // Reject if an enemy is at position i,j in queryChunk
-                                    if (/*tstBlock.type != Component.NULL || */tstEnemy.type != Component.NULL)
-                                    {
-                                        Logger.d("chunkFilter", String.format("Enemy at %d %d in query chunk, REJECT", i, j));
-                                        rejectTestChunk = true;
-                                        break;
-                                    }
-                                    else
-                                    {
-                                        Logger.d("chunkFilter", String.format("All clear at %d %d tstBlock %d tstEnemy %d", i, j, tstBlock.type, tstEnemy.type));
-                                    }
-                                }
-                            }
-                        }
-                        // Check for overlap between blocks
-                        // Component queryComp = Component.fromByte(ox - a.x + xi, oy - a.y + yi, level.map[ox-a.x+xi][oy-a.y+yi]);
-                        Component queryComp = Component.fromByte(idx, idy, level.map[idx][idy]);
-                        if (queryComp.type == Component.NULL)
-                        {
-                            
-                        }
-                        else 
-                        {
-                            if (level.map[idx][idy] == tdata.map[xi][yi])
-                            //if (Level.TILE_BEHAVIORS[level.map[idx][idy] & 0xff] == Level.TILE_BEHAVIORS[level.map[xi][yi] & 0xff])
-                            {
-                            }
-                            // Reject due to non-matching blocks
-                            else
-                            {
-                                Logger.i("ORE", String.format("Overlap found, must reject: solid block at %d %d", idx, idy));
-                                rejectTestChunk = true;
-                                break;
-                            }
-                        }
-                        // Check for overlap between enemies
-                        // If there is an enemy sprite in query chunk
-    //                    if (Component.fromSpriteTemplate(ox - a.x + xi, oy - a.y + yi, level.spriteTemplates[ox-a.x+xi][oy-a.y+yi]).type == Component.NULL)
-                        if (Component.fromSpriteTemplate(idx, idy, level.spriteTemplates[idx][idy]).type == Component.NULL)
-                        {  
-                        }
-                        else 
+        // Close to the left edge of the level, the chunk's components are also
+        // compared against the level's components around them
+        if (px < NEAR_ORIGIN)
+        {
+            return !overlapsNearOrigin(chunk, px, py);
+        }
+        return true;
+    }
+
+    /**
+     * overlapsNearOrigin runs the component overlap test for chunk placed at px, py.
+     * Components of the chunk are compared in the chunk's own coordinates
+     * with the level's components around them, so this can only find an overlap
+     * when px < NEAR_ORIGIN.
+     * @param chunk Chunk to test. Must be inside the level at px, py.
+     * @param px xTile in the level of the chunk's left edge
+     * @param py yTile in the level of the chunk's top edge
+     * @return True if an overlap is found.
+     */
+    private boolean overlapsNearOrigin(Chunk chunk, int px, int py)
+    {
+        Level tdata = chunk.segment;
+        for (int xi = 0; xi < tdata.width; xi++)
+        {
+            for (int yi = 0; yi < tdata.height; yi++)
+            {
+                Component testComp = Component.fromByte(xi, yi, tdata.map[xi][yi]);
+                if (testComp.type == Component.NULL)
+                {
+                    testComp = Component.fromSpriteTemplate(xi, yi, tdata.spriteTemplates[xi][yi]);
+                }
+                if (testComp.type == Component.NULL)
+                {
+                    continue;
+                }
+
+                int idx = px + xi;
+                int idy = py + yi;
+                int tstCompW = testComp.ex - testComp.sx;
+                int tstCompH = testComp.ey - testComp.sy;
+                int startY = Math.max(0, idy-1);
+                for (int i = idx; i < idx + tstCompW; i++)
+                {
+                    for (int j = startY; j < idy + tstCompH; j++)
+                    {
+                        for (Component comp : Component.getSpriteTemplates(level, i - 2, j - 3, i + 2, j + 1))
                         {
-                            SpriteTemplate lst, tst;
-                            lst = level.spriteTemplates[idx][idy];
-                            tst = tdata.spriteTemplates[xi][yi];
-                            if (lst == tst)
-                            {
-                            } 
-                            // If the queryChunk sprite is the same as the testChunk sprite
-                            else if (lst!=null && tst!=null && lst.getType() == tst.getType())
-                            {
-                            }
-                            else 
+                            if (Component.overlaps(testComp, comp))
                             {
-                                Logger.i("ORE", String.format("Overlap found, must reject: enemy at %d %d", idx, idy));
-                                rejectTestChunk = true;
-                                break;
+                                return true;
                             }
                         }
                     }
-                    if (rejectTestChunk)
-                    {
-                        break;
-                    }
-                }
-
-                // If chunk is not rejected, add to test chunk to matched chunks
-                if (!rejectTestChunk)
-                {
-                    Chunk matched = matchedChunk.copy();
-                    matched.matchedAnchor = a;
-                    filteredChunks.add(matched);
-                    break;
                 }
             }
         }
-        return filteredChunks;
+        return false;
     }
 
     /**
@@ -497,6 +492,7 @@ public class OreLevelGenerator
         Logger.i("ORE", String.format("Leftmost anchor point in integrated chunk %d %d", a.x, a.y));
         Logger.i("ORE", String.format("Placing integrated chunk at %d %d", context.x - a.x, context.y - a.y));
         level./*safeS*/mergeArea(selection.segment, context.x - a.x, context.y - a.y);
+        occupancy.update(level, context.x - a.x, selection.segment.width);
         
         return new AnchorPoint(a);
     }
@@ -617,6 +613,11 @@ public class OreLevelGenerator
         public int id;
         public Level segment;
         public ArrayList<AnchorPoint> anchors;
+        // Column masks over the segment's rows, see index()
+        public long[][] solidRows;
+        public long[][] occupiedRows;
+        public long[][] probeRows;
+        public int probeBottom;
 
         /**
          * fromLevel creates a chunk from a level, and 
@@ -646,6 +647,7 @@ public class OreLevelGenerator
                 }
             }
             chunk.anchors.trimToSize();
+            chunk.index();
 
             return chunk;
         }
@@ -664,8 +666,62 @@ public class OreLevelGenerator
             {
                 copy.anchors.add(new AnchorPoint(ap));
             }
+            copy.solidRows = solidRows;
+            copy.occupiedRows = occupiedRows;
+            copy.probeRows = probeRows;
+            copy.probeBottom = probeBottom;
             return copy;
         }
+
+        /**
+         * index builds the column masks used by chunkFiltering. For each column:
+         * solidRows has the rows holding a tile, occupiedRows the rows holding
+         * a tile or an enemy, and probeRows the rows that must have no enemy in
+         * the level. Probed rows start one row above the chunk, so bit r
+         * of probeRows is row r-1. probeRows has one more column than the
+         * segment, since wide enemies stick out to the right.
+         * probeBottom is the lowest row probed.
+         */
+        private void index()
+        {
+            int w = segment.width;
+            int words = OccupancyMap.wordsFor(segment.height + 3);
+            solidRows = new long[w][words];
+            occupiedRows = new long[w][words];
+            probeRows = new long[w + 1][words];
+            probeBottom = 0;
+            for (int xi = 0; xi < w; xi++)
+            {
+                for (int yi = 0; yi < segment.height; yi++)
+                {
+                    Component comp = Component.fromByte(xi, yi, segment.map[xi][yi]);
+                    if (comp.type == Component.NULL)
+                    {
+                        comp = Component.fromSpriteTemplate(xi, yi, segment.spriteTemplates[xi][yi]);
+                        if (comp.type == Component.NULL)
+                        {
+                            continue;
+                        }
+                    }
+                    else
+                    {
+                        OccupancyMap.set(solidRows[xi], yi);
+                    }
+                    OccupancyMap.set(occupiedRows[xi], yi);
+
+                    int compW = comp.ex - comp.sx;
+                    int compH = comp.ey - comp.sy;
+                    for (int i = xi; i < xi + compW; i++)
+                    {
+                        for (int j = yi - 1; j < yi + compH; j++)
+                        {
+                            OccupancyMap.set(probeRows[i], j + 1);
+                        }
+                    }
+                    probeBottom = Math.max(probeBottom, yi + compH - 1);
+                }
+            }
+        }
     }
 
     /**
@@ -1,15 +1,22 @@
 package com.mojang.mario.mapedit;
 
 import java.awt.Color;
+import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.BorderLayout;
+import java.awt.Graphics;
 import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.ArrayList;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Collections;
 import java.util.List;
 import javax.swing.*;
 
+import com.mojang.mario.Art;
 import com.mojang.mario.level.ChunkLibrary;
 import com.mojang.mario.level.Level;
 import com.mojang.mario.level.LevelGenerator;
@@ -20,33 +27,128 @@ import com.mojang.mario.level.LevelGenerator;
  * 
  * The list of chunks can be modified with the addChunk()
  * and removeChunk() methods.
+ *
+ * Chunks are shown as thumbnails in a list with rows of a fixed size, so
+ * only the rows in view are drawn, and chunks of a pack are only decoded once
+ * they come into view. Thumbnails are drawn in the background by
+ * ChunkThumbnails and kept in the thumbnails directory of the program
+ * directory, so reopening the library shows them at once.
  */
 public class ChunkLibraryPanel extends JPanel 
-    implements ActionListener, ChunkLibrary.LoadingFinishedListener, LevelView.ClickListener, SelectAreaChangedListener {
+    implements ActionListener, ChunkLibrary.LoadingFinishedListener, SelectAreaChangedListener {
     
-    private JPanel chunkPanel;
+    private static final int CELL_PADDING = 8;
+
+    private JList<Level> chunkList;
+    private ChunkListModel chunkListModel;
+    private ChunkThumbnails thumbnails;
     private JButton addButton;
     private JButton removeButton;
     private JButton addTagButton;
     private JButton removeTagButton;
     
-    private List<LevelView> chunks;
-    private LevelView currentSelection;
+    private Level currentSelection;
     private SelectionChangedListener selectionChangedListener;
     private LevelEditor editor;
 
     private DefaultListModel<String> selectionTagListModel;
 
-    private boolean areChunksLoaded;
-    private int chunkPanelOffset;
-    
+    /**
+     * ChunkListModel shows the chunks of the library, reading them from it
+     * only as the list asks for them.
+     */
+    private static class ChunkListModel extends AbstractListModel<Level> {
+        private static final long serialVersionUID = 1L;
+
+        private List<Level> chunks = Collections.emptyList();
+        private int size = 0;
+
+        // shows chunks from now on, which may have changed in any way
+        void reload(List<Level> chunks)
+        {
+            this.chunks = chunks;
+            int old = size;
+            size = chunks.size();
+            if (size < old)
+            {
+                fireIntervalRemoved(this, size, old - 1);
+            }
+            else if (size > old)
+            {
+                fireIntervalAdded(this, old, size - 1);
+            }
+            if (Math.min(old, size) > 0)
+            {
+                fireContentsChanged(this, 0, Math.min(old, size) - 1);
+            }
+        }
+
+        @Override
+        public int getSize()
+        {
+            return size;
+        }
+
+        @Override
+        public Level getElementAt(int index)
+        {
+            return chunks.get(index);
+        }
+    }
+
+    /**
+     * ChunkCellRenderer draws the thumbnail of a chunk, or a placeholder of
+     * its size while the thumbnail is not ready.
+     */
+    private class ChunkCellRenderer extends JComponent implements ListCellRenderer<Level> {
+        private static final long serialVersionUID = 1L;
+
+        private BufferedImage image;
+        private Dimension size;
+        private boolean selected;
+
+        @Override
+        public Component getListCellRendererComponent(JList<? extends Level> list, Level chunk, int index,
+                boolean isSelected, boolean cellHasFocus)
+        {
+            // chunks that failed to load are left as null
+            image = thumbnails == null || chunk == null ? null : thumbnails.get(chunk);
+            size = chunk == null ? new Dimension() : ChunkThumbnails.getSize(chunk);
+            selected = isSelected;
+            return this;
+        }
+
+        @Override
+        public void paintComponent(Graphics g)
+        {
+            g.setColor(chunkList.getBackground());
+            g.fillRect(0, 0, getWidth(), getHeight());
+            int x = CELL_PADDING;
+            int y = CELL_PADDING / 2;
+            if (image != null)
+            {
+                g.drawImage(image, x, y, null);
+            }
+            else
+            {
+                g.setColor(Color.LIGHT_GRAY);
+                g.fillRect(x, y, size.width, size.height);
+            }
+            if (selected)
+            {
+                g.setColor(Highlight.YELLOW);
+                g.fillRect(x, y, size.width, size.height);
+            }
+            g.setColor(Color.BLACK);
+            g.drawRect(x - 1, y - 1, size.width + 1, size.height + 1);
+        }
+    }
+
     /**
      * Constructor.
      */
     public ChunkLibraryPanel()
     {
-        chunkPanelOffset = 8;
-        chunks = new ArrayList<>();
         buildLayout();
     }
 
@@ -63,9 +165,32 @@ public class ChunkLibraryPanel extends JPanel
     private void buildLayout()
     {
         JPanel topPanel = new JPanel();
-        chunkPanel = new JPanel(null);
-        chunkPanel.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
-        JScrollPane chunkPane = new JScrollPane(chunkPanel);
+        chunkListModel = new ChunkListModel();
+        chunkList = new JList<>(chunkListModel);
+        chunkList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        // fixed cells spare the list from measuring, and so decoding, every chunk
+        chunkList.setFixedCellWidth(ChunkThumbnails.MAX_WIDTH + 2 * CELL_PADDING);
+        chunkList.setFixedCellHeight(ChunkThumbnails.MAX_HEIGHT + CELL_PADDING);
+        chunkList.setCellRenderer(new ChunkCellRenderer());
+        chunkList.addListSelectionListener(e -> {
+            Level selection = chunkList.getSelectedValue();
+            if (!e.getValueIsAdjusting() && selection != null && selection != currentSelection)
+            {
+                select(selection);
+            }
+        });
+        chunkList.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e)
+            {
+                // clicking the selected chunk again goes back to placing it
+                if (currentSelection != null && editor != null)
+                {
+                    editor.setEditingMode(LevelEditor.MODE_PLACE_CHUNK);
+                }
+            }
+        });
+        JScrollPane chunkPane = new JScrollPane(chunkList);
         chunkPane.setMaximumSize(new Dimension(20 * 16, Integer.MAX_VALUE));
         chunkPane.setPreferredSize(new Dimension(20 * 16, Integer.MAX_VALUE));
         
@@ -131,6 +256,19 @@ public class ChunkLibraryPanel extends JPanel
         return selectionPanel;
     }
 
+    @Override
+    public void addNotify()
+    {
+        super.addNotify();
+        Art.init(getGraphicsConfiguration(), null);
+        if (thumbnails == null)
+        {
+            File programDirectory = ChunkLibrary.getProgramDirectory();
+            File directory = programDirectory == null ? null : new File(programDirectory, ChunkThumbnails.DIRECTORY_NAME);
+            thumbnails = new ChunkThumbnails(directory, chunkList::repaint);
+        }
+    }
+
     /**
      * setEditor set callback to LevelEditor.
      * @param editor LevelEditor object
@@ -148,46 +286,8 @@ public class ChunkLibraryPanel extends JPanel
      */
     public void addChunk(Level level)
     {
-        LevelView levelView = new LevelView(level);
-        addChunk(levelView);
-    }
-
-    /**
-     * addChunk to this panel.
-     * Renders the chunk along with the others,
-     * and will set it up for future saving and loading.
-     * @param level LevelView to add.
-     */
-    public void addChunk(LevelView levelView)
-    {
-        addChunkToPanel(levelView);
-        ChunkLibrary.addChunk(levelView.getLevel());
-    }
-
-    private void addChunkToPanel(LevelView levelView)
-    {
-        chunks.add(levelView);
-        levelView.setBorder(BorderFactory.createLineBorder(Color.BLACK));
-        levelView.setClickListener(this);
-        Dimension levelPSize = levelView.getPreferredSize();
-        Dimension cpPSize = chunkPanel.getPreferredSize();
-        Dimension newPSize = new Dimension(Math.max(cpPSize.width-16, levelPSize.width) + 16, chunkPanelOffset+levelPSize.height+8);        
-        chunkPanel.add(levelView);
-        levelView.setBounds(8, chunkPanelOffset, levelPSize.width, levelPSize.height);
-        chunkPanelOffset += levelPSize.height + 8;
-        chunkPanel.setMaximumSize(newPSize);
-        chunkPanel.setPreferredSize(newPSize);
-        chunkPanel.revalidate();
-        if (!areChunksLoaded)
-        {
-            repaint();
-        }
-    }
-
-    private void addChunkToPanel(Level level)
-    {
-        LevelView levelView = new LevelView(level);
-        addChunkToPanel(levelView);
+        ChunkLibrary.addChunk(level);
+        chunkListModel.reload(ChunkLibrary.getChunks());
     }
 
     /**
@@ -196,44 +296,28 @@ public class ChunkLibraryPanel extends JPanel
      * it from being loaded or saved in the future.
      * @param chunk Chunk to remove.
      */
-    public void removeChunk(LevelView chunk)
-    {
-        ChunkLibrary.removeChunk(chunk.getLevel());
-        removeChunkFromPanel(chunk);
-    }
-
-    private void removeChunkFromPanel(LevelView chunk)
+    public void removeChunk(Level chunk)
     {
         if (currentSelection == chunk)
         {
             currentSelection = null;
+            chunkList.clearSelection();
+            removeButton.setEnabled(false);
+            addTagButton.setEnabled(false);
+            removeTagButton.setEnabled(false);
+            selectionTagListModel.clear();
             editor.setEditingMode(LevelEditor.MODE_SELECT);
             notifySelectionChangedListener();
         }
-        chunks.remove(chunk);
-        chunkPanel.remove(chunk);
-        Dimension levelPSize = chunk.getPreferredSize();
-        Dimension cpPSize = chunkPanel.getPreferredSize();
-        Dimension newPSize = new Dimension(Math.max(cpPSize.width, levelPSize.width), chunkPanelOffset-levelPSize.height+8);        
-        chunkPanelOffset -= levelPSize.height + 8;
-        chunkPanel.setMaximumSize(newPSize);
-        chunkPanel.setPreferredSize(newPSize);
-
-        int yOffset = 8;
-        for (LevelView tmpChunk : chunks)
-        {
-            Dimension tmpSize = tmpChunk.getPreferredSize();
-            tmpChunk.setBounds(8, yOffset, tmpSize.width, tmpSize.height);
-            yOffset += tmpSize.height + 8;
-        }
-        repaint();
+        ChunkLibrary.removeChunk(chunk);
+        chunkListModel.reload(ChunkLibrary.getChunks());
     }
 
     /**
      * currentSelection returns the current selected chunk.
      * @return Selected chunk, or null if nothing is selected.
      */
-    public LevelView currentSelection() 
+    public Level currentSelection() 
     { 
         return currentSelection; 
     }
@@ -263,19 +347,7 @@ public class ChunkLibraryPanel extends JPanel
      */
     public void loadChunks()
     {
-        areChunksLoaded = false;
-        //System.out.println(ChunkLibrary.getChunks().size());
-        for (Level chunk : ChunkLibrary.getChunks())
-        {
-            // System.out.println("LOL");
-            if (chunk != null)
-            {
-                addChunkToPanel(chunk);
-            }
-        }
-        areChunksLoaded = true;
-        // repaint();
-        revalidate();
+        chunkListModel.reload(ChunkLibrary.getChunks());
     }
 
     /**
@@ -295,22 +367,15 @@ public class ChunkLibraryPanel extends JPanel
         }
     }
 
-    @Override
-    public void clickPerformed(LevelView source) {
-        Level sChunk = source.getLevel();
-
+    private void select(Level sChunk)
+    {
         removeButton.setEnabled(true);
         addTagButton.setEnabled(true);
 
         boolean hasTags = ChunkLibrary.getTags(sChunk).size() > 0;
         removeTagButton.setEnabled(hasTags);
 
-        for (LevelView chunk : chunks)
-        {
-            chunk.clearHighlight();
-        }
-        currentSelection = source;
-        source.setHighlight();
+        currentSelection = sChunk;
 
         // clear tags
         selectionTagListModel.clear();
@@ -352,7 +417,7 @@ public class ChunkLibraryPanel extends JPanel
         }
     }
 
-    private void addTag(LevelView chunk) 
+    private void addTag(Level chunk) 
     {
         String[] tags = ChunkLibrary.getAllowedTags();
         String defaultTag = tags[0];
@@ -360,15 +425,14 @@ public class ChunkLibraryPanel extends JPanel
 
         if (selection != null) 
         {
-            ChunkLibrary.addTag(chunk.getLevel(), selection);
+            ChunkLibrary.addTag(chunk, selection);
             removeTagButton.setEnabled(true);
             selectionTagListModel.addElement(selection);
         }
     }
 
-    private void removeTag(LevelView chunk)
+    private void removeTag(Level level)
     {
-        Level level = chunk.getLevel();
         List<String> tags = ChunkLibrary.getTags(level);
         String defaultTag = tags.get(0);
         String selection = (String)JOptionPane.showInputDialog(null, "Select a tag to remove from selection", "Remove tag from selection", JOptionPane.PLAIN_MESSAGE, null, tags.toArray(), defaultTag);
@@ -397,11 +461,12 @@ public class ChunkLibraryPanel extends JPanel
          * onSelectionChanged
          * @param selection
          */
-        void onSelectionChanged(LevelView selection);
+        void onSelectionChanged(Level selection);
     }
 
     public static void main(String[] args)
     {
+        ChunkLibrary.init(new File(System.getProperty("user.dir")));
         ChunkLibraryPanel chunkLibrary = new ChunkLibraryPanel();
         chunkLibrary.addChunk(LevelGenerator.createLevel(15, 15, 15L, 3, LevelGenerator.TYPE_OVERGROUND));
         JFrame frame = new JFrame();
@@ -0,0 +1,227 @@
+package com.mojang.mario.mapedit;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.imageio.ImageIO;
+import javax.swing.SwingUtilities;
+
+import com.mojang.mario.level.Level;
+import com.mojang.mario.level.SpriteTemplate;
+import com.mojang.mario.sprites.Platform;
+import com.mojang.mario.util.Logger;
+
+/**
+ * ChunkThumbnails draws scaled down pictures of chunks in the background,
+ * for the chunk library to show.
+ *
+ * Thumbnails are keyed by the content hash of their chunk. The most recently
+ * used ones are kept in memory, and every thumbnail drawn is also saved as a
+ * PNG in a directory, so the library shows them at once the next time the
+ * program runs. The directory is pruned to the DISK_SIZE most recently used
+ * thumbnails.
+ *
+ * Every method must be called on the event dispatch thread.
+ */
+public class ChunkThumbnails
+{
+    public static final int MAX_WIDTH = 288;
+    public static final int MAX_HEIGHT = 120;
+    public static final double MAX_SCALE = 0.5;
+    public static final String DIRECTORY_NAME = "thumbnails";
+
+    private static final int MEMORY_SIZE = 256;
+    private static final int DISK_SIZE = 2048;
+    private static final Color BACKGROUND = new Color(0x8090ff);
+
+    private final File directory;
+    private final Runnable onReady;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r ->
+    {
+        Thread thread = new Thread(r, "ChunkThumbnails");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // least recently used first
+    private final Map<Long, BufferedImage> images = new LinkedHashMap<Long, BufferedImage>(16, 0.75f, true)
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, BufferedImage> eldest)
+        {
+            return size() > MEMORY_SIZE;
+        }
+    };
+    private final Set<Long> pending = new HashSet<Long>();
+
+    /**
+     * Constructor.
+     * @param directory Directory to keep thumbnails in, or null to keep them in memory only
+     * @param onReady Called on the event dispatch thread whenever a thumbnail asked for is ready
+     */
+    public ChunkThumbnails(File directory, Runnable onReady)
+    {
+        this.directory = directory;
+        this.onReady = onReady;
+        if (directory != null)
+        {
+            executor.execute(this::prune);
+        }
+    }
+
+    /**
+     * get the thumbnail of a chunk. If it is not ready, it is loaded or drawn
+     * in the background and onReady is called once it is.
+     * @param chunk Chunk to get the thumbnail of
+     * @return Thumbnail, or null if it is not ready yet
+     */
+    public BufferedImage get(Level chunk)
+    {
+        long hash = chunk.contentHash();
+        BufferedImage image = images.get(hash);
+        if (image != null || !pending.add(hash))
+        {
+            return image;
+        }
+        Level copy = snapshot(chunk);
+        executor.execute(() ->
+        {
+            BufferedImage thumbnail = load(hash, copy);
+            SwingUtilities.invokeLater(() ->
+            {
+                pending.remove(hash);
+                images.put(hash, thumbnail);
+                onReady.run();
+            });
+        });
+        return null;
+    }
+
+    /**
+     * getSize of the thumbnail of a chunk.
+     * @param chunk Chunk to get the thumbnail size of
+     * @return Size in pixels
+     */
+    public static Dimension getSize(Level chunk)
+    {
+        double scale = getScale(chunk);
+        return new Dimension(Math.max(1, (int) Math.round(chunk.width * 16 * scale)),
+            Math.max(1, (int) Math.round(chunk.height * 16 * scale)));
+    }
+
+    private static double getScale(Level chunk)
+    {
+        return Math.min(MAX_SCALE, Math.min((double) MAX_WIDTH / (chunk.width * 16),
+            (double) MAX_HEIGHT / (chunk.height * 16)));
+    }
+
+    // the Level copy constructor drops the sprites of platforms, which are needed to draw them
+    private static Level snapshot(Level chunk)
+    {
+        Level copy = new Level(chunk);
+        for (int i = 0; i < chunk.hazards.size(); i++)
+        {
+            SpriteTemplate hazard = chunk.hazards.get(i);
+            if (hazard.sprite instanceof Platform)
+            {
+                copy.hazards.set(i, new SpriteTemplate(((Platform) hazard.sprite).copy()));
+            }
+        }
+        return copy;
+    }
+
+    private BufferedImage load(long hash, Level chunk)
+    {
+        Dimension size = getSize(chunk);
+        File file = directory == null ? null : new File(directory, String.format("%016x.png", hash));
+        if (file != null && file.exists())
+        {
+            try
+            {
+                BufferedImage image = ImageIO.read(file);
+                if (image != null && image.getWidth() == size.width && image.getHeight() == size.height)
+                {
+                    file.setLastModified(System.currentTimeMillis());
+                    return image;
+                }
+            }
+            catch (IOException ie)
+            {
+                Logger.w("ChunkThumbnails", "Could not read thumbnail " + file.getName());
+            }
+        }
+
+        BufferedImage image = draw(chunk, size);
+        if (file != null && (directory.isDirectory() || directory.mkdirs()))
+        {
+            try
+            {
+                ImageIO.write(image, "png", file);
+            }
+            catch (IOException ie)
+            {
+                Logger.w("ChunkThumbnails", "Could not save thumbnail " + file.getName());
+            }
+        }
+        return image;
+    }
+
+    private static BufferedImage draw(Level chunk, Dimension size)
+    {
+        BufferedImage full = new BufferedImage(chunk.width * 16, chunk.height * 16, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = full.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        TiledLevelRenderer.drawCells(chunk, g, 0, 0, chunk.width, chunk.height);
+        for (int x = 0; x < chunk.width; x++)
+        {
+            for (int y = 0; y < chunk.height; y++)
+            {
+                TiledLevelRenderer.drawAnimated(chunk, g, x, y, 0, 0);
+            }
+        }
+        g.dispose();
+
+        BufferedImage image = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_RGB);
+        g = image.createGraphics();
+        g.setColor(BACKGROUND);
+        g.fillRect(0, 0, size.width, size.height);
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(full, 0, 0, size.width, size.height, null);
+        g.dispose();
+        return image;
+    }
+
+    // deletes the least recently used thumbnails over DISK_SIZE
+    private void prune()
+    {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(".png"));
+        if (files == null || files.length <= DISK_SIZE)
+        {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < files.length - DISK_SIZE; i++)
+        {
+            if (!files[i].delete())
+            {
+                Logger.w("ChunkThumbnails", "Could not delete thumbnail " + files[i].getName());
+            }
+        }
+    }
+}
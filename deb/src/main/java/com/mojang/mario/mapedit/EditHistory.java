@@ -0,0 +1,603 @@
+package com.mojang.mario.mapedit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.mojang.mario.level.Level;
+import com.mojang.mario.level.SpriteTemplate;
+
+/**
+ * EditHistory keeps the undo/redo history of the level editor as deltas.
+ *
+ * The history holds a private copy of the level as it was at the last
+ * commit. Committing compares the edited level against that copy and
+ * records only the tiles, sprite templates, hazards and exit that changed,
+ * so undoing or redoing an edit costs time and memory in proportion to the
+ * edit, not to the level. Edits that change the size of the level are
+ * recorded as snapshots of the level before and after.
+ *
+ * Older steps are merged into checkpoints of several edits each, which
+ * drops the tiles that were changed and changed back in between. Once the
+ * history uses more memory than its cap, the oldest steps are forgotten.
+ */
+public class EditHistory
+{
+    public static final long DEFAULT_MEMORY_CAP = 64L << 20;
+
+    // the most recent steps are always kept one edit per step
+    private static final int FINE_STEPS = 64;
+    // older steps are merged this many at a time
+    private static final int CHECKPOINT_SPAN = 16;
+
+    private final long memoryCap;
+    private final List<Step> steps = new ArrayList<>();
+    private int next = 0;
+    private long memoryUsed = 0;
+
+    // the level being edited, and a copy of it as of the last commit, undo or redo
+    private Level level;
+    private Level committed;
+
+    /**
+     * Constructor.
+     * @param level Level to start the history at
+     * @param memoryCap Number of bytes the history may use, roughly
+     */
+    public EditHistory(Level level, long memoryCap)
+    {
+        if (memoryCap <= 0)
+        {
+            throw new IllegalArgumentException("The memory cap of an EditHistory must be positive");
+        }
+        this.memoryCap = memoryCap;
+        reset(level);
+    }
+
+    /**
+     * reset forgets all steps and starts over at level.
+     * @param level Level to start the history at
+     */
+    public void reset(Level level)
+    {
+        steps.clear();
+        next = 0;
+        memoryUsed = 0;
+        this.level = level;
+        committed = copyOf(level);
+    }
+
+    /**
+     * commit records the changes made to level since the last commit as a
+     * new step, discarding every step that could be redone. Nothing is
+     * recorded if nothing changed.
+     * @param level The level being edited, which may be a new Level
+     */
+    public void commit(Level level)
+    {
+        Step step;
+        if (level.width != committed.width || level.height != committed.height)
+        {
+            Level after = copyOf(level);
+            step = new Snapshot(committed, after);
+            committed = copyOf(after);
+        }
+        else
+        {
+            // a new level of the same size is recorded as a delta too; undo
+            // then changes the new level back instead of bringing the old one
+            Delta delta = Delta.between(committed, level);
+            if (delta == null)
+            {
+                return;
+            }
+            delta.redo(committed);
+            step = delta;
+        }
+        this.level = level;
+
+        while (steps.size() > next)
+        {
+            memoryUsed -= steps.remove(steps.size() - 1).bytes();
+        }
+        steps.add(step);
+        next++;
+        memoryUsed += step.bytes();
+        compact();
+        enforceCap();
+    }
+
+    public boolean canUndo()
+    {
+        return next > 0;
+    }
+
+    public boolean canRedo()
+    {
+        return next < steps.size();
+    }
+
+    /**
+     * undo the last step.
+     * @return The level to show, which is a new Level if the step changed
+     *         its size, or null if there is nothing to undo
+     */
+    public Level undo()
+    {
+        if (!canUndo())
+        {
+            return null;
+        }
+        Step step = steps.get(--next);
+        level = step.undo(level, committed);
+        if (step instanceof Snapshot)
+        {
+            committed = copyOf(level);
+        }
+        return level;
+    }
+
+    /**
+     * redo the last undone step.
+     * @return The level to show, which is a new Level if the step changed
+     *         its size, or null if there is nothing to redo
+     */
+    public Level redo()
+    {
+        if (!canRedo())
+        {
+            return null;
+        }
+        Step step = steps.get(next++);
+        level = step.redo(level, committed);
+        if (step instanceof Snapshot)
+        {
+            committed = copyOf(level);
+        }
+        return level;
+    }
+
+    // number of steps that can be undone or redone
+    public int size()
+    {
+        return steps.size();
+    }
+
+    // estimate of the bytes held by the steps, not counting the committed copy
+    public long getMemoryUsed()
+    {
+        return memoryUsed;
+    }
+
+    // merges old single-edit deltas into checkpoints, oldest first
+    private void compact()
+    {
+        int end = next - FINE_STEPS;
+        int start = 0;
+        while (start < end && !isMergeable(steps.get(start)))
+        {
+            start++;
+        }
+        if (end - start < CHECKPOINT_SPAN)
+        {
+            return;
+        }
+        Delta merged = (Delta) steps.get(start);
+        int i = start + 1;
+        for (; i < start + CHECKPOINT_SPAN && steps.get(i) instanceof Delta; i++)
+        {
+            merged = Delta.merge(merged, (Delta) steps.get(i));
+        }
+        merged.checkpoint = true;
+        for (int j = start; j < i; j++)
+        {
+            memoryUsed -= steps.get(j).bytes();
+        }
+        steps.subList(start + 1, i).clear();
+        steps.set(start, merged);
+        memoryUsed += merged.bytes();
+        next -= i - start - 1;
+    }
+
+    private static boolean isMergeable(Step step)
+    {
+        return step instanceof Delta && !((Delta) step).checkpoint;
+    }
+
+    // forgets the oldest steps, then the furthest redo steps, until the history fits
+    private void enforceCap()
+    {
+        while (memoryUsed > memoryCap && steps.size() > 1)
+        {
+            if (next > 1)
+            {
+                memoryUsed -= steps.remove(0).bytes();
+                next--;
+            }
+            else if (steps.size() > next)
+            {
+                memoryUsed -= steps.remove(steps.size() - 1).bytes();
+            }
+            else
+            {
+                break;
+            }
+        }
+    }
+
+    /**
+     * copyOf a level with the tiles and sprite templates copied. Hazard
+     * templates are shared, so deltas can tell them apart by identity: edits
+     * add and remove them, and resize replaces the ones it moves, but nothing
+     * changes one in place.
+     */
+    private static Level copyOf(Level level)
+    {
+        Level copy = new Level(level);
+        copy.hazards = new ArrayList<>(level.hazards);
+        return copy;
+    }
+
+    private static SpriteTemplate copyOf(SpriteTemplate template)
+    {
+        return template == null ? null : new SpriteTemplate(template);
+    }
+
+    private static boolean sameTemplate(SpriteTemplate a, SpriteTemplate b)
+    {
+        if (a == null || b == null)
+        {
+            return a == b;
+        }
+        return a.getType() == b.getType() && a.getWinged() == b.getWinged();
+    }
+
+    private interface Step
+    {
+        // both return the level to show; committed must end up equal to it
+        Level undo(Level level, Level committed);
+
+        Level redo(Level level, Level committed);
+
+        long bytes();
+    }
+
+    /**
+     * Snapshot is a step that changed the size of the level.
+     */
+    private static class Snapshot implements Step
+    {
+        private final Level before;
+        private final Level after;
+
+        Snapshot(Level before, Level after)
+        {
+            this.before = before;
+            this.after = after;
+        }
+
+        public Level undo(Level level, Level committed)
+        {
+            return copyOf(before);
+        }
+
+        public Level redo(Level level, Level committed)
+        {
+            return copyOf(after);
+        }
+
+        public long bytes()
+        {
+            return levelBytes(before) + levelBytes(after);
+        }
+
+        private static long levelBytes(Level level)
+        {
+            // two tile bytes and a template reference per cell, and the hazard list
+            return (long) level.width * level.height * 6 + level.hazards.size() * 4 + 64;
+        }
+    }
+
+    /**
+     * Delta is a step that changed some cells, hazards or the exit of a
+     * level, keeping the values before and after for each.
+     * Cells are stored by x * height + y, in increasing order.
+     */
+    private static class Delta implements Step
+    {
+        private final int height;
+
+        private int[] cells;
+        private byte[] oldMap;
+        private byte[] newMap;
+        private byte[] oldData;
+        private byte[] newData;
+
+        private int[] templateCells;
+        private SpriteTemplate[] oldTemplates;
+        private SpriteTemplate[] newTemplates;
+
+        // null if the hazards did not change
+        private List<SpriteTemplate> oldHazards;
+        private List<SpriteTemplate> newHazards;
+
+        private boolean exitChanged;
+        private int oldXExit;
+        private int oldYExit;
+        private int newXExit;
+        private int newYExit;
+
+        private boolean checkpoint = false;
+
+        private Delta(int height)
+        {
+            this.height = height;
+        }
+
+        /**
+         * between finds what changed from a to b, which have the same size.
+         * @return Delta from a to b, or null if they are the same
+         */
+        static Delta between(Level a, Level b)
+        {
+            Delta delta = new Delta(a.height);
+            int n = 0;
+            int t = 0;
+            int[] cells = new int[16];
+            int[] templateCells = new int[16];
+            for (int x = 0; x < a.width; x++)
+            {
+                byte[] am = a.map[x];
+                byte[] bm = b.map[x];
+                byte[] ad = a.data[x];
+                byte[] bd = b.data[x];
+                SpriteTemplate[] as = a.spriteTemplates[x];
+                SpriteTemplate[] bs = b.spriteTemplates[x];
+                for (int y = 0; y < a.height; y++)
+                {
+                    if (am[y] != bm[y] || ad[y] != bd[y])
+                    {
+                        if (n == cells.length)
+                        {
+                            cells = Arrays.copyOf(cells, n * 2);
+                        }
+                        cells[n++] = x * a.height + y;
+                    }
+                    if (!sameTemplate(as[y], bs[y]))
+                    {
+                        if (t == templateCells.length)
+                        {
+                            templateCells = Arrays.copyOf(templateCells, t * 2);
+                        }
+                        templateCells[t++] = x * a.height + y;
+                    }
+                }
+            }
+
+            delta.cells = Arrays.copyOf(cells, n);
+            delta.oldMap = new byte[n];
+            delta.newMap = new byte[n];
+            delta.oldData = new byte[n];
+            delta.newData = new byte[n];
+            for (int i = 0; i < n; i++)
+            {
+                int x = cells[i] / a.height;
+                int y = cells[i] % a.height;
+                delta.oldMap[i] = a.map[x][y];
+                delta.newMap[i] = b.map[x][y];
+                delta.oldData[i] = a.data[x][y];
+                delta.newData[i] = b.data[x][y];
+            }
+
+            delta.templateCells = Arrays.copyOf(templateCells, t);
+            delta.oldTemplates = new SpriteTemplate[t];
+            delta.newTemplates = new SpriteTemplate[t];
+            for (int i = 0; i < t; i++)
+            {
+                int x = templateCells[i] / a.height;
+                int y = templateCells[i] % a.height;
+                delta.oldTemplates[i] = copyOf(a.spriteTemplates[x][y]);
+                delta.newTemplates[i] = copyOf(b.spriteTemplates[x][y]);
+            }
+
+            if (!a.hazards.equals(b.hazards))
+            {
+                delta.oldHazards = new ArrayList<>(a.hazards);
+                delta.newHazards = new ArrayList<>(b.hazards);
+            }
+
+            if (a.xExit != b.xExit || a.yExit != b.yExit)
+            {
+                delta.exitChanged = true;
+                delta.oldXExit = a.xExit;
+                delta.oldYExit = a.yExit;
+                delta.newXExit = b.xExit;
+                delta.newYExit = b.yExit;
+            }
+
+            if (n == 0 && t == 0 && delta.oldHazards == null && !delta.exitChanged)
+            {
+                return null;
+            }
+            return delta;
+        }
+
+        /**
+         * merge two consecutive deltas into one that goes from before a to
+         * after b. Cells that end up as they started are dropped.
+         */
+        static Delta merge(Delta a, Delta b)
+        {
+            Delta merged = new Delta(a.height);
+
+            int n = 0;
+            int total = a.cells.length + b.cells.length;
+            merged.cells = new int[total];
+            merged.oldMap = new byte[total];
+            merged.newMap = new byte[total];
+            merged.oldData = new byte[total];
+            merged.newData = new byte[total];
+            int i = 0;
+            int j = 0;
+            while (i < a.cells.length || j < b.cells.length)
+            {
+                int cell;
+                byte oldMap, newMap, oldData, newData;
+                if (j == b.cells.length || (i < a.cells.length && a.cells[i] < b.cells[j]))
+                {
+                    cell = a.cells[i];
+                    oldMap = a.oldMap[i];
+                    newMap = a.newMap[i];
+                    oldData = a.oldData[i];
+                    newData = a.newData[i];
+                    i++;
+                }
+                else if (i == a.cells.length || b.cells[j] < a.cells[i])
+                {
+                    cell = b.cells[j];
+                    oldMap = b.oldMap[j];
+                    newMap = b.newMap[j];
+                    oldData = b.oldData[j];
+                    newData = b.newData[j];
+                    j++;
+                }
+                else
+                {
+                    cell = a.cells[i];
+                    oldMap = a.oldMap[i];
+                    newMap = b.newMap[j];
+                    oldData = a.oldData[i];
+                    newData = b.newData[j];
+                    i++;
+                    j++;
+                }
+                if (oldMap != newMap || oldData != newData)
+                {
+                    merged.cells[n] = cell;
+                    merged.oldMap[n] = oldMap;
+                    merged.newMap[n] = newMap;
+                    merged.oldData[n] = oldData;
+                    merged.newData[n] = newData;
+                    n++;
+                }
+            }
+            merged.cells = Arrays.copyOf(merged.cells, n);
+            merged.oldMap = Arrays.copyOf(merged.oldMap, n);
+            merged.newMap = Arrays.copyOf(merged.newMap, n);
+            merged.oldData = Arrays.copyOf(merged.oldData, n);
+            merged.newData = Arrays.copyOf(merged.newData, n);
+
+            int t = 0;
+            total = a.templateCells.length + b.templateCells.length;
+            merged.templateCells = new int[total];
+            merged.oldTemplates = new SpriteTemplate[total];
+            merged.newTemplates = new SpriteTemplate[total];
+            i = 0;
+            j = 0;
+            while (i < a.templateCells.length || j < b.templateCells.length)
+            {
+                int cell;
+                SpriteTemplate oldTemplate, newTemplate;
+                if (j == b.templateCells.length || (i < a.templateCells.length && a.templateCells[i] < b.templateCells[j]))
+                {
+                    cell = a.templateCells[i];
+                    oldTemplate = a.oldTemplates[i];
+                    newTemplate = a.newTemplates[i];
+                    i++;
+                }
+                else if (i == a.templateCells.length || b.templateCells[j] < a.templateCells[i])
+                {
+                    cell = b.templateCells[j];
+                    oldTemplate = b.oldTemplates[j];
+                    newTemplate = b.newTemplates[j];
+                    j++;
+                }
+                else
+                {
+                    cell = a.templateCells[i];
+                    oldTemplate = a.oldTemplates[i];
+                    newTemplate = b.newTemplates[j];
+                    i++;
+                    j++;
+                }
+                if (!sameTemplate(oldTemplate, newTemplate))
+                {
+                    merged.templateCells[t] = cell;
+                    merged.oldTemplates[t] = oldTemplate;
+                    merged.newTemplates[t] = newTemplate;
+                    t++;
+                }
+            }
+            merged.templateCells = Arrays.copyOf(merged.templateCells, t);
+            merged.oldTemplates = Arrays.copyOf(merged.oldTemplates, t);
+            merged.newTemplates = Arrays.copyOf(merged.newTemplates, t);
+
+            merged.oldHazards = a.oldHazards != null ? a.oldHazards : b.oldHazards;
+            merged.newHazards = b.newHazards != null ? b.newHazards : a.newHazards;
+
+            if (a.exitChanged || b.exitChanged)
+            {
+                merged.exitChanged = true;
+                merged.oldXExit = a.exitChanged ? a.oldXExit : b.oldXExit;
+                merged.oldYExit = a.exitChanged ? a.oldYExit : b.oldYExit;
+                merged.newXExit = b.exitChanged ? b.newXExit : a.newXExit;
+                merged.newYExit = b.exitChanged ? b.newYExit : a.newYExit;
+            }
+            return merged;
+        }
+
+        public Level undo(Level level, Level committed)
+        {
+            apply(level, oldMap, oldData, oldTemplates, oldHazards, oldXExit, oldYExit);
+            apply(committed, oldMap, oldData, oldTemplates, oldHazards, oldXExit, oldYExit);
+            return level;
+        }
+
+        public Level redo(Level level, Level committed)
+        {
+            redo(level);
+            redo(committed);
+            return level;
+        }
+
+        void redo(Level level)
+        {
+            apply(level, newMap, newData, newTemplates, newHazards, newXExit, newYExit);
+        }
+
+        private void apply(Level level, byte[] map, byte[] data, SpriteTemplate[] templates,
+                           List<SpriteTemplate> hazards, int xExit, int yExit)
+        {
+            for (int i = 0; i < cells.length; i++)
+            {
+                int x = cells[i] / height;
+                int y = cells[i] % height;
+                level.map[x][y] = map[i];
+                level.data[x][y] = data[i];
+            }
+            for (int i = 0; i < templateCells.length; i++)
+            {
+                level.spriteTemplates[templateCells[i] / height][templateCells[i] % height] = copyOf(templates[i]);
+            }
+            if (hazards != null)
+            {
+                level.hazards = new ArrayList<>(hazards);
+            }
+            if (exitChanged)
+            {
+                level.xExit = xExit;
+                level.yExit = yExit;
+            }
+        }
+
+        public long bytes()
+        {
+            long bytes = 96 + cells.length * 8L + templateCells.length * 36L;
+            if (oldHazards != null)
+            {
+                bytes += (oldHazards.size() + newHazards.size()) * 4L + 32;
+            }
+            return bytes;
+        }
+    }
+}
@@ -25,7 +25,7 @@ public class LevelEditView extends JComponent
 {
     private static final long serialVersionUID = -7696446733303717142L;
 
-    private LevelRenderer levelRenderer;
+    private TiledLevelRenderer levelRenderer;
     private Level level;
     private ActionCompleteListener actionCompleteListener;
     private ArrayList<SelectAreaChangedListener> selectAreaChangedListener;
@@ -42,7 +42,7 @@ public class LevelEditView extends JComponent
     private Highlight chunkTarget;
     private int lastXTile, lastYTile;
 
-    private LevelView selectedChunk;
+    private Level selectedChunk;
 
     /**
      * Constructor.
@@ -113,9 +113,13 @@ public class LevelEditView extends JComponent
     {
         super.addNotify();
         Art.init(getGraphicsConfiguration(), null);
-        levelRenderer = new LevelRenderer(level, getGraphicsConfiguration(), level.width * 16, level.height * 16);
-        levelRenderer.renderBehaviors = true;
-        levelRenderer.setIsLevelEditor(true);
+        levelRenderer = new TiledLevelRenderer(level, getGraphicsConfiguration());
+    }
+
+    public void removeNotify()
+    {
+        super.removeNotify();
+        levelRenderer.dispose();
     }
 
     public void paintComponent(Graphics g)
@@ -139,7 +143,7 @@ public class LevelEditView extends JComponent
         {
             if (selectedChunk != null)
             {
-                Level chnk = selectedChunk.getLevel();
+                Level chnk = selectedChunk;
                 level.setArea(chnk, xT, yT);
                 notifyListener();
                 levelRenderer.repaint(xT, yT, Math.min(level.width, xT+chnk.width), Math.min(level.height, yT+chnk.height));
@@ -155,7 +159,7 @@ public class LevelEditView extends JComponent
         {
             if (selectedChunk != null)
             {
-                Level level = selectedChunk.getLevel();
+                Level level = selectedChunk;
                 chunkTarget = addHighlight(xT, yT, level.width, level.height, Highlight.GREEN, "");
             }
         }
@@ -483,13 +487,13 @@ public class LevelEditView extends JComponent
 
     public void setRenderMode(boolean isLevelEditor) 
     {
+        // behaviours are drawn over the cached tiles, so those stay as they are
         levelRenderer.renderBehaviors = isLevelEditor;
-        levelRenderer.repaint(0, 0, level.width, level.height);
         repaint();
     }
 
     @Override
-    public void onSelectionChanged(LevelView selection) {
+    public void onSelectionChanged(Level selection) {
         selectedChunk = selection;
 
         if (selection == null)
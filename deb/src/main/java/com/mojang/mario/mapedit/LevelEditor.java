@@ -10,9 +10,7 @@ import java.awt.event.WindowAdapter;
 import java.io.*;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Paths;
-import java.util.ArrayList;
 import java.util.Random;
-import java.util.concurrent.ExecutionException;
 
 import javax.swing.*;
 import javax.swing.border.*;
@@ -26,8 +24,6 @@ import com.mojang.mario.level.OreLevelGenerator.AnchorPoint;
 import com.mojang.mario.mapedit.MessagePanel.Message;
 import com.mojang.mario.sprites.Mario;
 import com.mojang.mario.util.LevelStats;
-import com.mojang.mario.util.LevelTester;
-import com.mojang.mario.util.Logger;
 
 import ch.idsia.tools.EvaluationInfo;
 
@@ -72,10 +68,9 @@ public class LevelEditor extends JFrame
     private JCheckBox[] bitmapCheckboxes = new JCheckBox[8];
     private ChunkLibraryPanel chunkLibraryPanel;
     private StatsPanel statsPanel;
-    private ArrayList<Level> actionQueue;
+    private EditHistory history;
     private MessagePanel messagePanel;
-    private int nextStatePtr;
-    private SwingWorker<EvaluationInfo, String> lastLevelPlayer;
+    private PlayabilityVerifier verifier;
 
     private File programDirectory;
     private String workingDirectory;
@@ -88,6 +83,11 @@ public class LevelEditor extends JFrame
     public static final int MODE_SELECT = 4;
     public static final int MODE_PLACE_CHUNK = 5;
 
+    // caps the memory of the undo history, in megabytes
+    public static final String UNDO_MEMORY_PROPERTY = "infinitetux.undoMegabytes";
+    // milliseconds the level must go unedited before it is played
+    public static final String VERIFY_DELAY_PROPERTY = "infinitetux.verifyDelayMillis";
+
     /**
      * Constructor.
      */
@@ -198,7 +198,10 @@ public class LevelEditor extends JFrame
         levelTester = new TestLevelFrameLauncher();
         tilePicker.addTilePickChangedListener(this);
 
-        actionQueue = new ArrayList<>();
+        long undoMemory = Long.getLong(UNDO_MEMORY_PROPERTY, EditHistory.DEFAULT_MEMORY_CAP >> 20) << 20;
+        history = new EditHistory(levelEditView.getLevel(), undoMemory);
+        verifier = new PlayabilityVerifier(Integer.getInteger(VERIFY_DELAY_PROPERTY, PlayabilityVerifier.DEFAULT_DELAY),
+            this::updateEvaluationInfo);
         saveState();
     }
 
@@ -380,8 +383,10 @@ public class LevelEditor extends JFrame
     {
         addWindowListener(new WindowAdapter() {
             public void windowClosing(WindowEvent e) {
-                finish();
-                System.exit(0);
+                if (finish())
+                {
+                    System.exit(0);
+                }
             }
         });
     }
@@ -434,6 +439,8 @@ public class LevelEditor extends JFrame
                     workingDirectory = name.substring(0, directoryIndex);
                     nameField.setText(name.substring(directoryIndex + 1, name.length()));
                     levelEditView.setLevel(Level.load(new File(getLevelDirectory())));
+                    history.reset(levelEditView.getLevel());
+                    verifier.request(levelEditView.getLevel());
                 }
             }
             if (e.getSource() == saveLevelItem)
@@ -468,6 +475,8 @@ public class LevelEditor extends JFrame
                     levelEditView.getLevel().save(new File(saveLocation));
                     nameField.setText("");
                     levelEditView.setLevel(new Level(256, 15));
+                    history.reset(levelEditView.getLevel());
+                    verifier.request(levelEditView.getLevel());
                     JOptionPane.showMessageDialog(null, "Previous level saved to: " + saveLocation);
                 }
             }   
@@ -546,6 +555,7 @@ public class LevelEditor extends JFrame
                 levelEditView.setLevel(level);
                 buildEditPanelBounds();
                 spawnHighlight.setX(marioSpawnSliderX.getValue());
+                saveState();
             }
             if (e.getSource() == generateLevelButton)
             {
@@ -716,10 +726,7 @@ public class LevelEditor extends JFrame
      */
     private void undoAction()
     {
-        if (actionQueue.size() < 2) return;
-        nextStatePtr--;
-        Level oldState = actionQueue.get(Math.max(nextStatePtr - 1, 0));
-        updateLevel(oldState);
+        showHistoryState(history.undo());
     }
 
     /**
@@ -727,63 +734,45 @@ public class LevelEditor extends JFrame
      */
     private void redoAction()
     {
-        if (actionQueue.size() < 2) return;
-        Level oldState = actionQueue.get(nextStatePtr);
-        updateLevel(oldState);
-        nextStatePtr++;
+        showHistoryState(history.redo());
     }
 
     /**
-     * Add a new action to history.
-     * Note that this erases any actions that can be redone.
+     * showHistoryState shows a level returned by undo or redo.
+     * @param level Level to show, or null if there was nothing to undo or redo.
      */
-    private void saveState()
+    private void showHistoryState(Level level)
     {
-        // Discard actions in future if nextStatePtr points to a non-empty slot.
-        if (nextStatePtr < actionQueue.size())
+        if (level == null) return;
+        Level shown = levelEditView.getLevel();
+        boolean resized = level.width != shown.width || level.height != shown.height;
+        updateLevel(level);
+        if (resized)
         {
-            int lastIndex = actionQueue.size() - 1;
-            for (int i = lastIndex; i >= nextStatePtr; i--)
-            {
-                actionQueue.remove(i);
-            }
+            buildEditPanelBounds();
+            levelEditPanel.revalidate();
         }
-        Level level = levelEditView.getLevel();
-        actionQueue.add(level);
-        nextStatePtr++;
-
-        SwingWorker<EvaluationInfo, String> worker = new SwingWorker<EvaluationInfo, String>() {
-
-            @Override
-            protected EvaluationInfo doInBackground() throws Exception {
-                return LevelTester.test(level, LevelTester.ASTAR_AGENT);
-            }
+        verifier.request(level);
+    }
 
-            @Override
-            protected void done() {
-                try {
-                    updateEvaluationInfo(get());
-                } catch (InterruptedException | ExecutionException ie) {
-                    Logger.e("LevelEditor", "Worker thread interrupted.");
-                    ie.printStackTrace();
-                }
-            }
-        };
-        if (lastLevelPlayer != null && !lastLevelPlayer.isDone() && !lastLevelPlayer.isCancelled())
-        {
-            lastLevelPlayer.cancel(true);
-        }
-        worker.execute();
-        worker = lastLevelPlayer;
+    /**
+     * Add a new action to history and have the level played again.
+     * Note that this erases any actions that can be redone.
+     */
+    private void saveState()
+    {
+        Level level = levelEditView.getLevel();
+        history.commit(level);
+        verifier.request(level);
     }
 
     /**
-     * updateEvaluationInfo refreshes the MessagesPanel off the last run of the lastLevelPlayer
+     * updateEvaluationInfo refreshes the MessagesPanel off the latest run of the verifier
+     * @param level The level that was played.
      * @param info The results of playing the level.
      */
-    public void updateEvaluationInfo(EvaluationInfo info)
+    public void updateEvaluationInfo(Level level, EvaluationInfo info)
     {
-        Level level = levelEditView.getLevel();
         if (info.lengthOfLevelPassedCells < level.xExit - 1) 
         {
             System.out.println("Level may be unplayable");
@@ -877,12 +866,23 @@ public class LevelEditor extends JFrame
 
     /**
      * finish calls cleanup code for any actions that need to occur after the user closes
-     * the window.
+     * the window. If the chunk library can't be saved, the user is asked whether to
+     * close anyway.
+     * @return true if the window can be closed.
      */
-    public void finish()
+    public boolean finish()
     {
         //chunkLibraryPanel.saveChunks();
-        ChunkLibrary.saveChunks();
+        try {
+            ChunkLibrary.saveChunks();
+        } catch (IOException ie) {
+            ie.printStackTrace();
+            int answer = JOptionPane.showConfirmDialog(this,
+                "The chunk library could not be saved:\n" + ie.getMessage() + "\nClose anyway and lose the changes?",
+                "Save failed", JOptionPane.YES_NO_OPTION, JOptionPane.ERROR_MESSAGE);
+            return answer == JOptionPane.YES_OPTION;
+        }
+        return true;
     }
 
     public static void main(String[] args)
@@ -19,7 +19,6 @@ import javax.swing.JFrame;
 import javax.swing.JPanel;
 
 import com.mojang.mario.Art;
-import com.mojang.mario.LevelRenderer;
 import com.mojang.mario.level.Level;
 import com.mojang.mario.level.LevelGenerator;
 
@@ -30,7 +29,7 @@ import com.mojang.mario.level.LevelGenerator;
 public class LevelView extends JComponent 
     implements MouseListener {
 
-    private LevelRenderer levelRenderer;
+    private TiledLevelRenderer levelRenderer;
     private Level level;
     private List<Highlight> highlights;
     private ClickListener listener;
@@ -58,10 +57,14 @@ public class LevelView extends JComponent
     {
         super.addNotify();
         Art.init(getGraphicsConfiguration(), null);
-        levelRenderer = new LevelRenderer(level, getGraphicsConfiguration(), level.width * 16, level.height * 16);
-        levelRenderer.renderBehaviors = true;
-        levelRenderer.setIsLevelEditor(true);
-        levelRenderer.setLevel(level);
+        levelRenderer = new TiledLevelRenderer(level, getGraphicsConfiguration());
+    }
+
+    @Override
+    public void removeNotify()
+    {
+        super.removeNotify();
+        levelRenderer.dispose();
     }
 
     @Override
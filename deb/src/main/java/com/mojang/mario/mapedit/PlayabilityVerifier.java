@@ -0,0 +1,175 @@
+package com.mojang.mario.mapedit;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+
+import com.mojang.mario.level.Level;
+import com.mojang.mario.util.Logger;
+import com.mojang.mario.util.SegmentedLevelTester;
+
+import ch.idsia.tools.EvaluationInfo;
+
+/**
+ * PlayabilityVerifier plays the level being edited with an agent in the
+ * background, to tell the editor whether it can still be finished.
+ * Levels are played with a SegmentedLevelTester, so after a local edit only
+ * the part of the level around it is played again.
+ *
+ * Requests are debounced: the level is only played once it has gone
+ * unchanged for the delay, so a burst of edits costs a single run. Only one
+ * run is wanted at a time; a new request cancels the current run, which
+ * stops at its next tick. Finished runs are cached by the content hash of
+ * the level, so going back to a level that was already played, by undo for
+ * example, needs no run at all. Only the result for the latest request
+ * reaches the listener.
+ *
+ * Every method must be called on the event dispatch thread.
+ */
+public class PlayabilityVerifier
+{
+    public static final int DEFAULT_DELAY = 400;
+
+    private static final int CACHE_SIZE = 64;
+
+    /**
+     * Listener receives the result for the latest request.
+     */
+    public interface Listener
+    {
+        /**
+         * onVerified is called on the event dispatch thread.
+         * @param level Copy of the level that was played
+         * @param info Results of playing it
+         */
+        public void onVerified(Level level, EvaluationInfo info);
+    }
+
+    private final SegmentedLevelTester tester = new SegmentedLevelTester();
+    private final Listener listener;
+    private final Timer timer;
+
+    // least recently used first
+    private final Map<Long, EvaluationInfo> results = new LinkedHashMap<Long, EvaluationInfo>(16, 0.75f, true)
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, EvaluationInfo> eldest)
+        {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private Level pending;
+    private int revision = 0;
+    private SwingWorker<EvaluationInfo, Void> current;
+
+    /**
+     * Constructor.
+     * @param delay Milliseconds a level must go unchanged before it is played
+     * @param listener Listener for the results
+     */
+    public PlayabilityVerifier(int delay, Listener listener)
+    {
+        this.listener = listener;
+        timer = new Timer(delay, e -> start());
+        timer.setRepeats(false);
+    }
+
+    /**
+     * request a run on level as it is once the delay has passed, superseding
+     * every earlier request.
+     * @param level Level being edited. It is copied when the run starts.
+     */
+    public void request(Level level)
+    {
+        revision++;
+        pending = level;
+        cancelCurrent();
+        timer.restart();
+    }
+
+    /**
+     * cancel the pending request and the current run, if any.
+     */
+    public void cancel()
+    {
+        revision++;
+        pending = null;
+        timer.stop();
+        cancelCurrent();
+    }
+
+    private void cancelCurrent()
+    {
+        if (current != null)
+        {
+            current.cancel(true);
+            current = null;
+        }
+    }
+
+    private void start()
+    {
+        if (pending == null)
+        {
+            return;
+        }
+        // the hash is taken off the live level, since copies drop the sprites of platforms
+        long hash = pending.contentHash();
+        Level level = new Level(pending);
+        pending = null;
+
+        EvaluationInfo cached = results.get(hash);
+        if (cached != null)
+        {
+            listener.onVerified(level, cached);
+            return;
+        }
+
+        int started = revision;
+        current = new SwingWorker<EvaluationInfo, Void>()
+        {
+            @Override
+            protected EvaluationInfo doInBackground()
+            {
+                // a cancelled run holds the tester until its next tick
+                return tester.test(level);
+            }
+
+            @Override
+            protected void done()
+            {
+                if (isCancelled())
+                {
+                    return;
+                }
+                if (current == this)
+                {
+                    current = null;
+                }
+                EvaluationInfo info;
+                try
+                {
+                    info = get();
+                }
+                catch (InterruptedException | ExecutionException e)
+                {
+                    Logger.e("PlayabilityVerifier", "Playing the level failed.");
+                    e.printStackTrace();
+                    return;
+                }
+                results.put(hash, info);
+                if (started == revision)
+                {
+                    listener.onVerified(level, info);
+                }
+            }
+        };
+        current.execute();
+    }
+}
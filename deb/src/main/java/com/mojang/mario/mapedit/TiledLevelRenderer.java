@@ -0,0 +1,361 @@
+package com.mojang.mario.mapedit;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import com.mojang.mario.Art;
+import com.mojang.mario.level.Level;
+import com.mojang.mario.level.SpriteTemplate;
+import com.mojang.mario.sprites.Enemy;
+import com.mojang.mario.sprites.Platform;
+
+/**
+ * TiledLevelRenderer draws a Level for the editor views, keeping what it
+ * has drawn in square tiles of TILE_SIZE pixels.
+ *
+ * A tile is only drawn once some paint needs it, and is kept until the part
+ * of the level it shows is repainted or the cache runs out of room. All
+ * renderers share one cache of at most CACHE_MEMORY_PROPERTY megabytes,
+ * least recently used tiles going first, so the memory taken does not grow
+ * with the width of the levels or the number of views. Animated tiles and
+ * behaviours are drawn over the tiles on every paint.
+ *
+ * Every method must be called on the event dispatch thread.
+ */
+public class TiledLevelRenderer
+{
+    public static final int TILE_SIZE = 256;
+    public static final String CACHE_MEMORY_PROPERTY = "infinitetux.renderCacheMegabytes";
+    public static final long DEFAULT_CACHE_MEMORY = 32L << 20;
+
+    private static final int CELLS = TILE_SIZE / 16;
+    // enemies are drawn up to this many cells off their own, so tiles draw the cells this far around them
+    private static final int MARGIN = 2;
+    private static final int TILE_BYTES = TILE_SIZE * TILE_SIZE * 4;
+    private static final Color TRANSPARENT = new Color(0, 0, 0, 0);
+
+    private static final int budget = (int) Math.max(1,
+        (Long.getLong(CACHE_MEMORY_PROPERTY, DEFAULT_CACHE_MEMORY >> 20) << 20) / TILE_BYTES);
+    // tiles of all renderers, least recently used first
+    private static final Map<TileKey, BufferedImage> tiles = new LinkedHashMap<TileKey, BufferedImage>(16, 0.75f, true);
+    // images of invalidated tiles, to be drawn over again
+    private static final ArrayDeque<BufferedImage> free = new ArrayDeque<BufferedImage>();
+
+    private final GraphicsConfiguration graphicsConfiguration;
+    private Level level;
+    public boolean renderBehaviors = true;
+
+    /**
+     * TileKey names one tile of one renderer.
+     */
+    private static final class TileKey
+    {
+        private final TiledLevelRenderer renderer;
+        private final int x;
+        private final int y;
+
+        TileKey(TiledLevelRenderer renderer, int x, int y)
+        {
+            this.renderer = renderer;
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof TileKey))
+            {
+                return false;
+            }
+            TileKey other = (TileKey) o;
+            return renderer == other.renderer && x == other.x && y == other.y;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(System.identityHashCode(renderer), x, y);
+        }
+    }
+
+    /**
+     * Constructor.
+     * @param level Level to draw
+     * @param graphicsConfiguration Configuration of the component the level is drawn on
+     */
+    public TiledLevelRenderer(Level level, GraphicsConfiguration graphicsConfiguration)
+    {
+        this.level = level;
+        this.graphicsConfiguration = graphicsConfiguration;
+    }
+
+    /**
+     * setLevel to draw from now on. Every tile is drawn again.
+     * @param level Level to draw
+     */
+    public void setLevel(Level level)
+    {
+        this.level = level;
+        dispose();
+    }
+
+    /**
+     * repaint an area of the level, which has changed. The tiles showing it
+     * are drawn again the next time they are needed.
+     * @param x Leftmost cell of the area
+     * @param y Topmost cell of the area
+     * @param w Width of the area in cells
+     * @param h Height of the area in cells
+     */
+    public void repaint(int x, int y, int w, int h)
+    {
+        int txEnd = Math.floorDiv(x + w - 1, CELLS);
+        int tyEnd = Math.floorDiv(y + h - 1, CELLS);
+        for (int tx = Math.floorDiv(x, CELLS); tx <= txEnd; tx++)
+        {
+            for (int ty = Math.floorDiv(y, CELLS); ty <= tyEnd; ty++)
+            {
+                BufferedImage image = tiles.remove(new TileKey(this, tx, ty));
+                if (image != null)
+                {
+                    free.push(image);
+                }
+            }
+        }
+    }
+
+    /**
+     * dispose of all tiles of this renderer, making room for others.
+     */
+    public void dispose()
+    {
+        Iterator<Map.Entry<TileKey, BufferedImage>> it = tiles.entrySet().iterator();
+        while (it.hasNext())
+        {
+            Map.Entry<TileKey, BufferedImage> entry = it.next();
+            if (entry.getKey().renderer == this)
+            {
+                free.push(entry.getValue());
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * render the part of the level inside the clip of g, at the origin of g.
+     * @param g Graphics to draw on
+     * @param tick Tick to animate the animated tiles for
+     * @param alpha Fraction of the tick that has passed
+     */
+    public void render(Graphics g, int tick, float alpha)
+    {
+        Rectangle clip = g.getClipBounds();
+        if (clip == null)
+        {
+            clip = new Rectangle(0, 0, level.width * 16, level.height * 16);
+        }
+        int txEnd = Math.min((clip.x + clip.width - 1) / TILE_SIZE, (level.width * 16 - 1) / TILE_SIZE);
+        int tyEnd = Math.min((clip.y + clip.height - 1) / TILE_SIZE, (level.height * 16 - 1) / TILE_SIZE);
+        for (int tx = Math.max(clip.x / TILE_SIZE, 0); tx <= txEnd; tx++)
+        {
+            for (int ty = Math.max(clip.y / TILE_SIZE, 0); ty <= tyEnd; ty++)
+            {
+                g.drawImage(getTile(tx, ty), tx * TILE_SIZE, ty * TILE_SIZE, null);
+            }
+        }
+
+        int xEnd = Math.min((clip.x + clip.width - 1) / 16, level.width - 1);
+        int yEnd = Math.min((clip.y + clip.height - 1) / 16, level.height - 1);
+        for (int x = Math.max(clip.x / 16, 0); x <= xEnd; x++)
+        {
+            for (int y = Math.max(clip.y / 16, 0); y <= yEnd; y++)
+            {
+                drawAnimated(level, g, x, y, tick, alpha);
+                if (renderBehaviors)
+                {
+                    drawBehaviors(g, x, y);
+                }
+            }
+        }
+    }
+
+    private BufferedImage getTile(int tx, int ty)
+    {
+        TileKey key = new TileKey(this, tx, ty);
+        BufferedImage image = tiles.get(key);
+        if (image != null)
+        {
+            return image;
+        }
+        image = free.poll();
+        if (image == null && tiles.size() >= budget)
+        {
+            Iterator<BufferedImage> eldest = tiles.values().iterator();
+            image = eldest.next();
+            eldest.remove();
+        }
+        if (image == null)
+        {
+            image = graphicsConfiguration.createCompatibleImage(TILE_SIZE, TILE_SIZE, Transparency.BITMASK);
+        }
+        drawTile(image, tx, ty);
+        tiles.put(key, image);
+        return image;
+    }
+
+    private void drawTile(BufferedImage image, int tx, int ty)
+    {
+        Graphics2D g = image.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.setBackground(TRANSPARENT);
+        g.clearRect(0, 0, TILE_SIZE, TILE_SIZE);
+        g.translate(-tx * TILE_SIZE, -ty * TILE_SIZE);
+        g.clipRect(tx * TILE_SIZE, ty * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+        drawCells(level, g, tx * CELLS - MARGIN, ty * CELLS - MARGIN, (tx + 1) * CELLS + MARGIN, (ty + 1) * CELLS + MARGIN);
+        g.dispose();
+    }
+
+    /**
+     * drawCells draws everything but the animated tiles of the cells from
+     * xStart, yStart up to, not including, xEnd, yEnd, and all platforms,
+     * at the position they have in the level.
+     * @param level Level to draw
+     * @param g Graphics to draw on
+     * @param xStart Leftmost cell
+     * @param yStart Topmost cell
+     * @param xEnd Cell right of the rightmost cell
+     * @param yEnd Cell below the lowest cell
+     */
+    static void drawCells(Level level, Graphics2D g, int xStart, int yStart, int xEnd, int yEnd)
+    {
+        xStart = Math.max(xStart, 0);
+        yStart = Math.max(yStart, 0);
+        xEnd = Math.min(xEnd, level.width);
+        yEnd = Math.min(yEnd, level.height);
+        for (int x = xStart; x < xEnd; x++)
+        {
+            for (int y = yStart; y < yEnd; y++)
+            {
+                int b = level.getBlock(x, y) & 0xff;
+                if (((Level.TILE_BEHAVIORS[b]) & Level.BIT_ANIMATED) == 0)
+                {
+                    g.drawImage(Art.level[b % 16][b / 16], x << 4, y << 4, TRANSPARENT, null);
+                }
+                SpriteTemplate t = level.getSpriteTemplate(x, y);
+                if (t != null && !isEnemy(t, Enemy.ENEMY_NULL) && !isEnemy(t, Enemy.ENEMY_THWOMP))
+                {
+                    t.render(g, x, y, -1);
+                }
+            }
+        }
+        // thwomps go over everything else
+        for (int x = xStart; x < xEnd; x++)
+        {
+            for (int y = yStart; y < yEnd; y++)
+            {
+                SpriteTemplate t = level.getSpriteTemplate(x, y);
+                if (t != null && isEnemy(t, Enemy.ENEMY_THWOMP))
+                {
+                    t.render(g, x, y, -1);
+                }
+            }
+        }
+        for (SpriteTemplate hazard : level.hazards)
+        {
+            if (hazard.sprite instanceof Platform)
+            {
+                hazard.render(g, 0, 0, -1);
+            }
+        }
+    }
+
+    private static boolean isEnemy(SpriteTemplate t, int enemy)
+    {
+        return (byte)(t.getCode() & (byte)0x7F) == (byte)enemy;
+    }
+
+    /**
+     * drawAnimated draws the tile of a cell if it is animated.
+     * @param level Level to draw
+     * @param g Graphics to draw on
+     * @param x Cell to draw
+     * @param y Cell to draw
+     * @param tick Tick to animate the tile for
+     * @param alpha Fraction of the tick that has passed
+     */
+    static void drawAnimated(Level level, Graphics g, int x, int y, int tick, float alpha)
+    {
+        byte b = level.getBlock(x, y);
+        if (((Level.TILE_BEHAVIORS[b & 0xff]) & Level.BIT_ANIMATED) > 0)
+        {
+            int animTime = (tick / 3) % 4;
+            if ((b % 16) / 4 == 0 && b / 16 == 1)
+            {
+                animTime = (tick / 2 + (x + y) / 8) % 20;
+                if (animTime > 3) animTime = 0;
+            }
+            if ((b % 16) / 4 == 3 && b / 16 == 0)
+            {
+                animTime = 2;
+            }
+            int yo = level.data[x][y];
+            if (yo > 0) yo = (int) (Math.sin((yo - alpha) / 4.0f * Math.PI) * 8);
+            g.drawImage(Art.level[(b % 16) / 4 * 4 + animTime][b / 16], x << 4, (y << 4) - yo, TRANSPARENT, null);
+        }
+    }
+
+    private void drawBehaviors(Graphics g, int x, int y)
+    {
+        int behavior = Level.TILE_BEHAVIORS[level.getBlock(x, y) & 0xff];
+        if ((behavior & Level.BIT_BLOCK_UPPER) > 0)
+        {
+            g.setColor(Color.RED);
+            g.fillRect(x << 4, y << 4, 16, 2);
+        }
+        if ((behavior & Level.BIT_BLOCK_ALL) > 0)
+        {
+            g.setColor(Color.RED);
+            g.fillRect(x << 4, y << 4, 16, 2);
+            g.fillRect(x << 4, (y << 4) + 14, 16, 2);
+            g.fillRect(x << 4, y << 4, 2, 16);
+            g.fillRect((x << 4) + 14, y << 4, 2, 16);
+        }
+        if ((behavior & Level.BIT_BLOCK_LOWER) > 0)
+        {
+            g.setColor(Color.RED);
+            g.fillRect(x << 4, (y << 4) + 14, 16, 2);
+        }
+        if ((behavior & Level.BIT_SPECIAL) > 0)
+        {
+            g.setColor(Color.PINK);
+            g.fillRect((x << 4) + 2 + 4, (y << 4) + 2 + 4, 4, 4);
+        }
+        if ((behavior & Level.BIT_BUMPABLE) > 0)
+        {
+            g.setColor(Color.BLUE);
+            g.fillRect((x << 4) + 2, (y << 4) + 2, 4, 4);
+        }
+        if ((behavior & Level.BIT_BREAKABLE) > 0)
+        {
+            g.setColor(Color.GREEN);
+            g.fillRect((x << 4) + 2 + 4, (y << 4) + 2, 4, 4);
+        }
+        if ((behavior & Level.BIT_PICKUPABLE) > 0)
+        {
+            g.setColor(Color.YELLOW);
+            g.fillRect((x << 4) + 2, (y << 4) + 2 + 4, 4, 4);
+        }
+    }
+}
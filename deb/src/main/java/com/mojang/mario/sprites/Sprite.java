@@ -25,6 +25,9 @@ public class Sprite implements SoundSource
     public int layer = 1;
 
     public SpriteTemplate spriteTemplate;
+
+    // slot of the sprite in its SpriteStore, -1 if it is in none
+    int storeSlot = -1;
     private Color translucent = new Color(0, 0, 0, 0);
     private Color opaque = new Color(0, 0, 0, 0.0f);
     
@@ -0,0 +1,169 @@
+package com.mojang.mario.sprites;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+// The sprites of a LevelScene, in the order they are ticked and drawn.
+// Sprites live in a dense array and remember their slot, so adding a batch,
+// removing a sprite and checking whether a sprite is in the store take constant
+// time. The array holds the sprites back to front: a batch added in front of
+// the others is appended to the end of the array, so nothing is shifted.
+// Removed sprites leave an empty slot behind; the array is only compacted
+// once enough slots are empty. A sprite can be in one store at a time.
+
+public class SpriteStore implements Iterable<Sprite>
+{
+    private Sprite[] slots = new Sprite[64];
+    private int end = 0;
+    private int size = 0;
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean contains(Sprite sprite)
+    {
+        int slot = sprite.storeSlot;
+        return slot >= 0 && slot < end && slots[slot] == sprite;
+    }
+
+    // adds a sprite after all others
+    public void add(Sprite sprite)
+    {
+        ensureRoom(1);
+        System.arraycopy(slots, 0, slots, 1, end);
+        for (int slot = 1; slot <= end; slot++)
+        {
+            if (slots[slot] != null)
+                slots[slot].storeSlot = slot;
+        }
+        end++;
+        put(0, sprite);
+    }
+
+    // adds sprites in front of all others, keeping their order
+    public void addAllFirst(List<Sprite> sprites)
+    {
+        ensureRoom(sprites.size());
+        for (int i = sprites.size() - 1; i >= 0; i--)
+        {
+            put(end++, sprites.get(i));
+        }
+    }
+
+    public void remove(Sprite sprite)
+    {
+        if (!contains(sprite))
+            return;
+        slots[sprite.storeSlot] = null;
+        sprite.storeSlot = -1;
+        size--;
+        if ((end - size) * 4 > end)
+            compact();
+    }
+
+    public void removeAll(List<Sprite> sprites)
+    {
+        for (int i = 0; i < sprites.size(); i++)
+        {
+            remove(sprites.get(i));
+        }
+    }
+
+    public void clear()
+    {
+        for (int slot = 0; slot < end; slot++)
+        {
+            if (slots[slot] != null)
+            {
+                slots[slot].storeSlot = -1;
+                slots[slot] = null;
+            }
+        }
+        end = 0;
+        size = 0;
+    }
+
+    // number of positions at(int) takes, including empty ones
+    public int positions()
+    {
+        return end;
+    }
+
+    // sprite at a position in tick order, or null if that position is empty;
+    // positions only change when sprites are added or the store is compacted
+    public Sprite at(int position)
+    {
+        return slots[end - 1 - position];
+    }
+
+    public Iterator<Sprite> iterator()
+    {
+        return new Iterator<Sprite>()
+        {
+            private int slot = nextSlot(end - 1);
+
+            public boolean hasNext()
+            {
+                return slot >= 0;
+            }
+
+            public Sprite next()
+            {
+                if (slot < 0)
+                    throw new NoSuchElementException();
+                Sprite sprite = slots[slot];
+                slot = nextSlot(slot - 1);
+                return sprite;
+            }
+        };
+    }
+
+    private int nextSlot(int slot)
+    {
+        while (slot >= 0 && slots[slot] == null)
+            slot--;
+        return slot;
+    }
+
+    private void put(int slot, Sprite sprite)
+    {
+        slots[slot] = sprite;
+        sprite.storeSlot = slot;
+        size++;
+    }
+
+    private void ensureRoom(int extra)
+    {
+        if (end + extra <= slots.length)
+            return;
+        compact();
+        if (end + extra > slots.length)
+        {
+            Sprite[] grown = new Sprite[Math.max(slots.length * 2, end + extra)];
+            System.arraycopy(slots, 0, grown, 0, end);
+            slots = grown;
+        }
+    }
+
+    private void compact()
+    {
+        int to = 0;
+        for (int slot = 0; slot < end; slot++)
+        {
+            Sprite sprite = slots[slot];
+            if (sprite != null)
+            {
+                slots[to] = sprite;
+                sprite.storeSlot = to++;
+            }
+        }
+        for (int slot = to; slot < end; slot++)
+        {
+            slots[slot] = null;
+        }
+        end = to;
+    }
+}
@@ -0,0 +1,281 @@
+package com.mojang.mario.stats;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import com.mojang.mario.level.BgLevelGenerator;
+import com.mojang.mario.level.Level;
+import com.mojang.mario.level.LevelGenerator;
+import com.mojang.mario.level.OreLevelGenerator;
+import com.mojang.mario.util.KLDivergence;
+import com.mojang.mario.util.LongIntHashMap;
+import com.mojang.mario.util.PatternCounter;
+
+/**
+ * DiversityStudy measures how different the levels of a generator are
+ * from each other. For each generator it creates n pairs of levels, and
+ * writes the KL divergence of each pair for every kernel size to a CSV file.
+ *
+ * Pairs are evaluated on a work stealing pool. The seeds of a pair only
+ * depend on the study seed and the pair's index, and rows are written in
+ * pair order as they complete, so the same study always produces the
+ * same files no matter how many threads run it.
+ */
+public class DiversityStudy {
+    private static final int TASKS_PER_THREAD = 16;
+    private static final int REPORT_INTERVAL = 1000;
+
+    private final List<Generator> generators;
+    private final int[] kernelSizes;
+    private final int pairs;
+    private int width = 256;
+    private int height = 15;
+    private int difficulty = 3;
+    private long seed = 0;
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Generator is a level generator that can be compared in a study.
+     */
+    public enum Generator
+    {
+        ORE("ore")
+        {
+            @Override
+            public Level createLevel(int width, int height, long seed, int difficulty)
+            {
+                return OreLevelGenerator.createLevel(width, height, seed, difficulty, LevelGenerator.TYPE_OVERGROUND, true, true);
+            }
+        },
+        NOTCH("notch")
+        {
+            @Override
+            public Level createLevel(int width, int height, long seed, int difficulty)
+            {
+                return LevelGenerator.createLevel(width, height, seed, difficulty, LevelGenerator.TYPE_OVERGROUND);
+            }
+        },
+        BACKGROUND("background")
+        {
+            @Override
+            public Level createLevel(int width, int height, long seed, int difficulty)
+            {
+                return BgLevelGenerator.createLevel(width, height, false, LevelGenerator.TYPE_OVERGROUND, seed);
+            }
+        };
+
+        private final String fileName;
+
+        Generator(String fileName)
+        {
+            this.fileName = fileName;
+        }
+
+        /**
+         * createLevel with this generator.
+         * @param width Width of the level
+         * @param height Height of the level
+         * @param seed Seed for the generator
+         * @param difficulty Difficulty of the level, if the generator uses one
+         * @return Generated level
+         */
+        public abstract Level createLevel(int width, int height, long seed, int difficulty);
+
+        /**
+         * getFileName used for this generator's results.
+         * @return Name of the CSV file, without the extension.
+         */
+        public String getFileName()
+        {
+            return fileName;
+        }
+    }
+
+    /**
+     * Constructor.
+     * @param generators Generators to compare. ORE needs ChunkLibrary to be loaded.
+     * @param kernelSizes Sizes of the square kernels to compare pairs with
+     * @param pairs Number of pairs of levels to compare for each generator
+     */
+    public DiversityStudy(List<Generator> generators, int[] kernelSizes, int pairs)
+    {
+        this.generators = new ArrayList<>(generators);
+        this.kernelSizes = kernelSizes.clone();
+        this.pairs = pairs;
+    }
+
+    /**
+     * setLevelSize of the generated levels.
+     * @param width Width of each level
+     * @param height Height of each level
+     */
+    public void setLevelSize(int width, int height)
+    {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * setDifficulty passed on to the generators.
+     * @param difficulty Difficulty of each level
+     */
+    public void setDifficulty(int difficulty)
+    {
+        this.difficulty = difficulty;
+    }
+
+    /**
+     * setSeed that every level seed is derived from.
+     * @param seed Seed of the study
+     */
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
+    }
+
+    /**
+     * setThreads used to run the study. Does not affect the results.
+     * @param threads Number of worker threads, at least 1
+     */
+    public void setThreads(int threads)
+    {
+        if (threads < 1)
+        {
+            throw new IllegalArgumentException("A study needs at least one thread");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * run the study, writing one CSV file per generator into directory.
+     * @param directory Directory to write results to
+     * @throws IOException If a result file can't be written
+     */
+    public void run(File directory) throws IOException
+    {
+        directory.mkdirs();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            for (Generator generator : generators)
+            {
+                File file = new File(directory, generator.getFileName() + ".csv");
+                try (PrintWriter out = new PrintWriter(file)) {
+                    run(pool, generator, out);
+                    if (out.checkError())
+                    {
+                        throw new IOException("Could not write " + file);
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void run(ForkJoinPool pool, Generator generator, PrintWriter out) throws IOException
+    {
+        out.print("pair,seed1,seed2");
+        for (int k : kernelSizes)
+        {
+            out.printf(",kl%dx%d", k, k);
+        }
+        out.println();
+
+        long start = System.nanoTime();
+        int window = threads * TASKS_PER_THREAD;
+        ArrayDeque<Future<double[]>> pending = new ArrayDeque<>(window);
+        int submitted = 0;
+        int written = 0;
+        while (written < pairs)
+        {
+            while (submitted < pairs && pending.size() < window)
+            {
+                final int pair = submitted++;
+                pending.add(pool.submit(() -> comparePair(generator, pair)));
+            }
+
+            double[] result;
+            try {
+                result = pending.poll().get();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for pair " + written, ie);
+            } catch (ExecutionException ee) {
+                throw new IOException("Pair " + written + " failed", ee.getCause());
+            }
+
+            out.print(written);
+            out.print(',');
+            out.print(pairSeed(written, 0));
+            out.print(',');
+            out.print(pairSeed(written, 1));
+            for (double kl : result)
+            {
+                out.print(',');
+                out.print(kl);
+            }
+            out.println();
+            written++;
+
+            if (written % REPORT_INTERVAL == 0 && written < pairs)
+            {
+                System.out.printf("%s %d/%d\n", generator.getFileName(), written, pairs);
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%s %d pairs in %.2f s, %.1f levels/s, %.1f pairs/s\n",
+            generator.getFileName(), pairs, seconds, 2 * pairs / seconds, pairs / seconds);
+    }
+
+    private double[] comparePair(Generator generator, int pair)
+    {
+        Level level1 = generator.createLevel(width, height, pairSeed(pair, 0), difficulty);
+        Level level2 = generator.createLevel(width, height, pairSeed(pair, 1), difficulty);
+
+        Workspace ws = WORKSPACE.get();
+        double[] result = new double[kernelSizes.length];
+        for (int i = 0; i < kernelSizes.length; i++)
+        {
+            int k = kernelSizes[i];
+            ws.counter.count(level1, k, k, ws.px);
+            ws.counter.count(level2, k, k, ws.qx);
+            result[i] = KLDivergence.klDivergence(ws.px, ws.qx);
+        }
+        return result;
+    }
+
+    /**
+     * pairSeed derives the seed of one level of a pair from the study seed.
+     * Uses the SplitMix64 finalizer so neighbouring pairs get unrelated seeds.
+     * @param pair Index of the pair
+     * @param side 0 for the first level of the pair, 1 for the second
+     * @return Seed for the level
+     */
+    private long pairSeed(int pair, int side)
+    {
+        long z = seed + (2L * pair + side + 1) * 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static final ThreadLocal<Workspace> WORKSPACE = ThreadLocal.withInitial(Workspace::new);
+
+    /**
+     * Workspace holds the pattern tables reused by one worker thread.
+     */
+    private static class Workspace
+    {
+        final PatternCounter counter = new PatternCounter();
+        final LongIntHashMap px = new LongIntHashMap();
+        final LongIntHashMap qx = new LongIntHashMap();
+    }
+}
@@ -37,7 +37,7 @@ public class ShowPieces {
         Logger.setLevel(Logger.LEVEL_ERROR);
         setupDirectory();
         ChunkLibrary.init(programDirectory);
-        ChunkLibrary.loadChunksNoThreading();
+        ChunkLibrary.loadChunks();
         System.out.println("Chunks loaded");
 
 
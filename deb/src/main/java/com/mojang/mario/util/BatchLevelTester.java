@@ -0,0 +1,190 @@
+package com.mojang.mario.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import ch.idsia.ai.agents.Agent;
+import ch.idsia.ai.agents.AgentsPool;
+import ch.idsia.mario.engine.MarioSimulation;
+import ch.idsia.tools.EvaluationInfo;
+
+/**
+ * BatchLevelTester plays many com.mojang.mario.level.Levels with an agent
+ * on a fixed pool of worker threads, without a window.
+ *
+ * Each worker creates its agent once and resets it between levels. Levels
+ * are converted with LevelAdapter on the submitting thread, so workers only
+ * play them. At most a few levels per worker wait in the queue; submitting
+ * more blocks until a worker frees up, so a long stream of levels never
+ * piles up in memory.
+ */
+public class BatchLevelTester implements AutoCloseable {
+    private static final int QUEUED_PER_THREAD = 4;
+    private static final int MARIO_MODE_SMALL = 0;
+
+    private final ExecutorService pool;
+    private final Semaphore slots;
+    private final ThreadLocal<Worker> workers;
+
+    /**
+     * Result of playing one level.
+     */
+    public static class Result
+    {
+        private final EvaluationInfo info;
+        private final long wallTimeNanos;
+
+        Result(EvaluationInfo info, long wallTimeNanos)
+        {
+            this.info = info;
+            this.wallTimeNanos = wallTimeNanos;
+        }
+
+        /**
+         * getInfo about how the agent did on the level.
+         * @return EvaluationInfo of the run
+         */
+        public EvaluationInfo getInfo()
+        {
+            return info;
+        }
+
+        /**
+         * getWallTimeMillis spent playing the level, not counting time
+         * spent waiting for a worker.
+         * @return Wall time in milliseconds
+         */
+        public double getWallTimeMillis()
+        {
+            return wallTimeNanos / 1e6;
+        }
+    }
+
+    /**
+     * Constructor.
+     * @param agent Class name of the agent to test with, as for LevelTester.test
+     * @param threads Number of worker threads, at least 1
+     */
+    public BatchLevelTester(String agent, int threads)
+    {
+        this(() -> AgentsPool.load(agent), threads);
+    }
+
+    /**
+     * Constructor.
+     * @param agents Creates the agent of each worker. Called once per worker thread.
+     * @param threads Number of worker threads, at least 1
+     */
+    public BatchLevelTester(Supplier<Agent> agents, int threads)
+    {
+        if (threads < 1)
+        {
+            throw new IllegalArgumentException("A BatchLevelTester needs at least one thread");
+        }
+        pool = Executors.newFixedThreadPool(threads, new WorkerThreadFactory());
+        slots = new Semaphore(threads * QUEUED_PER_THREAD);
+        workers = ThreadLocal.withInitial(() -> new Worker(agents.get()));
+    }
+
+    /**
+     * submit a level to be played. Blocks while the queue is full.
+     * @param level Level to test. It is converted before this returns, so it
+     *              may be changed afterwards.
+     * @return Future result of playing the level
+     * @throws InterruptedException If interrupted while waiting for room in the queue
+     */
+    public Future<Result> submit(com.mojang.mario.level.Level level) throws InterruptedException
+    {
+        ch.idsia.mario.engine.level.Level converted = LevelAdapter.convert(level);
+        slots.acquire();
+        try {
+            return pool.submit(() -> {
+                try {
+                    return workers.get().play(converted);
+                } finally {
+                    slots.release();
+                }
+            });
+        } catch (RuntimeException re) {
+            slots.release();
+            throw re;
+        }
+    }
+
+    /**
+     * submitAll levels of a stream, in order. The stream is consumed on the
+     * calling thread, which blocks while the queue is full.
+     * @param levels Levels to test
+     * @return Future results, in the order of the stream
+     * @throws InterruptedException If interrupted while waiting for room in the queue
+     */
+    public List<Future<Result>> submitAll(Stream<com.mojang.mario.level.Level> levels) throws InterruptedException
+    {
+        List<Future<Result>> results = new ArrayList<>();
+        for (com.mojang.mario.level.Level level : (Iterable<com.mojang.mario.level.Level>) levels::iterator)
+        {
+            results.add(submit(level));
+        }
+        return results;
+    }
+
+    /**
+     * shutdown the workers once the submitted levels have been played.
+     */
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+
+    @Override
+    public void close()
+    {
+        shutdown();
+    }
+
+    /**
+     * Worker holds the agent and simulation reused by one worker thread.
+     */
+    private static class Worker
+    {
+        private final Agent agent;
+        private final MarioSimulation simulation = new MarioSimulation();
+
+        Worker(Agent agent)
+        {
+            this.agent = agent;
+            simulation.setAgent(agent);
+            simulation.setMarioMode(MARIO_MODE_SMALL);
+        }
+
+        Result play(ch.idsia.mario.engine.level.Level level)
+        {
+            long start = System.nanoTime();
+            agent.reset();
+            simulation.startLevel(level);
+            EvaluationInfo info = simulation.run();
+            return new Result(info, System.nanoTime() - start);
+        }
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory
+    {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r)
+        {
+            Thread t = new Thread(r, "level-tester-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -13,9 +13,12 @@ public class KLDivergence {
     
     private static final double EPS = 0.0000001;
 
+    private static final ThreadLocal<Workspace> WORKSPACE = ThreadLocal.withInitial(Workspace::new);
+
     /**
      * convolution over the level, returning unique windows and their number
-     * of occurences in a map.
+     * of occurences in a map. This copies every window out into its own
+     * Level, so it is slow. Use PatternCounter when only counts are needed.
      * @param p Level to convolve over
      * @param kwidth width of kernel
      * @param kheight height of kernel
@@ -56,17 +59,32 @@ public class KLDivergence {
      */
     public static double klDivergence(Level p, Level q, int kwidth, int kheight)
     {
-        // System.out.println("Starting klDivergence");
-        Map<Level, Integer> px = convolution(p, kwidth, kheight);
-        Map<Level, Integer> qx = convolution(q, kwidth, kheight);
-        // System.out.printf("Kernels in px %d\nKernels in qx %d\n", px.size(), qx.size());
+        Workspace ws = WORKSPACE.get();
+        ws.counter.count(p, kwidth, kheight, ws.px);
+        ws.counter.count(q, kwidth, kheight, ws.qx);
+        return klDivergence(ws.px, ws.qx);
+    }
+
+    /**
+     * Find klDivergence between two pattern tables built by PatternCounter.
+     * Useful when the same level is compared against many others, since
+     * it only has to be counted once.
+     * @param px Pattern counts used for p distribution in formula
+     * @param qx Pattern counts used for q distribution in formula
+     * @return klDivergence of P,Q == 0 if the tables are the same
+     */
+    public static double klDivergence(LongIntHashMap px, LongIntHashMap qx)
+    {
+        double pDenominator = (px.size() + EPS) * (1 + EPS);
+        double qDenominator = (qx.size() + EPS) * (1 + EPS);
 
         double sum = 0.0;
-        for (Level x : px.keySet())
+        int n = px.slotCount();
+        for (int i = 0; i < n; i++)
         {
-            double ppx = epsCorrectedP(px, x);
-            double pqx = epsCorrectedP(qx, x);
-            // System.out.printf("ppx %.4f pqx %.4f sum %.6f\n", ppx, pqx, sum);
+            if (!px.isUsed(i)) continue;
+            double ppx = (px.valueAt(i) + EPS) / pDenominator;
+            double pqx = (qx.get(px.keyAt(i)) + EPS) / qDenominator;
 
             sum += ppx * Math.log(ppx/pqx);
         }
@@ -91,4 +109,15 @@ public class KLDivergence {
         double result = numerator / denominator;
         return result;
     }
+
+    /**
+     * Workspace holds the per thread tables used by klDivergence,
+     * so repeated comparisons do not allocate.
+     */
+    private static class Workspace
+    {
+        final PatternCounter counter = new PatternCounter();
+        final LongIntHashMap px = new LongIntHashMap();
+        final LongIntHashMap qx = new LongIntHashMap();
+    }
 }
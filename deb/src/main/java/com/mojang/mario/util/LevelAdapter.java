@@ -54,13 +54,6 @@ public class LevelAdapter {
         dstLevel.xExit = srcLevel.xExit;
         dstLevel.yExit = srcLevel.yExit;
 
-        // tile behaviours ?
-        System.arraycopy(
-            com.mojang.mario.level.Level.TILE_BEHAVIORS, 0, 
-            ch.idsia.mario.engine.level.Level.TILE_BEHAVIORS, 0, 
-            com.mojang.mario.level.Level.TILE_BEHAVIORS.length
-        );
-
         return dstLevel;
     }
 }
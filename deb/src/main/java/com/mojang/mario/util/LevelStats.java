@@ -67,10 +67,20 @@ public class LevelStats {
         XYSeries[] series = new XYSeries[ActionTrace.KEYS.length];
         for (int i = 0; i < series.length; i++)
             series[i] = new XYSeries(ActionTrace.KEYS[i]);
-        for (ActionTrace action : info.actions) 
+        // a run of equal keys is a flat line, so its first and last frame are enough
+        ActionTrace actions = info.actions;
+        for (int run = 0; run < actions.getRunCount(); run++)
         {
+            int first = actions.getRunFirstFrame(run);
+            int last = first + actions.getRunLength(run) - 1;
+            byte keys = actions.getRunKeys(run);
             for (int i = 0; i < ActionTrace.KEYS.length; i++)
-                series[i].add(action.getFrame(), action.getKey(i) + 2 * i);
+            {
+                int value = ((keys >> i) & 1) + 2 * i;
+                series[i].add(first, value);
+                if (last != first)
+                    series[i].add(last, value);
+            }
         }
         XYSeriesCollection table = new XYSeriesCollection();
         for (XYSeries ser : series) 
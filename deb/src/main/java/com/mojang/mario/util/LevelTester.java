@@ -10,14 +10,18 @@ import ch.idsia.tools.EvaluationInfo;
 import ch.idsia.tools.EvaluationOptions;
 import ch.idsia.tools.LOGGER;
 
+import java.util.concurrent.CancellationException;
+
 
 /**
  * LevelTester returns EvaluationInfo from using an agent on a com.mojang.mario.level.Level.
+ * To test many levels at once, use BatchLevelTester.
  */
 public class LevelTester {
 
     public static final String ASTAR_AGENT = "competition.cig.robinbaumgarten.AStarAgent";
     public static final String HUMAN_AGENT = "ch.idsia.ai.agents.human.HumanKeyboardAgent";
+    public static final int DEFAULT_SEED = 0;
 
     /**
      * test the level with the specfied agent, and get EvalutionInfo for it.
@@ -26,33 +30,46 @@ public class LevelTester {
      * @return EvaluationInfo of results of testing
      */
     public static EvaluationInfo test(com.mojang.mario.level.Level level, String agent) {
-        System.out.println("Calling test level with agent " + agent);
+        return test(level, agent, DEFAULT_SEED);
+    }
+
+    /**
+     * test the level with the specfied agent and a seed for the random effects
+     * of the simulation, so the same level, agent and seed give the same results.
+     * @param level Level to test
+     * @param agent Agent to use
+     * @param seed Seed of the simulation
+     * @return EvaluationInfo of results of testing
+     * @throws CancellationException if the thread is interrupted before the test ends
+     */
+    public static EvaluationInfo test(com.mojang.mario.level.Level level, String agent, int seed) {
+        if (LOGGER.isLoggable(LOGGER.VERBOSE_MODE.ALL))
+            LOGGER.println("Calling test level with agent " + agent, LOGGER.VERBOSE_MODE.ALL);
         Agent controller = new HumanKeyboardAgent();
         if (agent != null) {
             controller = AgentsPool.load (agent);
             AgentsPool.addAgent(controller);
         }
         EvaluationOptions options = new CmdLineOptions(new String[0]);
-        LOGGER.setVerboseMode(LOGGER.VERBOSE_MODE.ALL);
         ch.idsia.mario.engine.level.Level tmpLevel = LevelAdapter.convert(level);
-        System.out.println("Calling setLevel and setAgent");
         options.setLevel(tmpLevel);
         options.setAgent(controller);
-        
-        System.out.print("after setLevel ");
-        System.out.println(options.getLevel() == null);
+
         Task task = new ProgressTask(options);
         options.setMarioMode(0);
         options.setMaxFPS(true);
         options.setVisualization(false);
         options.setNumberOfTrials(2);
         options.setMatlabFileName("");
-        options.setLevelRandSeed((int) (Math.random () * Integer.MAX_VALUE));
+        options.setLevelRandSeed(seed);
         options.setLevelDifficulty(10);
-        System.out.println("Start playing");
         task.setOptions(options);
 
-        System.out.println ("Score: " + task.evaluate(controller)[0]);
+        double score = task.evaluate(controller)[0];
+        if (Thread.currentThread().isInterrupted())
+            throw new CancellationException("Test of level with agent " + agent + " was interrupted");
+        if (LOGGER.isLoggable(LOGGER.VERBOSE_MODE.INFO))
+            LOGGER.println("Score: " + score, LOGGER.VERBOSE_MODE.INFO);
         EvaluationInfo info = task.getLastResult();
 
         return info;
@@ -0,0 +1,205 @@
+package com.mojang.mario.util;
+
+import java.util.Arrays;
+
+/**
+ * LongIntHashMap is an open addressing hash table from long keys
+ * to int counts. It stores keys and values in flat primitive arrays,
+ * so adding and looking up entries never allocates once the table
+ * has grown to fit.
+ *
+ * A slot is empty when its value is 0, which means a key can not be
+ * stored with a count of 0. That is fine for counting occurences.
+ */
+public class LongIntHashMap {
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    /**
+     * Constructor with a default starting capacity.
+     */
+    public LongIntHashMap()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor.
+     * @param expected Number of entries the table should hold before it
+     *                 needs to grow.
+     */
+    public LongIntHashMap(int expected)
+    {
+        int capacity = capacityFor(expected);
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * increment the count stored at key, adding it with a count of 1
+     * if it is not already in the table.
+     * @param key Key to increment.
+     */
+    public void increment(long key)
+    {
+        int i = slot(key);
+        while (values[i] != 0)
+        {
+            if (keys[i] == key)
+            {
+                values[i]++;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = 1;
+        if (++size * 2 > keys.length)
+        {
+            grow();
+        }
+    }
+
+    /**
+     * get the count stored for key.
+     * @param key Key to look up.
+     * @return Count for key, or 0 if it is not in the table.
+     */
+    public int get(long key)
+    {
+        int i = slot(key);
+        while (values[i] != 0)
+        {
+            if (keys[i] == key)
+            {
+                return values[i];
+            }
+            i = (i + 1) & mask;
+        }
+        return 0;
+    }
+
+    /**
+     * size is the number of unique keys in the table.
+     * @return Number of unique keys.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * clear removes all entries, keeping the current capacity.
+     */
+    public void clear()
+    {
+        Arrays.fill(values, 0);
+        size = 0;
+    }
+
+    /**
+     * clear removes all entries, and sizes the table to hold expected
+     * entries without growing. As long as expected is not exceeded, the
+     * slot each key lands in only depends on expected and the keys added,
+     * not on what the table was used for before.
+     * @param expected Number of entries the table should hold.
+     */
+    public void clear(int expected)
+    {
+        int capacity = capacityFor(expected);
+        if (capacity == keys.length)
+        {
+            clear();
+        }
+        else
+        {
+            keys = new long[capacity];
+            values = new int[capacity];
+            mask = capacity - 1;
+            size = 0;
+        }
+    }
+
+    /**
+     * slotCount is the number of slots in the table. Use it with
+     * isUsed, keyAt and valueAt to walk the entries without allocating.
+     * @return Number of slots in the table.
+     */
+    public int slotCount()
+    {
+        return keys.length;
+    }
+
+    /**
+     * isUsed checks if a slot holds an entry.
+     * @param slot Slot index in [0, slotCount())
+     * @return true if the slot holds an entry.
+     */
+    public boolean isUsed(int slot)
+    {
+        return values[slot] != 0;
+    }
+
+    /**
+     * keyAt returns the key stored in a slot.
+     * @param slot Slot index in [0, slotCount())
+     * @return Key at slot. Only meaningful if isUsed(slot).
+     */
+    public long keyAt(int slot)
+    {
+        return keys[slot];
+    }
+
+    /**
+     * valueAt returns the count stored in a slot.
+     * @param slot Slot index in [0, slotCount())
+     * @return Count at slot, 0 if the slot is empty.
+     */
+    public int valueAt(int slot)
+    {
+        return values[slot];
+    }
+
+    private static int capacityFor(int expected)
+    {
+        return Integer.highestOneBit(Math.max(expected, 8) * 2 - 1) << 1;
+    }
+
+    private int slot(long key)
+    {
+        // murmur3 finalizer, spreads the bits of the key over the index
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int)key & mask;
+    }
+
+    private void grow()
+    {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++)
+        {
+            if (oldValues[j] != 0)
+            {
+                int i = slot(oldKeys[j]);
+                while (values[i] != 0)
+                {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.mojang.mario.util;
+
+import com.mojang.mario.level.Level;
+import com.mojang.mario.level.SpriteTemplate;
+import com.mojang.mario.level.Tile;
+
+/**
+ * PatternCounter counts the unique kwidth x kheight windows of a level.
+ * Each window (tiles plus sprite types) is reduced to a 64 bit key with
+ * a 2D rolling hash, so sliding the kernel one tile costs O(1) instead of
+ * copying the window out into its own Level.
+ *
+ * Windows are compared the same way Level.equals does it: ANCHOR_POINT,
+ * PRESERVE_POINT and LEVEL_EXIT tiles are treated as air, and sprites are
+ * compared by type only.
+ *
+ * A PatternCounter keeps its column buffer between calls, so reuse one
+ * per thread to avoid allocating at all.
+ */
+public class PatternCounter {
+    private static final long ROW_BASE = 0x9e3779b97f4a7c15L;
+    private static final long COLUMN_BASE = 0xc2b2ae3d27d4eb4fL;
+
+    private long[] columns = new long[0];
+
+    /**
+     * count every window of level into patterns. patterns is cleared first,
+     * and sized for the number of windows, so the layout of the table (and
+     * the order it is walked in) only depends on the level and kernel.
+     * Windows start at x in [0, width - kwidth) and y in [0, height - kheight),
+     * the same windows KLDivergence.convolution visits.
+     * @param level Level to convolve over
+     * @param kwidth width of kernel
+     * @param kheight height of kernel
+     * @param patterns Table to count window keys into
+     */
+    public void count(Level level, int kwidth, int kheight, LongIntHashMap patterns)
+    {
+        int ex = level.width - kwidth;
+        int ey = level.height - kheight;
+        if (ex <= 0 || ey <= 0)
+        {
+            patterns.clear();
+            return;
+        }
+        patterns.clear(ex * ey);
+
+        int nColumns = ex + kwidth - 1;
+        if (columns.length < nColumns * ey)
+        {
+            columns = new long[nColumns * ey];
+        }
+
+        // hash each column segment of height kheight, rolling down the column
+        long rowPow = pow(ROW_BASE, kheight - 1);
+        for (int x = 0; x < nColumns; x++)
+        {
+            byte[] map = level.map[x];
+            SpriteTemplate[] sprites = level.spriteTemplates[x];
+            long h = 0;
+            for (int y = 0; y < kheight; y++)
+            {
+                h = h * ROW_BASE + cell(map[y], sprites[y]);
+            }
+            int offset = x * ey;
+            columns[offset] = h;
+            for (int y = 1; y < ey; y++)
+            {
+                h -= cell(map[y - 1], sprites[y - 1]) * rowPow;
+                h = h * ROW_BASE + cell(map[y + kheight - 1], sprites[y + kheight - 1]);
+                columns[offset + y] = h;
+            }
+        }
+
+        // combine kwidth column hashes, rolling across the level
+        long columnPow = pow(COLUMN_BASE, kwidth - 1);
+        for (int y = 0; y < ey; y++)
+        {
+            long h = 0;
+            for (int x = 0; x < kwidth; x++)
+            {
+                h = h * COLUMN_BASE + columns[x * ey + y];
+            }
+            patterns.increment(h);
+            for (int x = 1; x < ex; x++)
+            {
+                h -= columns[(x - 1) * ey + y] * columnPow;
+                h = h * COLUMN_BASE + columns[(x + kwidth - 1) * ey + y];
+                patterns.increment(h);
+            }
+        }
+    }
+
+    private static long cell(byte tile, SpriteTemplate st)
+    {
+        if (tile == Tile.ANCHOR_POINT || tile == Tile.PRESERVE_POINT || tile == Tile.LEVEL_EXIT)
+        {
+            tile = Tile.AIR;
+        }
+        int type = st == null ? -1 : st.getType();
+        return ((type + 1) << 8 | (tile & 0xff)) + 1;
+    }
+
+    private static long pow(long base, int exp)
+    {
+        long result = 1;
+        for (int i = 0; i < exp; i++)
+        {
+            result *= base;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,351 @@
+package com.mojang.mario.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import ch.idsia.mario.engine.LevelScene;
+import ch.idsia.mario.engine.MarioSimulation;
+import ch.idsia.mario.engine.level.Level;
+import ch.idsia.mario.engine.level.SpriteTemplate;
+import ch.idsia.mario.engine.sprites.Mario;
+import ch.idsia.mario.environments.Environment;
+import ch.idsia.tools.EvaluationInfo;
+import competition.cig.robinbaumgarten.AStarAgent;
+
+/**
+ * SegmentedLevelTester tests a level that is edited over and over, playing
+ * only as much of it again as an edit can have changed.
+ *
+ * Every run keeps checkpoints of the simulation and of the agent where Mario
+ * first gets into each segment of SEGMENT_WIDTH columns. After an edit to
+ * the columns a to b, the next test goes on from the last checkpoint taken
+ * before Mario came near column a, with the edited columns swapped in. It
+ * stops at the first checkpoint that is in the same state as in the last
+ * run, as far as the columns right of b go, if the last run never came near
+ * b again after it: the rest of the run would go the same way, so its
+ * results are taken over. Near means inside the window of columns the scene
+ * spawns enemies from and keeps sprites in, which follows the camera and so
+ * stays at the edge of the level at its start and end, or inside what the
+ * agent sees around Mario, widened by MARGIN for what sprites touch.
+ *
+ * The agent can only be copied at the ticks it replans at, so checkpoints
+ * are taken at the first of those in a segment. Levels are played with the
+ * A* agent with a fixed expansion budget, which also makes every run of a
+ * level go the same way, so results differ from LevelTester's.
+ */
+public class SegmentedLevelTester
+{
+    public static final int SEGMENT_WIDTH = 32;
+    public static final int MARGIN = 2;
+
+    // the scene removes sprites this many pixels off the camera
+    private static final int SPRITE_RANGE = 64;
+
+    private static final int EXPANSION_BUDGET = 2000;
+    private static final int MARIO_MODE_SMALL = 0;
+
+    private final long seed;
+
+    // what the last run that was played to the end left behind
+    private Level lastLevel = null;
+    private EvaluationInfo lastInfo = null;
+    private List<Segment> segments = new ArrayList<Segment>();
+
+    private int ticksPlayed = 0;
+
+    /**
+     * Segment is the checkpoint a run took when Mario got into a segment.
+     */
+    private static class Segment
+    {
+        final MarioSimulation.Checkpoint simulation;
+        final AStarAgent.Checkpoint agent;
+        // the columns up to maxReach came near Mario before the checkpoint
+        final int maxReach;
+        // the columns left of staleBelow may not be as the level has them
+        final int staleBelow;
+        // no column left of this came near Mario until the next checkpoint
+        int minReachUntilNext;
+
+        Segment(MarioSimulation.Checkpoint simulation, AStarAgent.Checkpoint agent, int maxReach, int staleBelow,
+                int minReachUntilNext)
+        {
+            this.simulation = simulation;
+            this.agent = agent;
+            this.maxReach = maxReach;
+            this.staleBelow = staleBelow;
+            this.minReachUntilNext = minReachUntilNext;
+        }
+    }
+
+    public SegmentedLevelTester()
+    {
+        this(LevelTester.DEFAULT_SEED);
+    }
+
+    /**
+     * Constructor.
+     * @param seed Seed of the simulation, as for LevelTester.test
+     */
+    public SegmentedLevelTester(long seed)
+    {
+        this.seed = seed;
+    }
+
+    /**
+     * test the level, playing again only what changed since the last test.
+     * @param source Level to test
+     * @return EvaluationInfo of results of testing
+     * @throws CancellationException if the thread is interrupted before the test ends
+     */
+    public synchronized EvaluationInfo test(com.mojang.mario.level.Level source)
+    {
+        Level level = LevelAdapter.convert(source);
+        ticksPlayed = 0;
+        // the time limit comes from the exit, so moving it changes every tick
+        if (lastLevel == null || lastLevel.width != level.width || lastLevel.height != level.height
+                || lastLevel.xExit != level.xExit || lastLevel.yExit != level.yExit)
+        {
+            return play(level, -1, -1);
+        }
+
+        int a = 0;
+        while (a < level.width && !columnChanged(lastLevel, level, a))
+        {
+            a++;
+        }
+        if (a == level.width)
+        {
+            return lastInfo;
+        }
+        int b = level.width - 1;
+        while (!columnChanged(lastLevel, level, b))
+        {
+            b--;
+        }
+
+        int from = -1;
+        for (int j = 0; j < segments.size(); j++)
+        {
+            Segment segment = segments.get(j);
+            if (segment == null)
+            {
+                continue;
+            }
+            if (segment.maxReach >= a)
+            {
+                break;
+            }
+            from = j;
+        }
+        if (from >= 0)
+        {
+            EvaluationInfo info = play(level, from, b);
+            if (info != null)
+            {
+                return info;
+            }
+        }
+        return play(level, -1, -1);
+    }
+
+    /**
+     * getTicksPlayed by the last test, which is less than the ticks of its
+     * result as far as it could go on from checkpoints.
+     * @return Number of ticks simulated
+     */
+    public synchronized int getTicksPlayed()
+    {
+        return ticksPlayed;
+    }
+
+    // plays level from the start or from segments[from], with the columns up to b changed since then.
+    // Returns null if the run comes near columns its checkpoint does not know.
+    private EvaluationInfo play(Level level, int from, int b)
+    {
+        MarioSimulation simulation = new MarioSimulation();
+        AStarAgent agent = new AStarAgent(EXPANSION_BUDGET, 1);
+        simulation.setAgent(agent);
+        simulation.setMarioMode(MARIO_MODE_SMALL);
+        agent.reset();
+        simulation.startLevel(level.copy(), seed);
+
+        List<Segment> played = new ArrayList<Segment>();
+        Segment current = null;
+        int maxReach = 0;
+        int staleBelow = 0;
+        if (from >= 0)
+        {
+            Segment start = segments.get(from);
+            // a checkpoint taken over from an older run holds the actions of that run, which may have
+            // got into the same state another way
+            simulation.restore(start.simulation, lastInfo.actions);
+            // nothing right of maxReach has been touched, so it can be taken from the new level as it is
+            simulation.getLevelScene().replaceLevelFrom(level, start.maxReach + 1);
+            agent.restore(start.agent);
+            maxReach = start.maxReach;
+            staleBelow = start.staleBelow;
+            played.addAll(segments.subList(0, from));
+            current = new Segment(start.simulation, start.agent, maxReach, staleBelow, Integer.MAX_VALUE);
+            played.add(current);
+        }
+
+        while (simulation.isRunning())
+        {
+            if (Thread.currentThread().isInterrupted())
+            {
+                throw new CancellationException("Test of level was interrupted");
+            }
+            simulation.tickScene();
+            ticksPlayed++;
+            if (!simulation.act())
+            {
+                break;
+            }
+            LevelScene scene = simulation.getLevelScene();
+            if (scene.mario.getStatus() != Mario.STATUS_RUNNING)
+            {
+                simulation.stop();
+            }
+
+            int cell = (int) (scene.mario.x / 16);
+            int left = reachLeft(scene, cell);
+            if (staleBelow > 0 && left < staleBelow)
+            {
+                return null;
+            }
+            maxReach = Math.max(maxReach, reachRight(scene, cell));
+            if (current != null)
+            {
+                current.minReachUntilNext = Math.min(current.minReachUntilNext, left);
+            }
+            if (!simulation.isRunning() || cell < played.size() * SEGMENT_WIDTH)
+            {
+                continue;
+            }
+            AStarAgent.Checkpoint agentCheckpoint = agent.checkpoint();
+            if (agentCheckpoint == null)
+            {
+                continue;
+            }
+
+            int j = cell / SEGMENT_WIDTH;
+            current = new Segment(simulation.checkpoint(), agentCheckpoint, maxReach, staleBelow, Integer.MAX_VALUE);
+            while (played.size() < j)
+            {
+                played.add(null);
+            }
+            played.add(current);
+            if (from >= 0 && converged(j, current, b))
+            {
+                return adopt(level, simulation, played, j, b);
+            }
+        }
+
+        EvaluationInfo info = simulation.finishLevel();
+        lastLevel = level;
+        lastInfo = info;
+        segments = played;
+        return info;
+    }
+
+    // leftmost column near Mario: sprites are kept and enemies spawned around the camera, which
+    // does not follow Mario past the edges of the level, and the agent sees around Mario
+    private static int reachLeft(LevelScene scene, int cell)
+    {
+        int camera = (int) Math.floor((scene.xCam - SPRITE_RANGE) / 16);
+        return Math.min(camera, cell - Environment.HalfObsWidth) - MARGIN;
+    }
+
+    // rightmost column near Mario, see reachLeft
+    private static int reachRight(LevelScene scene, int cell)
+    {
+        int camera = (int) (scene.xCam + LevelScene.VIEW_WIDTH + SPRITE_RANGE) / 16;
+        return Math.max(camera, cell + Environment.HalfObsWidth) + MARGIN;
+    }
+
+    // whether the last run went on from segments[j] just like a run at segment does
+    private boolean converged(int j, Segment segment, int b)
+    {
+        if (j >= segments.size() || segments.get(j) == null)
+        {
+            return false;
+        }
+        Segment old = segments.get(j);
+        for (int k = j; k < segments.size(); k++)
+        {
+            if (segments.get(k) != null && segments.get(k).minReachUntilNext <= b)
+            {
+                return false;
+            }
+        }
+        return old.simulation.getTick() == segment.simulation.getTick()
+                && segment.simulation.getLevelScene().matches(old.simulation.getLevelScene(), b + 1)
+                && segment.agent.matches(old.agent, b + 1);
+    }
+
+    // finishes a run that converged at segment j with the rest of the last run
+    private EvaluationInfo adopt(Level level, MarioSimulation simulation, List<Segment> played, int j, int b)
+    {
+        Segment old = segments.get(j);
+        Segment current = played.get(j);
+        current.minReachUntilNext = old.minReachUntilNext;
+        for (int k = j + 1; k < segments.size(); k++)
+        {
+            Segment s = segments.get(k);
+            // their scenes still hold the columns up to b as the last run left them
+            played.add(s == null ? null : new Segment(s.simulation, s.agent, Math.max(s.maxReach, current.maxReach),
+                    Math.max(s.staleBelow, b + 1), s.minReachUntilNext));
+        }
+
+        EvaluationInfo now = simulation.getEvaluationInfo();
+        now.actions.addFrom(lastInfo.actions, current.simulation.getTick() + 1);
+        try
+        {
+            now.actions.finish();
+        }
+        catch (IOException e)
+        {
+            // the trace of a scene copy is only kept in memory
+            throw new IllegalStateException(e);
+        }
+        EvaluationInfo info = lastInfo.copy();
+        info.actions = now.actions;
+        info.totalActionsPerfomed += current.simulation.getTotalActionsPerfomed()
+                - old.simulation.getTotalActionsPerfomed();
+
+        lastLevel = level;
+        lastInfo = info;
+        segments = played;
+        return info;
+    }
+
+    // whether column x differs between a and b in anything the engine plays
+    private static boolean columnChanged(Level a, Level b, int x)
+    {
+        if (!Arrays.equals(a.map[x], b.map[x]) || !Arrays.equals(a.data[x], b.data[x]))
+        {
+            return true;
+        }
+        for (int y = 0; y < a.height; y++)
+        {
+            SpriteTemplate s = a.spriteTemplates[x][y];
+            SpriteTemplate t = b.spriteTemplates[x][y];
+            if (s == null || t == null)
+            {
+                if (s != t)
+                {
+                    return true;
+                }
+            }
+            else if (s.getType() != t.getType() || s.getWinged() != t.getWinged())
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -6,6 +6,8 @@ package competition.cig.robinbaumgarten;
  * To Public License, Version 2, as published by Sam Hocevar. See
  * http://sam.zoy.org/wtfpl/COPYING for more details. */ 
 
+import java.util.Arrays;
+
 import ch.idsia.ai.agents.Agent;
 import ch.idsia.mario.environments.Environment;
 
@@ -19,11 +21,28 @@ public class AStarAgent implements Agent
     private AStarSimulator sim;
     private float lastX = 0;
     private float lastY = 0;
+    private int expansionBudget = 0;
+    private int searchWidth = 1;
+    
+    public AStarAgent()
+    {
+    }
+    
+    // Plan with a fixed number of expansions per tick instead of for 40ms, simulating
+    // searchWidth nodes at a time in parallel. The same level then always gets the same
+    // plan, however busy the machine is.
+    public AStarAgent(int expansionBudget, int searchWidth)
+    {
+        this.expansionBudget = expansionBudget;
+        this.searchWidth = searchWidth;
+    }
     
     public void reset()
     {
         action = new boolean[Environment.numberOfButtons];
         sim = new AStarSimulator();
+        sim.expansionBudget = expansionBudget;
+        sim.searchWidth = searchWidth;
     }
 
     public boolean[] getAction(Environment observation)
@@ -93,6 +112,54 @@ public class AStarAgent implements Agent
         return action;
     }
 
+    // The agent state between two ticks, see checkpoint().
+    public static class Checkpoint
+    {
+    	private final boolean[] action;
+    	private final float lastX;
+    	private final float lastY;
+    	private final AStarSimulator.Checkpoint sim;
+    	
+    	private Checkpoint(boolean[] action, float lastX, float lastY, AStarSimulator.Checkpoint sim)
+    	{
+    		this.action = action;
+    		this.lastX = lastX;
+    		this.lastY = lastY;
+    		this.sim = sim;
+    	}
+    	
+    	// Does other act on exactly like this checkpoint, as long as Mario stays right of column fromX?
+    	public boolean matches(Checkpoint other, int fromX)
+    	{
+    		return lastX == other.lastX && lastY == other.lastY
+    			&& Arrays.equals(action, other.action) && sim.matches(other.sim, fromX);
+    	}
+    }
+    
+    // Copy the agent state, to go on from it later with restore(). Only possible at the
+    // ticks the planner replans at, returns null at any other tick.
+    public Checkpoint checkpoint()
+    {
+    	AStarSimulator.Checkpoint simCheckpoint = sim.checkpoint();
+    	if (simCheckpoint == null)
+    		return null;
+    	return new Checkpoint(action.clone(), lastX, lastY, simCheckpoint);
+    }
+    
+    public void restore(Checkpoint checkpoint)
+    {
+    	action = checkpoint.action.clone();
+    	lastX = checkpoint.lastX;
+    	lastY = checkpoint.lastY;
+    	sim.restore(checkpoint.sim);
+    }
+
+    // statistics of the planner since the last reset
+    public AStarSimulator.SearchStats getSearchStats()
+    {
+    	return sim.stats;
+    }
+
     public AGENT_TYPE getType()
     {
         return Agent.AGENT_TYPE.AI;
@@ -7,6 +7,10 @@ package competition.cig.robinbaumgarten.astar;
  * http://sam.zoy.org/wtfpl/COPYING for more details. */ 
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
 
 import ch.idsia.mario.engine.sprites.Mario;
 
@@ -17,6 +21,8 @@ import competition.cig.robinbaumgarten.astar.level.Level;
 // SearchNode class: A node is represented by this class, containing an action, a world state, and some more info.
 // search(): This function is the core search algorithm, searching for an optimal path
 // optimize(): Function controlling the search and extracting plans to return to the API.
+//
+// Nothing in the planner is static, so any number of simulators can plan side by side.
 
 
 public class AStarSimulator 
@@ -28,14 +34,94 @@ public class AStarSimulator
     public SearchNode bestPosition; 	// the current best position found by the planner
     public SearchNode furthestPosition; // the furthest position found by the planner (sometimes different than best)
     float currentSearchStartingMarioXPos;
-    ArrayList<SearchNode> posPool;		// the open-list of A*, contains all the unexplored search nodes
-    ArrayList<int[]> visitedStates = new ArrayList<int[]>(); // the closed-list of A*
+    PriorityQueue<SearchNode> posPool;	// the open-list of A*, contains all the unexplored search nodes
+    VisitedStates visitedStates = new VisitedStates(); // the closed-list of A*
+    private long poolInsertions = 0;	// breaks ties in the open-list, first in is picked first
+    public final SearchStats stats = new SearchStats();
     
     public int timeBudget = 20; // ms
+    
+    // If > 0, each search stops after this many expansions instead of after 40ms,
+    // so the plan doesn't depend on how fast the machine is.
+    public int expansionBudget = 0;
+    
+    // How many of the best open nodes to simulate at once. With more than one they are
+    // simulated in parallel, and the results are then handled in the order the nodes were
+    // picked, so the outcome only depends on the width, not on the number of threads.
+    public int searchWidth = 1;
     public static final int visitedListPenalty = 1500; // penalty for being in the visited-states list
     
     private ArrayList<boolean[]> currentActionPlan; // the plan generated by the panner
     int ticksBeforeReplanning = 0; 
+    private ArrayList<boolean[]> restoredPlan = null; // plan of a restored checkpoint, used at the next replanning
+    
+    // Counters to see how the search is doing. They add up over all searches until reset.
+    public static class SearchStats
+    {
+    	public long expansions = 0;			// nodes simulated
+    	public long closedSetHits = 0;		// simulated nodes found to be in the closed list
+    	public long searchNanos = 0;		// time spent in search()
+    	public int poolSize = 0;			// open-list size when the last search stopped
+    	public int maxPoolSize = 0;			// largest open-list size seen
+    	
+    	public double expansionsPerSecond()
+    	{
+    		return searchNanos == 0 ? 0 : expansions * 1e9 / searchNanos;
+    	}
+    	
+    	public void reset()
+    	{
+    		expansions = 0;
+    		closedSetHits = 0;
+    		searchNanos = 0;
+    		poolSize = 0;
+    		maxPoolSize = 0;
+    	}
+    	
+    	@Override
+    	public String toString()
+    	{
+    		return "expansions: " + expansions + " (" + (int) expansionsPerSecond() + "/s)"
+    			+ " closed set hits: " + closedSetHits
+    			+ " pool size: " + poolSize + " (max " + maxPoolSize + ")";
+    	}
+    }
+    
+    // The planner state at a tick right before replanning, see checkpoint().
+    public static class Checkpoint
+    {
+    	private final LevelScene scene;
+    	private final ArrayList<boolean[]> plan;
+    	
+    	private Checkpoint(LevelScene scene, ArrayList<boolean[]> plan)
+    	{
+    		this.scene = scene;
+    		this.plan = plan;
+    	}
+    	
+    	// Does other plan on exactly like this checkpoint, as long as Mario stays right of column fromX?
+    	public boolean matches(Checkpoint other, int fromX)
+    	{
+    		if (plan.size() != other.plan.size())
+    			return false;
+    		for (int i = 0; i < plan.size(); i++)
+    		{
+    			if (!Arrays.equals(plan.get(i), other.plan.get(i)))
+    				return false;
+    		}
+    		return scene.matches(other.scene, fromX);
+    	}
+    }
+    
+    // pick the node with the lowest cost first, ties go to the one added first
+    private static final Comparator<SearchNode> byCost = new Comparator<SearchNode>()
+    {
+    	public int compare(SearchNode a, SearchNode b)
+    	{
+    		int c = Float.compare(a.cost, b.cost);
+    		return c != 0 ? c : Long.compare(a.order, b.order);
+    	}
+    };
     
 	// A SearchNode is a node in the A* search, consisting of an action, the world state using this action
     // and information about the parent.
@@ -46,7 +132,12 @@ public class AStarSimulator
 		private float remainingTime = 0;		// Optimal time to reach goal AFTER simulating with the selected action
 
 		public SearchNode parentPos = null;		// Parent node
-		public LevelScene sceneSnapshot = null; // World state of this node
+		public LevelScene sceneSnapshot = null; // World state of this node, dropped once all children are simulated
+		public float marioX, marioY;			// Mario's position in the snapshot, kept after it is dropped
+		public boolean marioCanJump = false;	// could Mario jump higher in the snapshot
+		private int unsettledChildren = 0;		// children that still need this snapshot to simulate from
+		private float cost;						// cost in the open-list, fixed while the node is in there
+		private long order;						// when the node was put into the open-list
 		public boolean hasBeenHurt = false;
 		public boolean isInVisitedList = false;
 		
@@ -91,19 +182,38 @@ public class AStarSimulator
 		public float estimateRemainingTimeChild(boolean[] action, int repetitions)
 		{
 			float[] childbehaviorDistanceAndSpeed = estimateMaximumForwardMovement(
-					levelScene.mario.xa, action, repetitions);
-			return calcRemainingTime(levelScene.mario.x + childbehaviorDistanceAndSpeed[0],
+					sceneSnapshot.mario.xa, action, repetitions);
+			return calcRemainingTime(sceneSnapshot.mario.x + childbehaviorDistanceAndSpeed[0],
 					childbehaviorDistanceAndSpeed[1]);			
 		}
 		
-		// Simulate the world state after we applied the action of this node, using the parent world state
+		// Keep a world state as the snapshot of this node, along with the bits of it
+		// that are needed once the snapshot itself has been dropped.
+		public void setSnapshot(LevelScene scene)
+		{
+			sceneSnapshot = scene;
+			marioX = scene.mario.x;
+			marioY = scene.mario.y;
+			marioCanJump = scene.mario.mayJump() || (scene.mario.jumpTime > 0);
+		}
+		
+		// This node won't be simulated again. Once that is true for all siblings,
+		// nothing needs the parent's world state anymore.
+		public void settle()
+		{
+			if (parentPos != null && --parentPos.unsettledChildren == 0
+					&& parentPos != bestPosition && parentPos != furthestPosition)
+				parentPos.sceneSnapshot = null;
+		}
+		
+		// Simulate the world state after we applied the action of this node, using the parent world state.
+		// Only touches this node and a copy of the parent's scene, so nodes can be simulated in parallel.
 		public float simulatePos()
 		{
-	    	// set state to parents scene
-			levelScene = parentPos.sceneSnapshot;
-			parentPos.sceneSnapshot = backupState();
+	    	// work on a copy of the parents scene, the parent keeps its own snapshot
+			LevelScene scene = backupState(parentPos.sceneSnapshot);
 			
-			int initialDamage = getMarioDamage();
+			int initialDamage = getMarioDamage(scene);
 	    	for (int i = 0; i < repetitions; i++)
 	    	{
 	    		/* This is the graphical line output, it has been disabled for the competition
@@ -115,7 +225,7 @@ public class AStarSimulator
 	    		}*/
 	    		
 	    		// Run the simulator
-	    		advanceStep(action);
+	    		advanceStep(scene, action);
 	    		
 	    		/*if (debugPos < 1000)
 	    		{
@@ -130,12 +240,12 @@ public class AStarSimulator
 	    	
 	    	// set the remaining time after we've simulated the effects of our action,
 	    	// penalising it if we've been hurt.
-	    	remainingTime = calcRemainingTime(levelScene.mario.x, levelScene.mario.xa)
-	    	 	+ (getMarioDamage() - initialDamage) * (1000000 - 100 * timeElapsed);
+	    	remainingTime = calcRemainingTime(scene.mario.x, scene.mario.xa)
+	    	 	+ (getMarioDamage(scene) - initialDamage) * (1000000 - 100 * timeElapsed);
 	    	if (isInVisitedList)
 	    		remainingTime += visitedListPenalty;
-	    	hasBeenHurt = (getMarioDamage() - initialDamage) != 0;
-	    	sceneSnapshot = backupState();
+	    	hasBeenHurt = (getMarioDamage(scene) - initialDamage) != 0;
+	    	setSnapshot(scene);
 	    			
 	    	return remainingTime;			
 		}
@@ -149,6 +259,7 @@ public class AStarSimulator
 			{
 				list.add(new SearchNode(action, repetitions, this));
 			}			
+			unsettledChildren = list.size();
 			return list;
 		}
 		
@@ -169,7 +280,7 @@ public class AStarSimulator
     	if (currentPos.parentPos != null && checkParent
     			&& canJumpHigher(currentPos.parentPos, false))
     			return true;
-    	return currentPos.sceneSnapshot.mario.mayJump() || (currentPos.sceneSnapshot.mario.jumpTime > 0);
+    	return currentPos.marioCanJump;
     }
     
     // Create a list of (almost) all valid actions possible in our node
@@ -240,102 +351,138 @@ public class AStarSimulator
     	  +10.90909091*y-88.26446282+9.090909091*s0);
     }
     
-    private int getMarioDamage()
+    private static int getMarioDamage(LevelScene scene)
     {
     	// early damage at gaps: Don't even fall 1 px into them.
-    	if (levelScene.level.isGap[(int) (levelScene.mario.x/16)] &&
-    			levelScene.mario.y > levelScene.level.gapHeight[(int) (levelScene.mario.x/16)]*16)
+    	if (scene.level.isGap[(int) (scene.mario.x/16)] &&
+    			scene.mario.y > scene.level.gapHeight[(int) (scene.mario.x/16)]*16)
     	{
-     		levelScene.mario.damage+=5;
+     		scene.mario.damage+=5;
     	}
-    	return levelScene.mario.damage;
+    	return scene.mario.damage;
+    }
+    
+    // has this search call got budget left for more expansions?
+    private boolean withinBudget(long startTime, int expansions)
+    {
+    	if (expansionBudget > 0)
+    		return expansions < expansionBudget;
+    	return System.currentTimeMillis() - startTime < 40;
+    	//return System.currentTimeMillis() - startTime < Math.min(200,timeBudget/2); <- this makes the game a bit more jerky, but allows a deeper search in tough situations
+    }
+    
+    // simulate the first n nodes of batch, in parallel if there is more than one
+    private void simulate(final SearchNode[] batch, final float[] remaining, int n)
+    {
+    	if (n == 1)
+    		remaining[0] = batch[0].simulatePos();
+    	else
+    		IntStream.range(0, n).parallel().forEach(i -> remaining[i] = batch[i].simulatePos());
     }
     
     // main search function
     private void search(long startTime)
     {
+    	long searchStart = System.nanoTime();
     	SearchNode current = bestPosition;
     	boolean currentGood = false;		// is the current node good (= we're not getting hurt)
-    	int ticks = 0;
+    	int expansions = 0;
     	int maxRight = 176;					// distance to plan to the right
+    	SearchNode[] batch = new SearchNode[Math.max(1, searchWidth)];
+    	float[] remaining = new float[batch.length];
     	
-    	// Search until we've reached the right side of the screen, or if the time is up.
+    	// Search until we've reached the right side of the screen, or if the budget is used up.
     	while(posPool.size() != 0 
-    			&& ((bestPosition.sceneSnapshot.mario.x - currentSearchStartingMarioXPos < maxRight) || !currentGood) 
-    			&& (System.currentTimeMillis() - startTime < 40)) 
-    			//&& (System.currentTimeMillis() - startTime < Math.min(200,timeBudget/2))) <- this makes the game a bit more jerky, but allows a deeper search in tough situations
+    			&& ((bestPosition.marioX - currentSearchStartingMarioXPos < maxRight) || !currentGood) 
+    			&& withinBudget(startTime, expansions)) 
     	{
-    		ticks++;
+    		// Pick the best nodes from our open list
+    		int n = 0;
+    		while (n < batch.length && posPool.size() != 0)
+    			batch[n++] = pickBestPos(posPool);
     		
-    		// Pick the best node from our open list
-    		current = pickBestPos(posPool);
-    		currentGood = false;
+    		// Simulate the consequences of the actions associated with the chosen nodes
+    		simulate(batch, remaining, n);
+    		expansions += n;
+    		stats.expansions += n;
     		
-    		// Simulate the consequences of the action associated with the chosen node
-    		float realRemainingTime = current.simulatePos();
+    		for (int i = 0; i < n; i++)
+    		{
+    			current = batch[i];
+    			currentGood = false;
+    			float realRemainingTime = remaining[i];
     		
-    		// Now act on what we get as remaining time (to some distant goal)
+    			// Now act on what we get as remaining time (to some distant goal)
     		
-    		if (realRemainingTime < 0)
-    		{
-    			// kick out negative remaining time (shouldnt happen)
-    			continue;
-    		}
-    		else if  (!current.isInVisitedList 
-    				&& isInVisited((int) current.sceneSnapshot.mario.x, (int) current.sceneSnapshot.mario.y, current.timeElapsed))
-	   		{
-    			// if the position & time of the node is already in the closed list
-    			// (i.e., has been explored before), put some penalty on it and put it 
-    			// back into the pool. The closed list works approximately: nodes too close
-    			// to an item in the closed list are considered visited, even though they're a bit different.
+    			if (realRemainingTime < 0)
+    			{
+    				// kick out negative remaining time (shouldnt happen)
+    				current.settle();
+    				continue;
+    			}
+    			else if  (!current.isInVisitedList 
+    					&& isInVisited((int) current.marioX, (int) current.marioY, current.timeElapsed))
+    			{
+    				// if the position & time of the node is already in the closed list
+    				// (i.e., has been explored before), put some penalty on it and put it 
+    				// back into the pool. The closed list works approximately: nodes too close
+    				// to an item in the closed list are considered visited, even though they're a bit different.
     			
-    			realRemainingTime += visitedListPenalty;
-    			current.isInVisitedList = true;
-    			current.remainingTime = realRemainingTime;
-    			current.remainingTimeEstimated = realRemainingTime;
-	   			
-    			posPool.add(current); 
-	   		}
-    		else if (realRemainingTime - current.remainingTimeEstimated > 0.1)
-    		{
-    			// current node is not as good as anticipated. put it back in pool and look for best again
-    			current.remainingTimeEstimated = realRemainingTime;
-    			posPool.add(current);
-    		}
-    		else
-    		{
-    			// accept the node, its estimated time is as good as its real time.
-    			currentGood = true;
+    				stats.closedSetHits++;
+    				realRemainingTime += visitedListPenalty;
+    				current.isInVisitedList = true;
+    				current.remainingTime = realRemainingTime;
+    				current.remainingTimeEstimated = realRemainingTime;
+    				
+    				addToPool(current); 
+    			}
+    			else if (realRemainingTime - current.remainingTimeEstimated > 0.1)
+    			{
+    				// current node is not as good as anticipated. put it back in pool and look for best again
+    				current.remainingTimeEstimated = realRemainingTime;
+    				addToPool(current);
+    			}
+    			else
+    			{
+    				// accept the node, its estimated time is as good as its real time.
+    				currentGood = true;
     			
-    			// put it into the visited list
-    			visited((int) current.sceneSnapshot.mario.x, (int) current.sceneSnapshot.mario.y, current.timeElapsed);
+    				// put it into the visited list
+    				visited((int) current.marioX, (int) current.marioY, current.timeElapsed);
     			
-    			// put all children into the open list
-    			posPool.addAll(current.generateChildren());    			
-    		}
-    		if (currentGood) 
-    		{
-    			// the current node is the best node (property of A*)
-    			bestPosition = current;
+    				// put all children into the open list
+    				addToPool(current.generateChildren());
+    				current.settle();
+    			}
+    			if (currentGood) 
+    			{
+    				// the current node is the best node (property of A*)
+    				bestPosition = current;
     			
-    			// if we're not over a gap, accept it also as the furthest pos.
-    			// the furthest position is a work-around to avoid falling into gaps
-    			// when the search is stopped (by time-out) while we're over a gap
-    			if (current.sceneSnapshot.mario.x > furthestPosition.sceneSnapshot.mario.x
-    					&& !levelScene.level.isGap[(int)(current.sceneSnapshot.mario.x/16)])
-    				furthestPosition = current;
+    				// if we're not over a gap, accept it also as the furthest pos.
+    				// the furthest position is a work-around to avoid falling into gaps
+    				// when the search is stopped (by time-out) while we're over a gap
+    				if (current.marioX > furthestPosition.marioX
+    						&& !levelScene.level.isGap[(int)(current.marioX/16)])
+    					furthestPosition = current;
+    			}
     		}
     	}
+    	if (expansions > 0)
+    		levelScene = current.sceneSnapshot;
     	if (levelScene.mario.x - currentSearchStartingMarioXPos < maxRight
-    			&& furthestPosition.sceneSnapshot.mario.x > bestPosition.sceneSnapshot.mario.x + 20
+    			&& furthestPosition.marioX > bestPosition.marioX + 20
     			&& (levelScene.mario.fire ||
-    					levelScene.level.isGap[(int)(bestPosition.sceneSnapshot.mario.x/16)]))
+    					levelScene.level.isGap[(int)(bestPosition.marioX/16)]))
     	{
     		// Couldnt plan till end of screen, take furthest (in some situations)
     		bestPosition = furthestPosition;
     	}
     	
+    	stats.searchNanos += System.nanoTime() - searchStart;
+    	stats.poolSize = posPool.size();
     	if (levelScene.verbose > 1) System.out.println("Search stopped. Remaining pool size: "+ posPool.size() + " Current remaining time: " + current.remainingTime);
+    	if (levelScene.verbose > 1) System.out.println("Search stats: " + stats);
 
     	levelScene = current.sceneSnapshot;
     }
@@ -345,11 +492,12 @@ public class AStarSimulator
     {    	
     	if (levelScene.verbose > 1) System.out.println("Started search.");
     	SearchNode startPos = new SearchNode(null, repetitions, null);
-    	startPos.sceneSnapshot = backupState();
+    	startPos.setSnapshot(backupState());
     	
-    	posPool = new ArrayList<SearchNode>();
+    	posPool = new PriorityQueue<SearchNode>(64, byCost);
+    	poolInsertions = 0;
     	visitedStates.clear();
-    	posPool.addAll(startPos.generateChildren());
+    	addToPool(startPos.generateChildren());
     	currentSearchStartingMarioXPos = levelScene.mario.x; 
    	
     	/*
@@ -412,25 +560,28 @@ public class AStarSimulator
     	return s;
     }
     
-    // pick the best node out of the open list, using the typical A* decision
+    // put a node into the open list, using the typical A* decision
     // method, which is fitness = elapsed time + estimated time to goal
-    private SearchNode pickBestPos(ArrayList<SearchNode> posPool)
+    private void addToPool(SearchNode node)
     {
-    	SearchNode bestPos = null;
-    	float bestPosCost = 10000000;
-    	for (SearchNode current: posPool)
-    	{	    		
-    		// slightly bias towards furthest positions
-    		float currentCost = current.getRemainingTime()
-    			+ current.timeElapsed * 0.90f;  
-    		if (currentCost < bestPosCost)
-    		{
-    			bestPos = current;
-    			bestPosCost = currentCost;
-    		}
-    	}
-    	posPool.remove(bestPos);
-    	return bestPos;
+    	// slightly bias towards furthest positions
+    	node.cost = node.getRemainingTime() + node.timeElapsed * 0.90f;
+    	node.order = poolInsertions++;
+    	posPool.add(node);
+    	if (posPool.size() > stats.maxPoolSize)
+    		stats.maxPoolSize = posPool.size();
+    }
+    
+    private void addToPool(ArrayList<SearchNode> nodes)
+    {
+    	for (SearchNode node: nodes)
+    		addToPool(node);
+    }
+    
+    // pick the best node out of the open list
+    private SearchNode pickBestPos(PriorityQueue<SearchNode> posPool)
+    {
+    	return posPool.poll();
     }
         
 	public void initialiseSimulator()
@@ -449,11 +600,16 @@ public class AStarSimulator
 	
 	// make a clone of the current world state (copying marios state, all enemies, and some level information)
 	public LevelScene backupState()
+	{
+		return backupState(levelScene);
+	}
+	
+	private static LevelScene backupState(LevelScene scene)
 	{
 		LevelScene sceneCopy = null;
 		try
 		{
-			sceneCopy = (LevelScene) levelScene.clone();
+			sceneCopy = (LevelScene) scene.clone();
 		} catch (CloneNotSupportedException e)
 		{
 			e.printStackTrace();
@@ -464,6 +620,35 @@ public class AStarSimulator
 	
 	
 	
+	// like backupState, but the copy gets its own map, so later observations don't reach it
+	private static LevelScene copyState(LevelScene scene)
+	{
+		LevelScene sceneCopy = backupState(scene);
+		sceneCopy.level = scene.level.copy();
+		return sceneCopy;
+	}
+	
+	// Copy the planner state, to go on from it later with restore(). The search in progress
+	// can't be copied, so this only works if the next call to optimise() replans anyway,
+	// which it does every few ticks. Returns null at any other tick.
+	public Checkpoint checkpoint()
+	{
+		if (ticksBeforeReplanning > 1 && currentActionPlan.size() > 0)
+			return null;
+		return new Checkpoint(copyState(levelScene), restoredPlan != null ? new ArrayList<boolean[]>(restoredPlan) : extractPlan());
+	}
+	
+	public void restore(Checkpoint checkpoint)
+	{
+		levelScene = copyState(checkpoint.scene);
+		workScene = null;
+		bestPosition = null;
+		furthestPosition = null;
+		restoredPlan = new ArrayList<boolean[]>(checkpoint.plan);
+		currentActionPlan = new ArrayList<boolean[]>();
+		ticksBeforeReplanning = 0;
+	}
+	
 	public void restoreState(LevelScene l)
 	{
 		levelScene = l;
@@ -471,14 +656,19 @@ public class AStarSimulator
 	
 	public void advanceStep(boolean[] action)
 	{
-		levelScene.mario.setKeys(action);
-		if (levelScene.verbose > 8) System.out.print("[" 
+		advanceStep(levelScene, action);
+	}
+	
+	private static void advanceStep(LevelScene scene, boolean[] action)
+	{
+		scene.mario.setKeys(action);
+		if (scene.verbose > 8) System.out.print("[" 
 				+ (action[Mario.KEY_DOWN] ? "d" : "") 
 				+ (action[Mario.KEY_RIGHT] ? "r" : "")
 				+ (action[Mario.KEY_LEFT] ? "l" : "")
 				+ (action[Mario.KEY_JUMP] ? "j" : "")
 				+ (action[Mario.KEY_SPEED] ? "s" : "") + "]");
-		levelScene.tick();
+		scene.tick();
 	}
 
 	// main optimisation function, this calls the A* planner and extracts and returns the optimal action.
@@ -500,7 +690,8 @@ public class AStarSimulator
         {
         	// We're done planning, extract the plan and prepare the planner for the
         	// next planning iteration (which starts planAhead ticks in the future)
-        	currentActionPlan = extractPlan(); 
+        	currentActionPlan = restoredPlan != null ? restoredPlan : extractPlan();
+        	restoredPlan = null;
         	if (currentActionPlan.size() < planAhead)
         	{
         		if (levelScene.verbose > 2) System.out.println("Warning!! currentActionPlan smaller than planAhead! plansize: "+currentActionPlan.size());
@@ -535,27 +726,12 @@ public class AStarSimulator
 	
 	private void visited(int x, int y, int t)
 	{
-		visitedStates.add(new int[]{x,y,t});
+		visitedStates.add(x, y, t);
 	}
 	
 	private boolean isInVisited(int x, int y, int t)
 	{
 		// is the (x, y, time) triple too close to a triple in the visited states list?
-		
-		// these values can be tweaked
-		int timeDiff = 5;
-		int xDiff = 2;
-		int yDiff = 2;
-		for(int[] v: visitedStates)
-		{
-			if (Math.abs(v[0] - x) < xDiff
-					&& Math.abs(v[1] - y) < yDiff
-					&& Math.abs(v[2] - t) < timeDiff
-					&& t >= v[2])
-			{
-				return true;
-			}
-		}
-		return false;	
+		return visitedStates.contains(x, y, t);
 	}
 }
\ No newline at end of file
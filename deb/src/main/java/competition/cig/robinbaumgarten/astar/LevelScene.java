@@ -1,8 +1,11 @@
 package competition.cig.robinbaumgarten.astar;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import ch.idsia.utils.StateHash;
+
 import competition.cig.robinbaumgarten.astar.level.Level;
 import competition.cig.robinbaumgarten.astar.level.SpriteTemplate;
 import competition.cig.robinbaumgarten.astar.sprites.BulletBill;
@@ -59,6 +62,11 @@ public class LevelScene implements SpriteContext, Cloneable
     	c.mario = (Mario) this.mario.clone();
     	c.level = (Level) this.level.clone();
     	c.mario.world = c;
+    	// these only hold anything during a tick, but each clone needs its own
+    	c.spritesToAdd = new ArrayList<Sprite>(this.spritesToAdd);
+    	c.spritesToRemove = new ArrayList<Sprite>(this.spritesToRemove);
+    	c.shellsToCheck = new ArrayList<Shell>(this.shellsToCheck);
+    	c.fireballsToCheck = new ArrayList<Fireball>(this.fireballsToCheck);
     	
     	List<Sprite> clone = new ArrayList<Sprite>(this.sprites.size());
         for(Sprite item: this.sprites) 
@@ -80,6 +88,44 @@ public class LevelScene implements SpriteContext, Cloneable
     	return c;
     }
 
+    // Does other play on exactly like this scene, as long as neither looks left of column fromX?
+    // Compares the counters, all sprites and the level from fromX on.
+    public boolean matches(LevelScene other, int fromX)
+    {
+    	if (StateHash.of(this) != StateHash.of(other) || sprites.size() != other.sprites.size()
+    			|| level.width != other.level.width || level.xExit != other.level.xExit)
+    		return false;
+    	for (int i = 0; i < sprites.size(); i++)
+    	{
+    		if (StateHash.of(sprites.get(i)) != StateHash.of(other.sprites.get(i)))
+    			return false;
+    	}
+    	if (sprites.indexOf(mario.carried) != other.sprites.indexOf(other.mario.carried))
+    		return false;
+    	
+    	for (int x = Math.max(fromX, 0); x < level.width; x++)
+    	{
+    		if (!Arrays.equals(level.map[x], other.level.map[x]) || level.isGap[x] != other.level.isGap[x]
+    				|| level.gapHeight[x] != other.level.gapHeight[x])
+    			return false;
+    	}
+    	Level.ModifiedTile a = level.modifiedMapTiles;
+    	Level.ModifiedTile b = other.level.modifiedMapTiles;
+    	while (true)
+    	{
+    		while (a != null && a.x < fromX)
+    			a = a.next;
+    		while (b != null && b.x < fromX)
+    			b = b.next;
+    		if (a == null || b == null)
+    			return a == b;
+    		if (a.x != b.x || a.y != b.y || a.value != b.value)
+    			return false;
+    		a = a.next;
+    		b = b.next;
+    	}
+    }
+
     // Update internal level representation to what we get from the API.
     // includes some gap detection code
     public boolean setLevelScene(byte[][] data)
@@ -183,9 +229,6 @@ public class LevelScene implements SpriteContext, Cloneable
    
     public void init()
     {
-        Level.loadBehaviors();
-        
-        Sprite.spriteContext = this;
         sprites.clear();
 
         mario = new Mario(this);
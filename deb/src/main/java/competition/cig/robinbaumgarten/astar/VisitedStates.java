@@ -0,0 +1,128 @@
+package competition.cig.robinbaumgarten.astar;
+
+import java.util.Arrays;
+
+// The closed list of the A* planner.
+// A state (x, y, time) counts as visited if some added state is less than xDiff
+// and yDiff away, at most timeDiff - 1 ticks earlier. Added states are bucketed
+// into cells of xDiff * yDiff * timeDiff, so a lookup only looks at the few
+// cells around the state instead of every state added since the search started.
+// Everything lives in flat int/long arrays, so adding and looking up never
+// allocates once the arrays have grown to fit.
+
+public class VisitedStates
+{
+    // these values can be tweaked
+    public static final int xDiff = 2;
+    public static final int yDiff = 2;
+    public static final int timeDiff = 5;
+
+    // open addressing table from cell key to the newest state in the cell (+1, 0 is empty)
+    private long[] cellKeys = new long[256];
+    private int[] cellHeads = new int[256];
+    private int cellCount = 0;
+
+    // added states, each linking to the previous state in its cell (+1, 0 ends the list)
+    private int[] xs = new int[256];
+    private int[] ys = new int[256];
+    private int[] ts = new int[256];
+    private int[] next = new int[256];
+    private int size = 0;
+
+    public void clear()
+    {
+        Arrays.fill(cellHeads, 0);
+        cellCount = 0;
+        size = 0;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public void add(int x, int y, int t)
+    {
+        if (size == xs.length)
+        {
+            xs = Arrays.copyOf(xs, size * 2);
+            ys = Arrays.copyOf(ys, size * 2);
+            ts = Arrays.copyOf(ts, size * 2);
+            next = Arrays.copyOf(next, size * 2);
+        }
+        long key = cellKey(Math.floorDiv(x, xDiff), Math.floorDiv(y, yDiff), Math.floorDiv(t, timeDiff));
+        int slot = slot(key);
+        if (cellHeads[slot] == 0)
+        {
+            cellKeys[slot] = key;
+            cellCount++;
+        }
+        xs[size] = x;
+        ys[size] = y;
+        ts[size] = t;
+        next[size] = cellHeads[slot];
+        cellHeads[slot] = ++size;
+        if (cellCount * 2 > cellKeys.length)
+            growCells();
+    }
+
+    // is the (x, y, time) triple too close to a triple in the visited states?
+    public boolean contains(int x, int y, int t)
+    {
+        int cx0 = Math.floorDiv(x - xDiff + 1, xDiff), cx1 = Math.floorDiv(x + xDiff - 1, xDiff);
+        int cy0 = Math.floorDiv(y - yDiff + 1, yDiff), cy1 = Math.floorDiv(y + yDiff - 1, yDiff);
+        int ct0 = Math.floorDiv(t - timeDiff + 1, timeDiff), ct1 = Math.floorDiv(t, timeDiff);
+        for (int cx = cx0; cx <= cx1; cx++)
+            for (int cy = cy0; cy <= cy1; cy++)
+                for (int ct = ct0; ct <= ct1; ct++)
+                {
+                    long key = cellKey(cx, cy, ct);
+                    int slot = slot(key);
+                    if (cellHeads[slot] == 0)
+                        continue;
+                    for (int i = cellHeads[slot]; i != 0; i = next[i - 1])
+                    {
+                        int v = i - 1;
+                        if (Math.abs(xs[v] - x) < xDiff
+                                && Math.abs(ys[v] - y) < yDiff
+                                && Math.abs(ts[v] - t) < timeDiff
+                                && t >= ts[v])
+                            return true;
+                    }
+                }
+        return false;
+    }
+
+    private static long cellKey(int cx, int cy, int ct)
+    {
+        return ((long) (cx & 0x1fffff) << 42) | ((long) (cy & 0x1fffff) << 21) | (ct & 0x1fffff);
+    }
+
+    // slot holding key, or the empty slot where it would go
+    private int slot(long key)
+    {
+        int mask = cellKeys.length - 1;
+        long h = key * 0x9e3779b97f4a7c15L;
+        int i = (int) (h >>> 32) & mask;
+        while (cellHeads[i] != 0 && cellKeys[i] != key)
+            i = (i + 1) & mask;
+        return i;
+    }
+
+    private void growCells()
+    {
+        long[] oldKeys = cellKeys;
+        int[] oldHeads = cellHeads;
+        cellKeys = new long[oldKeys.length * 2];
+        cellHeads = new int[oldHeads.length * 2];
+        for (int j = 0; j < oldKeys.length; j++)
+        {
+            if (oldHeads[j] != 0)
+            {
+                int i = slot(oldKeys[j]);
+                cellKeys[i] = oldKeys[j];
+                cellHeads[i] = oldHeads[j];
+            }
+        }
+    }
+}
@@ -2,8 +2,6 @@ package competition.cig.robinbaumgarten.astar.level;
 
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 
 
 public class Level implements Cloneable
@@ -19,7 +17,12 @@ public class Level implements Cloneable
             "ANIMATED",//
     };
 
-    public static byte[] TILE_BEHAVIORS = new byte[256];
+    public static final byte[] TILE_BEHAVIORS = new byte[256];
+    
+    static
+    {
+    	loadBehaviors();
+    }
 
     public static final int BIT_BLOCK_UPPER = 1 << 0;
     public static final int BIT_BLOCK_ALL = 1 << 1;
@@ -29,6 +32,12 @@ public class Level implements Cloneable
     public static final int BIT_BREAKABLE = 1 << 5;
     public static final int BIT_PICKUPABLE = 1 << 6;
     public static final int BIT_ANIMATED = 1 << 7;
+    
+    // tiles that can change while simulating. Changes to them go into modifiedMapTiles,
+    // the rest go straight into map, which all clones share. Only broken blocks used to be
+    // kept apart, so a block bumped or a coin taken in one branch showed up in every other
+    // branch; plans at any search width, the default one included, differ from that.
+    private static final int BITS_CHANGEABLE = BIT_BUMPABLE | BIT_BREAKABLE | BIT_PICKUPABLE;
 
     //private static final int FILE_HEADER = 0x271c4178;
     public int width;
@@ -40,7 +49,9 @@ public class Level implements Cloneable
     public boolean[] isGap;
     public int[] gapHeight;
     
-    public List<int[]> modifiedMapTiles = new ArrayList<int[]>(0);
+    // Changes to bumpable, breakable and pickupable tiles, newest first. The list is never
+    // changed in place, only prepended to, so clones can share it.
+    public ModifiedTile modifiedMapTiles = null;
     //public byte[][] data;
     //public byte[][] observation;
 
@@ -53,12 +64,42 @@ public class Level implements Cloneable
 	public Object clone() throws CloneNotSupportedException
     {
     	//System.out.println("Cloning level, wh: "+width + " "+height);
-    	Level l = (Level) super.clone();
-    	List<int[]> clone = new ArrayList<int[]>(modifiedMapTiles.size());
-    	for(int[] item: modifiedMapTiles) 
-    		clone.add((int[]) item.clone());
-    	l.modifiedMapTiles = clone;
-    	return l;
+    	return super.clone();
+    }
+    
+    // Unlike clone, the copy gets its own map and gaps, so the observations written
+    // into this level from now on don't show up in it.
+    public Level copy()
+    {
+    	Level copy;
+    	try
+    	{
+    		copy = (Level) clone();
+    	} catch (CloneNotSupportedException e)
+    	{
+    		throw new IllegalStateException(e);
+    	}
+    	copy.map = new byte[width][];
+    	for (int x = 0; x < width; x++)
+    		copy.map[x] = map[x].clone();
+    	copy.isGap = isGap.clone();
+    	copy.gapHeight = gapHeight.clone();
+    	return copy;
+    }
+    
+    public static final class ModifiedTile
+    {
+    	public final int x, y;
+    	public final byte value;
+    	public final ModifiedTile next;
+    	
+    	public ModifiedTile(int x, int y, byte value, ModifiedTile next)
+    	{
+    		this.x = x;
+    		this.y = y;
+    		this.value = value;
+    		this.next = next;
+    	}
     }
     
     
@@ -362,12 +403,12 @@ public class Level implements Cloneable
         if (y < 0) return 0;
         if (x >= width) x = width - 1;
         if (y >= height) y = height - 1;
-        if ((Level.TILE_BEHAVIORS[map[x][y] & 0xff] & Level.BIT_BREAKABLE) > 0)
+        if ((Level.TILE_BEHAVIORS[map[x][y] & 0xff] & BITS_CHANGEABLE) > 0)
         {
-        	for(int[] a : modifiedMapTiles)
+        	for(ModifiedTile t = modifiedMapTiles; t != null; t = t.next)
         	{
-        		if (a[0] == x && a[1] == y)
-        			return (byte) 0;
+        		if (t.x == x && t.y == y)
+        			return t.value;
         	}
         }
         return map[x][y];
@@ -379,12 +420,10 @@ public class Level implements Cloneable
         if (y < 0) return;
         if (x >= width) return;
         if (y >= height) return;
-        if ((Level.TILE_BEHAVIORS[map[x][y] & 0xff] & Level.BIT_BREAKABLE) > 0 && b == 0)
+        if ((Level.TILE_BEHAVIORS[map[x][y] & 0xff] & BITS_CHANGEABLE) > 0)
         {
-        	int[] modified = new int[2];
-        	modified[0] = x;
-        	modified[1] = y;
-        	modifiedMapTiles.add(modified);
+        	if (getBlock(x, y) != b)
+        		modifiedMapTiles = new ModifiedTile(x, y, b, modifiedMapTiles);
         }
         else
         	map[x][y] = b;
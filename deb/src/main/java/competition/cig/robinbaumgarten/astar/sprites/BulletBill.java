@@ -67,7 +67,7 @@ public class BulletBill extends Sprite
             {
                 deadTime = 1;
                 
-                spriteContext.removeSprite(this);
+                world.removeSprite(this);
             }
 
             x += xa;
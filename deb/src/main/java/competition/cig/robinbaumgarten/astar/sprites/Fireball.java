@@ -43,7 +43,7 @@ public class Fireball extends Sprite
             {
                 //world.addSprite(new Sparkle((int) (x + Math.random() * 8 - 4)+4, (int) (y + Math.random() * 8-4)+2, (float) Math.random() * 2 - 1-facing, (float) Math.random() *2 -1, 0, 1, 5));
             }
-            spriteContext.removeSprite(this);
+            world.removeSprite(this);
 
             return;
         }
@@ -54,7 +54,7 @@ public class FlowerEnemy extends Enemy
                 {
                     //world.addSprite(new Sparkle((int) (x + Math.random() * 16 - 8) + 4, (int) (y - Math.random() * 8) + 4, (float) (Math.random() * 2 - 1), (float) Math.random() * -1, 0, 1, 5));
                 }
-                spriteContext.removeSprite(this);
+                world.removeSprite(this);
             }
 
             x += xa;
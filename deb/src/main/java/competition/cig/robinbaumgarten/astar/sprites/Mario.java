@@ -10,26 +10,14 @@ public class Mario extends Sprite implements Cloneable
 {
     public boolean large = false;
     public boolean fire = false;
-    public static int coins = 0;
-    public static int lives = 1024;
+    public int coins = 0;
+    public int lives = 1024;
     public int damage = 0; // counts +1 everytime mario is hurt
-    public static int numberOfAttempts = 0;
-    public static String levelString = "none";
     public int status = STATUS_RUNNING;
     private final int FractionalPowerUpTime = 0;
 
     public Sprite carried = null;
     
-    public void resetStatic()
-    {
-        large = true;
-        fire = false;
-        coins = 0;
-        lives = 65536;
-        levelString = "none";
-        numberOfAttempts = 0;
-    }
-
     @Override
 	public Object clone() throws CloneNotSupportedException
     {
@@ -50,11 +38,6 @@ public class Mario extends Sprite implements Cloneable
 
     public static enum MODE {MODE_SMALL, MODE_LARGE, MODE_FIRE}
 
-    public static void resetCoins()
-    {
-        coins = 0;
-        ++numberOfAttempts;
-    }
 
     public static final int KEY_LEFT = 0;
     public static final int KEY_RIGHT = 1;
@@ -648,7 +631,7 @@ public class Mario extends Sprite implements Cloneable
         }
     }
 
-    public static void get1Up()
+    public void get1Up()
     {
         lives++;
     }
@@ -31,7 +31,6 @@ public class Sprite implements Cloneable
     public static final int KIND_UNDEF = -42;
 
 	
-    public static SpriteContext spriteContext;
     public byte kind = 120; //SK: undefined, if this is shown!
     
     public float xOld, yOld, x, y, xa, ya, lastAccurateX, lastAccurateY;
@@ -53,10 +52,8 @@ public class Sprite implements Cloneable
     @Override
 	public Object clone() throws CloneNotSupportedException
     {
-    	Sprite s = (Sprite) super.clone();
-    	if (spriteTemplate != null)
-    		s.spriteTemplate = (SpriteTemplate) this.spriteTemplate.clone();
-    	return s;
+    	// the template is shared: the planner only ever sets isDead on it, and never reads it back
+    	return super.clone();
     }
     
     public final void tick()